@@ -183,8 +183,9 @@ public class Eh107CacheStatisticsMXBean extends Eh107MXBean implements javax.cac
   }
 
   private long getMisses() {
-    return getBulkCount(BulkOps.GET_ALL_MISS) +
-        get.sum(EnumSet.of(CacheOperationOutcomes.GetOutcome.MISS_NO_LOADER, CacheOperationOutcomes.GetOutcome.MISS_WITH_LOADER)) +
+    return getBulkCount(BulkOps.GET_ALL_MISS) + getBulkCount(BulkOps.GET_ALL_NEGATIVE_HITS) +
+        get.sum(EnumSet.of(CacheOperationOutcomes.GetOutcome.MISS_NO_LOADER, CacheOperationOutcomes.GetOutcome.MISS_WITH_LOADER,
+            CacheOperationOutcomes.GetOutcome.NEGATIVE_HIT)) +
         putIfAbsent.sum(EnumSet.of(CacheOperationOutcomes.PutIfAbsentOutcome.PUT)) +
         replace.sum(EnumSet.of(CacheOperationOutcomes.ReplaceOutcome.MISS_NOT_PRESENT)) +
         conditionalRemove.sum(EnumSet.of(CacheOperationOutcomes.ConditionalRemoveOutcome.FAILURE_KEY_MISSING));
@@ -285,7 +286,8 @@ public class Eh107CacheStatisticsMXBean extends Eh107MXBean implements javax.cac
       cacheMisses += Eh107CacheStatisticsMXBean.this.getCacheMisses();
       cacheGets += Eh107CacheStatisticsMXBean.this.getCacheGets();
       bulkGetHits += Eh107CacheStatisticsMXBean.this.getBulkCount(BulkOps.GET_ALL_HITS);
-      bulkGetMiss += Eh107CacheStatisticsMXBean.this.getBulkCount(BulkOps.GET_ALL_MISS);
+      bulkGetMiss += Eh107CacheStatisticsMXBean.this.getBulkCount(BulkOps.GET_ALL_MISS)
+          + Eh107CacheStatisticsMXBean.this.getBulkCount(BulkOps.GET_ALL_NEGATIVE_HITS);
       cachePuts += Eh107CacheStatisticsMXBean.this.getCachePuts();
       bulkPuts += Eh107CacheStatisticsMXBean.this.getBulkCount(BulkOps.PUT_ALL);
       cacheRemovals += Eh107CacheStatisticsMXBean.this.getCacheRemovals();
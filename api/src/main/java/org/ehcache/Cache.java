@@ -20,10 +20,13 @@ import org.ehcache.exceptions.BulkCacheLoadingException;
 import org.ehcache.exceptions.BulkCacheWritingException;
 import org.ehcache.exceptions.CacheLoadingException;
 import org.ehcache.exceptions.CacheWritingException;
+import org.ehcache.function.Function;
+import org.ehcache.function.Predicate;
 import org.ehcache.spi.loaderwriter.CacheLoaderWriter;
 
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -124,6 +127,58 @@ public interface Cache<K, V> extends Iterable<Cache.Entry<K,V>> {
    */
   void clear();
 
+  /**
+   * Applies the given function to all mappings currently present in the Cache, working on several partitions of
+   * the Cache at once. Partitions typically map to the segments of the underlying storage, each being visited by
+   * a task run by the given executor, and this method returns once all of them have been visited.
+   * <P>
+   * Like iteration, this is weakly consistent and invokes neither the {@link CacheLoaderWriter} nor any listener.
+   * The function is applied concurrently from several threads and its results are ignored. Should it throw, the
+   * visit of all partitions stops and the exception is rethrown.
+   * </P>
+   * <P>
+   * Storage that cannot be partitioned is visited as a single partition, by a single task, and always records
+   * access as iteration does.
+   * </P>
+   *
+   * @param function the function to apply to each mapping
+   * @param executor the executor running the partition visits, a {@code ForkJoinPool} for instance
+   * @param recordAccess whether visited mappings count as accessed, which updates their access time, expiry and
+   *                     standing for eviction
+   *
+   * @throws NullPointerException if the function or the executor is {@code null}
+   * @throws UnsupportedOperationException if {@code recordAccess} is {@code false} and the underlying storage cannot
+   *                                       be partitioned
+   */
+  void scan(Function<? super Entry<K, V>, ?> function, Executor executor, boolean recordAccess);
+
+  /**
+   * Removes all mappings currently present in the Cache matching the given predicate.
+   * <P>
+   * Rather than mappings being removed one at a time, the underlying storage evaluates the predicate and removes the
+   * matching mappings segment by segment. As with {@link #clear()}, the {@link CacheLoaderWriter} is not invoked.
+   * Removal events are fired for each segment, once its matching mappings were removed.
+   * </P>
+   *
+   * @param predicate the predicate selecting the mappings to remove, which must not access this Cache
+   *
+   * @throws NullPointerException if the predicate is {@code null}
+   */
+  void removeIf(Predicate<? super Entry<K, V>> predicate);
+
+  /**
+   * Removes all mappings currently present in the Cache whose key matches the given predicate.
+   * <P>
+   * This behaves as {@link #removeIf(Predicate)} does, except that the underlying storage is spared reading the
+   * values, unless these are needed for the removal events of registered listeners.
+   * </P>
+   *
+   * @param predicate the predicate selecting the keys of the mappings to remove, which must not access this Cache
+   *
+   * @throws NullPointerException if the predicate is {@code null}
+   */
+  void removeKeysIf(Predicate<? super K> predicate);
+
   /**
    * If the provided key is not associated with a value, then associate it with the provided value.
    * 
@@ -0,0 +1,47 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.spi.serialization;
+
+import java.nio.ByteBuffer;
+import org.ehcache.exceptions.SerializerException;
+
+/**
+ * A {@link Serializer} able to leave room for a caller defined header in front of the serial form.
+ * <P>
+ *   Stores prefixing serialized values with their own metadata use this to fill in the header in place, instead of
+ *   copying the serial form into a second, larger buffer.
+ * </P>
+ *
+ * @param <T> the type of the instances to serialize
+ */
+public interface HeaderReservingSerializer<T> extends Serializer<T> {
+
+  /**
+   * Transforms the given instance into its serial form, preceded by {@code headerSize} reserved bytes.
+   * <P>
+   *   The first {@code headerSize} remaining bytes of the returned buffer are left for the caller to fill in, the
+   *   serial form as {@link #serialize(Object)} would have produced it follows them.
+   * </P>
+   *
+   * @param object the instance to serialize
+   * @param headerSize the number of bytes to reserve in front of the serial form
+   * @return a buffer holding the reserved header followed by the serial form
+   * @throws SerializerException if serialization fails
+   */
+  ByteBuffer serialize(T object, int headerSize) throws SerializerException;
+
+}
@@ -30,6 +30,11 @@ public enum BulkOps {
    */
   GET_ALL_MISS,
 
+  /**
+   * The "get all" missed bulk operation, answered from a recent loader miss without calling the loader
+   */
+  GET_ALL_NEGATIVE_HITS,
+
   /**
    * The "put all" bulk operation
    */
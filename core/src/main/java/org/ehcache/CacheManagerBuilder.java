@@ -41,6 +41,7 @@ public class CacheManagerBuilder<T extends CacheManager> {
 
   private final ConfigurationBuilder configBuilder;
   private final Set<Service> services;
+  private final int cacheLifecycleParallelism;
 
   public T build(final boolean init) {
     final T cacheManager = newCacheManager(services, configBuilder.build());
@@ -53,16 +54,25 @@ public class CacheManagerBuilder<T extends CacheManager> {
   private CacheManagerBuilder() {
     this.configBuilder = newConfigurationBuilder();
     this.services = emptySet();
+    this.cacheLifecycleParallelism = EhcacheManager.DEFAULT_CACHE_LIFECYCLE_PARALLELISM;
   }
   
   private CacheManagerBuilder(CacheManagerBuilder<T> builder, Set<Service> services) {
     this.configBuilder = builder.configBuilder;
     this.services = unmodifiableSet(services);
+    this.cacheLifecycleParallelism = builder.cacheLifecycleParallelism;
   }
 
   private CacheManagerBuilder(CacheManagerBuilder<T> builder, ConfigurationBuilder configBuilder) {
     this.configBuilder = configBuilder;
     this.services = builder.services;
+    this.cacheLifecycleParallelism = builder.cacheLifecycleParallelism;
+  }
+
+  private CacheManagerBuilder(CacheManagerBuilder<T> builder, int cacheLifecycleParallelism) {
+    this.configBuilder = builder.configBuilder;
+    this.services = builder.services;
+    this.cacheLifecycleParallelism = cacheLifecycleParallelism;
   }
 
   public static CacheManager newCacheManager(final Configuration configuration) {
@@ -70,7 +80,7 @@ public class CacheManagerBuilder<T extends CacheManager> {
   }
 
   T newCacheManager(Collection<Service> services, final Configuration configuration) {
-    final EhcacheManager ehcacheManager = new EhcacheManager(configuration, services);
+    final EhcacheManager ehcacheManager = new EhcacheManager(configuration, services, true, cacheLifecycleParallelism);
     return cast(ehcacheManager);
   }
   
@@ -101,6 +111,19 @@ public class CacheManagerBuilder<T extends CacheManager> {
     return new CacheManagerBuilder<T>(this, configBuilder.withClassLoader(classLoader));
   }
 
+  /**
+   * Sets how many of the configured caches get initialized, or closed, concurrently by the built cache manager.
+   *
+   * @param parallelism the number of caches handled concurrently, {@code 1} handling them one after the other
+   * @return a new builder with the updated parallelism
+   */
+  public CacheManagerBuilder<T> withCacheLifecycleParallelism(int parallelism) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("Cache lifecycle parallelism must be at least 1: " + parallelism);
+    }
+    return new CacheManagerBuilder<T>(this, parallelism);
+  }
+
   public static CacheManagerBuilder<CacheManager> newCacheManagerBuilder() {
     return new CacheManagerBuilder<CacheManager>();
   }
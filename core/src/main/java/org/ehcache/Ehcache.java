@@ -18,6 +18,9 @@ package org.ehcache;
 
 import org.ehcache.config.CacheConfiguration;
 import org.ehcache.config.CacheRuntimeConfiguration;
+import org.ehcache.config.loaderwriter.LoadCoalescingConfiguration;
+import org.ehcache.config.loaderwriter.NegativeCachingConfiguration;
+import org.ehcache.config.loaderwriter.WriteCoalescingConfiguration;
 import org.ehcache.event.CacheEvent;
 import org.ehcache.events.CacheEventDispatcher;
 import org.ehcache.events.CacheEvents;
@@ -28,14 +31,19 @@ import org.ehcache.exceptions.CacheAccessException;
 import org.ehcache.exceptions.CacheLoadingException;
 import org.ehcache.exceptions.CachePassThroughException;
 import org.ehcache.exceptions.CacheWritingException;
+import org.ehcache.internal.SystemTimeSource;
+import org.ehcache.internal.TimeSource;
 import org.ehcache.expiry.Duration;
 import org.ehcache.function.BiFunction;
 import org.ehcache.function.Function;
 import org.ehcache.function.NullaryFunction;
+import org.ehcache.function.Predicate;
 import org.ehcache.resilience.LoggingRobustResilienceStrategy;
 import org.ehcache.resilience.RecoveryCache;
 import org.ehcache.resilience.ResilienceStrategy;
 import org.ehcache.spi.LifeCycled;
+import org.ehcache.spi.ServiceLocator;
+import org.ehcache.spi.cache.CacheStoreHelper;
 import org.ehcache.spi.cache.Store;
 import org.ehcache.spi.cache.Store.ValueHolder;
 import org.ehcache.spi.loaderwriter.CacheLoaderWriter;
@@ -65,12 +73,18 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
 import static org.ehcache.Functions.memoize;
@@ -92,6 +106,10 @@ public class Ehcache<K, V> implements Cache<K, V>, UserManagedCache<K, V> {
   private final CacheEventDispatcher<K, V> eventNotificationService;
   private final Jsr107CacheImpl jsr107Cache;
   private final boolean useLoaderInAtomics;
+  private final NegativeCache<K> negativeCache;
+  private final LoaderGateway<K, V> loaderGateway;
+  private final WriteGateway<K, V> writeGateway;
+  private final int writeBatchSize;
   protected final Logger logger;
   
   private final OperationObserver<GetOutcome> getObserver = operation(GetOutcome.class).named("get").of(this).tag("cache").build();
@@ -131,16 +149,53 @@ public class Ehcache<K, V> implements Cache<K, V>, UserManagedCache<K, V> {
   Ehcache(CacheConfiguration<K, V> runtimeConfiguration, Store<K, V> store,
           CacheLoaderWriter<? super K, V> cacheLoaderWriter,
           CacheEventDispatcher<K, V> eventNotifier, boolean useLoaderInAtomics, Logger logger) {
-    this(new EhcacheRuntimeConfiguration<K, V>(runtimeConfiguration, eventNotifier), store, cacheLoaderWriter, eventNotifier, useLoaderInAtomics, logger, new StatusTransitioner(logger));
+    this(runtimeConfiguration, store, cacheLoaderWriter, eventNotifier, useLoaderInAtomics, SystemTimeSource.INSTANCE, logger);
+  }
+
+  Ehcache(CacheConfiguration<K, V> runtimeConfiguration, Store<K, V> store,
+          CacheLoaderWriter<? super K, V> cacheLoaderWriter,
+          CacheEventDispatcher<K, V> eventNotifier, boolean useLoaderInAtomics, TimeSource timeSource, Logger logger) {
+    this(new EhcacheRuntimeConfiguration<K, V>(runtimeConfiguration, eventNotifier), store, cacheLoaderWriter, eventNotifier, useLoaderInAtomics, timeSource, logger, new StatusTransitioner(logger));
   }
 
   Ehcache(EhcacheRuntimeConfiguration<K, V> runtimeConfiguration, Store<K, V> store,
             CacheLoaderWriter<? super K, V> cacheLoaderWriter,
-            CacheEventDispatcher<K, V> eventNotifier, boolean useLoaderInAtomics, Logger logger, StatusTransitioner statusTransitioner) {
+            CacheEventDispatcher<K, V> eventNotifier, boolean useLoaderInAtomics, TimeSource timeSource, Logger logger, StatusTransitioner statusTransitioner) {
     this.store = store;
     runtimeConfiguration.addCacheConfigurationListener(store.getConfigurationChangeListeners());
     StatisticsManager.associate(store).withParent(this);
     this.cacheLoaderWriter = cacheLoaderWriter;
+    NegativeCachingConfiguration negativeCaching = ServiceLocator.findSingletonAmongst(NegativeCachingConfiguration.class,
+        runtimeConfiguration.getServiceConfigurations().toArray());
+    if (cacheLoaderWriter != null && negativeCaching != null) {
+      this.negativeCache = new NegativeCache<K>(negativeCaching, timeSource);
+    } else {
+      this.negativeCache = null;
+    }
+    LoadCoalescingConfiguration loadCoalescing = ServiceLocator.findSingletonAmongst(LoadCoalescingConfiguration.class,
+        runtimeConfiguration.getServiceConfigurations().toArray());
+    if (cacheLoaderWriter != null && loadCoalescing != null) {
+      this.loaderGateway = new LoaderGateway<K, V>(cacheLoaderWriter, loadCoalescing);
+      Set<String> tags = Collections.singleton("cache");
+      StatisticsManager.createPassThroughStatistic(this, "loadRequests", tags, statistic(loaderGateway.requests));
+      StatisticsManager.createPassThroughStatistic(this, "coalescedLoads", tags, statistic(loaderGateway.coalesced));
+      StatisticsManager.createPassThroughStatistic(this, "loaderInvocations", tags, statistic(loaderGateway.invocations));
+      StatisticsManager.createPassThroughStatistic(this, "loadQueueTime", tags, statistic(loaderGateway.queueTime));
+    } else {
+      this.loaderGateway = null;
+    }
+    WriteCoalescingConfiguration writeCoalescing = ServiceLocator.findSingletonAmongst(WriteCoalescingConfiguration.class,
+        runtimeConfiguration.getServiceConfigurations().toArray());
+    this.writeBatchSize = writeCoalescing == null ? Integer.MAX_VALUE : writeCoalescing.getMaxBatchSize();
+    if (cacheLoaderWriter != null && writeCoalescing != null && writeCoalescing.getBatchWindow() != null && writeBatchSize > 1) {
+      this.writeGateway = new WriteGateway<K, V>(cacheLoaderWriter, writeCoalescing);
+      Set<String> tags = Collections.singleton("cache");
+      StatisticsManager.createPassThroughStatistic(this, "writeRequests", tags, statistic(writeGateway.requests));
+      StatisticsManager.createPassThroughStatistic(this, "writerInvocations", tags, statistic(writeGateway.invocations));
+      StatisticsManager.createPassThroughStatistic(this, "writeQueueTime", tags, statistic(writeGateway.queueTime));
+    } else {
+      this.writeGateway = null;
+    }
     if (store instanceof RecoveryCache) {
       this.resilienceStrategy = new LoggingRobustResilienceStrategy<K, V>(castToRecoveryCache(store));
     } else {
@@ -177,15 +232,23 @@ public class Ehcache<K, V> implements Cache<K, V>, UserManagedCache<K, V> {
     getObserver.begin();
     statusTransitioner.checkAvailable();
     checkNonNull(key);
+    final AtomicBoolean knownAbsent = new AtomicBoolean();
     final Function<K, V> mappingFunction = memoize(new Function<K, V>() {
           @Override
           public V apply(final K k) {
             V loaded = null;
             try {
               if (cacheLoaderWriter != null) {
+                if (negativeCache != null && negativeCache.isAbsent(k)) {
+                  knownAbsent.set(true);
+                  return null;
+                }
                 cacheLoadingObserver.begin();
-                loaded = cacheLoaderWriter.load(k);
+                loaded = cacheLoaderWriterLoadCall(k);
                 cacheLoadingObserver.end(CacheLoadingOutcome.SUCCESS);
+                if (loaded == null && negativeCache != null) {
+                  negativeCache.markAbsent(k);
+                }
               }
             } catch (Exception e) {
               cacheLoadingObserver.end(CacheLoadingOutcome.FAILURE);
@@ -201,7 +264,11 @@ public class Ehcache<K, V> implements Cache<K, V>, UserManagedCache<K, V> {
       
       // Check for expiry first
       if (valueHolder == null) {
-        getObserver.end(cacheLoaderWriter == null ? GetOutcome.MISS_NO_LOADER : GetOutcome.MISS_WITH_LOADER);
+        if (knownAbsent.get()) {
+          getObserver.end(GetOutcome.NEGATIVE_HIT);
+        } else {
+          getObserver.end(cacheLoaderWriter == null ? GetOutcome.MISS_NO_LOADER : GetOutcome.MISS_WITH_LOADER);
+        }
         return null;
       } else {
         getObserver.end(cacheLoaderWriter == null ? GetOutcome.HIT_NO_LOADER : GetOutcome.HIT_WITH_LOADER);
@@ -236,7 +303,8 @@ public class Ehcache<K, V> implements Cache<K, V>, UserManagedCache<K, V> {
       public V apply(final K key, final V previousValue) {
         try {
           if (cacheLoaderWriter != null) {
-            cacheLoaderWriter.write(key, value);
+            forgetAbsence(key);
+            cacheLoaderWriterWriteCall(key, value);
           }
         } catch (Exception e) {
           throw new CachePassThroughException(newCacheWritingException(e));
@@ -334,7 +402,7 @@ public class Ehcache<K, V> implements Cache<K, V>, UserManagedCache<K, V> {
         
         try {
           if (cacheLoaderWriter != null) {
-            cacheLoaderWriter.delete(key);
+            cacheLoaderWriterDeleteCall(key);
           }
         } catch (Exception e) {
           throw new CachePassThroughException(newCacheWritingException(e));
@@ -383,6 +451,129 @@ public class Ehcache<K, V> implements Cache<K, V>, UserManagedCache<K, V> {
     return new CacheEntryIterator(false);
   }
 
+  @Override
+  public void scan(final Function<? super Entry<K, V>, ?> function, Executor executor, boolean recordAccess) {
+    statusTransitioner.checkAvailable();
+    checkNonNull(function, executor);
+    final List<Store.Iterator<Entry<K, ValueHolder<V>>>> partitions;
+    if (store instanceof Store.Partitioned) {
+      partitions = castToPartitioned(store).partitionIterators(recordAccess);
+    } else if (recordAccess) {
+      // a store that cannot be partitioned is visited as a whole by a single task, iterating as Store.iterator() does
+      partitions = Collections.singletonList(store.iterator());
+    } else {
+      throw new UnsupportedOperationException("Store " + store.getClass().getName() + " cannot be scanned without recording access");
+    }
+
+    final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+    final CountDownLatch visited = new CountDownLatch(partitions.size());
+    for (final Store.Iterator<Entry<K, ValueHolder<V>>> partition : partitions) {
+      Runnable visit = new Runnable() {
+        @Override
+        public void run() {
+          try {
+            try {
+              while (failure.get() == null && partition.hasNext()) {
+                function.apply(new ValueHolderBasedEntry<K, V>(partition.next()));
+              }
+            } catch (CacheAccessException e) {
+              resilienceStrategy.iteratorFailure(e);
+            }
+          } catch (Throwable t) {
+            failure.compareAndSet(null, t);
+          } finally {
+            visited.countDown();
+          }
+        }
+      };
+      try {
+        executor.execute(visit);
+      } catch (RejectedExecutionException e) {
+        visit.run();
+      }
+    }
+
+    boolean interrupted = false;
+    while (true) {
+      try {
+        visited.await();
+        break;
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+
+    Throwable t = failure.get();
+    if (t instanceof RuntimeException) {
+      throw (RuntimeException) t;
+    } else if (t instanceof Error) {
+      throw (Error) t;
+    } else if (t != null) {
+      throw new RuntimeException(t);
+    }
+  }
+
+  @Override
+  public void removeIf(final Predicate<? super Entry<K, V>> predicate) {
+    statusTransitioner.checkAvailable();
+    checkNonNull(predicate);
+    removeIfInternal(new Predicate<Entry<K, ValueHolder<V>>>() {
+      @Override
+      public boolean test(Entry<K, ValueHolder<V>> entry) {
+        try {
+          return predicate.test(new ValueHolderBasedEntry<K, V>(entry));
+        } catch (RuntimeException re) {
+          throw new CachePassThroughException(re);
+        }
+      }
+    }, false);
+  }
+
+  @Override
+  public void removeKeysIf(final Predicate<? super K> predicate) {
+    statusTransitioner.checkAvailable();
+    checkNonNull(predicate);
+    removeIfInternal(new Predicate<Entry<K, ValueHolder<V>>>() {
+      @Override
+      public boolean test(Entry<K, ValueHolder<V>> entry) {
+        try {
+          return predicate.test(entry.getKey());
+        } catch (RuntimeException re) {
+          throw new CachePassThroughException(re);
+        }
+      }
+    }, !eventNotificationService.hasListeners());
+  }
+
+  private void removeIfInternal(Predicate<Entry<K, ValueHolder<V>>> predicate, boolean keysOnly) {
+    try {
+      CacheStoreHelper.removeIf(store, predicate, keysOnly, new Function<Map<K, ValueHolder<V>>, Void>() {
+        @Override
+        public Void apply(Map<K, ValueHolder<V>> removed) {
+          for (Map.Entry<K, ValueHolder<V>> entry : removed.entrySet()) {
+            if (entry.getValue() != null) {
+              eventNotificationService.onEvent(CacheEvents.removal(entry.getKey(), entry.getValue().value(), Ehcache.this));
+            }
+          }
+          return null;
+        }
+      });
+    } catch (CachePassThroughException cpte) {
+      throw (RuntimeException) cpte.getCause();
+    } catch (CacheAccessException e) {
+      // which of the matching mappings got removed is unknown
+      resilienceStrategy.clearFailure(e);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private Store.Partitioned<K, V> castToPartitioned(Store<K, V> store) {
+    return (Store.Partitioned<K, V>) store;
+  }
+
   @Override
   public Map<K, V> getAll(Set<? extends K> keys) throws BulkCacheLoadingException {
     return getAllInternal(keys, true);
@@ -405,6 +596,7 @@ public class Ehcache<K, V> implements Cache<K, V>, UserManagedCache<K, V> {
       successes = Collections.emptyMap();
       failures = Collections.emptyMap();
     }
+    final Set<K> knownAbsent = new HashSet<K>();
     
     Function<Iterable<? extends K>, Iterable<? extends Map.Entry<? extends K, ? extends V>>> computeFunction =
         new Function<Iterable<? extends K>, Iterable<? extends Map.Entry<? extends K, ? extends V>>>() {
@@ -418,25 +610,49 @@ public class Ehcache<K, V> implements Cache<K, V>, UserManagedCache<K, V> {
         }
 
         if (cacheLoaderWriter != null) {
-          Map<? super K, ? extends V> loaded = Collections.emptyMap();
-          try {
-            loaded = cacheLoaderWriter.loadAll(computeResult.keySet());
-          } catch(BulkCacheLoadingException bcle) {
-            collectSuccessesAndFailures(bcle, successes, failures);
-          } catch (Exception e) {
+          Set<K> toLoad = computeResult.keySet();
+          if (negativeCache != null) {
+            toLoad = new LinkedHashSet<K>();
             for (K key : computeResult.keySet()) {
-              failures.put(key, e);
+              if (negativeCache.isAbsent(key)) {
+                knownAbsent.add(key);
+                successes.put(key, null);
+              } else {
+                toLoad.add(key);
+              }
+            }
+          }
+
+          Map<? super K, ? extends V> loaded = Collections.emptyMap();
+          boolean loadedAll = false;
+          if (!toLoad.isEmpty()) {
+            try {
+              loaded = cacheLoaderWriterLoadAllCall(toLoad);
+              loadedAll = true;
+            } catch(BulkCacheLoadingException bcle) {
+              collectSuccessesAndFailures(bcle, successes, failures);
+            } catch (Exception e) {
+              for (K key : toLoad) {
+                failures.put(key, e);
+              }
             }
           }
 
           if (!loaded.isEmpty()) {
-            for (K key : computeResult.keySet()) {
+            for (K key : toLoad) {
               V value = loaded.get(key);
               successes.put(key, value);
               computeResult.put(key, value);
             }
           }
 
+          if (negativeCache != null) {
+            for (K key : toLoad) {
+              if (loadedAll ? loaded.get(key) == null : successes.containsKey(key) && successes.get(key) == null) {
+                negativeCache.markAbsent(key);
+              }
+            }
+          }
         }
 
         return computeResult.entrySet();
@@ -460,8 +676,9 @@ public class Ehcache<K, V> implements Cache<K, V>, UserManagedCache<K, V> {
       }
       
       addBulkMethodEntriesCount(BulkOps.GET_ALL_HITS, hits);
+      addBulkMethodEntriesCount(BulkOps.GET_ALL_NEGATIVE_HITS, knownAbsent.size());
       if (failures.isEmpty()) {
-        addBulkMethodEntriesCount(BulkOps.GET_ALL_MISS, keyCount - hits);
+        addBulkMethodEntriesCount(BulkOps.GET_ALL_MISS, keyCount - hits - knownAbsent.size());
         getAllObserver.end(GetAllOutcome.SUCCESS);
         return result;
       } else {
@@ -622,19 +839,30 @@ public class Ehcache<K, V> implements Cache<K, V>, UserManagedCache<K, V> {
       Map<K, V> toWrite = new HashMap<K, V>();
       for (Map.Entry<? extends K, ? extends V> entry: entries) {
         toWrite.put(entry.getKey(), entriesToRemap.get(entry.getKey()));
-      }
-      try {
-        if (! toWrite.isEmpty()) {
-          // write all entries of this batch
-          cacheLoaderWriter.writeAll(toWrite.entrySet());
-          successes.addAll(toWrite.keySet());
+        if (toWrite.size() == writeBatchSize) {
+          cacheLoaderWriterWriteAllChunkCall(toWrite, successes, failures);
+          toWrite = new HashMap<K, V>();
         }
-      } catch (BulkCacheWritingException bcwe) {
-        collectSuccessesAndFailures(bcwe, successes, failures);
-      } catch (Exception e) {
-        for (K key: toWrite.keySet()) {
-          failures.put(key, e);
+      }
+      cacheLoaderWriterWriteAllChunkCall(toWrite, successes, failures);
+    }
+  }
+
+  private void cacheLoaderWriterWriteAllChunkCall(Map<K, V> toWrite, Set<K> successes, Map<K, Exception> failures) {
+    try {
+      if (! toWrite.isEmpty()) {
+        // write all entries of this batch
+        for (K key : toWrite.keySet()) {
+          forgetAbsence(key);
         }
+        cacheLoaderWriter.writeAll(toWrite.entrySet());
+        successes.addAll(toWrite.keySet());
+      }
+    } catch (BulkCacheWritingException bcwe) {
+      collectSuccessesAndFailures(bcwe, successes, failures);
+    } catch (Exception e) {
+      for (K key: toWrite.keySet()) {
+        failures.put(key, e);
       }
     }
   }
@@ -747,25 +975,36 @@ public class Ehcache<K, V> implements Cache<K, V>, UserManagedCache<K, V> {
     final Set<K> unknowns = new HashSet<K>();
     if (cacheLoaderWriter != null) {
       Set<K> toDelete = new HashSet<K>();
+      boolean chunked = false;
       for (Map.Entry<? extends K, ? extends V> entry: entries) {
         toDelete.add(entry.getKey());
-      }
-      
-      try {
-        cacheLoaderWriter.deleteAll(toDelete);
-        successes.addAll(toDelete);
-      } catch (BulkCacheWritingException bcwe) {
-        collectSuccessesAndFailures(bcwe, successes, failures);
-      } catch (Exception e) {
-        for (K key : toDelete) {
-          failures.put(key, e);
-          unknowns.add(key);
+        if (toDelete.size() == writeBatchSize) {
+          cacheLoaderWriterDeleteAllChunkCall(toDelete, successes, failures, unknowns);
+          toDelete = new HashSet<K>();
+          chunked = true;
         }
       }
+      if (!toDelete.isEmpty() || !chunked) {
+        cacheLoaderWriterDeleteAllChunkCall(toDelete, successes, failures, unknowns);
+      }
     }
     return unknowns;
   }
 
+  private void cacheLoaderWriterDeleteAllChunkCall(Set<K> toDelete, Set<K> successes, Map<K, Exception> failures, Set<K> unknowns) {
+    try {
+      cacheLoaderWriter.deleteAll(toDelete);
+      successes.addAll(toDelete);
+    } catch (BulkCacheWritingException bcwe) {
+      collectSuccessesAndFailures(bcwe, successes, failures);
+    } catch (Exception e) {
+      for (K key : toDelete) {
+        failures.put(key, e);
+        unknowns.add(key);
+      }
+    }
+  }
+
   @Override
   public V putIfAbsent(final K key, final V value) throws CacheWritingException {
     putIfAbsentObserver.begin();
@@ -779,7 +1018,7 @@ public class Ehcache<K, V> implements Cache<K, V>, UserManagedCache<K, V> {
         try {
           if (useLoaderInAtomics && cacheLoaderWriter != null) {
             try {
-              V loaded = cacheLoaderWriter.load(k);
+              V loaded = cacheLoaderWriterLoadCall(k);
               if (loaded != null) {
                 return loaded; // populate the cache
               }
@@ -790,7 +1029,8 @@ public class Ehcache<K, V> implements Cache<K, V>, UserManagedCache<K, V> {
 
           if (cacheLoaderWriter != null) {
             try {
-              cacheLoaderWriter.write(k, value);
+              forgetAbsence(k);
+              cacheLoaderWriterWriteCall(k, value);
             } catch (Exception e) {
               throw new CachePassThroughException(newCacheWritingException(e));
             }
@@ -864,7 +1104,7 @@ public class Ehcache<K, V> implements Cache<K, V>, UserManagedCache<K, V> {
         if (inCache == null) {
           if (useLoaderInAtomics && cacheLoaderWriter != null) {
             try {
-              inCache = cacheLoaderWriter.load(key);
+              inCache = cacheLoaderWriterLoadCall(key);
               if (inCache == null) {
                 return null;
               }
@@ -880,7 +1120,7 @@ public class Ehcache<K, V> implements Cache<K, V>, UserManagedCache<K, V> {
         if (value.equals(inCache)) {
           if (cacheLoaderWriter != null) {
             try {
-              cacheLoaderWriter.delete(k);
+              cacheLoaderWriterDeleteCall(k);
             } catch (Exception e) {
               throw new CachePassThroughException(newCacheWritingException(e));
             }
@@ -941,7 +1181,7 @@ public class Ehcache<K, V> implements Cache<K, V>, UserManagedCache<K, V> {
         if (inCache == null) {
           if (useLoaderInAtomics && cacheLoaderWriter != null) {
             try {
-              inCache = cacheLoaderWriter.load(key);
+              inCache = cacheLoaderWriterLoadCall(key);
               if (inCache == null) {
                 return null;
               }
@@ -955,7 +1195,8 @@ public class Ehcache<K, V> implements Cache<K, V>, UserManagedCache<K, V> {
 
         if (cacheLoaderWriter != null) {
           try {
-            cacheLoaderWriter.write(key, value);
+            forgetAbsence(key);
+            cacheLoaderWriterWriteCall(key, value);
           } catch (Exception e) {
             throw new CachePassThroughException(newCacheWritingException(e));
           }
@@ -1016,7 +1257,7 @@ public class Ehcache<K, V> implements Cache<K, V>, UserManagedCache<K, V> {
         if (inCache == null) {
           if (useLoaderInAtomics && cacheLoaderWriter != null) {
             try {
-              inCache = cacheLoaderWriter.load(key);
+              inCache = cacheLoaderWriterLoadCall(key);
               if (inCache == null) {
                 return null;
               }
@@ -1032,7 +1273,8 @@ public class Ehcache<K, V> implements Cache<K, V>, UserManagedCache<K, V> {
         if (oldValue.equals(inCache)) {
           if (cacheLoaderWriter != null) {
             try {
-              cacheLoaderWriter.write(key, newValue);
+              forgetAbsence(key);
+              cacheLoaderWriterWriteCall(key, newValue);
             } catch (Exception e) {
               throw new CachePassThroughException(newCacheWritingException(e));
             }
@@ -1137,6 +1379,56 @@ public class Ehcache<K, V> implements Cache<K, V>, UserManagedCache<K, V> {
     }
   }
 
+  private void cacheLoaderWriterWriteCall(K key, V value) throws Exception {
+    if (writeGateway == null) {
+      cacheLoaderWriter.write(key, value);
+    } else {
+      writeGateway.write(key, value);
+    }
+  }
+
+  private void cacheLoaderWriterDeleteCall(K key) throws Exception {
+    if (writeGateway == null) {
+      cacheLoaderWriter.delete(key);
+    } else {
+      writeGateway.delete(key);
+    }
+  }
+
+  private V cacheLoaderWriterLoadCall(K key) throws Exception {
+    if (loaderGateway == null) {
+      return cacheLoaderWriter.load(key);
+    } else {
+      return loaderGateway.load(key);
+    }
+  }
+
+  private Map<? super K, ? extends V> cacheLoaderWriterLoadAllCall(Iterable<? extends K> keys) throws Exception {
+    if (loaderGateway == null) {
+      return cacheLoaderWriter.loadAll(keys);
+    } else {
+      return loaderGateway.loadAll(keys);
+    }
+  }
+
+  private static Callable<Long> statistic(final AtomicLong value) {
+    return new Callable<Long>() {
+      @Override
+      public Long call() throws Exception {
+        return value.get();
+      }
+    };
+  }
+
+  /**
+   * Forgets that the loader found no value for a key the cache is about to write a value for.
+   */
+  private void forgetAbsence(K key) {
+    if (negativeCache != null) {
+      negativeCache.forget(key);
+    }
+  }
+
   private void addBulkMethodEntriesCount(BulkOps op, long count) {
     bulkMethodEntries.get(op).add(count);
   }
@@ -1271,9 +1563,10 @@ public class Ehcache<K, V> implements Cache<K, V>, UserManagedCache<K, V> {
             if (invokeWriter.apply() && cacheLoaderWriter != null) {
               try {
                 if (newValue != null) {
-                  cacheLoaderWriter.write(mappedKey, newValue);
+                  forgetAbsence(mappedKey);
+                  cacheLoaderWriterWriteCall(mappedKey, newValue);
                 } else {
-                  cacheLoaderWriter.delete(mappedKey);
+                  cacheLoaderWriterDeleteCall(mappedKey);
                 }
               } catch (Exception e) {
                 throw new CachePassThroughException(newCacheWritingException(e));
@@ -1326,7 +1619,7 @@ public class Ehcache<K, V> implements Cache<K, V>, UserManagedCache<K, V> {
             
             if (cacheLoaderWriter != null) {
               try {
-                cacheLoaderWriter.delete(mappedKey);
+                cacheLoaderWriterDeleteCall(mappedKey);
               } catch (Exception e) {
                 throw new CachePassThroughException(newCacheWritingException(e));
               }
@@ -1367,7 +1660,8 @@ public class Ehcache<K, V> implements Cache<K, V>, UserManagedCache<K, V> {
             
             if (cacheLoaderWriter != null) {
               try {
-                cacheLoaderWriter.write(mappedKey, value);
+                forgetAbsence(mappedKey);
+                cacheLoaderWriterWriteCall(mappedKey, value);
               } catch (Exception e) {
                 throw new CachePassThroughException(newCacheWritingException(e));
               }
@@ -31,6 +31,9 @@ import org.ehcache.events.CacheEventDispatcherFactory;
 import org.ehcache.events.CacheEventDispatcher;
 import org.ehcache.events.CacheManagerListener;
 import org.ehcache.exceptions.CachePersistenceException;
+import org.ehcache.internal.SystemTimeSource;
+import org.ehcache.internal.TimeSource;
+import org.ehcache.internal.TimeSourceService;
 import org.ehcache.spi.LifeCycled;
 import org.ehcache.spi.LifeCycledAdapter;
 import org.ehcache.spi.ServiceLocator;
@@ -53,18 +56,27 @@ import org.ehcache.util.ClassLoading;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Deque;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.ehcache.config.ResourceType.Core.DISK;
 import static org.ehcache.config.ResourceType.Core.OFFHEAP;
@@ -87,11 +99,17 @@ public class EhcacheManager implements PersistentCacheManager {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(EhcacheManager.class);
 
+  /**
+   * The default number of caches initialized or closed concurrently by {@link #init()} and {@link #close()}.
+   */
+  public static final int DEFAULT_CACHE_LIFECYCLE_PARALLELISM = Runtime.getRuntime().availableProcessors();
+
   private final StatusTransitioner statusTransitioner = new StatusTransitioner(LOGGER);
 
   private final ServiceLocator serviceLocator;
   private final boolean useLoaderInAtomics;
   private final DefaultConfiguration configuration;
+  private final int cacheLifecycleParallelism;
 
   private final ConcurrentMap<String, CacheHolder> caches = new ConcurrentHashMap<String, CacheHolder>();
   private final ClassLoader cacheManagerClassLoader;
@@ -106,6 +124,18 @@ public class EhcacheManager implements PersistentCacheManager {
     this(config, services, true);
   }
   public EhcacheManager(Configuration config, Collection<Service> services, boolean useLoaderInAtomics) {
+    this(config, services, useLoaderInAtomics, DEFAULT_CACHE_LIFECYCLE_PARALLELISM);
+  }
+
+  /**
+   * Creates a cache manager initializing and closing up to {@code cacheLifecycleParallelism} of its configured caches
+   * concurrently, {@code 1} meaning one after the other on the calling thread.
+   */
+  public EhcacheManager(Configuration config, Collection<Service> services, boolean useLoaderInAtomics, int cacheLifecycleParallelism) {
+    if (cacheLifecycleParallelism < 1) {
+      throw new IllegalArgumentException("Cache lifecycle parallelism must be at least 1: " + cacheLifecycleParallelism);
+    }
+    this.cacheLifecycleParallelism = cacheLifecycleParallelism;
     this.serviceLocator = new ServiceLocator(services.toArray(new Service[services.size()]));
     this.useLoaderInAtomics = useLoaderInAtomics;
     this.cacheManagerClassLoader = config.getClassLoader() != null ? config.getClassLoader() : ClassLoading.getDefaultClassLoader();
@@ -131,11 +161,11 @@ public class EhcacheManager implements PersistentCacheManager {
 
   @Override
   public void removeCache(final String alias) {
+    statusTransitioner.checkAvailable();
     removeCache(alias, true);
   }
 
   private void removeCache(final String alias, final boolean removeFromConfig) {
-    statusTransitioner.checkAvailable();
     final CacheHolder cacheHolder = caches.remove(alias);
     if(cacheHolder != null) {
       final Ehcache<?, ?> ehcache = cacheHolder.retrieve(cacheHolder.keyType, cacheHolder.valueType);
@@ -178,12 +208,11 @@ public class EhcacheManager implements PersistentCacheManager {
 
   @Override
   public <K, V> Cache<K, V> createCache(final String alias, CacheConfiguration<K, V> config) throws IllegalArgumentException {
+    statusTransitioner.checkAvailable();
     return createCache(alias, config, true);
   }
 
   private <K, V> Cache<K, V> createCache(final String alias, CacheConfiguration<K, V> originalConfig, boolean addToConfig) throws IllegalArgumentException {
-    statusTransitioner.checkAvailable();
-
     LOGGER.info("Cache '{}' is getting created in EhcacheManager.", alias);
 
     CacheConfiguration<K, V> config = adjustConfigurationWithCacheManagerDefaults(originalConfig);
@@ -383,8 +412,11 @@ public class EhcacheManager implements PersistentCacheManager {
       
     });
     
+    final TimeSourceService timeSourceService = serviceLocator.getService(TimeSourceService.class);
+    final TimeSource timeSource = timeSourceService == null ? SystemTimeSource.INSTANCE : timeSourceService.getTimeSource();
+
     final Ehcache<K, V> ehCache = new Ehcache<K, V>(config, store, decorator, evtService,
-        useLoaderInAtomics, LoggerFactory.getLogger(Ehcache.class + "-" + alias));
+        useLoaderInAtomics, timeSource, LoggerFactory.getLogger(Ehcache.class + "-" + alias));
 
     final CacheEventListenerProvider evntLsnrFactory = serviceLocator.getService(CacheEventListenerProvider.class);
     if (evntLsnrFactory != null) {
@@ -456,13 +488,18 @@ public class EhcacheManager implements PersistentCacheManager {
         throw st.failed(e);
       }
 
-      Deque<String> initiatedCaches = new ArrayDeque<String>();
+      final Map<String, CacheConfiguration<?, ?>> cacheConfigurations = new LinkedHashMap<String, CacheConfiguration<?, ?>>(configuration.getCacheConfigurations());
+      final Deque<String> initiatedCaches = new LinkedBlockingDeque<String>();
       try {
-        for (Entry<String, CacheConfiguration<?, ?>> cacheConfigurationEntry : configuration.getCacheConfigurations()
-            .entrySet()) {
-          final String alias = cacheConfigurationEntry.getKey();
-          createCache(alias, cacheConfigurationEntry.getValue(), false);
-          initiatedCaches.push(alias);
+        RuntimeException failure = forEachCache(cacheConfigurations.keySet(), true, "Cache '{}' could not be created due to ", new CacheAction() {
+          @Override
+          public void apply(String alias) {
+            createCache(alias, cacheConfigurations.get(alias), false);
+            initiatedCaches.push(alias);
+          }
+        });
+        if (failure != null) {
+          throw failure;
         }
       } catch (RuntimeException e) {
         while (!initiatedCaches.isEmpty()) {
@@ -497,17 +534,12 @@ public class EhcacheManager implements PersistentCacheManager {
 
     Exception firstException = null;
     try {
-      for (String alias : caches.keySet()) {
-        try {
+      firstException = forEachCache(new ArrayList<String>(caches.keySet()), false, "Cache '{}' could not be removed due to ", new CacheAction() {
+        @Override
+        public void apply(String alias) {
           removeCache(alias, false);
-        } catch (Exception e) {
-          if(firstException == null) {
-            firstException = e;
-          } else {
-            LOGGER.error("Cache '{}' could not be removed due to ", alias, e);
-          }
         }
-      }
+      });
 
       serviceLocator.stopAllServices();
     } catch (Exception e) {
@@ -596,6 +628,112 @@ public class EhcacheManager implements PersistentCacheManager {
     return cacheManagerClassLoader;
   }
 
+  /**
+   * Applies {@code action} to each of the {@code aliases}, concurrently on a pool of up to
+   * {@link #cacheLifecycleParallelism} threads living for the duration of the call.
+   * As these threads don't own the ongoing status transition, {@code action} must not check the status.
+   *
+   * @param stopOnFailure whether to skip the aliases not yet processed once an action failed
+   * @return the failure of the first alias whose action failed, the following ones being logged, or {@code null}
+   */
+  private RuntimeException forEachCache(Collection<String> aliases, boolean stopOnFailure, String failureMessage, final CacheAction action) {
+    int threads = Math.min(cacheLifecycleParallelism, aliases.size());
+    RuntimeException firstFailure = null;
+    if (threads <= 1) {
+      for (String alias : aliases) {
+        try {
+          action.apply(alias);
+        } catch (RuntimeException e) {
+          if (firstFailure == null) {
+            firstFailure = e;
+            if (stopOnFailure) {
+              break;
+            }
+          } else {
+            LOGGER.error(failureMessage, alias, e);
+          }
+        }
+      }
+      return firstFailure;
+    }
+
+    final AtomicBoolean skip = new AtomicBoolean();
+    final boolean skipOnFailure = stopOnFailure;
+    ExecutorService executor = Executors.newFixedThreadPool(threads, new CacheLifecycleThreadFactory());
+    try {
+      Map<String, Future<?>> results = new LinkedHashMap<String, Future<?>>();
+      for (final String alias : aliases) {
+        results.put(alias, executor.submit(new Runnable() {
+          @Override
+          public void run() {
+            if (skip.get()) {
+              return;
+            }
+            try {
+              action.apply(alias);
+            } catch (RuntimeException e) {
+              if (skipOnFailure) {
+                skip.set(true);
+              }
+              throw e;
+            }
+          }
+        }));
+      }
+      for (Entry<String, Future<?>> result : results.entrySet()) {
+        Throwable failure = awaitCompletion(result.getValue());
+        if (failure == null) {
+          continue;
+        } else if (failure instanceof Error) {
+          throw (Error) failure;
+        } else if (firstFailure == null) {
+          firstFailure = (RuntimeException) failure;
+        } else {
+          LOGGER.error(failureMessage, result.getKey(), failure);
+        }
+      }
+      return firstFailure;
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  private static Throwable awaitCompletion(Future<?> future) {
+    boolean interrupted = false;
+    try {
+      while (true) {
+        try {
+          future.get();
+          return null;
+        } catch (ExecutionException e) {
+          return e.getCause();
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+    } finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  private interface CacheAction {
+    void apply(String alias);
+  }
+
+  private static final class CacheLifecycleThreadFactory implements ThreadFactory {
+
+    private final AtomicInteger threadCount = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable r) {
+      Thread thread = new Thread(r, "Ehcache cache lifecycle-" + threadCount.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+
   private static final class CacheHolder {
     private final Class<?> keyType;
     private final Class<?> valueType;
@@ -0,0 +1,300 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.ehcache;
+
+import org.ehcache.config.loaderwriter.LoadCoalescingConfiguration;
+import org.ehcache.exceptions.BulkCacheLoadingException;
+import org.ehcache.expiry.Duration;
+import org.ehcache.spi.loaderwriter.CacheLoaderWriter;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stands between a cache and its loader, so that a key is only ever loaded once at a time, that the loader is not
+ * invoked more often at once than configured and, optionally, that single key loads get merged into bulk ones.
+ * <P>
+ *   Whoever first asks for a key owns its pending load and completes it, the others wait for it. An owner never
+ *   waits for another load before completing its own, hence no two readers can end up waiting for each other.
+ *   Batched single key loads are run by the reader that opened the batch, once the batch window elapsed or the
+ *   batch got full.
+ * </P>
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ */
+class LoaderGateway<K, V> {
+
+  private final CacheLoaderWriter<? super K, V> cacheLoaderWriter;
+  private final Semaphore permits;
+  private final long batchWindowNanos;
+  private final int maxBatchSize;
+  private final ConcurrentMap<K, PendingLoad<V>> inFlight = new ConcurrentHashMap<K, PendingLoad<V>>();
+  private final Object batchLock = new Object();
+  private Batch<K, V> openBatch;
+
+  final AtomicLong requests = new AtomicLong();
+  final AtomicLong coalesced = new AtomicLong();
+  final AtomicLong invocations = new AtomicLong();
+  final AtomicLong queueTime = new AtomicLong();
+
+  LoaderGateway(CacheLoaderWriter<? super K, V> cacheLoaderWriter, LoadCoalescingConfiguration configuration) {
+    this.cacheLoaderWriter = cacheLoaderWriter;
+    this.permits = configuration.getMaxConcurrentLoads() > 0 ? new Semaphore(configuration.getMaxConcurrentLoads(), true) : null;
+    Duration batchWindow = configuration.getBatchWindow();
+    this.batchWindowNanos = batchWindow == null ? 0L : batchWindow.getTimeUnit().toNanos(batchWindow.getAmount());
+    this.maxBatchSize = configuration.getMaxBatchSize();
+  }
+
+  /**
+   * Loads a single key, sharing the pending load of that key if there is one.
+   */
+  V load(K key) throws Exception {
+    requests.incrementAndGet();
+    PendingLoad<V> pending = new PendingLoad<V>();
+    PendingLoad<V> existing = inFlight.putIfAbsent(key, pending);
+    if (existing != null) {
+      coalesced.incrementAndGet();
+      return existing.get();
+    }
+
+    if (batchWindowNanos > 0 && maxBatchSize > 1) {
+      Batch<K, V> batch = enqueue(key, pending);
+      if (batch != null) {
+        awaitBatch(batch);
+        loadAll(batch.pendings, batch.enqueuedAtSum);
+      }
+    } else {
+      long queuedAt = System.nanoTime();
+      acquire();
+      try {
+        queueTime.addAndGet(System.nanoTime() - queuedAt);
+        invocations.incrementAndGet();
+        V loaded = cacheLoaderWriter.load(key);
+        inFlight.remove(key, pending);
+        pending.complete(loaded);
+      } catch (Throwable t) {
+        inFlight.remove(key, pending);
+        pending.fail(t);
+      } finally {
+        release();
+      }
+    }
+    return pending.get();
+  }
+
+  /**
+   * Loads the given keys, sharing the pending loads of those already being loaded and loading all others at once.
+   *
+   * @throws BulkCacheLoadingException if any key failed to load, with the other keys' values as successes
+   */
+  Map<K, V> loadAll(Iterable<? extends K> keys) throws Exception {
+    Map<K, PendingLoad<V>> owned = new LinkedHashMap<K, PendingLoad<V>>();
+    Map<K, PendingLoad<V>> all = new LinkedHashMap<K, PendingLoad<V>>();
+    for (K key : keys) {
+      if (all.containsKey(key)) {
+        continue;
+      }
+      requests.incrementAndGet();
+      PendingLoad<V> pending = new PendingLoad<V>();
+      PendingLoad<V> existing = inFlight.putIfAbsent(key, pending);
+      if (existing == null) {
+        owned.put(key, pending);
+        all.put(key, pending);
+      } else {
+        coalesced.incrementAndGet();
+        all.put(key, existing);
+      }
+    }
+
+    if (!owned.isEmpty()) {
+      loadAll(owned, System.nanoTime() * owned.size());
+    }
+
+    Map<K, V> successes = new HashMap<K, V>();
+    Map<K, Exception> failures = new HashMap<K, Exception>();
+    for (Map.Entry<K, PendingLoad<V>> entry : all.entrySet()) {
+      try {
+        successes.put(entry.getKey(), entry.getValue().get());
+      } catch (Exception e) {
+        failures.put(entry.getKey(), e);
+      }
+    }
+    if (!failures.isEmpty()) {
+      throw new BulkCacheLoadingException(failures, successes);
+    }
+    return successes;
+  }
+
+  /**
+   * Loads the keys owned by the calling thread, {@code enqueuedAtSum} being the sum of the times they were asked for.
+   */
+  private void loadAll(Map<K, PendingLoad<V>> owned, long enqueuedAtSum) {
+    acquire();
+    try {
+      queueTime.addAndGet(System.nanoTime() * owned.size() - enqueuedAtSum);
+      invocations.incrementAndGet();
+      Map<? super K, ? extends V> loaded = cacheLoaderWriter.loadAll(owned.keySet());
+      for (Map.Entry<K, PendingLoad<V>> entry : owned.entrySet()) {
+        inFlight.remove(entry.getKey(), entry.getValue());
+        entry.getValue().complete(loaded.get(entry.getKey()));
+      }
+    } catch (BulkCacheLoadingException bcle) {
+      for (Map.Entry<K, PendingLoad<V>> entry : owned.entrySet()) {
+        K key = entry.getKey();
+        inFlight.remove(key, entry.getValue());
+        if (bcle.getFailures().containsKey(key)) {
+          entry.getValue().fail(bcle.getFailures().get(key));
+        } else if (bcle.getSuccesses().containsKey(key)) {
+          @SuppressWarnings("unchecked")
+          V value = (V) bcle.getSuccesses().get(key);
+          entry.getValue().complete(value);
+        } else {
+          entry.getValue().fail(bcle);
+        }
+      }
+    } catch (Throwable t) {
+      for (Map.Entry<K, PendingLoad<V>> entry : owned.entrySet()) {
+        inFlight.remove(entry.getKey(), entry.getValue());
+        entry.getValue().fail(t);
+      }
+    } finally {
+      release();
+    }
+  }
+
+  /**
+   * Adds a pending load to the open batch, opening one if needed.
+   *
+   * @return the batch if the calling thread opened it, and hence has to run it
+   */
+  private Batch<K, V> enqueue(K key, PendingLoad<V> pending) {
+    synchronized (batchLock) {
+      Batch<K, V> batch = openBatch;
+      boolean opened = batch == null;
+      long now = System.nanoTime();
+      if (opened) {
+        batch = openBatch = new Batch<K, V>(now);
+      }
+      batch.pendings.put(key, pending);
+      batch.enqueuedAtSum += now;
+      if (batch.pendings.size() >= maxBatchSize) {
+        openBatch = null;
+        batchLock.notifyAll();
+      }
+      return opened ? batch : null;
+    }
+  }
+
+  private void awaitBatch(Batch<K, V> batch) {
+    boolean interrupted = false;
+    synchronized (batchLock) {
+      long remaining = batchWindowNanos - (System.nanoTime() - batch.openedAt);
+      while (openBatch == batch && remaining > 0) {
+        try {
+          TimeUnit.NANOSECONDS.timedWait(batchLock, remaining);
+        } catch (InterruptedException e) {
+          interrupted = true;
+          break;
+        }
+        remaining = batchWindowNanos - (System.nanoTime() - batch.openedAt);
+      }
+      if (openBatch == batch) {
+        openBatch = null;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void acquire() {
+    if (permits != null) {
+      permits.acquireUninterruptibly();
+    }
+  }
+
+  private void release() {
+    if (permits != null) {
+      permits.release();
+    }
+  }
+
+  /**
+   * Single key loads waiting for the thread that opened their batch to load them all.
+   */
+  private static final class Batch<K, V> {
+
+    final long openedAt;
+    final Map<K, PendingLoad<V>> pendings = new LinkedHashMap<K, PendingLoad<V>>();
+    long enqueuedAtSum;
+
+    Batch(long openedAt) {
+      this.openedAt = openedAt;
+    }
+  }
+
+  /**
+   * The outcome of a load, once known, as shared by all the readers of its key.
+   */
+  private static final class PendingLoad<V> {
+
+    private final CountDownLatch done = new CountDownLatch(1);
+    private V value;
+    private Throwable failure;
+
+    void complete(V value) {
+      this.value = value;
+      done.countDown();
+    }
+
+    void fail(Throwable failure) {
+      this.failure = failure;
+      done.countDown();
+    }
+
+    V get() throws Exception {
+      boolean interrupted = false;
+      while (true) {
+        try {
+          done.await();
+          break;
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+      if (failure == null) {
+        return value;
+      } else if (failure instanceof Exception) {
+        throw (Exception) failure;
+      } else {
+        throw (Error) failure;
+      }
+    }
+  }
+}
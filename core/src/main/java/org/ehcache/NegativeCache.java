@@ -0,0 +1,131 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache;
+
+import org.ehcache.config.loaderwriter.NegativeCachingConfiguration;
+import org.ehcache.internal.TimeSource;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The keys a cache's loader recently found no value for, each remembered until its time to live elapses.
+ * <P>
+ *   Every absence is a key and its expiry time. When more than the configured number of absences are remembered the
+ *   oldest ones are forgotten first, which with a single time to live is also the order in which they expire.
+ *   Absences forgotten or remembered again leave their stale entry in the insertion order queue, so that queue is
+ *   also held to twice the configured number of absences.
+ * </P>
+ *
+ * @param <K> the key type
+ */
+class NegativeCache<K> {
+
+  private final ConcurrentMap<K, Long> expiries = new ConcurrentHashMap<K, Long>();
+  private final Queue<Absence<K>> insertionOrder = new ConcurrentLinkedQueue<Absence<K>>();
+  private final AtomicInteger size = new AtomicInteger();
+  private final AtomicInteger queued = new AtomicInteger();
+  private final long timeToLiveMillis;
+  private final int maxEntries;
+  private final TimeSource timeSource;
+
+  NegativeCache(NegativeCachingConfiguration configuration, TimeSource timeSource) {
+    this.timeToLiveMillis = Math.max(1L, configuration.getTimeToLive().getTimeUnit().toMillis(configuration.getTimeToLive().getAmount()));
+    this.maxEntries = configuration.getMaxEntries();
+    this.timeSource = timeSource;
+  }
+
+  /**
+   * Tells whether the loader found no value for this key less than the time to live ago.
+   */
+  boolean isAbsent(K key) {
+    Long expiry = expiries.get(key);
+    if (expiry == null) {
+      return false;
+    } else if (expiry > timeSource.getTimeMillis()) {
+      return true;
+    } else {
+      if (expiries.remove(key, expiry)) {
+        size.decrementAndGet();
+      }
+      return false;
+    }
+  }
+
+  /**
+   * Remembers that the loader found no value for this key.
+   */
+  void markAbsent(K key) {
+    long now = timeSource.getTimeMillis();
+    Long expiry = now + timeToLiveMillis;
+    if (expiries.put(key, expiry) == null) {
+      size.incrementAndGet();
+    }
+    insertionOrder.add(new Absence<K>(key, expiry));
+    queued.incrementAndGet();
+    trim(now);
+  }
+
+  /**
+   * Forgets any absence remembered for this key, as a value was just written for it.
+   */
+  void forget(K key) {
+    if (expiries.remove(key) != null) {
+      size.decrementAndGet();
+    }
+  }
+
+  int size() {
+    return size.get();
+  }
+
+  int queued() {
+    return queued.get();
+  }
+
+  private void trim(long now) {
+    while (true) {
+      Absence<K> oldest = insertionOrder.peek();
+      if (oldest == null || (oldest.expiry > now && size.get() <= maxEntries && queued.get() <= 2L * maxEntries)) {
+        return;
+      }
+      oldest = insertionOrder.poll();
+      if (oldest == null) {
+        return;
+      }
+      queued.decrementAndGet();
+      // absences forgotten or remembered again since are no longer mapped to this expiry
+      if (expiries.remove(oldest.key, oldest.expiry)) {
+        size.decrementAndGet();
+      }
+    }
+  }
+
+  private static final class Absence<K> {
+
+    private final K key;
+    private final Long expiry;
+
+    Absence(K key, Long expiry) {
+      this.key = key;
+      this.expiry = expiry;
+    }
+  }
+}
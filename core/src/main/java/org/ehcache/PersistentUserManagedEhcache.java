@@ -25,6 +25,10 @@ import org.ehcache.exceptions.BulkCacheWritingException;
 import org.ehcache.exceptions.CacheLoadingException;
 import org.ehcache.exceptions.CachePersistenceException;
 import org.ehcache.exceptions.CacheWritingException;
+import org.ehcache.function.Function;
+import org.ehcache.function.Predicate;
+import org.ehcache.internal.SystemTimeSource;
+import org.ehcache.internal.TimeSource;
 import org.ehcache.spi.LifeCycled;
 import org.ehcache.spi.cache.Store;
 import org.ehcache.spi.loaderwriter.CacheLoaderWriter;
@@ -35,6 +39,7 @@ import org.slf4j.LoggerFactory;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executor;
 
 /**
  * PersistentUserManagedEhcache
@@ -48,9 +53,13 @@ public class PersistentUserManagedEhcache<K, V> implements PersistentUserManaged
   private final String id;
 
   public PersistentUserManagedEhcache(CacheConfiguration<K, V> configuration, Store<K, V> store, Store.Configuration<K, V> storeConfig, LocalPersistenceService localPersistenceService, CacheLoaderWriter<? super K, V> cacheLoaderWriter, CacheEventDispatcher<K, V> eventNotifier, String id) {
+    this(configuration, store, storeConfig, localPersistenceService, cacheLoaderWriter, eventNotifier, SystemTimeSource.INSTANCE, id);
+  }
+
+  PersistentUserManagedEhcache(CacheConfiguration<K, V> configuration, Store<K, V> store, Store.Configuration<K, V> storeConfig, LocalPersistenceService localPersistenceService, CacheLoaderWriter<? super K, V> cacheLoaderWriter, CacheEventDispatcher<K, V> eventNotifier, TimeSource timeSource, String id) {
     this.logger = LoggerFactory.getLogger(PersistentUserManagedEhcache.class.getName() + "-" + id);
     this.statusTransitioner = new StatusTransitioner(logger);
-    this.ehcache = new Ehcache<K, V>(new EhcacheRuntimeConfiguration<K, V>(configuration, eventNotifier), store, cacheLoaderWriter, eventNotifier, true, logger, statusTransitioner);
+    this.ehcache = new Ehcache<K, V>(new EhcacheRuntimeConfiguration<K, V>(configuration, eventNotifier), store, cacheLoaderWriter, eventNotifier, true, timeSource, logger, statusTransitioner);
     this.localPersistenceService = localPersistenceService;
     this.id = id;
   }
@@ -165,6 +174,21 @@ public class PersistentUserManagedEhcache<K, V> implements PersistentUserManaged
     ehcache.clear();
   }
 
+  @Override
+  public void scan(Function<? super Entry<K, V>, ?> function, Executor executor, boolean recordAccess) {
+    ehcache.scan(function, executor, recordAccess);
+  }
+
+  @Override
+  public void removeIf(Predicate<? super Entry<K, V>> predicate) {
+    ehcache.removeIf(predicate);
+  }
+
+  @Override
+  public void removeKeysIf(Predicate<? super K> predicate) {
+    ehcache.removeKeysIf(predicate);
+  }
+
   @Override
   public V putIfAbsent(K key, V value) throws CacheLoadingException, CacheWritingException {
     return ehcache.putIfAbsent(key, value);
@@ -37,6 +37,9 @@ import org.ehcache.events.CacheEventDispatcher;
 import org.ehcache.exceptions.CachePersistenceException;
 import org.ehcache.expiry.Expirations;
 import org.ehcache.expiry.Expiry;
+import org.ehcache.internal.SystemTimeSource;
+import org.ehcache.internal.TimeSource;
+import org.ehcache.internal.TimeSourceService;
 import org.ehcache.spi.LifeCycled;
 import org.ehcache.spi.LifeCycledAdapter;
 import org.ehcache.spi.ServiceLocator;
@@ -185,6 +188,8 @@ public class UserManagedCacheBuilder<K, V, T extends UserManagedCache<K, V>> {
         storeProvider.releaseStore(store);
       }
     });
+    TimeSourceService timeSourceService = serviceLocator.getService(TimeSourceService.class);
+    TimeSource timeSource = timeSourceService == null ? SystemTimeSource.INSTANCE : timeSourceService.getTimeSource();
     if (persistent) {
       LocalPersistenceService persistenceService = serviceLocator
           .getService(LocalPersistenceService.class);
@@ -192,7 +197,7 @@ public class UserManagedCacheBuilder<K, V, T extends UserManagedCache<K, V>> {
         throw new IllegalStateException("No LocalPersistenceService could be found - did you configure one?");
       }
 
-      PersistentUserManagedEhcache<K, V> cache = new PersistentUserManagedEhcache<K, V>(cacheConfig, store, storeConfig, persistenceService, cacheLoaderWriter, cacheEventNotificationService, id);
+      PersistentUserManagedEhcache<K, V> cache = new PersistentUserManagedEhcache<K, V>(cacheConfig, store, storeConfig, persistenceService, cacheLoaderWriter, cacheEventNotificationService, timeSource, id);
       for (LifeCycled lifeCycled : lifeCycledList) {
         cache.addHook(lifeCycled);
       }
@@ -204,7 +209,7 @@ public class UserManagedCacheBuilder<K, V, T extends UserManagedCache<K, V>> {
       } else {
         loggerName = Ehcache.class.getName() + "-UserManaged" + instanceId.incrementAndGet();
       }
-      Ehcache<K, V> cache = new Ehcache<K, V>(cacheConfig, store, cacheLoaderWriter, cacheEventNotificationService, LoggerFactory.getLogger(loggerName));
+      Ehcache<K, V> cache = new Ehcache<K, V>(cacheConfig, store, cacheLoaderWriter, cacheEventNotificationService, true, timeSource, LoggerFactory.getLogger(loggerName));
       for (LifeCycled lifeCycled : lifeCycledList) {
         cache.addHook(lifeCycled);
       }
@@ -0,0 +1,243 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.ehcache;
+
+import org.ehcache.config.loaderwriter.WriteCoalescingConfiguration;
+import org.ehcache.exceptions.BulkCacheWritingException;
+import org.ehcache.spi.loaderwriter.CacheLoaderWriter;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Merges the single key write-through calls concurrently made by a cache into bulk ones.
+ * <P>
+ *   The first writer to find no open batch opens one and, once the batch window elapsed or the batch got full, hands
+ *   all its writes to {@link CacheLoaderWriter#writeAll(Iterable)} and all its deletes to
+ *   {@link CacheLoaderWriter#deleteAll(Iterable)}. Every writer waits for the outcome of its own key. A key is never
+ *   written twice at once: a writer finding its key already pending waits for that write to complete before batching
+ *   its own, so that writes of a key reach the writer in order.
+ * </P>
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ */
+class WriteGateway<K, V> {
+
+  private final CacheLoaderWriter<? super K, V> cacheLoaderWriter;
+  private final long batchWindowNanos;
+  private final int maxBatchSize;
+  private final ConcurrentMap<K, PendingWrite<V>> inFlight = new ConcurrentHashMap<K, PendingWrite<V>>();
+  private final Object batchLock = new Object();
+  private Batch<K, V> openBatch;
+
+  final AtomicLong requests = new AtomicLong();
+  final AtomicLong invocations = new AtomicLong();
+  final AtomicLong queueTime = new AtomicLong();
+
+  WriteGateway(CacheLoaderWriter<? super K, V> cacheLoaderWriter, WriteCoalescingConfiguration configuration) {
+    this.cacheLoaderWriter = cacheLoaderWriter;
+    this.batchWindowNanos = configuration.getBatchWindow().getTimeUnit().toNanos(configuration.getBatchWindow().getAmount());
+    this.maxBatchSize = configuration.getMaxBatchSize();
+  }
+
+  void write(K key, V value) throws Exception {
+    submit(key, new PendingWrite<V>(value, false));
+  }
+
+  void delete(K key) throws Exception {
+    submit(key, new PendingWrite<V>(null, true));
+  }
+
+  private void submit(K key, PendingWrite<V> pending) throws Exception {
+    requests.incrementAndGet();
+    Batch<K, V> batch;
+    boolean opened;
+    while (true) {
+      PendingWrite<V> previous;
+      synchronized (batchLock) {
+        batch = openBatch;
+        previous = inFlight.get(key);
+        if (previous == null) {
+          long now = System.nanoTime();
+          opened = batch == null;
+          if (opened) {
+            batch = openBatch = new Batch<K, V>(now);
+          }
+          inFlight.put(key, pending);
+          batch.pendings.put(key, pending);
+          batch.enqueuedAtSum += now;
+          if (batch.pendings.size() >= maxBatchSize) {
+            openBatch = null;
+            batchLock.notifyAll();
+          }
+          break;
+        }
+      }
+      previous.await();
+    }
+
+    if (opened) {
+      awaitBatch(batch);
+      run(batch);
+    }
+    pending.get();
+  }
+
+  private void awaitBatch(Batch<K, V> batch) {
+    boolean interrupted = false;
+    synchronized (batchLock) {
+      long remaining = batchWindowNanos - (System.nanoTime() - batch.openedAt);
+      while (openBatch == batch && remaining > 0) {
+        try {
+          TimeUnit.NANOSECONDS.timedWait(batchLock, remaining);
+        } catch (InterruptedException e) {
+          interrupted = true;
+          break;
+        }
+        remaining = batchWindowNanos - (System.nanoTime() - batch.openedAt);
+      }
+      if (openBatch == batch) {
+        openBatch = null;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void run(Batch<K, V> batch) {
+    Map<K, V> writes = new LinkedHashMap<K, V>();
+    Set<K> deletes = new LinkedHashSet<K>();
+    for (Map.Entry<K, PendingWrite<V>> entry : batch.pendings.entrySet()) {
+      if (entry.getValue().delete) {
+        deletes.add(entry.getKey());
+      } else {
+        writes.put(entry.getKey(), entry.getValue().value);
+      }
+    }
+    queueTime.addAndGet(System.nanoTime() * batch.pendings.size() - batch.enqueuedAtSum);
+
+    if (!writes.isEmpty()) {
+      Throwable failure = null;
+      try {
+        invocations.incrementAndGet();
+        cacheLoaderWriter.writeAll(writes.entrySet());
+      } catch (Throwable t) {
+        failure = t;
+      }
+      complete(batch, writes.keySet(), failure);
+    }
+    if (!deletes.isEmpty()) {
+      Throwable failure = null;
+      try {
+        invocations.incrementAndGet();
+        cacheLoaderWriter.deleteAll(deletes);
+      } catch (Throwable t) {
+        failure = t;
+      }
+      complete(batch, deletes, failure);
+    }
+  }
+
+  private void complete(Batch<K, V> batch, Collection<K> keys, Throwable failure) {
+    for (K key : keys) {
+      PendingWrite<V> pending = batch.pendings.get(key);
+      inFlight.remove(key, pending);
+      if (failure instanceof BulkCacheWritingException) {
+        BulkCacheWritingException bcwe = (BulkCacheWritingException) failure;
+        if (bcwe.getFailures().containsKey(key)) {
+          pending.complete(bcwe.getFailures().get(key));
+        } else if (bcwe.getSuccesses().contains(key)) {
+          pending.complete(null);
+        } else {
+          pending.complete(bcwe);
+        }
+      } else {
+        pending.complete(failure);
+      }
+    }
+  }
+
+  /**
+   * Single key writes waiting for the thread that opened their batch to write them all.
+   */
+  private static final class Batch<K, V> {
+
+    final long openedAt;
+    final Map<K, PendingWrite<V>> pendings = new LinkedHashMap<K, PendingWrite<V>>();
+    long enqueuedAtSum;
+
+    Batch(long openedAt) {
+      this.openedAt = openedAt;
+    }
+  }
+
+  /**
+   * A write or delete of a key, and its outcome once known.
+   */
+  private static final class PendingWrite<V> {
+
+    final V value;
+    final boolean delete;
+    private final CountDownLatch done = new CountDownLatch(1);
+    private Throwable failure;
+
+    PendingWrite(V value, boolean delete) {
+      this.value = value;
+      this.delete = delete;
+    }
+
+    void complete(Throwable failure) {
+      this.failure = failure;
+      done.countDown();
+    }
+
+    void await() {
+      boolean interrupted = false;
+      while (true) {
+        try {
+          done.await();
+          break;
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    void get() throws Exception {
+      await();
+      if (failure instanceof Exception) {
+        throw (Exception) failure;
+      } else if (failure != null) {
+        throw (Error) failure;
+      }
+    }
+  }
+}
@@ -47,15 +47,35 @@ public class ResourcePoolsBuilder {
   public static ResourcePoolsBuilder newResourcePoolsBuilder(ResourcePools pools) {
     ResourcePoolsBuilder poolsBuilder = new ResourcePoolsBuilder();
     for (ResourceType currentResourceType : pools.getResourceTypeSet()) {
-      poolsBuilder = poolsBuilder.with(currentResourceType, pools.getPoolForResource(currentResourceType).getSize(),
-          pools.getPoolForResource(currentResourceType).getUnit(), pools.getPoolForResource(currentResourceType).isPersistent());
+      ResourcePool pool = pools.getPoolForResource(currentResourceType);
+      if (pool instanceof SharedResourcePool) {
+        poolsBuilder = poolsBuilder.shared(currentResourceType);
+      } else {
+        poolsBuilder = poolsBuilder.with(currentResourceType, pool.getSize(), pool.getUnit(), pool.isPersistent());
+      }
     }
     return poolsBuilder;
   }
 
   public ResourcePoolsBuilder with(ResourceType type, long size, ResourceUnit unit, boolean persistent) {
+    return with(new ResourcePoolImpl(type, size, unit, persistent));
+  }
+
+  /**
+   * Makes the cache draw the given resource from the pool shared by all caches of the cache manager.
+   *
+   * @param type the type of the shared resource
+   * @return a new builder
+   * @throws IllegalArgumentException if the resource type cannot be shared
+   * @see SharedResourcePool
+   */
+  public ResourcePoolsBuilder shared(ResourceType type) {
+    return with(new SharedResourcePool(type));
+  }
+
+  private ResourcePoolsBuilder with(ResourcePool pool) {
     Map<ResourceType, ResourcePool> newPools = new HashMap<ResourceType, ResourcePool>(resourcePools);
-    newPools.put(type, new ResourcePoolImpl(type, size, unit, persistent));
+    newPools.put(pool.getType(), pool);
     return new ResourcePoolsBuilder(newPools);
   }
 
@@ -63,10 +83,18 @@ public class ResourcePoolsBuilder {
     return with(ResourceType.Core.HEAP, size, unit, false);
   }
 
+  public ResourcePoolsBuilder sharedHeap() {
+    return shared(ResourceType.Core.HEAP);
+  }
+
   public ResourcePoolsBuilder offheap(long size, MemoryUnit unit) {
     return with(ResourceType.Core.OFFHEAP, size, unit, false);
   }
 
+  public ResourcePoolsBuilder sharedOffheap() {
+    return shared(ResourceType.Core.OFFHEAP);
+  }
+
   public ResourcePoolsBuilder disk(long size, MemoryUnit unit) {
     return disk(size, unit, false);
   }
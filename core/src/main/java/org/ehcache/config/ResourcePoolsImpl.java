@@ -48,7 +48,7 @@ class ResourcePoolsImpl implements ResourcePools {
   public static void validateResourcePools(Collection<? extends ResourcePool> pools) {
     EnumMap<ResourceType.Core, ResourcePool> coreResources = new EnumMap<ResourceType.Core, ResourcePool>(ResourceType.Core.class);
     for (ResourcePool pool : pools) {
-      if (pool.getType() instanceof ResourceType.Core) {
+      if (pool.getType() instanceof ResourceType.Core && !(pool instanceof SharedResourcePool)) {
         coreResources.put((ResourceType.Core) pool.getType(), pool);
       }
     }
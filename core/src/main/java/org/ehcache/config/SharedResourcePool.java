@@ -0,0 +1,72 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.config;
+
+import org.ehcache.config.units.EntryUnit;
+import org.ehcache.config.units.MemoryUnit;
+
+/**
+ * A reference from a cache's {@link ResourcePools} to a pool shared by all caches of a cache manager.
+ * <P>
+ *   The shared pool itself is declared and sized at the cache manager level, this reference only carries the
+ *   {@link ResourceType}. Its {@link #getSize() size} is therefore always {@code 0} and its {@link #getUnit() unit}
+ *   is the unit the cache manager level pool must be expressed in.
+ * </P>
+ * <P>
+ *   Only {@link ResourceType.Core#HEAP heap} and {@link ResourceType.Core#OFFHEAP offheap} resources can be shared.
+ * </P>
+ */
+public final class SharedResourcePool implements ResourcePool {
+
+  private final ResourceType type;
+
+  public SharedResourcePool(ResourceType type) {
+    if (type != ResourceType.Core.HEAP && type != ResourceType.Core.OFFHEAP) {
+      throw new IllegalArgumentException("Resource type " + type + " cannot be shared");
+    }
+    this.type = type;
+  }
+
+  @Override
+  public ResourceType getType() {
+    return type;
+  }
+
+  @Override
+  public long getSize() {
+    return 0;
+  }
+
+  @Override
+  public ResourceUnit getUnit() {
+    if (type == ResourceType.Core.HEAP) {
+      return EntryUnit.ENTRIES;
+    } else {
+      return MemoryUnit.B;
+    }
+  }
+
+  @Override
+  public boolean isPersistent() {
+    return false;
+  }
+
+  @Override
+  public String toString() {
+    return "Pool {shared " + getType() + "}";
+  }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.ehcache.config.loaderwriter;
+
+import org.ehcache.expiry.Duration;
+import org.ehcache.spi.loaderwriter.CacheLoaderWriterProvider;
+import org.ehcache.spi.service.ServiceConfiguration;
+
+/**
+ * Puts a gateway in front of a cache's {@link org.ehcache.spi.loaderwriter.CacheLoaderWriter} loading methods.
+ * <P>
+ *   Keys that are already being loaded, whether by a single key read or by a bulk one, are never loaded twice at the
+ *   same time: later readers wait for the pending load and share its outcome. At most {@code maxConcurrentLoads}
+ *   invocations of the loader run at once, {@code 0} meaning no limit. When a {@code batchWindow} is set, single key
+ *   loads starting within that window of one another are merged into one
+ *   {@link org.ehcache.spi.loaderwriter.CacheLoaderWriter#loadAll(Iterable) loadAll} call of at most
+ *   {@code maxBatchSize} keys, so the loader needs a {@code loadAll} able to serve them.
+ * </P>
+ * <P>
+ *   A loader that reads from the same cache must leave enough concurrent loads for those nested reads to proceed.
+ * </P>
+ */
+public class LoadCoalescingConfiguration implements ServiceConfiguration<CacheLoaderWriterProvider> {
+
+  public static final int DEFAULT_MAX_BATCH_SIZE = 64;
+
+  private final int maxConcurrentLoads;
+  private final Duration batchWindow;
+  private final int maxBatchSize;
+
+  public LoadCoalescingConfiguration() {
+    this(0);
+  }
+
+  public LoadCoalescingConfiguration(int maxConcurrentLoads) {
+    this(maxConcurrentLoads, null, DEFAULT_MAX_BATCH_SIZE);
+  }
+
+  public LoadCoalescingConfiguration(int maxConcurrentLoads, Duration batchWindow) {
+    this(maxConcurrentLoads, batchWindow, DEFAULT_MAX_BATCH_SIZE);
+  }
+
+  public LoadCoalescingConfiguration(int maxConcurrentLoads, Duration batchWindow, int maxBatchSize) {
+    if (maxConcurrentLoads < 0) {
+      throw new IllegalArgumentException("Max concurrent loads must be positive, or 0 for no limit");
+    }
+    if (batchWindow != null && (batchWindow.isForever() || batchWindow.getAmount() < 0)) {
+      throw new IllegalArgumentException("Batch window must be a finite, positive duration");
+    }
+    if (maxBatchSize <= 0) {
+      throw new IllegalArgumentException("Max batch size must be strictly positive");
+    }
+    this.maxConcurrentLoads = maxConcurrentLoads;
+    this.batchWindow = batchWindow;
+    this.maxBatchSize = maxBatchSize;
+  }
+
+  public int getMaxConcurrentLoads() {
+    return maxConcurrentLoads;
+  }
+
+  public Duration getBatchWindow() {
+    return batchWindow;
+  }
+
+  public int getMaxBatchSize() {
+    return maxBatchSize;
+  }
+
+  @Override
+  public Class<CacheLoaderWriterProvider> getServiceType() {
+    return CacheLoaderWriterProvider.class;
+  }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.config.loaderwriter;
+
+import org.ehcache.expiry.Duration;
+import org.ehcache.spi.loaderwriter.CacheLoaderWriterProvider;
+import org.ehcache.spi.service.ServiceConfiguration;
+
+/**
+ * Makes a cache remember the keys its {@link org.ehcache.spi.loaderwriter.CacheLoaderWriter} found no value for.
+ * <P>
+ *   For {@code timeToLive} after a load (or a {@code loadAll}) came back empty for a key, reads of that key which
+ *   miss the store answer {@code null} straight away instead of calling the loader again. Up to {@code maxEntries}
+ *   such absent keys are remembered, the oldest being forgotten first, and writing a value through the cache
+ *   forgets its key at once.
+ * </P>
+ */
+public class NegativeCachingConfiguration implements ServiceConfiguration<CacheLoaderWriterProvider> {
+
+  public static final int DEFAULT_MAX_ENTRIES = 10000;
+
+  private final Duration timeToLive;
+  private final int maxEntries;
+
+  public NegativeCachingConfiguration(Duration timeToLive) {
+    this(timeToLive, DEFAULT_MAX_ENTRIES);
+  }
+
+  public NegativeCachingConfiguration(Duration timeToLive, int maxEntries) {
+    if (timeToLive == null || timeToLive.isForever() || timeToLive.getAmount() <= 0) {
+      throw new IllegalArgumentException("Time to live must be a finite, strictly positive duration");
+    }
+    if (maxEntries <= 0) {
+      throw new IllegalArgumentException("Max entries must be strictly positive");
+    }
+    this.timeToLive = timeToLive;
+    this.maxEntries = maxEntries;
+  }
+
+  public Duration getTimeToLive() {
+    return timeToLive;
+  }
+
+  public int getMaxEntries() {
+    return maxEntries;
+  }
+
+  @Override
+  public Class<CacheLoaderWriterProvider> getServiceType() {
+    return CacheLoaderWriterProvider.class;
+  }
+}
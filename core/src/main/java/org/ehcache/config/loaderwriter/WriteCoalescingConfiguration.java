@@ -0,0 +1,66 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.ehcache.config.loaderwriter;
+
+import org.ehcache.expiry.Duration;
+import org.ehcache.spi.loaderwriter.CacheLoaderWriterProvider;
+import org.ehcache.spi.service.ServiceConfiguration;
+
+/**
+ * Batches the write-through calls a cache makes to its {@link org.ehcache.spi.loaderwriter.CacheLoaderWriter}.
+ * <P>
+ *   Bulk writes and deletes are handed to the writer in chunks of at most {@code maxBatchSize} entries. When a
+ *   {@code batchWindow} is set, single key writes and deletes starting within that window of one another are also
+ *   merged into {@link org.ehcache.spi.loaderwriter.CacheLoaderWriter#writeAll(Iterable) writeAll} and
+ *   {@link org.ehcache.spi.loaderwriter.CacheLoaderWriter#deleteAll(Iterable) deleteAll} calls of at most
+ *   {@code maxBatchSize} keys, every caller still waiting for, and getting, the outcome of its own key.
+ * </P>
+ */
+public class WriteCoalescingConfiguration implements ServiceConfiguration<CacheLoaderWriterProvider> {
+
+  private final int maxBatchSize;
+  private final Duration batchWindow;
+
+  public WriteCoalescingConfiguration(int maxBatchSize) {
+    this(maxBatchSize, null);
+  }
+
+  public WriteCoalescingConfiguration(int maxBatchSize, Duration batchWindow) {
+    if (maxBatchSize <= 0) {
+      throw new IllegalArgumentException("Max batch size must be strictly positive");
+    }
+    if (batchWindow != null && (batchWindow.isForever() || batchWindow.getAmount() < 0)) {
+      throw new IllegalArgumentException("Batch window must be a finite, positive duration");
+    }
+    this.maxBatchSize = maxBatchSize;
+    this.batchWindow = batchWindow;
+  }
+
+  public int getMaxBatchSize() {
+    return maxBatchSize;
+  }
+
+  public Duration getBatchWindow() {
+    return batchWindow;
+  }
+
+  @Override
+  public Class<CacheLoaderWriterProvider> getServiceType() {
+    return CacheLoaderWriterProvider.class;
+  }
+}
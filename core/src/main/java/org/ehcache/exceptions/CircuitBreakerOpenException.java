@@ -0,0 +1,45 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.ehcache.exceptions;
+
+/**
+ * Signals that an operation was not attempted against a {@link org.ehcache.spi.cache.Store} because its circuit
+ * breaker is currently open.
+ * <P>
+ *   As the store was never touched there is nothing to recover from: resilience strategies should simply fall through
+ *   to the loader-writer (or report a miss) without trying to clean the store up.
+ * </P>
+ */
+public class CircuitBreakerOpenException extends CacheAccessException {
+
+  private static final long serialVersionUID = -3236553512359296146L;
+
+  /**
+   * Creates a new exception with the provided message.
+   *
+   * @param message information about the exception
+   */
+  public CircuitBreakerOpenException(String message) {
+    super(message);
+  }
+
+  @Override
+  public synchronized Throwable fillInStackTrace() {
+    return this;
+  }
+}
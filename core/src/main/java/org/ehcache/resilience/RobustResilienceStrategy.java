@@ -24,6 +24,7 @@ import org.ehcache.exceptions.BulkCacheWritingException;
 import org.ehcache.exceptions.CacheAccessException;
 import org.ehcache.exceptions.CacheLoadingException;
 import org.ehcache.exceptions.CacheWritingException;
+import org.ehcache.exceptions.CircuitBreakerOpenException;
 import org.ehcache.exceptions.RethrowingCacheAccessException;
 
 import static java.util.Collections.emptyMap;
@@ -210,6 +211,9 @@ public abstract class RobustResilienceStrategy<K, V> implements ResilienceStrate
 
   private void cleanup(CacheAccessException from) {
     filterException(from);
+    if (bypassed(from)) {
+      return;
+    }
     try {
       cache.obliterate();
     } catch (CacheAccessException e) {
@@ -222,6 +226,9 @@ public abstract class RobustResilienceStrategy<K, V> implements ResilienceStrate
   
   private void cleanup(Iterable<? extends K> keys, CacheAccessException from) {
     filterException(from);
+    if (bypassed(from)) {
+      return;
+    }
     try {
       cache.obliterate(keys);
     } catch (CacheAccessException e) {
@@ -233,6 +240,9 @@ public abstract class RobustResilienceStrategy<K, V> implements ResilienceStrate
   
   private void cleanup(K key, CacheAccessException from) {
     filterException(from);
+    if (bypassed(from)) {
+      return;
+    }
     try {
       cache.obliterate(key);
     } catch (CacheAccessException e) {
@@ -242,6 +252,13 @@ public abstract class RobustResilienceStrategy<K, V> implements ResilienceStrate
     recovered(key, from);
   }
 
+  /**
+   * Operations short-circuited by an open circuit breaker never reached the store, so there is nothing to obliterate.
+   */
+  private static boolean bypassed(CacheAccessException from) {
+    return from instanceof CircuitBreakerOpenException;
+  }
+
   @Deprecated
   void filterException(CacheAccessException cae) throws RuntimeException {
     if (cae instanceof RethrowingCacheAccessException) {
@@ -17,8 +17,13 @@
 package org.ehcache.spi.cache;
 
 import org.ehcache.Cache;
+import org.ehcache.exceptions.CacheAccessException;
+import org.ehcache.function.Function;
+import org.ehcache.function.Predicate;
 import org.ehcache.internal.TimeSource;
 
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -59,4 +64,61 @@ public final class CacheStoreHelper {
       }
     };
   }
+
+  /**
+   * Removes the mappings of {@code store} matching {@code predicate}, through {@link Store.Purgeable#removeIf} when
+   * the store supports it, or else by iterating it and removing the matching mappings one by one, all of them being
+   * then handed over to {@code removals} at once.
+   */
+  public static <K, V> void removeIf(Store<K, V> store, Predicate<? super Cache.Entry<K, Store.ValueHolder<V>>> predicate,
+                                     boolean keysOnly, Function<? super Map<K, Store.ValueHolder<V>>, ?> removals) throws CacheAccessException {
+    if (store instanceof Store.Purgeable) {
+      @SuppressWarnings("unchecked")
+      Store.Purgeable<K, V> purgeable = (Store.Purgeable<K, V>) store;
+      purgeable.removeIf(predicate, keysOnly, removals);
+      return;
+    }
+
+    Map<K, Store.ValueHolder<V>> removed = new HashMap<K, Store.ValueHolder<V>>();
+    Store.Iterator<Cache.Entry<K, Store.ValueHolder<V>>> iterator = store.iterator();
+    while (iterator.hasNext()) {
+      Cache.Entry<K, Store.ValueHolder<V>> entry = iterator.next();
+      if (predicate.test(entry) && store.remove(entry.getKey(), entry.getValue().value())) {
+        removed.put(entry.getKey(), entry.getValue());
+      }
+    }
+    if (!removed.isEmpty()) {
+      removals.apply(removed);
+    }
+  }
+
+  public static <K, V> Cache.Entry<K, Store.ValueHolder<V>> storeEntry(final K key, final Store.ValueHolder<V> mappedValue, final TimeSource timeSource) {
+    return new Cache.Entry<K, Store.ValueHolder<V>>() {
+
+      @Override
+      public K getKey() {
+        return key;
+      }
+
+      @Override
+      public Store.ValueHolder<V> getValue() {
+        return mappedValue;
+      }
+
+      @Override
+      public long getCreationTime(TimeUnit unit) {
+        return mappedValue.creationTime(unit);
+      }
+
+      @Override
+      public long getLastAccessTime(TimeUnit unit) {
+        return mappedValue.lastAccessTime(unit);
+      }
+
+      @Override
+      public float getHitRate(TimeUnit unit) {
+        return mappedValue.hitRate(timeSource.getTimeMillis(), unit);
+      }
+    };
+  }
 }
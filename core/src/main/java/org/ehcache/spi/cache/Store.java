@@ -26,9 +26,11 @@ import org.ehcache.expiry.Expiry;
 import org.ehcache.function.BiFunction;
 import org.ehcache.function.Function;
 import org.ehcache.function.NullaryFunction;
+import org.ehcache.function.Predicate;
 import org.ehcache.spi.service.Service;
 import org.ehcache.spi.service.ServiceConfiguration;
 
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
@@ -509,6 +511,52 @@ public interface Store<K, V> extends ConfigurationChangeSupport {
     Serializer<V> getValueSerializer();
   }
 
+  /**
+   * Implemented by the stores able to split their mappings in partitions, typically one per segment, whose
+   * iterations are independent of one another and can hence run concurrently.
+   *
+   * @param <K> the key type
+   * @param <V> the value type
+   */
+  interface Partitioned<K, V> {
+
+    /**
+     * Returns one iterator per partition of this store, each with the same guarantees as {@link Store#iterator()}.
+     *
+     * @param recordAccess whether iterated mappings count as accessed, as they do when iterated by
+     *                     {@link Store#iterator()}
+     * @return the partition iterators
+     */
+    List<Iterator<Cache.Entry<K, ValueHolder<V>>>> partitionIterators(boolean recordAccess);
+  }
+
+  /**
+   * Implemented by the stores able to remove all mappings matching a predicate segment by segment, evaluating the
+   * predicate and removing the matching mappings of a segment while holding its lock, rather than key by key.
+   *
+   * @param <K> the key type
+   * @param <V> the value type
+   */
+  interface Purgeable<K, V> {
+
+    /**
+     * Removes all mappings matching the given predicate, handing the mappings removed from each segment over to the
+     * given function once that segment's lock is released.
+     * <P>
+     * Expired mappings are not handed to the predicate, unless {@code keysOnly} is set in which case the store is
+     * free not to read the values at all: the entries tested then only have a key, their value being {@code null},
+     * and the removed mappings are handed over with {@code null} value holders.
+     * </P>
+     *
+     * @param predicate the predicate selecting the mappings to remove, which must not access this store
+     * @param keysOnly whether the predicate only looks at keys
+     * @param removals the function called with the mappings removed from each segment
+     * @throws CacheAccessException if the mappings could not be removed
+     */
+    void removeIf(Predicate<? super Cache.Entry<K, ValueHolder<V>>> predicate, boolean keysOnly,
+                  Function<? super Map<K, ValueHolder<V>>, ?> removals) throws CacheAccessException;
+  }
+
   /**
    * An iterator over a Store.
    * @param <T> the type of the elements iterated over
@@ -35,6 +35,8 @@ public interface CacheOperationOutcomes {
     HIT_WITH_LOADER,
     /** miss */
     MISS_WITH_LOADER,    
+    /** miss, answered from a recent loader miss without calling the loader */
+    NEGATIVE_HIT,
     /** failure */
     FAILURE
   };
@@ -123,4 +123,62 @@ public interface StoreOperationOutcomes {
     SUCCESS
   }
 
+  /**
+   * Outcomes for the circuit breaker guarding a store
+   */
+  enum CircuitBreakerOutcome implements StoreOperationOutcomes {
+    /** the breaker opened after too many failures */
+    TRIPPED,
+    /** an operation was short-circuited while the breaker was open */
+    BYPASSED,
+    /** a probe succeeded and the breaker closed again */
+    PROBE_SUCCESS,
+    /** a probe failed and the breaker stayed open */
+    PROBE_FAILURE
+  }
+
+  /**
+   * Outcomes for the Bloom filter consulted before looking a key up in a store
+   */
+  enum BloomFilterOutcome implements StoreOperationOutcomes {
+    /** the key was definitely absent, the lookup returned without probing the store */
+    DEFINITE_MISS,
+    /** the key may be present, the store was probed */
+    MAYBE_PRESENT
+  }
+
+  /**
+   * Outcomes for faulting a hot key into the caching tier while warming a store up
+   */
+  enum WarmUpOutcome implements StoreOperationOutcomes {
+    /** the key was faulted into the caching tier */
+    FAULTED,
+    /** the key was no longer in the authoritative tier */
+    MISSING,
+    /** the key could not be faulted */
+    FAILURE
+  }
+
+  /**
+   * Outcomes for compressing a value before storing it
+   */
+  enum CompressionOutcome implements StoreOperationOutcomes {
+    /** the value was stored compressed */
+    COMPRESSED,
+    /** the value did not compress and was stored as is */
+    INCOMPRESSIBLE,
+    /** the value was below the compression threshold and stored as is */
+    SKIPPED
+  }
+
+  /**
+   * Outcomes for decompressing a stored value
+   */
+  enum DecompressionOutcome implements StoreOperationOutcomes {
+    /** the value was decompressed */
+    SUCCESS,
+    /** the stored value was corrupt */
+    FAILURE
+  }
+
 }
@@ -18,6 +18,7 @@ package org.ehcache.util;
 import org.ehcache.config.ResourcePools;
 import org.ehcache.config.ResourcePoolsBuilder;
 import org.ehcache.config.ResourceType;
+import org.ehcache.config.SharedResourcePool;
 import org.ehcache.config.units.EntryUnit;
 
 /**
@@ -29,10 +30,11 @@ public class ResourcePoolMerger {
     if(!existing.getResourceTypeSet().containsAll(toBeUpdated.getResourceTypeSet())) {
       throw new IllegalArgumentException("Pools to be updated cannot contain previously undefined resources pools");
     }
-    if(toBeUpdated.getResourceTypeSet().contains(ResourceType.Core.OFFHEAP)) {
-      throw new UnsupportedOperationException("Updating OFFHEAP resource is not supported");
-    }
     for(ResourceType currentResourceType : toBeUpdated.getResourceTypeSet()) {
+      if (existing.getPoolForResource(currentResourceType) instanceof SharedResourcePool
+          || toBeUpdated.getPoolForResource(currentResourceType) instanceof SharedResourcePool) {
+        throw new UnsupportedOperationException("Updating shared " + currentResourceType + " resource is not supported");
+      }
       if (toBeUpdated.getPoolForResource(currentResourceType).getSize() <= 0) {
         throw new IllegalArgumentException("Unacceptable size for resource pools provided");
       }
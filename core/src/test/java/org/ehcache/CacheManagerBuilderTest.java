@@ -47,4 +47,9 @@ public class CacheManagerBuilderTest {
     assertThat(counter.get(), is(1));
   }
 
+  @Test(expected = IllegalArgumentException.class)
+  public void testRejectsNonPositiveCacheLifecycleParallelism() {
+    newCacheManagerBuilder().withCacheLifecycleParallelism(0);
+  }
+
 }
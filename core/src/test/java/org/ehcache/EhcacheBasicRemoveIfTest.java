@@ -0,0 +1,212 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.ehcache;
+
+import org.ehcache.event.CacheEvent;
+import org.ehcache.event.EventType;
+import org.ehcache.events.CacheEventDispatcher;
+import org.ehcache.exceptions.CacheAccessException;
+import org.ehcache.function.Function;
+import org.ehcache.function.Predicate;
+import org.ehcache.spi.cache.Store;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Provides testing of the {@link Ehcache#removeIf(Predicate)} and {@link Ehcache#removeKeysIf(Predicate)} operations.
+ */
+public class EhcacheBasicRemoveIfTest extends EhcacheBasicCrudBase {
+
+  @Test
+  public void testRemoveIfNullPredicate() throws Exception {
+    this.store = new FakeStore(Collections.<String, String>emptyMap());
+    final Ehcache<String, String> ehcache = this.getEhcache(null);
+    try {
+      ehcache.removeIf(null);
+      fail();
+    } catch (NullPointerException e) {
+      // expected
+    }
+    try {
+      ehcache.removeKeysIf(null);
+      fail();
+    } catch (NullPointerException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testRemoveIf() throws Exception {
+    final FakeStore fakeStore = new FakeStore(getTestStoreEntries());
+    this.store = fakeStore;
+    final Ehcache<String, String> ehcache = this.getEhcache(null);
+
+    ehcache.removeIf(new Predicate<Cache.Entry<String, String>>() {
+      @Override
+      public boolean test(Cache.Entry<String, String> entry) {
+        return entry.getValue().startsWith("tenantA");
+      }
+    });
+
+    final Map<String, String> expected = new HashMap<String, String>();
+    expected.put("key3", "tenantB-3");
+    expected.put("key4", "tenantB-4");
+    assertThat(fakeStore.getEntryMap(), equalTo(expected));
+  }
+
+  @Test
+  public void testRemoveKeysIf() throws Exception {
+    final FakeStore fakeStore = new FakeStore(getTestStoreEntries());
+    this.store = fakeStore;
+    final Ehcache<String, String> ehcache = this.getEhcache(null);
+
+    ehcache.removeKeysIf(new Predicate<String>() {
+      @Override
+      public boolean test(String key) {
+        return !key.equals("key1");
+      }
+    });
+
+    assertThat(fakeStore.getEntryMap(), equalTo(Collections.singletonMap("key1", "tenantA-1")));
+  }
+
+  @Test
+  public void testRemoveIfFiresRemovalEvents() throws Exception {
+    this.store = new FakeStore(getTestStoreEntries());
+    @SuppressWarnings("unchecked")
+    final CacheEventDispatcher<String, String> eventDispatcher = mock(CacheEventDispatcher.class);
+    final Ehcache<String, String> ehcache = this.getEhcache(eventDispatcher);
+
+    ehcache.removeIf(new Predicate<Cache.Entry<String, String>>() {
+      @Override
+      public boolean test(Cache.Entry<String, String> entry) {
+        return entry.getKey().equals("key2");
+      }
+    });
+
+    @SuppressWarnings("unchecked")
+    final ArgumentCaptor<CacheEvent<String, String>> captor = ArgumentCaptor.forClass((Class) CacheEvent.class);
+    verify(eventDispatcher).onEvent(captor.capture());
+    assertThat(captor.getValue().getType(), is(EventType.REMOVED));
+    assertThat(captor.getValue().getKey(), is("key2"));
+    assertThat(captor.getValue().getOldValue(), is("tenantA-2"));
+  }
+
+  @Test
+  public void testRemoveIfPredicateFailure() throws Exception {
+    final FakeStore fakeStore = new FakeStore(getTestStoreEntries());
+    this.store = fakeStore;
+    final Ehcache<String, String> ehcache = this.getEhcache(null);
+
+    try {
+      ehcache.removeKeysIf(new Predicate<String>() {
+        @Override
+        public boolean test(String key) {
+          throw new IllegalStateException("boom");
+        }
+      });
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e.getMessage(), is("boom"));
+    }
+    assertThat(fakeStore.getEntryMap(), equalTo(getTestStoreEntries()));
+  }
+
+  /**
+   * Values are not asked for when purging by keys without anyone listening to removals.
+   */
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testRemoveKeysIfOnPurgeableStore() throws Exception {
+    this.store = mock(Store.class, withSettings().extraInterfaces(Store.Purgeable.class));
+    final CacheEventDispatcher<String, String> eventDispatcher = mock(CacheEventDispatcher.class);
+    final Ehcache<String, String> ehcache = this.getEhcache(eventDispatcher);
+
+    doReturn(false).when(eventDispatcher).hasListeners();
+    ehcache.removeKeysIf(new Predicate<String>() {
+      @Override
+      public boolean test(String key) {
+        return true;
+      }
+    });
+    verify((Store.Purgeable<String, String>) this.store).removeIf(any(Predicate.class), eq(true), any(Function.class));
+
+    doReturn(true).when(eventDispatcher).hasListeners();
+    ehcache.removeKeysIf(new Predicate<String>() {
+      @Override
+      public boolean test(String key) {
+        return true;
+      }
+    });
+    verify((Store.Purgeable<String, String>) this.store).removeIf(any(Predicate.class), eq(false), any(Function.class));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testRemoveIfCacheAccessException() throws Exception {
+    this.store = mock(Store.class, withSettings().extraInterfaces(Store.Purgeable.class));
+    doThrow(new CacheAccessException("")).when((Store.Purgeable<String, String>) this.store)
+        .removeIf(any(Predicate.class), anyBoolean(), any(Function.class));
+    final Ehcache<String, String> ehcache = this.getEhcache(null);
+
+    ehcache.removeIf(new Predicate<Cache.Entry<String, String>>() {
+      @Override
+      public boolean test(Cache.Entry<String, String> entry) {
+        return true;
+      }
+    });
+    verify(this.spiedResilienceStrategy, times(1)).clearFailure(any(CacheAccessException.class));
+  }
+
+  private static Map<String, String> getTestStoreEntries() {
+    final Map<String, String> storeEntries = new HashMap<String, String>();
+    storeEntries.put("key1", "tenantA-1");
+    storeEntries.put("key2", "tenantA-2");
+    storeEntries.put("key3", "tenantB-3");
+    storeEntries.put("key4", "tenantB-4");
+    return storeEntries;
+  }
+
+  private Ehcache<String, String> getEhcache(CacheEventDispatcher<String, String> eventDispatcher) throws Exception {
+    final Ehcache<String, String> ehcache = new Ehcache<String, String>(CACHE_CONFIGURATION, this.store, null, eventDispatcher,
+        LoggerFactory.getLogger(Ehcache.class + "-" + "EhcacheBasicRemoveIfTest"));
+    ehcache.init();
+    assertThat("cache not initialized", ehcache.getStatus(), is(Status.AVAILABLE));
+    this.spiedResilienceStrategy = this.setResilienceStrategySpy(ehcache);
+    return ehcache;
+  }
+}
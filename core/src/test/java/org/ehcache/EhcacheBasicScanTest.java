@@ -0,0 +1,265 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.ehcache;
+
+import org.ehcache.exceptions.CacheAccessException;
+import org.ehcache.exceptions.CacheIterationException;
+import org.ehcache.function.Function;
+import org.ehcache.spi.cache.Store;
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Provides testing of the {@link Ehcache#scan(Function, Executor, boolean)} operation.
+ */
+public class EhcacheBasicScanTest extends EhcacheBasicCrudBase {
+
+  private static final Executor CALLER_RUNS = new Executor() {
+    @Override
+    public void execute(Runnable command) {
+      command.run();
+    }
+  };
+
+  @Test
+  public void testScanNullFunction() throws Exception {
+    this.store = new FakeStore(Collections.<String, String>emptyMap());
+    final Ehcache<String, String> ehcache = this.getEhcache();
+    try {
+      ehcache.scan(null, CALLER_RUNS, true);
+      fail();
+    } catch (NullPointerException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testScanNullExecutor() throws Exception {
+    this.store = new FakeStore(Collections.<String, String>emptyMap());
+    final Ehcache<String, String> ehcache = this.getEhcache();
+    try {
+      ehcache.scan(new Collector(), null, true);
+      fail();
+    } catch (NullPointerException e) {
+      // expected
+    }
+  }
+
+  /**
+   * A store that cannot be partitioned is visited as a single partition.
+   */
+  @Test
+  public void testScanUnpartitionedStore() throws Exception {
+    this.store = new FakeStore(getTestStoreEntries(0, 16));
+    final Ehcache<String, String> ehcache = this.getEhcache();
+
+    final CountingExecutor executor = new CountingExecutor(CALLER_RUNS);
+    final Collector collector = new Collector();
+    ehcache.scan(collector, executor, true);
+
+    assertThat(collector.visited, equalTo(getTestStoreEntries(0, 16)));
+    assertThat(executor.executions.get(), is(1));
+  }
+
+  /**
+   * A store that cannot be partitioned cannot be iterated without recording access.
+   */
+  @Test
+  public void testScanUnpartitionedStoreWithoutRecordingAccess() throws Exception {
+    this.store = new FakeStore(getTestStoreEntries(0, 16));
+    final Ehcache<String, String> ehcache = this.getEhcache();
+
+    final CountingExecutor executor = new CountingExecutor(CALLER_RUNS);
+    final Collector collector = new Collector();
+    try {
+      ehcache.scan(collector, executor, false);
+      fail();
+    } catch (UnsupportedOperationException e) {
+      // expected
+    }
+
+    assertThat(collector.visited.isEmpty(), is(true));
+    assertThat(executor.executions.get(), is(0));
+  }
+
+  @Test
+  public void testScanPartitionedStore() throws Exception {
+    this.store = this.getPartitionedStore(false, 0, 10, 20, 30);
+    final Ehcache<String, String> ehcache = this.getEhcache();
+
+    final ExecutorService executorService = Executors.newFixedThreadPool(3);
+    try {
+      final CountingExecutor executor = new CountingExecutor(executorService);
+      final Collector collector = new Collector();
+      ehcache.scan(collector, executor, false);
+
+      assertThat(collector.visited, equalTo(getTestStoreEntries(0, 30)));
+      assertThat(executor.executions.get(), is(3));
+    } finally {
+      executorService.shutdownNow();
+    }
+  }
+
+  /**
+   * Partitions rejected by the executor are visited by the calling thread.
+   */
+  @Test
+  public void testScanRejectingExecutor() throws Exception {
+    this.store = this.getPartitionedStore(true, 0, 10, 20);
+    final Ehcache<String, String> ehcache = this.getEhcache();
+
+    final Collector collector = new Collector();
+    ehcache.scan(collector, new Executor() {
+      @Override
+      public void execute(Runnable command) {
+        throw new RejectedExecutionException();
+      }
+    }, true);
+
+    assertThat(collector.visited, equalTo(getTestStoreEntries(0, 20)));
+  }
+
+  @Test
+  public void testScanFunctionFailure() throws Exception {
+    this.store = this.getPartitionedStore(true, 0, 10, 20);
+    final Ehcache<String, String> ehcache = this.getEhcache();
+
+    final AtomicInteger applied = new AtomicInteger();
+    try {
+      ehcache.scan(new Function<Cache.Entry<String, String>, Object>() {
+        @Override
+        public Object apply(Cache.Entry<String, String> entry) {
+          if (applied.incrementAndGet() == 5) {
+            throw new IllegalStateException("boom");
+          }
+          return null;
+        }
+      }, CALLER_RUNS, true);
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e.getMessage(), is("boom"));
+    }
+    assertThat(applied.get(), lessThan(20));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testScanCacheAccessException() throws Exception {
+    final FakeStore failing = new FakeStore(getTestStoreEntries(10, 20), Collections.singleton("key15"));
+    final FakeStore healthy = new FakeStore(getTestStoreEntries(0, 10));
+    this.store = mock(Store.class, withSettings().extraInterfaces(Store.Partitioned.class));
+    doReturn(Arrays.asList(healthy.iterator(), failing.iterator()))
+        .when((Store.Partitioned<String, String>) this.store).partitionIterators(true);
+    final Ehcache<String, String> ehcache = this.getEhcache();
+
+    final Collector collector = new Collector();
+    try {
+      ehcache.scan(collector, CALLER_RUNS, true);
+      fail();
+    } catch (CacheIterationException e) {
+      // expected
+    }
+
+    verify(this.spiedResilienceStrategy).iteratorFailure(any(CacheAccessException.class));
+    for (Map.Entry<String, String> entry : getTestStoreEntries(0, 10).entrySet()) {
+      assertThat(collector.visited.get(entry.getKey()), is(entry.getValue()));
+    }
+  }
+
+  /**
+   * Gets a partitioned store whose partitions hold the test entries between consecutive bounds.
+   */
+  @SuppressWarnings("unchecked")
+  private Store<String, String> getPartitionedStore(boolean recordAccess, int... bounds) throws Exception {
+    final List<Store.Iterator<Cache.Entry<String, Store.ValueHolder<String>>>> iterators =
+        new ArrayList<Store.Iterator<Cache.Entry<String, Store.ValueHolder<String>>>>();
+    for (int i = 1; i < bounds.length; i++) {
+      iterators.add(new FakeStore(getTestStoreEntries(bounds[i - 1], bounds[i])).iterator());
+    }
+    final Store<String, String> partitionedStore = mock(Store.class, withSettings().extraInterfaces(Store.Partitioned.class));
+    doReturn(iterators).when((Store.Partitioned<String, String>) partitionedStore).partitionIterators(recordAccess);
+    return partitionedStore;
+  }
+
+  private static Map<String, String> getTestStoreEntries(int from, int to) {
+    final Map<String, String> storeEntries = new HashMap<String, String>();
+    for (int i = from; i < to; i++) {
+      storeEntries.put("key" + i, "value" + i);
+    }
+    return storeEntries;
+  }
+
+  private Ehcache<String, String> getEhcache() throws Exception {
+    final Ehcache<String, String> ehcache = new Ehcache<String, String>(CACHE_CONFIGURATION, this.store, LoggerFactory.getLogger(Ehcache.class + "-" + "EhcacheBasicScanTest"));
+    ehcache.init();
+    assertThat("cache not initialized", ehcache.getStatus(), is(Status.AVAILABLE));
+    this.spiedResilienceStrategy = this.setResilienceStrategySpy(ehcache);
+    return ehcache;
+  }
+
+  private static final class Collector implements Function<Cache.Entry<String, String>, Object> {
+    private final ConcurrentMap<String, String> visited = new ConcurrentHashMap<String, String>();
+
+    @Override
+    public Object apply(Cache.Entry<String, String> entry) {
+      assertThat(visited.put(entry.getKey(), entry.getValue()), is(nullValue()));
+      return null;
+    }
+  }
+
+  private static final class CountingExecutor implements Executor {
+    private final Executor delegate;
+    private final AtomicInteger executions = new AtomicInteger();
+
+    private CountingExecutor(Executor delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+      executions.incrementAndGet();
+      delegate.execute(command);
+    }
+  }
+}
@@ -17,6 +17,7 @@
 package org.ehcache;
 
 import org.ehcache.config.CacheConfiguration;
+import org.ehcache.config.loaderwriter.WriteCoalescingConfiguration;
 import org.ehcache.expiry.Expiry;
 import org.ehcache.function.Function;
 import org.ehcache.spi.cache.Store;
@@ -29,6 +30,8 @@ import org.mockito.stubbing.Answer;
 import org.slf4j.LoggerFactory;
 
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
@@ -43,6 +46,7 @@ import static org.junit.Assert.assertThat;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.argThat;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -100,6 +104,33 @@ public class EhcacheBulkMethodsTest {
   }
   
 
+  @Test
+  public void testPutAllWithWriterInChunks() throws Exception {
+    Store<Number, CharSequence> store = mock(Store.class);
+    when(store.bulkCompute((Set<? extends Number>) argThat(hasItems(1, 2, 3)), any(Function.class))).thenAnswer(new Answer<Object>() {
+      @Override
+      public Object answer(InvocationOnMock invocation) throws Throwable {
+        Function function = (Function)invocation.getArguments()[1];
+        function.apply(Arrays.asList(entry(1, "one"), entry(2, "two"), entry(3, "three")));
+        return null;
+      }
+    });
+    CacheLoaderWriter<Number, CharSequence> cacheLoaderWriter = mock(CacheLoaderWriter.class);
+
+    Ehcache<Number, CharSequence> ehcache = new Ehcache<Number, CharSequence>(writeChunkingConfig(2), store, cacheLoaderWriter, LoggerFactory.getLogger(Ehcache.class + "-" + "EhcacheBulkMethodsTest6"));
+    ehcache.init();
+
+    ehcache.putAll(new LinkedHashMap<Number, CharSequence>() {{
+      put(1, "one");
+      put(2, "two");
+      put(3, "three");
+    }});
+
+    verify(cacheLoaderWriter, times(2)).writeAll(any(Iterable.class));
+    verify(cacheLoaderWriter).writeAll(argThat(hasItems(entry(1, "one"), entry(2, "two"))));
+    verify(cacheLoaderWriter).writeAll(argThat(hasItems(entry(3, "three"))));
+  }
+
   @Test
   public void testGetAll() throws Exception {
     Store<Number, CharSequence> store = mock(Store.class);
@@ -186,6 +217,35 @@ public class EhcacheBulkMethodsTest {
     verify(cacheLoaderWriter).deleteAll(argThat(hasItems(1, 2, 3)));
   }
 
+  @Test
+  public void testRemoveAllWithWriterInChunks() throws Exception {
+    Store<Number, CharSequence> store = mock(Store.class);
+    when(store.bulkCompute((Set<? extends Number>) argThat(hasItems(1, 2, 3)), any(Function.class))).thenAnswer(new Answer<Object>() {
+      @Override
+      public Object answer(InvocationOnMock invocation) throws Throwable {
+        Function function = (Function)invocation.getArguments()[1];
+        function.apply(Arrays.asList(entry(1, "one"), entry(2, "two"), entry(3, "three")));
+        return null;
+      }
+    });
+    CacheLoaderWriter<Number, CharSequence> cacheLoaderWriter = mock(CacheLoaderWriter.class);
+
+    Ehcache<Number, CharSequence> ehcache = new Ehcache<Number, CharSequence>(writeChunkingConfig(2), store, cacheLoaderWriter, LoggerFactory.getLogger(Ehcache.class + "-" + "EhcacheBulkMethodsTest7"));
+    ehcache.init();
+    ehcache.removeAll(new LinkedHashSet<Number>(Arrays.asList(1, 2, 3)));
+
+    verify(cacheLoaderWriter, times(2)).deleteAll(any(Iterable.class));
+    verify(cacheLoaderWriter).deleteAll(argThat(hasItems(1, 2)));
+    verify(cacheLoaderWriter).deleteAll(argThat(hasItems(3)));
+  }
+
+  private CacheConfiguration<Number, CharSequence> writeChunkingConfig(int maxBatchSize) {
+    CacheConfiguration<Number, CharSequence> config = mock(CacheConfiguration.class);
+    when(config.getExpiry()).thenReturn(mock(Expiry.class));
+    when(config.getServiceConfigurations()).thenReturn((Collection) Collections.singleton(new WriteCoalescingConfiguration(maxBatchSize)));
+    return config;
+  }
+
 
   private static <K, V> Map.Entry<? extends K, ? extends V> entry(final K key, final V value) {
     return new Map.Entry<K, V>() {
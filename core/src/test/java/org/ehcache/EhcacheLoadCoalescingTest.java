@@ -0,0 +1,109 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.ehcache;
+
+import org.ehcache.config.CacheConfiguration;
+import org.ehcache.config.CacheConfigurationBuilder;
+import org.ehcache.config.loaderwriter.LoadCoalescingConfiguration;
+import org.ehcache.exceptions.CacheLoadingException;
+import org.ehcache.expiry.Duration;
+import org.ehcache.spi.loaderwriter.CacheLoaderWriter;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Provides testing of an {@code Ehcache} loading through a {@link LoaderGateway}.
+ */
+public class EhcacheLoadCoalescingTest extends EhcacheBasicCrudBase {
+
+  @Mock
+  protected CacheLoaderWriter<String, String> cacheLoaderWriter;
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testGetLoadsThroughBatch() throws Exception {
+    final FakeStore fakeStore = new FakeStore(Collections.<String, String>emptyMap());
+    this.store = spy(fakeStore);
+    when(this.cacheLoaderWriter.loadAll(any(Iterable.class))).thenReturn(Collections.singletonMap("key", "value"));
+    final Ehcache<String, String> ehcache = this.getEhcache(CacheConfigurationBuilder.newCacheConfigurationBuilder()
+        .add(new LoadCoalescingConfiguration(1, new Duration(1, TimeUnit.MILLISECONDS)))
+        .buildConfig(String.class, String.class));
+
+    assertThat(ehcache.get("key"), is("value"));
+    assertThat(fakeStore.getEntryMap().get("key"), is("value"));
+    verify(this.cacheLoaderWriter).loadAll(Collections.singleton("key"));
+    verify(this.cacheLoaderWriter, never()).load(any(String.class));
+  }
+
+  @Test
+  public void testGetAllLoadsThroughGateway() throws Exception {
+    this.store = spy(new FakeStore(Collections.<String, String>emptyMap()));
+    when(this.cacheLoaderWriter.loadAll(Collections.singleton("a"))).thenReturn(Collections.singletonMap("a", "value"));
+    when(this.cacheLoaderWriter.loadAll(Collections.singleton("b"))).thenReturn(Collections.<String, String>emptyMap());
+    final Ehcache<String, String> ehcache = this.getEhcache(CacheConfigurationBuilder.newCacheConfigurationBuilder()
+        .add(new LoadCoalescingConfiguration(2))
+        .buildConfig(String.class, String.class));
+
+    Map<String, String> result = ehcache.getAll(new HashSet<String>(asList("a", "b")));
+    assertThat(result.get("a"), is("value"));
+    assertThat(result.containsKey("b"), is(true));
+    assertThat(result.get("b") == null, is(true));
+  }
+
+  @Test
+  public void testGetLoaderFailure() throws Exception {
+    this.store = spy(new FakeStore(Collections.<String, String>emptyMap()));
+    final Exception failure = new Exception("boom");
+    when(this.cacheLoaderWriter.load("key")).thenThrow(failure);
+    final Ehcache<String, String> ehcache = this.getEhcache(CacheConfigurationBuilder.newCacheConfigurationBuilder()
+        .add(new LoadCoalescingConfiguration(1))
+        .buildConfig(String.class, String.class));
+
+    try {
+      ehcache.get("key");
+      fail("expected CacheLoadingException");
+    } catch (CacheLoadingException e) {
+      assertThat(e.getCause(), sameInstance((Throwable) failure));
+    }
+  }
+
+  private Ehcache<String, String> getEhcache(final CacheConfiguration<String, String> configuration) {
+    final Ehcache<String, String> ehcache = new Ehcache<String, String>(configuration, this.store, this.cacheLoaderWriter, LoggerFactory.getLogger(Ehcache.class + "-" + "EhcacheLoadCoalescingTest"));
+    ehcache.init();
+    assertThat("cache not initialized", ehcache.getStatus(), is(Status.AVAILABLE));
+    this.spiedResilienceStrategy = this.setResilienceStrategySpy(ehcache);
+    return ehcache;
+  }
+}
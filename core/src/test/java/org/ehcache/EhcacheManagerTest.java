@@ -48,10 +48,14 @@ import org.mockito.Mockito;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
 
 import static org.ehcache.config.CacheConfigurationBuilder.newCacheConfigurationBuilder;
 import static org.ehcache.config.ConfigurationBuilder.newConfigurationBuilder;
@@ -428,7 +432,7 @@ public class EhcacheManagerTest {
         .addCache("foo", cacheConfiguration)
         .addCache("bar", cacheConfiguration)
         .addCache("foobar", cacheConfiguration)
-        .build(), services) {
+        .build(), services, true, 1) {
 
       @Override
       <K, V> Ehcache<K, V> createNewEhcache(final String alias, final CacheConfiguration<K, V> config,
@@ -479,7 +483,7 @@ public class EhcacheManagerTest {
         .addCache("foo", cacheConfiguration)
         .addCache("bar", cacheConfiguration)
         .addCache("foobar", cacheConfiguration)
-        .build(), services) {
+        .build(), services, true, 1) {
 
       @Override
       <K, V> Ehcache<K, V> createNewEhcache(final String alias, final CacheConfiguration<K, V> config,
@@ -510,6 +514,101 @@ public class EhcacheManagerTest {
     assertThat(caches.contains("foobar"), is(true));
   }
 
+  @Test
+  public void testInitsAndClosesCachesConcurrently() throws Exception {
+    final CacheConfiguration<Object, Object> cacheConfiguration = newCacheConfigurationBuilder().buildConfig(Object.class, Object.class);
+    final Store.Provider storeProvider = mock(Store.Provider.class);
+    when(storeProvider.createStore(Matchers.<Store.Configuration>anyObject())).thenReturn(mock(Store.class));
+    final CacheEventDispatcherFactory cenlProvider = mock(CacheEventDispatcherFactory.class);
+    when(cenlProvider.createCacheEventDispatcher(any(Store.class))).thenReturn(mock(CacheEventDispatcherImpl.class));
+    final Collection<Service> services = getServices(storeProvider, cenlProvider);
+    final CyclicBarrier created = new CyclicBarrier(3);
+    final CyclicBarrier closed = new CyclicBarrier(3);
+    final Set<String> threads = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    EhcacheManager cacheManager = new EhcacheManager(newConfigurationBuilder()
+        .addCache("foo", cacheConfiguration)
+        .addCache("bar", cacheConfiguration)
+        .addCache("foobar", cacheConfiguration)
+        .build(), services, true, 3) {
+
+      @Override
+      <K, V> Ehcache<K, V> createNewEhcache(final String alias, final CacheConfiguration<K, V> config,
+                                            final Class<K> keyType, final Class<V> valueType) {
+        threads.add(Thread.currentThread().getName());
+        await(created);
+        return super.createNewEhcache(alias, config, keyType, valueType);
+      }
+
+      @Override
+      void closeEhcache(final String alias, final Ehcache<?, ?> ehcache) {
+        await(closed);
+        super.closeEhcache(alias, ehcache);
+      }
+    };
+
+    cacheManager.init();
+    assertThat(cacheManager.getStatus(), is(Status.AVAILABLE));
+    assertThat(threads.size(), is(3));
+    assertThat(threads.contains(Thread.currentThread().getName()), is(false));
+    assertNotNull(cacheManager.getCache("foo", Object.class, Object.class));
+    assertNotNull(cacheManager.getCache("bar", Object.class, Object.class));
+    assertNotNull(cacheManager.getCache("foobar", Object.class, Object.class));
+
+    cacheManager.close();
+    assertThat(cacheManager.getStatus(), is(Status.UNINITIALIZED));
+  }
+
+  @Test
+  public void testClosesConcurrentlyStartedCachesDownWhenInitThrows() {
+    final Set<String> caches = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    final CacheConfiguration<Object, Object> cacheConfiguration = newCacheConfigurationBuilder().buildConfig(Object.class, Object.class);
+    final Store.Provider storeProvider = mock(Store.Provider.class);
+    when(storeProvider.createStore(Matchers.<Store.Configuration>anyObject())).thenReturn(mock(Store.class));
+    final CacheEventDispatcherFactory cenlProvider = mock(CacheEventDispatcherFactory.class);
+    when(cenlProvider.createCacheEventDispatcher(any(Store.class))).thenReturn(mock(CacheEventDispatcherImpl.class));
+    final Collection<Service> services = getServices(storeProvider, cenlProvider);
+    final RuntimeException thrown = new RuntimeException();
+    EhcacheManager cacheManager = new EhcacheManager(newConfigurationBuilder()
+        .addCache("foo", cacheConfiguration)
+        .addCache("bar", cacheConfiguration)
+        .addCache("foobar", cacheConfiguration)
+        .addCache("barfoo", cacheConfiguration)
+        .build(), services, true, 2) {
+
+      @Override
+      <K, V> Ehcache<K, V> createNewEhcache(final String alias, final CacheConfiguration<K, V> config,
+                                            final Class<K> keyType, final Class<V> valueType) {
+        if (alias.equals("bar")) {
+          throw thrown;
+        }
+        final Ehcache<K, V> ehcache = super.createNewEhcache(alias, config, keyType, valueType);
+        caches.add(alias);
+        return ehcache;
+      }
+
+      @Override
+      void closeEhcache(final String alias, final Ehcache<?, ?> ehcache) {
+        super.closeEhcache(alias, ehcache);
+        caches.remove(alias);
+      }
+    };
+
+    try {
+      cacheManager.init();
+      fail();
+    } catch (StateTransitionException e) {
+      assertThat(cacheManager.getStatus(), is(Status.UNINITIALIZED));
+      assertThat(e.getCause().getMessage(), is("Cache 'bar' creation in EhcacheManager failed."));
+      assertThat(e.getCause().getCause(), CoreMatchers.<Throwable>sameInstance(thrown));
+    }
+    assertThat(caches.isEmpty(), is(true));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRejectsNonPositiveCacheLifecycleParallelism() {
+    new EhcacheManager(newConfigurationBuilder().build(), getServices(null, null), true, 0);
+  }
+
   @Test
   public void testDoesNotifyAboutLifecycle() {
     EhcacheManager cacheManager = new EhcacheManager(newConfigurationBuilder()
@@ -668,6 +767,14 @@ public class EhcacheManagerTest {
     }
   }
 
+  private static void await(CyclicBarrier barrier) {
+    try {
+      barrier.await(10, TimeUnit.SECONDS);
+    } catch (Exception e) {
+      throw new AssertionError(e);
+    }
+  }
+
   private Collection<Service> getServices(Store.Provider storeProvider, CacheEventDispatcherFactory cenlProvider) {
     return getServices(mock(CacheLoaderWriterProvider.class), mock(WriteBehindProvider.class),
         storeProvider != null ? storeProvider : mock(Store.Provider.class),
@@ -0,0 +1,176 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache;
+
+import org.ehcache.config.CacheConfiguration;
+import org.ehcache.config.CacheConfigurationBuilder;
+import org.ehcache.config.loaderwriter.NegativeCachingConfiguration;
+import org.ehcache.expiry.Duration;
+import org.ehcache.internal.TimeSource;
+import org.ehcache.spi.loaderwriter.CacheLoaderWriter;
+import org.ehcache.statistics.BulkOps;
+import org.ehcache.statistics.CacheOperationOutcomes;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Provides testing of the negative caching of loader misses by an {@code Ehcache}.
+ */
+public class EhcacheNegativeCachingTest extends EhcacheBasicCrudBase {
+
+  private static final CacheConfiguration<String, String> NEGATIVE_CACHING_CONFIGURATION =
+      CacheConfigurationBuilder.newCacheConfigurationBuilder()
+          .add(new NegativeCachingConfiguration(new Duration(1, TimeUnit.HOURS)))
+          .buildConfig(String.class, String.class);
+
+  @Mock
+  protected CacheLoaderWriter<String, String> cacheLoaderWriter;
+
+  private long now = 0;
+
+  private final TimeSource timeSource = new TimeSource() {
+    @Override
+    public long getTimeMillis() {
+      return now;
+    }
+  };
+
+  @Test
+  public void testGetRemembersLoaderMiss() throws Exception {
+    final FakeStore fakeStore = new FakeStore(Collections.<String, String>emptyMap());
+    this.store = spy(fakeStore);
+    final Ehcache<String, String> ehcache = this.getEhcache(NEGATIVE_CACHING_CONFIGURATION);
+
+    assertThat(ehcache.get("key"), is(nullValue()));
+    assertThat(ehcache.get("key"), is(nullValue()));
+
+    verify(this.cacheLoaderWriter, times(1)).load(eq("key"));
+    assertThat(fakeStore.getEntryMap().containsKey("key"), is(false));
+    validateStats(ehcache, EnumSet.of(CacheOperationOutcomes.GetOutcome.MISS_WITH_LOADER, CacheOperationOutcomes.GetOutcome.NEGATIVE_HIT));
+    validateStats(ehcache, EnumSet.of(CacheOperationOutcomes.CacheLoadingOutcome.SUCCESS));
+  }
+
+  @Test
+  public void testLoaderMissExpiresOnCacheTimeSource() throws Exception {
+    this.store = spy(new FakeStore(Collections.<String, String>emptyMap()));
+    final Ehcache<String, String> ehcache = this.getEhcache(NEGATIVE_CACHING_CONFIGURATION);
+
+    assertThat(ehcache.get("key"), is(nullValue()));
+    now = TimeUnit.HOURS.toMillis(1) - 1;
+    assertThat(ehcache.get("key"), is(nullValue()));
+    verify(this.cacheLoaderWriter, times(1)).load(eq("key"));
+
+    now = TimeUnit.HOURS.toMillis(1);
+    assertThat(ehcache.get("key"), is(nullValue()));
+    verify(this.cacheLoaderWriter, times(2)).load(eq("key"));
+  }
+
+  @Test
+  public void testGetWithoutNegativeCachingCallsLoaderEveryTime() throws Exception {
+    this.store = spy(new FakeStore(Collections.<String, String>emptyMap()));
+    final Ehcache<String, String> ehcache = this.getEhcache(CACHE_CONFIGURATION);
+
+    assertThat(ehcache.get("key"), is(nullValue()));
+    assertThat(ehcache.get("key"), is(nullValue()));
+
+    verify(this.cacheLoaderWriter, times(2)).load(eq("key"));
+  }
+
+  @Test
+  public void testPutForgetsLoaderMiss() throws Exception {
+    final FakeStore fakeStore = new FakeStore(Collections.<String, String>emptyMap());
+    this.store = spy(fakeStore);
+    final Ehcache<String, String> ehcache = this.getEhcache(NEGATIVE_CACHING_CONFIGURATION);
+
+    assertThat(ehcache.get("key"), is(nullValue()));
+    ehcache.put("key", "value");
+    verify(this.cacheLoaderWriter).write("key", "value");
+
+    // the mapping leaves the store, the loader has to be asked again
+    this.store.remove("key");
+    when(this.cacheLoaderWriter.load("key")).thenReturn("value");
+    assertThat(ehcache.get("key"), is("value"));
+    verify(this.cacheLoaderWriter, times(2)).load(eq("key"));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testGetAllRemembersLoaderMisses() throws Exception {
+    final FakeStore fakeStore = new FakeStore(Collections.<String, String>emptyMap());
+    this.store = spy(fakeStore);
+    when(this.cacheLoaderWriter.loadAll(any(Iterable.class))).thenReturn(Collections.emptyMap());
+    final Ehcache<String, String> ehcache = this.getEhcache(NEGATIVE_CACHING_CONFIGURATION);
+
+    Map<String, String> expected = new HashMap<String, String>();
+    expected.put("a", null);
+    expected.put("b", null);
+    assertThat(ehcache.getAll(new HashSet<String>(asList("a", "b"))), is(expected));
+    assertThat(ehcache.getAll(new HashSet<String>(asList("a", "b"))), is(expected));
+
+    verify(this.cacheLoaderWriter).loadAll(Collections.singleton("a"));
+    verify(this.cacheLoaderWriter).loadAll(Collections.singleton("b"));
+    assertThat(ehcache.getBulkMethodEntries().get(BulkOps.GET_ALL_MISS).intValue(), is(2));
+    assertThat(ehcache.getBulkMethodEntries().get(BulkOps.GET_ALL_NEGATIVE_HITS).intValue(), is(2));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testGetAllOnlyLoadsKeysNotKnownAbsent() throws Exception {
+    this.store = spy(new FakeStore(Collections.<String, String>emptyMap()));
+    when(this.cacheLoaderWriter.loadAll(any(Iterable.class))).thenReturn(Collections.singletonMap("b", "value"));
+    final Ehcache<String, String> ehcache = this.getEhcache(NEGATIVE_CACHING_CONFIGURATION);
+
+    assertThat(ehcache.get("a"), is(nullValue()));
+    Map<String, String> expected = new HashMap<String, String>();
+    expected.put("a", null);
+    expected.put("b", "value");
+    assertThat(ehcache.getAll(new HashSet<String>(asList("a", "b"))), is(expected));
+
+    verify(this.cacheLoaderWriter, times(1)).loadAll(any(Iterable.class));
+    verify(this.cacheLoaderWriter).loadAll(Collections.singleton("b"));
+    assertThat(ehcache.getBulkMethodEntries().get(BulkOps.GET_ALL_NEGATIVE_HITS).intValue(), is(1));
+    assertThat(ehcache.getBulkMethodEntries().get(BulkOps.GET_ALL_HITS).intValue(), is(1));
+  }
+
+  private Ehcache<String, String> getEhcache(final CacheConfiguration<String, String> configuration) {
+    final Ehcache<String, String> ehcache = new Ehcache<String, String>(configuration, this.store, this.cacheLoaderWriter, null, true, timeSource,
+        LoggerFactory.getLogger(Ehcache.class + "-" + "EhcacheNegativeCachingTest"));
+    ehcache.init();
+    assertThat("cache not initialized", ehcache.getStatus(), is(Status.AVAILABLE));
+    this.spiedResilienceStrategy = this.setResilienceStrategySpy(ehcache);
+    return ehcache;
+  }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.ehcache;
+
+import org.ehcache.config.CacheConfiguration;
+import org.ehcache.config.CacheConfigurationBuilder;
+import org.ehcache.config.loaderwriter.WriteCoalescingConfiguration;
+import org.ehcache.exceptions.CacheWritingException;
+import org.ehcache.expiry.Duration;
+import org.ehcache.spi.loaderwriter.CacheLoaderWriter;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Provides testing of an {@code Ehcache} writing through a {@link WriteGateway}.
+ */
+public class EhcacheWriteCoalescingTest extends EhcacheBasicCrudBase {
+
+  private static final CacheConfiguration<String, String> WRITE_COALESCING_CONFIGURATION =
+      CacheConfigurationBuilder.newCacheConfigurationBuilder()
+          .add(new WriteCoalescingConfiguration(16, new Duration(1, TimeUnit.MILLISECONDS)))
+          .buildConfig(String.class, String.class);
+
+  @Mock
+  protected CacheLoaderWriter<String, String> cacheLoaderWriter;
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testPutWritesThroughBatch() throws Exception {
+    final FakeStore fakeStore = new FakeStore(Collections.<String, String>emptyMap());
+    this.store = spy(fakeStore);
+    final Ehcache<String, String> ehcache = this.getEhcache(WRITE_COALESCING_CONFIGURATION);
+
+    ehcache.put("key", "value");
+
+    assertThat(fakeStore.getEntryMap().get("key"), is("value"));
+    verify(this.cacheLoaderWriter).writeAll(any(Iterable.class));
+    verify(this.cacheLoaderWriter, never()).write(any(String.class), any(String.class));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testRemoveDeletesThroughBatch() throws Exception {
+    final FakeStore fakeStore = new FakeStore(Collections.singletonMap("key", "value"));
+    this.store = spy(fakeStore);
+    final Ehcache<String, String> ehcache = this.getEhcache(WRITE_COALESCING_CONFIGURATION);
+
+    ehcache.remove("key");
+
+    assertThat(fakeStore.getEntryMap().containsKey("key"), is(false));
+    verify(this.cacheLoaderWriter).deleteAll(Collections.singleton("key"));
+    verify(this.cacheLoaderWriter, never()).delete(any(String.class));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testPutWriterFailure() throws Exception {
+    final FakeStore fakeStore = new FakeStore(Collections.<String, String>emptyMap());
+    this.store = spy(fakeStore);
+    final Exception failure = new Exception("boom");
+    doThrow(failure).when(this.cacheLoaderWriter).writeAll(any(Iterable.class));
+    final Ehcache<String, String> ehcache = this.getEhcache(WRITE_COALESCING_CONFIGURATION);
+
+    try {
+      ehcache.put("key", "value");
+      fail("expected CacheWritingException");
+    } catch (CacheWritingException e) {
+      assertThat(e.getCause(), sameInstance((Throwable) failure));
+    }
+    assertThat(fakeStore.getEntryMap().containsKey("key"), is(false));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testPutAllWritesWithoutWaitingForBatchWindow() throws Exception {
+    final FakeStore fakeStore = new FakeStore(Collections.<String, String>emptyMap());
+    this.store = spy(fakeStore);
+    final Ehcache<String, String> ehcache = this.getEhcache(CacheConfigurationBuilder.newCacheConfigurationBuilder()
+        .add(new WriteCoalescingConfiguration(64, new Duration(5, TimeUnit.SECONDS)))
+        .buildConfig(String.class, String.class));
+
+    final Map<String, String> entries = new HashMap<String, String>();
+    for (int i = 0; i < 16; i++) {
+      entries.put("key" + i, "value" + i);
+    }
+    final long start = System.nanoTime();
+    ehcache.putAll(entries);
+
+    assertThat(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start) < 5, is(true));
+    assertThat(fakeStore.getEntryMap(), is(entries));
+    verify(this.cacheLoaderWriter, never()).write(any(String.class), any(String.class));
+  }
+
+  private Ehcache<String, String> getEhcache(final CacheConfiguration<String, String> configuration) {
+    final Ehcache<String, String> ehcache = new Ehcache<String, String>(configuration, this.store, this.cacheLoaderWriter, LoggerFactory.getLogger(Ehcache.class + "-" + "EhcacheWriteCoalescingTest"));
+    ehcache.init();
+    assertThat("cache not initialized", ehcache.getStatus(), is(Status.AVAILABLE));
+    this.spiedResilienceStrategy = this.setResilienceStrategySpy(ehcache);
+    return ehcache;
+  }
+}
@@ -0,0 +1,283 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.ehcache;
+
+import org.ehcache.config.loaderwriter.LoadCoalescingConfiguration;
+import org.ehcache.exceptions.BulkCacheLoadingException;
+import org.ehcache.expiry.Duration;
+import org.ehcache.spi.loaderwriter.CacheLoaderWriter;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * Provides testing of the deduplication, limiting and batching of loads by a {@code LoaderGateway}.
+ */
+public class LoaderGatewayTest {
+
+  private final ExecutorService executor = Executors.newCachedThreadPool();
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testConcurrentLoadsOfAKeyShareOneInvocation() throws Exception {
+    final BlockingLoader loader = new BlockingLoader();
+    final LoaderGateway<String, String> gateway = new LoaderGateway<String, String>(loader, new LoadCoalescingConfiguration());
+
+    Future<String> first = executor.submit(load(gateway, "key"));
+    loader.started.await();
+    Future<String> second = executor.submit(load(gateway, "key"));
+    awaitCoalesced(gateway, 1);
+    loader.release.countDown();
+
+    assertThat(first.get(), is("value-key"));
+    assertThat(second.get(), is("value-key"));
+    assertThat(loader.loads.get(), is(1));
+    assertThat(gateway.requests.get(), is(2L));
+    assertThat(gateway.coalesced.get(), is(1L));
+    assertThat(gateway.invocations.get(), is(1L));
+  }
+
+  @Test
+  public void testLoadAllOnlyLoadsKeysNotAlreadyBeingLoaded() throws Exception {
+    final BlockingLoader loader = new BlockingLoader();
+    final LoaderGateway<String, String> gateway = new LoaderGateway<String, String>(loader, new LoadCoalescingConfiguration());
+
+    Future<String> single = executor.submit(load(gateway, "a"));
+    loader.started.await();
+    Future<Map<String, String>> bulk = executor.submit(new Callable<Map<String, String>>() {
+      @Override
+      public Map<String, String> call() throws Exception {
+        return gateway.loadAll(asList("a", "b"));
+      }
+    });
+    while (loader.bulkKeys.isEmpty()) {
+      Thread.sleep(1);
+    }
+    loader.release.countDown();
+
+    assertThat(single.get(), is("value-a"));
+    assertThat(bulk.get().get("a"), is("value-a"));
+    assertThat(bulk.get().get("b"), is("value-b"));
+    assertThat(loader.loads.get(), is(1));
+    assertThat(loader.bulkKeys.get(0), is((Iterable<String>) new HashSet<String>(asList("b"))));
+    assertThat(gateway.coalesced.get(), is(1L));
+  }
+
+  @Test
+  public void testMaxConcurrentLoadsIsEnforced() throws Exception {
+    final AtomicInteger running = new AtomicInteger();
+    final AtomicInteger maxRunning = new AtomicInteger();
+    final CacheLoaderWriter<String, String> loader = new BlockingLoader() {
+      @Override
+      public String load(String key) throws Exception {
+        int now = running.incrementAndGet();
+        int max;
+        while ((max = maxRunning.get()) < now && !maxRunning.compareAndSet(max, now)) {
+          // retry
+        }
+        Thread.sleep(10);
+        running.decrementAndGet();
+        return "value-" + key;
+      }
+    };
+    final LoaderGateway<String, String> gateway = new LoaderGateway<String, String>(loader, new LoadCoalescingConfiguration(2));
+
+    List<Future<String>> futures = new ArrayList<Future<String>>();
+    for (int i = 0; i < 8; i++) {
+      futures.add(executor.submit(load(gateway, "key" + i)));
+    }
+    for (int i = 0; i < 8; i++) {
+      assertThat(futures.get(i).get(), is("value-key" + i));
+    }
+    assertThat(maxRunning.get() <= 2, is(true));
+    assertThat(gateway.invocations.get(), is(8L));
+  }
+
+  @Test
+  public void testSingleKeyLoadsGetBatched() throws Exception {
+    final BlockingLoader loader = new BlockingLoader();
+    loader.release.countDown();
+    final LoaderGateway<String, String> gateway = new LoaderGateway<String, String>(loader,
+        new LoadCoalescingConfiguration(0, new Duration(1, TimeUnit.MINUTES), 3));
+
+    List<Future<String>> futures = new ArrayList<Future<String>>();
+    for (int i = 0; i < 3; i++) {
+      futures.add(executor.submit(load(gateway, "key" + i)));
+    }
+    for (int i = 0; i < 3; i++) {
+      assertThat(futures.get(i).get(5, TimeUnit.SECONDS), is("value-key" + i));
+    }
+    assertThat(loader.loads.get(), is(0));
+    assertThat(loader.bulkKeys.size(), is(1));
+    assertThat(loader.bulkKeys.get(0), is((Iterable<String>) new HashSet<String>(asList("key0", "key1", "key2"))));
+    assertThat(gateway.invocations.get(), is(1L));
+  }
+
+  @Test
+  public void testBatchIsLoadedOnceTheWindowElapsed() throws Exception {
+    final BlockingLoader loader = new BlockingLoader();
+    loader.release.countDown();
+    final LoaderGateway<String, String> gateway = new LoaderGateway<String, String>(loader,
+        new LoadCoalescingConfiguration(0, new Duration(10, TimeUnit.MILLISECONDS)));
+
+    assertThat(gateway.load("key"), is("value-key"));
+    assertThat(loader.bulkKeys.size(), is(1));
+  }
+
+  @Test
+  public void testFailureIsSharedByAllReaders() throws Exception {
+    final Exception failure = new Exception("boom");
+    final BlockingLoader loader = new BlockingLoader() {
+      @Override
+      public String load(String key) throws Exception {
+        super.load(key);
+        throw failure;
+      }
+    };
+    final LoaderGateway<String, String> gateway = new LoaderGateway<String, String>(loader, new LoadCoalescingConfiguration());
+
+    Future<String> first = executor.submit(load(gateway, "key"));
+    loader.started.await();
+    Future<String> second = executor.submit(load(gateway, "key"));
+    awaitCoalesced(gateway, 1);
+    loader.release.countDown();
+
+    List<Future<String>> futures = new ArrayList<Future<String>>();
+    futures.add(first);
+    futures.add(second);
+    for (Future<String> future : futures) {
+      try {
+        future.get();
+        fail("expected failure");
+      } catch (ExecutionException e) {
+        assertThat(e.getCause(), sameInstance((Throwable) failure));
+      }
+    }
+  }
+
+  @Test
+  public void testLoadAllReportsPartialFailures() throws Exception {
+    final Exception failure = new Exception("boom");
+    final BlockingLoader loader = new BlockingLoader() {
+      @Override
+      public Map<String, String> loadAll(Iterable<? extends String> keys) throws Exception {
+        throw new BulkCacheLoadingException(Collections.singletonMap("b", failure), Collections.singletonMap("a", "value-a"));
+      }
+    };
+    final LoaderGateway<String, String> gateway = new LoaderGateway<String, String>(loader, new LoadCoalescingConfiguration());
+
+    try {
+      gateway.loadAll(asList("a", "b"));
+      fail("expected failure");
+    } catch (BulkCacheLoadingException bcle) {
+      assertThat(bcle.getSuccesses().get("a"), is((Object) "value-a"));
+      assertThat(bcle.getFailures().get("b"), instanceOf(Exception.class));
+      assertThat(bcle.getFailures().get("b"), sameInstance(failure));
+    }
+  }
+
+  private static Callable<String> load(final LoaderGateway<String, String> gateway, final String key) {
+    return new Callable<String>() {
+      @Override
+      public String call() throws Exception {
+        return gateway.load(key);
+      }
+    };
+  }
+
+  private static void awaitCoalesced(LoaderGateway<?, ?> gateway, long count) throws InterruptedException {
+    while (gateway.coalesced.get() < count) {
+      Thread.sleep(1);
+    }
+  }
+
+  private static class BlockingLoader implements CacheLoaderWriter<String, String> {
+
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final AtomicInteger loads = new AtomicInteger();
+    final List<Iterable<String>> bulkKeys = new CopyOnWriteArrayList<Iterable<String>>();
+
+    @Override
+    public String load(String key) throws Exception {
+      loads.incrementAndGet();
+      started.countDown();
+      release.await();
+      return "value-" + key;
+    }
+
+    @Override
+    public Map<String, String> loadAll(Iterable<? extends String> keys) throws Exception {
+      bulkKeys.add(new HashSet<String>((Collection<? extends String>) keys));
+      started.countDown();
+      release.await();
+      Map<String, String> result = new LinkedHashMap<String, String>();
+      for (String key : keys) {
+        result.put(key, "value-" + key);
+      }
+      return result;
+    }
+
+    @Override
+    public void write(String key, String value) throws Exception {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void writeAll(Iterable<? extends Map.Entry<? extends String, ? extends String>> entries) throws Exception {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void delete(String key) throws Exception {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void deleteAll(Iterable<? extends String> keys) throws Exception {
+      throw new UnsupportedOperationException();
+    }
+  }
+}
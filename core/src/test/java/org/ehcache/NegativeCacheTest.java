@@ -0,0 +1,106 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache;
+
+import org.ehcache.config.loaderwriter.NegativeCachingConfiguration;
+import org.ehcache.expiry.Duration;
+import org.ehcache.internal.TimeSource;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class NegativeCacheTest {
+
+  private long now = 0;
+
+  private final TimeSource timeSource = new TimeSource() {
+    @Override
+    public long getTimeMillis() {
+      return now;
+    }
+  };
+
+  @Test
+  public void testAbsenceExpiresAfterTimeToLive() {
+    NegativeCache<String> cache = new NegativeCache<String>(new NegativeCachingConfiguration(new Duration(10, TimeUnit.MILLISECONDS)), timeSource);
+    cache.markAbsent("key");
+    assertThat(cache.isAbsent("key"), is(true));
+
+    now = 9;
+    assertThat(cache.isAbsent("key"), is(true));
+
+    now = 10;
+    assertThat(cache.isAbsent("key"), is(false));
+    assertThat(cache.size(), is(0));
+  }
+
+  @Test
+  public void testOldestAbsencesAreForgottenFirst() {
+    NegativeCache<Integer> cache = new NegativeCache<Integer>(new NegativeCachingConfiguration(new Duration(1, TimeUnit.HOURS), 3), timeSource);
+    for (int i = 0; i < 5; i++) {
+      cache.markAbsent(i);
+      now++;
+    }
+    assertThat(cache.size(), is(3));
+    assertThat(cache.isAbsent(0), is(false));
+    assertThat(cache.isAbsent(1), is(false));
+    assertThat(cache.isAbsent(2), is(true));
+    assertThat(cache.isAbsent(4), is(true));
+  }
+
+  @Test
+  public void testForgottenAbsenceDoesNotCountTowardsCapacity() {
+    NegativeCache<Integer> cache = new NegativeCache<Integer>(new NegativeCachingConfiguration(new Duration(1, TimeUnit.HOURS), 2), timeSource);
+    cache.markAbsent(0);
+    cache.markAbsent(1);
+    cache.forget(0);
+    cache.markAbsent(2);
+    assertThat(cache.size(), is(2));
+    assertThat(cache.isAbsent(1), is(true));
+    assertThat(cache.isAbsent(2), is(true));
+  }
+
+  @Test
+  public void testForgottenAbsencesDoNotGrowTheQueue() {
+    NegativeCache<Integer> cache = new NegativeCache<Integer>(new NegativeCachingConfiguration(new Duration(1, TimeUnit.HOURS), 10), timeSource);
+    for (int i = 0; i < 10000; i++) {
+      cache.markAbsent(i);
+      cache.forget(i);
+      assertThat(cache.queued() <= 20, is(true));
+    }
+    assertThat(cache.size(), is(0));
+  }
+
+  @Test
+  public void testRememberedAgainAbsencesDoNotGrowTheQueue() {
+    NegativeCache<Integer> cache = new NegativeCache<Integer>(new NegativeCachingConfiguration(new Duration(1, TimeUnit.HOURS), 10), timeSource);
+    for (int i = 0; i < 10000; i++) {
+      cache.markAbsent(i % 5);
+      now++;
+      assertThat(cache.queued() <= 20, is(true));
+    }
+    assertThat(cache.size(), is(5));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRejectsEternalTimeToLive() {
+    new NegativeCachingConfiguration(Duration.FOREVER);
+  }
+}
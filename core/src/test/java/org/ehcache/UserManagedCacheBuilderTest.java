@@ -19,6 +19,8 @@ package org.ehcache;
 import org.ehcache.config.CacheRuntimeConfiguration;
 import org.ehcache.config.UserManagedCacheConfiguration;
 import org.ehcache.exceptions.BulkCacheWritingException;
+import org.ehcache.function.Function;
+import org.ehcache.function.Predicate;
 import org.ehcache.spi.ServiceLocator;
 import org.junit.Test;
 import org.slf4j.LoggerFactory;
@@ -26,6 +28,7 @@ import org.slf4j.LoggerFactory;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executor;
 
 import static org.junit.Assert.assertNotNull;
 
@@ -106,6 +109,21 @@ public class UserManagedCacheBuilderTest {
       throw new UnsupportedOperationException("Implement me!");
     }
 
+    @Override
+    public void scan(Function<? super Entry<K, V>, ?> function, Executor executor, boolean recordAccess) {
+      throw new UnsupportedOperationException("Implement me!");
+    }
+
+    @Override
+    public void removeIf(Predicate<? super Entry<K, V>> predicate) {
+      throw new UnsupportedOperationException("Implement me!");
+    }
+
+    @Override
+    public void removeKeysIf(Predicate<? super K> predicate) {
+      throw new UnsupportedOperationException("Implement me!");
+    }
+
     @Override
     public Iterator<Entry<K, V>> iterator() {
       throw new UnsupportedOperationException("Implement me!");
@@ -0,0 +1,214 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.ehcache;
+
+import org.ehcache.config.loaderwriter.WriteCoalescingConfiguration;
+import org.ehcache.exceptions.BulkCacheWritingException;
+import org.ehcache.expiry.Duration;
+import org.ehcache.spi.loaderwriter.CacheLoaderWriter;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * Provides testing of the batching of single key writes by a {@code WriteGateway}.
+ */
+public class WriteGatewayTest {
+
+  private final ExecutorService executor = Executors.newCachedThreadPool();
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testConcurrentWritesAreBatched() throws Exception {
+    final RecordingWriter writer = new RecordingWriter();
+    final WriteGateway<String, String> gateway = new WriteGateway<String, String>(writer,
+        new WriteCoalescingConfiguration(3, new Duration(1, TimeUnit.MINUTES)));
+
+    List<Future<Void>> futures = new ArrayList<Future<Void>>();
+    for (int i = 0; i < 3; i++) {
+      futures.add(executor.submit(write(gateway, "key" + i, "value" + i)));
+    }
+    for (Future<Void> future : futures) {
+      future.get(5, TimeUnit.SECONDS);
+    }
+
+    assertThat(writer.writeAlls.size(), is(1));
+    Map<String, String> expected = new HashMap<String, String>();
+    for (int i = 0; i < 3; i++) {
+      expected.put("key" + i, "value" + i);
+    }
+    assertThat(writer.writeAlls.get(0), is(expected));
+    assertThat(gateway.requests.get(), is(3L));
+    assertThat(gateway.invocations.get(), is(1L));
+  }
+
+  @Test
+  public void testWritesAndDeletesOfABatchAreSplit() throws Exception {
+    final RecordingWriter writer = new RecordingWriter();
+    final WriteGateway<String, String> gateway = new WriteGateway<String, String>(writer,
+        new WriteCoalescingConfiguration(2, new Duration(1, TimeUnit.MINUTES)));
+
+    Future<Void> write = executor.submit(write(gateway, "a", "value"));
+    Future<Void> delete = executor.submit(new Callable<Void>() {
+      @Override
+      public Void call() throws Exception {
+        gateway.delete("b");
+        return null;
+      }
+    });
+    write.get(5, TimeUnit.SECONDS);
+    delete.get(5, TimeUnit.SECONDS);
+
+    assertThat(writer.writeAlls, is(Collections.singletonList(Collections.singletonMap("a", "value"))));
+    assertThat(writer.deleteAlls, is(Collections.singletonList(Collections.singleton("b"))));
+    assertThat(gateway.invocations.get(), is(2L));
+  }
+
+  @Test
+  public void testBatchIsWrittenOnceTheWindowElapsed() throws Exception {
+    final RecordingWriter writer = new RecordingWriter();
+    final WriteGateway<String, String> gateway = new WriteGateway<String, String>(writer,
+        new WriteCoalescingConfiguration(64, new Duration(10, TimeUnit.MILLISECONDS)));
+
+    gateway.write("key", "value");
+    assertThat(writer.writeAlls.size(), is(1));
+    assertThat(writer.writeAlls.get(0).get("key"), is("value"));
+  }
+
+  @Test
+  public void testEachWriterGetsItsOwnOutcome() throws Exception {
+    final Exception failure = new Exception("boom");
+    final RecordingWriter writer = new RecordingWriter() {
+      @Override
+      public void writeAll(Iterable<? extends Map.Entry<? extends String, ? extends String>> entries) throws Exception {
+        super.writeAll(entries);
+        throw new BulkCacheWritingException(Collections.singletonMap("bad", failure), Collections.singleton("good"));
+      }
+    };
+    final WriteGateway<String, String> gateway = new WriteGateway<String, String>(writer,
+        new WriteCoalescingConfiguration(2, new Duration(1, TimeUnit.MINUTES)));
+
+    Future<Void> good = executor.submit(write(gateway, "good", "value"));
+    Future<Void> bad = executor.submit(write(gateway, "bad", "value"));
+
+    assertThat(good.get(5, TimeUnit.SECONDS), is(nullValue()));
+    try {
+      bad.get(5, TimeUnit.SECONDS);
+      fail("expected failure");
+    } catch (ExecutionException e) {
+      assertThat(e.getCause(), sameInstance((Throwable) failure));
+    }
+  }
+
+  @Test
+  public void testWritesOfAKeyAreNotBatchedTogether() throws Exception {
+    final RecordingWriter writer = new RecordingWriter();
+    final WriteGateway<String, String> gateway = new WriteGateway<String, String>(writer,
+        new WriteCoalescingConfiguration(2, new Duration(200, TimeUnit.MILLISECONDS)));
+
+    Future<Void> first = executor.submit(write(gateway, "key", "first"));
+    while (gateway.requests.get() < 1) {
+      Thread.sleep(1);
+    }
+    Future<Void> second = executor.submit(write(gateway, "key", "second"));
+    first.get(5, TimeUnit.SECONDS);
+    second.get(5, TimeUnit.SECONDS);
+
+    assertThat(writer.writeAlls.size(), is(2));
+    assertThat(writer.writeAlls.get(0).get("key"), is("first"));
+    assertThat(writer.writeAlls.get(1).get("key"), is("second"));
+  }
+
+  private static Callable<Void> write(final WriteGateway<String, String> gateway, final String key, final String value) {
+    return new Callable<Void>() {
+      @Override
+      public Void call() throws Exception {
+        gateway.write(key, value);
+        return null;
+      }
+    };
+  }
+
+  private static class RecordingWriter implements CacheLoaderWriter<String, String> {
+
+    final List<Map<String, String>> writeAlls = new CopyOnWriteArrayList<Map<String, String>>();
+    final List<Set<String>> deleteAlls = new CopyOnWriteArrayList<Set<String>>();
+
+    @Override
+    public String load(String key) throws Exception {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Map<String, String> loadAll(Iterable<? extends String> keys) throws Exception {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void write(String key, String value) throws Exception {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void writeAll(Iterable<? extends Map.Entry<? extends String, ? extends String>> entries) throws Exception {
+      Map<String, String> written = new HashMap<String, String>();
+      for (Map.Entry<? extends String, ? extends String> entry : entries) {
+        written.put(entry.getKey(), entry.getValue());
+      }
+      writeAlls.add(written);
+    }
+
+    @Override
+    public void delete(String key) throws Exception {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void deleteAll(Iterable<? extends String> keys) throws Exception {
+      Set<String> deleted = new HashSet<String>();
+      for (String key : keys) {
+        deleted.add(key);
+      }
+      deleteAlls.add(deleted);
+    }
+  }
+}
@@ -135,4 +135,12 @@ public class ResourcePoolsImplTest {
       assertThat(e.getMessage(), is("Tiering Inversion: 'Pool {10241 kB heap}' is not smaller than 'Pool {10 MB offheap}'"));
     }
   }
+
+  @Test
+  public void testSharedPoolsAreNotTierValidated() {
+    Collection<ResourcePool> pools = asList(
+            new SharedResourcePool(HEAP),
+            new ResourcePoolImpl(OFFHEAP, 1, ENTRIES, false));
+    validateResourcePools(pools);
+  }
 }
@@ -49,11 +49,9 @@ public class ResourcePoolsMergerTest {
     ResourcePools existing = ResourcePoolsBuilder.newResourcePoolsBuilder().offheap(10L, MemoryUnit.MB).build();
     ResourcePools toBeUpdated = ResourcePoolsBuilder.newResourcePoolsBuilder().offheap(50L, MemoryUnit.MB).build();
     ResourcePoolMerger merger = new ResourcePoolMerger();
-    try {
-      merger.validateAndMerge(existing, toBeUpdated);
-    } catch (UnsupportedOperationException uoe) {
-      assertThat(uoe.getMessage(), is("Updating OFFHEAP resource is not supported"));
-    }
+    ResourcePools merged = merger.validateAndMerge(existing, toBeUpdated);
+    assertThat(merged.getPoolForResource(ResourceType.Core.OFFHEAP).getSize(), is(50L));
+    assertThat(merged.getPoolForResource(ResourceType.Core.OFFHEAP).getUnit(), Matchers.<ResourceUnit>is(MemoryUnit.MB));
   }
 
   @Test
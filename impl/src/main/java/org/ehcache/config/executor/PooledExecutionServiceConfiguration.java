@@ -33,8 +33,12 @@ public class PooledExecutionServiceConfiguration implements ServiceCreationConfi
   private String defaultAlias;
   
   public void addDefaultPool(String alias, int minSize, int maxSize) {
+    addDefaultPool(alias, minSize, maxSize, PoolBackend.THREAD_POOL);
+  }
+
+  public void addDefaultPool(String alias, int minSize, int maxSize, PoolBackend backend) {
     if (defaultAlias == null) {
-      addPool(alias, minSize, maxSize);
+      addPool(alias, minSize, maxSize, backend);
       defaultAlias = alias;
     } else {
       throw new IllegalArgumentException("'" + defaultAlias + "' is already configured as the default pool");
@@ -42,10 +46,16 @@ public class PooledExecutionServiceConfiguration implements ServiceCreationConfi
   }
 
   public void addPool(String alias, int minSize, int maxSize) {
-    if (poolConfigurations.containsKey(alias)) {
+    addPool(alias, minSize, maxSize, PoolBackend.THREAD_POOL);
+  }
+
+  public void addPool(String alias, int minSize, int maxSize, PoolBackend backend) {
+    if (backend == null) {
+      throw new NullPointerException("Pool backend cannot be null");
+    } else if (poolConfigurations.containsKey(alias)) {
       throw new IllegalArgumentException("A pool with the alias " + alias + " is already configured");
     } else {
-      poolConfigurations.put(alias, new PoolConfiguration(minSize, maxSize));
+      poolConfigurations.put(alias, new PoolConfiguration(minSize, maxSize, backend));
     }
   }
 
@@ -62,14 +72,32 @@ public class PooledExecutionServiceConfiguration implements ServiceCreationConfi
     return ExecutionService.class;
   }
 
+  /**
+   * The kind of executor backing a pool.
+   */
+  public enum PoolBackend {
+    /**
+     * A thread pool executor sharing a single unbounded task queue between its {@code minSize} to {@code maxSize}
+     * threads.
+     */
+    THREAD_POOL,
+    /**
+     * A work-stealing fork/join pool running up to {@code maxSize} workers, each with its own task deque.
+     * Threads are created on demand, so {@code minSize} is not used.
+     */
+    FORK_JOIN
+  }
+
   public static final class PoolConfiguration {
 
     private final int minSize;
     private final int maxSize;
+    private final PoolBackend backend;
 
-    private PoolConfiguration(int minSize, int maxSize) {
+    private PoolConfiguration(int minSize, int maxSize, PoolBackend backend) {
       this.minSize = minSize;
       this.maxSize = maxSize;
+      this.backend = backend;
     }
 
     public int minSize() {
@@ -79,5 +107,9 @@ public class PooledExecutionServiceConfiguration implements ServiceCreationConfi
     public int maxSize() {
       return maxSize;
     }
+
+    public PoolBackend backend() {
+      return backend;
+    }
   }
 }
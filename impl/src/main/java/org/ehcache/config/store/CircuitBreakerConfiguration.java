@@ -0,0 +1,76 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.config.store;
+
+import org.ehcache.spi.cache.Store;
+import org.ehcache.spi.service.ServiceConfiguration;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Enables a circuit breaker in front of a cache's {@link Store}.
+ * <P>
+ *   Once {@code failureThreshold} store failures have been observed within {@code window}, the breaker opens and
+ *   cache operations bypass the store entirely: they go straight to the cache's loader-writer, or report a miss when
+ *   there is none. Every {@code probeInterval} a single operation is let through to probe the store; if it succeeds
+ *   the store is cleared of any stale mappings and the breaker closes again.
+ * </P>
+ */
+public class CircuitBreakerConfiguration implements ServiceConfiguration<Store.Provider> {
+
+  private final int failureThreshold;
+  private final long window;
+  private final long probeInterval;
+  private final TimeUnit unit;
+
+  public CircuitBreakerConfiguration(int failureThreshold, long window, long probeInterval, TimeUnit unit) {
+    if (failureThreshold <= 0) {
+      throw new IllegalArgumentException("Failure threshold must be strictly positive");
+    }
+    if (window <= 0 || probeInterval <= 0) {
+      throw new IllegalArgumentException("Window and probe interval must be strictly positive");
+    }
+    if (unit == null) {
+      throw new NullPointerException("Time unit must not be null");
+    }
+    this.failureThreshold = failureThreshold;
+    this.window = window;
+    this.probeInterval = probeInterval;
+    this.unit = unit;
+  }
+
+  public int getFailureThreshold() {
+    return failureThreshold;
+  }
+
+  public long getWindow() {
+    return window;
+  }
+
+  public long getProbeInterval() {
+    return probeInterval;
+  }
+
+  public TimeUnit getUnit() {
+    return unit;
+  }
+
+  @Override
+  public Class<Store.Provider> getServiceType() {
+    return Store.Provider.class;
+  }
+}
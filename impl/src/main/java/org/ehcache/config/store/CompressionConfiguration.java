@@ -0,0 +1,81 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.config.store;
+
+import org.ehcache.spi.cache.Store;
+import org.ehcache.spi.service.ServiceConfiguration;
+
+/**
+ * Enables the compression of the values stored in the offheap and disk tiers of a cache.
+ * <P>
+ *   Values whose serialized form is smaller than the threshold are stored as is, as are those the algorithm fails to
+ *   shrink. Each entry records whether and how it was compressed, so entries written under another configuration,
+ *   or none, remain readable.
+ * </P>
+ */
+public class CompressionConfiguration implements ServiceConfiguration<Store.Provider> {
+
+  /**
+   * The default size, in bytes, below which serialized values are not compressed.
+   */
+  public static final int DEFAULT_THRESHOLD = 256;
+
+  /**
+   * The compression algorithms available.
+   */
+  public enum Algorithm {
+    /**
+     * LZF, favouring speed over compression ratio.
+     */
+    LZF,
+    /**
+     * Deflate at its fastest level, compressing better than {@link #LZF} at a higher CPU cost.
+     */
+    DEFLATE
+  }
+
+  private final Algorithm algorithm;
+  private final int threshold;
+
+  public CompressionConfiguration(Algorithm algorithm) {
+    this(algorithm, DEFAULT_THRESHOLD);
+  }
+
+  public CompressionConfiguration(Algorithm algorithm, int threshold) {
+    if (algorithm == null) {
+      throw new NullPointerException("Compression algorithm cannot be null");
+    }
+    if (threshold < 0) {
+      throw new IllegalArgumentException("Compression threshold must be positive");
+    }
+    this.algorithm = algorithm;
+    this.threshold = threshold;
+  }
+
+  public Algorithm getAlgorithm() {
+    return algorithm;
+  }
+
+  public int getThreshold() {
+    return threshold;
+  }
+
+  @Override
+  public Class<Store.Provider> getServiceType() {
+    return Store.Provider.class;
+  }
+}
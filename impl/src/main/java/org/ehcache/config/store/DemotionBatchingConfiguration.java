@@ -0,0 +1,73 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.ehcache.config.store;
+
+import org.ehcache.spi.cache.Store;
+import org.ehcache.spi.service.ServiceConfiguration;
+
+/**
+ * Moves the demotion of mappings from the heap tier to the offheap tier of a cache off the evicting threads.
+ * <P>
+ *   Mappings evicted from the heap tier are queued, and installed into the offheap tier in batches of up to
+ *   {@code batchSize} by a background task running on the {@code threadPoolAlias} pool. Queued mappings are still
+ *   served to readers. When {@code maxQueueSize} mappings are queued, further evicted mappings are only kept by the
+ *   authoritative tier.
+ * </P>
+ */
+public class DemotionBatchingConfiguration implements ServiceConfiguration<Store.Provider> {
+
+  public static final int DEFAULT_MAX_QUEUE_SIZE = 1024;
+  public static final int DEFAULT_BATCH_SIZE = 64;
+
+  private final int maxQueueSize;
+  private final int batchSize;
+  private final String threadPoolAlias;
+
+  public DemotionBatchingConfiguration() {
+    this(DEFAULT_MAX_QUEUE_SIZE, DEFAULT_BATCH_SIZE, null);
+  }
+
+  public DemotionBatchingConfiguration(int maxQueueSize, int batchSize, String threadPoolAlias) {
+    if (maxQueueSize <= 0) {
+      throw new IllegalArgumentException("Max queue size must be strictly positive");
+    }
+    if (batchSize <= 0 || batchSize > maxQueueSize) {
+      throw new IllegalArgumentException("Batch size must be strictly positive and at most the max queue size");
+    }
+    this.maxQueueSize = maxQueueSize;
+    this.batchSize = batchSize;
+    this.threadPoolAlias = threadPoolAlias;
+  }
+
+  public int getMaxQueueSize() {
+    return maxQueueSize;
+  }
+
+  public int getBatchSize() {
+    return batchSize;
+  }
+
+  public String getThreadPoolAlias() {
+    return threadPoolAlias;
+  }
+
+  @Override
+  public Class<Store.Provider> getServiceType() {
+    return Store.Provider.class;
+  }
+}
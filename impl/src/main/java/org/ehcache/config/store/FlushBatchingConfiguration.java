@@ -0,0 +1,73 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.ehcache.config.store;
+
+import org.ehcache.spi.cache.Store;
+import org.ehcache.spi.service.ServiceConfiguration;
+
+/**
+ * Moves the flushing of mappings leaving the caching tier of a tiered cache into its authoritative tier off the
+ * invalidating threads.
+ * <P>
+ *   Flushes are coalesced per key and applied in batches of up to {@code batchSize}, ordered by segment of the
+ *   authoritative tier, by a background task running on the {@code threadPoolAlias} pool. When {@code maxBacklog}
+ *   flushes are pending, further ones are applied on the invalidating thread.
+ * </P>
+ */
+public class FlushBatchingConfiguration implements ServiceConfiguration<Store.Provider> {
+
+  public static final int DEFAULT_MAX_BACKLOG = 4096;
+  public static final int DEFAULT_BATCH_SIZE = 256;
+
+  private final int maxBacklog;
+  private final int batchSize;
+  private final String threadPoolAlias;
+
+  public FlushBatchingConfiguration() {
+    this(DEFAULT_MAX_BACKLOG, DEFAULT_BATCH_SIZE, null);
+  }
+
+  public FlushBatchingConfiguration(int maxBacklog, int batchSize, String threadPoolAlias) {
+    if (maxBacklog <= 0) {
+      throw new IllegalArgumentException("Max backlog must be strictly positive");
+    }
+    if (batchSize <= 0 || batchSize > maxBacklog) {
+      throw new IllegalArgumentException("Batch size must be strictly positive and at most the max backlog");
+    }
+    this.maxBacklog = maxBacklog;
+    this.batchSize = batchSize;
+    this.threadPoolAlias = threadPoolAlias;
+  }
+
+  public int getMaxBacklog() {
+    return maxBacklog;
+  }
+
+  public int getBatchSize() {
+    return batchSize;
+  }
+
+  public String getThreadPoolAlias() {
+    return threadPoolAlias;
+  }
+
+  @Override
+  public Class<Store.Provider> getServiceType() {
+    return Store.Provider.class;
+  }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.ehcache.config.store;
+
+import org.ehcache.spi.cache.Store;
+import org.ehcache.spi.service.ServiceConfiguration;
+
+/**
+ * Controls whether the on-heap tier of a cache counts the hits of each of its mappings.
+ * <P>
+ *   Hit counts feed the {@code LFU} eviction prioritizer, which keeps counting regardless of this setting, as well as
+ *   custom prioritizers and vetoes through {@code hits()} and {@code hitRate(...)}, and the metadata pushed down to
+ *   lower tiers. A cache relying on none of these can disable counting to save a field and an atomic update per
+ *   mapping.
+ * </P>
+ */
+public class HitCountingConfiguration implements ServiceConfiguration<Store.Provider> {
+
+  private final boolean enabled;
+
+  public HitCountingConfiguration(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  @Override
+  public Class<Store.Provider> getServiceType() {
+    return Store.Provider.class;
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.config.store;
+
+import org.ehcache.spi.cache.Store;
+import org.ehcache.spi.service.ServiceConfiguration;
+
+/**
+ * Selects how the offheap tier of a cache allocates its memory.
+ * <P>
+ *   By default the whole configured size is allocated when the cache is created. With {@link Mode#ON_DEMAND} the
+ *   configured size is only a budget, memory being allocated chunk by chunk as the tier fills up. Those chunks can
+ *   also be allocated ahead of time by a background task running on the {@code threadPoolAlias} pool, sparing the
+ *   cost of allocating them to the operations filling the tier.
+ * </P>
+ * <P>
+ *   Tiers allocating from a shared resource pool ignore this configuration.
+ * </P>
+ */
+public class OffHeapAllocationConfiguration implements ServiceConfiguration<Store.Provider> {
+
+  /**
+   * When offheap memory gets allocated.
+   */
+  public enum Mode {
+    /**
+     * All the memory is allocated when the cache is created.
+     */
+    UPFRONT,
+    /**
+     * Memory is allocated as the tier grows.
+     */
+    ON_DEMAND
+  }
+
+  private final Mode mode;
+  private final boolean preTouch;
+  private final String threadPoolAlias;
+
+  public OffHeapAllocationConfiguration(Mode mode) {
+    this(mode, false, null);
+  }
+
+  public OffHeapAllocationConfiguration(Mode mode, boolean preTouch, String threadPoolAlias) {
+    if (mode == null) {
+      throw new NullPointerException("Allocation mode cannot be null");
+    }
+    if (preTouch && mode != Mode.ON_DEMAND) {
+      throw new IllegalArgumentException("Only memory allocated on demand can be pre-touched");
+    }
+    this.mode = mode;
+    this.preTouch = preTouch;
+    this.threadPoolAlias = threadPoolAlias;
+  }
+
+  public Mode getMode() {
+    return mode;
+  }
+
+  public boolean isPreTouch() {
+    return preTouch;
+  }
+
+  public String getThreadPoolAlias() {
+    return threadPoolAlias;
+  }
+
+  @Override
+  public Class<Store.Provider> getServiceType() {
+    return Store.Provider.class;
+  }
+}
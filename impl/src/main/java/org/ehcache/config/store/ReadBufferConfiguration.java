@@ -0,0 +1,59 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.ehcache.config.store;
+
+import org.ehcache.spi.cache.Store;
+import org.ehcache.spi.service.ServiceConfiguration;
+
+/**
+ * Makes the on-heap tier of a cache record the reads of its mappings in buffers, applied to the mappings in batches.
+ * <P>
+ *   Reads then leave the last access time and hit count of mappings untouched, sparing concurrent readers of the same
+ *   mappings from contending on them. Eviction drains the buffers before picking a mapping, but these metadata
+ *   otherwise lag behind reads, and reads are dropped when a buffer is full. Expiration times are not buffered.
+ * </P>
+ */
+public class ReadBufferConfiguration implements ServiceConfiguration<Store.Provider> {
+
+  /**
+   * The default number of reads each buffer stripe holds.
+   */
+  public static final int DEFAULT_BUFFER_SIZE = 32;
+
+  private final int bufferSize;
+
+  public ReadBufferConfiguration() {
+    this(DEFAULT_BUFFER_SIZE);
+  }
+
+  public ReadBufferConfiguration(int bufferSize) {
+    if (bufferSize < 2 || Integer.bitCount(bufferSize) != 1) {
+      throw new IllegalArgumentException("Read buffer size must be a power of two, greater than 1");
+    }
+    this.bufferSize = bufferSize;
+  }
+
+  public int getBufferSize() {
+    return bufferSize;
+  }
+
+  @Override
+  public Class<Store.Provider> getServiceType() {
+    return Store.Provider.class;
+  }
+}
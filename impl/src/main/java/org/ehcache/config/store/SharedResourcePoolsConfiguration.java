@@ -0,0 +1,77 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.config.store;
+
+import org.ehcache.config.ResourcePool;
+import org.ehcache.config.ResourcePools;
+import org.ehcache.config.ResourceType;
+import org.ehcache.config.SharedResourcePool;
+import org.ehcache.config.units.EntryUnit;
+import org.ehcache.config.units.MemoryUnit;
+import org.ehcache.internal.store.SharedResourcePoolsService;
+import org.ehcache.spi.service.ServiceCreationConfiguration;
+
+/**
+ * Declares the resource pools shared by all caches of a {@link org.ehcache.CacheManager}.
+ * <P>
+ *   Caches draw from these pools by referencing them from their own resource pools, see
+ *   {@link org.ehcache.config.ResourcePoolsBuilder#sharedHeap()} and
+ *   {@link org.ehcache.config.ResourcePoolsBuilder#sharedOffheap()}.
+ * </P>
+ * This configuration has to be applied at the {@link org.ehcache.CacheManager} level.
+ */
+public class SharedResourcePoolsConfiguration implements ServiceCreationConfiguration<SharedResourcePoolsService> {
+
+  private final ResourcePools resourcePools;
+
+  /**
+   * Creates a new configuration sharing the given pools.
+   *
+   * @param resourcePools the shared pools, only {@code heap} in entries and {@code offheap} in memory units are supported
+   */
+  public SharedResourcePoolsConfiguration(ResourcePools resourcePools) {
+    if (resourcePools == null) {
+      throw new NullPointerException("Shared resource pools cannot be null");
+    }
+    for (ResourceType type : resourcePools.getResourceTypeSet()) {
+      ResourcePool pool = resourcePools.getPoolForResource(type);
+      if (pool instanceof SharedResourcePool) {
+        throw new IllegalArgumentException("Shared resource pools cannot reference other shared pools");
+      } else if (type == ResourceType.Core.HEAP) {
+        if (!EntryUnit.ENTRIES.equals(pool.getUnit())) {
+          throw new IllegalArgumentException("Shared heap pool only supports resource unit 'entries'");
+        }
+      } else if (type == ResourceType.Core.OFFHEAP) {
+        if (!(pool.getUnit() instanceof MemoryUnit)) {
+          throw new IllegalArgumentException("Shared offheap pool only supports memory units");
+        }
+      } else {
+        throw new IllegalArgumentException("Resource type " + type + " cannot be shared");
+      }
+    }
+    this.resourcePools = resourcePools;
+  }
+
+  public ResourcePools getResourcePools() {
+    return resourcePools;
+  }
+
+  @Override
+  public Class<SharedResourcePoolsService> getServiceType() {
+    return SharedResourcePoolsService.class;
+  }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.ehcache.config.store;
+
+import org.ehcache.spi.cache.Store;
+import org.ehcache.spi.service.ServiceConfiguration;
+
+/**
+ * Enables warming the caching tier of a persistent tiered cache up on restart.
+ * <P>
+ *   When the cache is closed, the {@code hotKeyCount} hottest keys of its caching tier, according to the eviction
+ *   prioritizer, are persisted with the disk tier. When the cache is initialized again, those keys are faulted from
+ *   the disk tier into the caching tier by a background task running on the {@code threadPoolAlias} pool. If
+ *   {@code blockUntilWarmPercent} is positive, initialization waits until that share of the keys has been processed.
+ * </P>
+ */
+public class WarmUpConfiguration implements ServiceConfiguration<Store.Provider> {
+
+  private final int hotKeyCount;
+  private final String threadPoolAlias;
+  private final int blockUntilWarmPercent;
+
+  public WarmUpConfiguration(int hotKeyCount) {
+    this(hotKeyCount, null, 0);
+  }
+
+  public WarmUpConfiguration(int hotKeyCount, String threadPoolAlias, int blockUntilWarmPercent) {
+    if (hotKeyCount <= 0) {
+      throw new IllegalArgumentException("Hot key count must be strictly positive");
+    }
+    if (blockUntilWarmPercent < 0 || blockUntilWarmPercent > 100) {
+      throw new IllegalArgumentException("Block until warm percentage must be between 0 and 100");
+    }
+    this.hotKeyCount = hotKeyCount;
+    this.threadPoolAlias = threadPoolAlias;
+    this.blockUntilWarmPercent = blockUntilWarmPercent;
+  }
+
+  public int getHotKeyCount() {
+    return hotKeyCount;
+  }
+
+  public String getThreadPoolAlias() {
+    return threadPoolAlias;
+  }
+
+  public int getBlockUntilWarmPercent() {
+    return blockUntilWarmPercent;
+  }
+
+  @Override
+  public Class<Store.Provider> getServiceType() {
+    return Store.Provider.class;
+  }
+}
@@ -26,10 +26,33 @@ public class OffHeapDiskStoreConfiguration implements ServiceConfiguration<OffHe
 
   private final String threadPoolAlias;
   private final int writerConcurrency;
+  private final long bloomFilterExpectedEntries;
+  private final double bloomFilterFalsePositiveRate;
 
   public OffHeapDiskStoreConfiguration(String threadPoolAlias, int writerConcurrency) {
+    this(threadPoolAlias, writerConcurrency, 0, 0.0);
+  }
+
+  /**
+   * Creates a configuration where the disk store maintains a Bloom filter over its keys, so that lookups of absent
+   * keys can return without probing the disk backed segments.
+   *
+   * @param threadPoolAlias the thread pool used for disk writes
+   * @param writerConcurrency the number of disk writer threads
+   * @param bloomFilterExpectedEntries the number of entries the Bloom filter is sized for, {@code 0} for no filter
+   * @param bloomFilterFalsePositiveRate the false positive rate of the filter when holding the expected entries
+   */
+  public OffHeapDiskStoreConfiguration(String threadPoolAlias, int writerConcurrency, long bloomFilterExpectedEntries, double bloomFilterFalsePositiveRate) {
+    if (bloomFilterExpectedEntries < 0) {
+      throw new IllegalArgumentException("Bloom filter expected entries cannot be negative");
+    }
+    if (bloomFilterExpectedEntries > 0 && (bloomFilterFalsePositiveRate <= 0.0 || bloomFilterFalsePositiveRate >= 1.0)) {
+      throw new IllegalArgumentException("Bloom filter false positive rate must be between 0 and 1 exclusive");
+    }
     this.threadPoolAlias = threadPoolAlias;
     this.writerConcurrency = writerConcurrency;
+    this.bloomFilterExpectedEntries = bloomFilterExpectedEntries;
+    this.bloomFilterFalsePositiveRate = bloomFilterFalsePositiveRate;
   }
 
   public String getThreadPoolAlias() {
@@ -40,6 +63,14 @@ public class OffHeapDiskStoreConfiguration implements ServiceConfiguration<OffHe
     return writerConcurrency;
   }
 
+  public long getBloomFilterExpectedEntries() {
+    return bloomFilterExpectedEntries;
+  }
+
+  public double getBloomFilterFalsePositiveRate() {
+    return bloomFilterFalsePositiveRate;
+  }
+
   @Override
   public Class<OffHeapDiskStore.Provider> getServiceType() {
     return OffHeapDiskStore.Provider.class;
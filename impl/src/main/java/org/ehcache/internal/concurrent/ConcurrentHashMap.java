@@ -27,6 +27,7 @@ import java.io.Serializable;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.util.AbstractMap;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
@@ -35,6 +36,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Random;
@@ -6300,6 +6302,25 @@ public class ConcurrentHashMap<K,V> extends AbstractMap<K,V>
         }
     }
 
+    /**
+     * Returns iterators over disjoint ranges of bins, together traversing all mappings with the guarantees of the
+     * entry set iterator, so that the map can be traversed by several threads at once.
+     *
+     * @param parallelism the number of iterators wanted, fewer being returned for small tables
+     */
+    public List<Iterator<Map.Entry<K,V>>> entrySetIterators(int parallelism) {
+        Node<K,V>[] t = table;
+        int f = (t == null) ? 0 : t.length;
+        int parts = Math.max(1, Math.min(parallelism, f));
+        List<Iterator<Map.Entry<K,V>>> iterators = new ArrayList<Iterator<Map.Entry<K,V>>>(parts);
+        for (int i = 0; i < parts; i++) {
+            int index = (int) ((long) f * i / parts);
+            int limit = (int) ((long) f * (i + 1) / parts);
+            iterators.add(new EntryIterator<K,V>(t, f, index, limit, this));
+        }
+        return iterators;
+    }
+
     public Set<Entry<K, V>> getRandomValues(Random rndm, int size, Predicate<Entry<K, V>> veto) {
         Set<Entry<K, V>> sampled = new HashSet<Entry<K, V>>(size);
 
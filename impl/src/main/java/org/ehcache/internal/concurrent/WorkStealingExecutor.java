@@ -0,0 +1,91 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.internal.concurrent;
+
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An {@code ExecutorService} backed by a work-stealing {@link ForkJoinPool} running in FIFO (async) mode.
+ * <p>
+ * Tasks submitted by threads outside the pool go through the pool's shared submission queues, while tasks
+ * submitted by one of the pool's own workers are pushed on that worker's local deque, where idle workers can
+ * steal them. Self-resubmitting tasks such as the partitioned executor runners therefore stay local to the
+ * worker that last ran them instead of contending on a single shared queue.
+ */
+public final class WorkStealingExecutor extends AbstractExecutorService {
+
+  private final ForkJoinPool pool;
+
+  public WorkStealingExecutor(int parallelism, final String alias) {
+    this.pool = new ForkJoinPool(parallelism, new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+
+      private final AtomicInteger threadCount = new AtomicInteger();
+
+      @Override
+      public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+        ForkJoinWorkerThread thread = new ForkJoinWorkerThread(pool) {};
+        thread.setName("[" + alias + "]-" + threadCount.getAndIncrement());
+        return thread;
+      }
+    }, null, true);
+  }
+
+  public int getParallelism() {
+    return pool.getParallelism();
+  }
+
+  @Override
+  public void execute(Runnable command) {
+    if (command == null) {
+      throw new NullPointerException();
+    }
+    Thread current = Thread.currentThread();
+    if (current instanceof ForkJoinWorkerThread && ((ForkJoinWorkerThread) current).getPool() == pool && !pool.isShutdown()) {
+      new ForkJoinTask.RunnableExecuteAction(command).fork();
+    } else {
+      pool.execute(command);
+    }
+  }
+
+  @Override
+  public void shutdown() {
+    pool.shutdown();
+  }
+
+  @Override
+  public List<Runnable> shutdownNow() {
+    return pool.shutdownNow();
+  }
+
+  @Override
+  public boolean isShutdown() {
+    return pool.isShutdown();
+  }
+
+  @Override
+  public boolean isTerminated() {
+    return pool.isTerminated();
+  }
+
+  @Override
+  public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+    return pool.awaitTermination(timeout, unit);
+  }
+}
@@ -15,123 +15,359 @@
  */
 package org.ehcache.internal.executor;
 
-import java.util.concurrent.BlockingQueue;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.Delayed;
-import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.RunnableScheduledFuture;
 import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 
 /**
+ * Fires scheduled tasks from a single timer thread, handing each one to the executor it was scheduled against.
+ * <p>
+ * Pending tasks are kept in a hierarchical timing wheel: {@value #LEVELS} levels of {@value #WHEEL_SIZE} slots, the
+ * slots of the first level being one tick wide and those of each further level covering a full turn of the level
+ * below. Scheduling and cancelling are constant time, and a cancelled task is unlinked from the wheel straight
+ * away. When a slot of an upper level comes due its tasks cascade down to the lower levels, so tasks fire at tick
+ * granularity and never early.
  *
  * @author cdennis
  */
 class OutOfBandScheduledExecutor {
 
-  private final ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1) {
+  private static final long DEFAULT_TICK_NANOS = MILLISECONDS.toNanos(1);
+  private static final int WHEEL_BITS = 6;
+  private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+  private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+  private static final int LEVELS = 6;
+  private static final int DUE = LEVELS * WHEEL_SIZE;
+  private static final long MAX_DELAY = Long.MAX_VALUE >> 1;
+
+  private final long tickNanos;
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition available = lock.newCondition();
+
+  private final long origin = System.nanoTime();
+  private final OutOfBandRsf<?>[] heads = new OutOfBandRsf<?>[DUE + 1];
+  private final OutOfBandRsf<?>[] tails = new OutOfBandRsf<?>[DUE + 1];
+  private final long[] occupied = new long[LEVELS];
+  private final List<OutOfBandRsf<?>> cascading = new ArrayList<OutOfBandRsf<?>>();
+  private long currentTick;
+  private long wakeupTick = Long.MIN_VALUE;
+  private int size;
+  private Thread timer;
+
+  OutOfBandScheduledExecutor() {
+    this(DEFAULT_TICK_NANOS);
+  }
 
-    @Override
-    protected <V> RunnableScheduledFuture<V> decorateTask(Callable<V> clbl, RunnableScheduledFuture<V> rsf) {
-      return new OutOfBandRsf(((ExecutorCarrier) clbl).executor(), rsf);
+  OutOfBandScheduledExecutor(long tickNanos) {
+    if (tickNanos <= 0) {
+      throw new IllegalArgumentException("Tick duration must be positive");
     }
-
-    @Override
-    protected <V> RunnableScheduledFuture<V> decorateTask(Runnable r, RunnableScheduledFuture<V> rsf) {
-      return new OutOfBandRsf(((ExecutorCarrier) r).executor(), rsf);
-    }
-  };
-  
-  public BlockingQueue<Runnable> getQueue() {
-    return scheduler.getQueue();
+    this.tickNanos = tickNanos;
   }
-  
+
   public ScheduledFuture<?> schedule(ExecutorService using, Runnable command,
                                      long delay, TimeUnit unit) {
-    return scheduler.schedule(new ExecutorCarryingRunnable(using, command), delay, unit);
+    return schedule(new OutOfBandRsf<Void>(using, Executors.<Void>callable(command, null), triggerTime(delay, unit), 0));
   }
 
   public <V> ScheduledFuture<V> schedule(ExecutorService using, Callable<V> callable,
                                          long delay, TimeUnit unit) {
-    return scheduler.schedule(new ExecutorCarryingCallable<V>(using, callable), delay, unit);
+    return schedule(new OutOfBandRsf<V>(using, callable, triggerTime(delay, unit), 0));
   }
 
   public ScheduledFuture<?> scheduleAtFixedRate(ExecutorService using, Runnable command,
                                                 long initialDelay,
                                                 long period,
                                                 TimeUnit unit) {
-    return scheduler.scheduleAtFixedRate(new ExecutorCarryingRunnable(using, command), initialDelay, period, unit);
+    if (period <= 0) {
+      throw new IllegalArgumentException();
+    }
+    return schedule(new OutOfBandRsf<Void>(using, Executors.<Void>callable(command, null), triggerTime(initialDelay, unit), unit.toNanos(period)));
   }
 
   public ScheduledFuture<?> scheduleWithFixedDelay(ExecutorService using, Runnable command,
                                                    long initialDelay,
                                                    long delay,
                                                    TimeUnit unit) {
-    return scheduler.scheduleWithFixedDelay(new ExecutorCarryingRunnable(using, command), initialDelay, delay, unit);
+    if (delay <= 0) {
+      throw new IllegalArgumentException();
+    }
+    return schedule(new OutOfBandRsf<Void>(using, Executors.<Void>callable(command, null), triggerTime(initialDelay, unit), -unit.toNanos(delay)));
   }
 
-  static interface ExecutorCarrier {
-    
-    ExecutorService executor();
+  /**
+   * Returns the tasks that are waiting to fire on the given executor.
+   */
+  public List<OutOfBandRsf<?>> getPendingTasks(ExecutorService using) {
+    List<OutOfBandRsf<?>> pending = new ArrayList<OutOfBandRsf<?>>();
+    lock.lock();
+    try {
+      for (OutOfBandRsf<?> head : heads) {
+        for (OutOfBandRsf<?> task = head; task != null; task = task.next) {
+          if (task.getExecutor() == using) {
+            pending.add(task);
+          }
+        }
+      }
+    } finally {
+      lock.unlock();
+    }
+    return pending;
   }
 
-  static class ExecutorCarryingRunnable implements ExecutorCarrier, Runnable {
+  /**
+   * Removes a task that is waiting to fire, without cancelling it.
+   *
+   * @return {@code true} if the task was still waiting to fire
+   */
+  public boolean remove(OutOfBandRsf<?> task) {
+    lock.lock();
+    try {
+      if (task.slot < 0) {
+        return false;
+      } else {
+        unlink(task);
+        return true;
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
 
-    private final ExecutorService executor;
-    private final Runnable runnable;
+  int size() {
+    lock.lock();
+    try {
+      return size;
+    } finally {
+      lock.unlock();
+    }
+  }
 
-    public ExecutorCarryingRunnable(ExecutorService executor, Runnable runnable) {
-      this.executor = executor;
-      this.runnable = runnable;
+  private static long triggerTime(long delay, TimeUnit unit) {
+    return System.nanoTime() + Math.min(Math.max(unit.toNanos(delay), 0L), MAX_DELAY);
+  }
+
+  private <V> ScheduledFuture<V> schedule(OutOfBandRsf<V> task) {
+    lock.lock();
+    try {
+      if (timer == null) {
+        timer = new Thread(new Runnable() {
+          @Override
+          public void run() {
+            fireTasks();
+          }
+        }, "OutOfBandScheduledExecutor");
+        timer.setDaemon(true);
+        timer.start();
+      }
+      insert(task);
+    } finally {
+      lock.unlock();
     }
+    return task;
+  }
 
-    @Override
-    public ExecutorService executor() {
-      return executor;
+  private void reschedule(OutOfBandRsf<?> task) {
+    lock.lock();
+    try {
+      if (!task.isCancelled()) {
+        insert(task);
+      }
+    } finally {
+      lock.unlock();
     }
+  }
 
-    @Override
-    public void run() {
-      runnable.run();
+  private void insert(OutOfBandRsf<?> task) {
+    // round up so that a task never fires ahead of its trigger time
+    long deadline = (task.time - origin + tickNanos - 1) / tickNanos;
+    long delta = deadline - currentTick;
+    int slot;
+    if (delta <= 0) {
+      slot = DUE;
+    } else {
+      int level = 0;
+      while (level < LEVELS - 1 && delta >= 1L << (WHEEL_BITS * (level + 1))) {
+        level++;
+      }
+      if (delta >= 1L << (WHEEL_BITS * LEVELS)) {
+        // beyond the wheel's horizon: park it in the top level slot that cascades last and reassess it then
+        slot = (int) (currentTick >>> (WHEEL_BITS * level)) & WHEEL_MASK;
+      } else {
+        slot = (int) (deadline >>> (WHEEL_BITS * level)) & WHEEL_MASK;
+      }
+      occupied[level] |= 1L << slot;
+      slot += level * WHEEL_SIZE;
+    }
+    task.slot = slot;
+    task.prev = tails[slot];
+    task.next = null;
+    if (tails[slot] == null) {
+      heads[slot] = task;
+    } else {
+      tails[slot].next = task;
+    }
+    tails[slot] = task;
+    size++;
+    if (deadline < wakeupTick) {
+      available.signal();
     }
   }
 
-  static class ExecutorCarryingCallable<T> implements ExecutorCarrier, Callable<T> {
+  private void unlink(OutOfBandRsf<?> task) {
+    int slot = task.slot;
+    if (task.prev == null) {
+      heads[slot] = task.next;
+    } else {
+      task.prev.next = task.next;
+    }
+    if (task.next == null) {
+      tails[slot] = task.prev;
+    } else {
+      task.next.prev = task.prev;
+    }
+    if (heads[slot] == null && slot != DUE) {
+      occupied[slot / WHEEL_SIZE] &= ~(1L << (slot & WHEEL_MASK));
+    }
+    task.prev = null;
+    task.next = null;
+    task.slot = -1;
+    size--;
+  }
 
-    private final ExecutorService executor;
-    private final Callable<T> callable;
+  private void detach(int slot, List<OutOfBandRsf<?>> into) {
+    OutOfBandRsf<?> task = heads[slot];
+    heads[slot] = null;
+    tails[slot] = null;
+    if (slot != DUE) {
+      occupied[slot / WHEEL_SIZE] &= ~(1L << (slot & WHEEL_MASK));
+    }
+    while (task != null) {
+      OutOfBandRsf<?> following = task.next;
+      task.prev = null;
+      task.next = null;
+      task.slot = -1;
+      size--;
+      into.add(task);
+      task = following;
+    }
+  }
 
-    public ExecutorCarryingCallable(ExecutorService executor, Callable<T> callable) {
-      this.executor = executor;
-      this.callable = callable;
+  /**
+   * Returns the next tick at which a slot of the wheel comes due, or {@code Long.MAX_VALUE} if the wheel is empty.
+   */
+  private long nextEventTick() {
+    long next = Long.MAX_VALUE;
+    for (int level = 0; level < LEVELS; level++) {
+      long bits = occupied[level];
+      if (bits != 0) {
+        int shift = WHEEL_BITS * level;
+        long turn = currentTick >>> shift;
+        // distance from the current slot to the next occupied one, the current slot itself being a full turn away
+        int distance = Long.numberOfTrailingZeros(Long.rotateRight(bits, ((int) turn & WHEEL_MASK) + 1)) + 1;
+        next = Math.min(next, (turn + distance) << shift);
+      }
     }
+    return next;
+  }
 
-    @Override
-    public ExecutorService executor() {
-      return executor;
+  /**
+   * Advances the wheel to the given tick, cascading upper level slots and moving expired tasks to the due list.
+   */
+  private void advanceTo(long tick) {
+    while (currentTick < tick) {
+      long next = nextEventTick();
+      if (next > tick) {
+        currentTick = tick;
+      } else {
+        currentTick = next;
+        for (int level = LEVELS - 1; level >= 0; level--) {
+          int shift = WHEEL_BITS * level;
+          if ((currentTick & ((1L << shift) - 1)) == 0) {
+            detach(level * WHEEL_SIZE + ((int) (currentTick >>> shift) & WHEEL_MASK), cascading);
+            for (OutOfBandRsf<?> task : cascading) {
+              insert(task);
+            }
+            cascading.clear();
+          }
+        }
+      }
     }
+  }
 
-    @Override
-    public T call() throws Exception {
-      return callable.call();
+  private void fireTasks() {
+    List<OutOfBandRsf<?>> fired = new ArrayList<OutOfBandRsf<?>>();
+    while (true) {
+      lock.lock();
+      try {
+        while (true) {
+          advanceTo((System.nanoTime() - origin) / tickNanos);
+          if (heads[DUE] != null) {
+            detach(DUE, fired);
+            break;
+          }
+          long next = nextEventTick();
+          wakeupTick = next;
+          try {
+            if (next == Long.MAX_VALUE) {
+              available.await();
+            } else {
+              available.awaitNanos(origin + next * tickNanos - System.nanoTime());
+            }
+          } catch (InterruptedException e) {
+            // the timer thread is never interrupted on purpose: keep on firing
+          } finally {
+            wakeupTick = Long.MIN_VALUE;
+          }
+        }
+      } finally {
+        lock.unlock();
+      }
+
+      for (OutOfBandRsf<?> task : fired) {
+        task.run();
+      }
+      fired.clear();
     }
   }
 
-  static class OutOfBandRsf<T> implements RunnableScheduledFuture<T> {
+  class OutOfBandRsf<T> extends FutureTask<T> implements RunnableScheduledFuture<T> {
 
     private final ExecutorService worker;
-    private final RunnableScheduledFuture<T> delegate;
+    /**
+     * Zero for one-shot tasks, positive for fixed rate and negative for fixed delay repetition.
+     */
+    private final long period;
+    private volatile long time;
 
     private volatile Future<?> execution;
-    
-    OutOfBandRsf(ExecutorService worker, RunnableScheduledFuture<T> original) {
+
+    /*
+     * Wheel linkage, guarded by the scheduler lock.
+     */
+    private OutOfBandRsf<?> prev;
+    private OutOfBandRsf<?> next;
+    private int slot = -1;
+
+    OutOfBandRsf(ExecutorService worker, Callable<T> callable, long time, long period) {
+      super(callable);
       this.worker = worker;
-      this.delegate = original;
+      this.time = time;
+      this.period = period;
     }
 
     public ExecutorService getExecutor() {
@@ -140,62 +376,62 @@ class OutOfBandScheduledExecutor {
 
     @Override
     public boolean isPeriodic() {
-      return delegate.isPeriodic();
+      return period != 0;
     }
 
     @Override
     public synchronized void run() {
       if (worker == null || worker.isShutdown()) {
-        delegate.run();
+        runTask();
       } else {
-        execution = worker.submit(delegate);
+        try {
+          execution = worker.submit(new Runnable() {
+            @Override
+            public void run() {
+              runTask();
+            }
+          });
+        } catch (RejectedExecutionException e) {
+          runTask();
+        }
       }
     }
 
-    @Override
-    public boolean cancel(boolean interrupt) {
-      Future<?> currentExecution = execution;
-      return ((currentExecution == null || currentExecution.cancel(interrupt)) && delegate.cancel(interrupt));
-    }
-
-    @Override
-    public boolean isCancelled() {
-      return delegate.isCancelled();
-    }
-
-    @Override
-    public boolean isDone() {
-      return delegate.isDone();
-    }
-
-    @Override
-    public T get() throws InterruptedException, ExecutionException {
-      return delegate.get();
+    private void runTask() {
+      if (!isPeriodic()) {
+        super.run();
+      } else if (super.runAndReset()) {
+        if (period > 0) {
+          time += period;
+        } else {
+          time = System.nanoTime() - period;
+        }
+        reschedule(this);
+      }
     }
 
     @Override
-    public T get(long l, TimeUnit tu) throws InterruptedException, ExecutionException, TimeoutException {
-      return delegate.get(l, tu);
+    public boolean cancel(boolean interrupt) {
+      boolean cancelled = super.cancel(interrupt);
+      if (cancelled) {
+        Future<?> currentExecution = execution;
+        if (currentExecution != null) {
+          currentExecution.cancel(interrupt);
+        }
+        remove(this);
+      }
+      return cancelled;
     }
 
     @Override
     public long getDelay(TimeUnit tu) {
-      return delegate.getDelay(tu);
+      return tu.convert(time - System.nanoTime(), NANOSECONDS);
     }
 
     @Override
     public int compareTo(Delayed t) {
-      return delegate.compareTo(t);
-    }
-
-    @Override
-    public int hashCode() {
-      return delegate.hashCode();
-    }
-
-    @Override
-    public boolean equals(Object obj) {
-      return delegate.equals(obj);
+      long difference = getDelay(NANOSECONDS) - t.getDelay(NANOSECONDS);
+      return difference < 0 ? -1 : (difference > 0 ? 1 : 0);
     }
   }
 }
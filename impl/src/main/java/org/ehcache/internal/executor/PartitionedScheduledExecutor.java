@@ -16,7 +16,6 @@
 package org.ehcache.internal.executor;
 
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.AbstractExecutorService;
 import java.util.concurrent.Callable;
@@ -116,19 +115,11 @@ class PartitionedScheduledExecutor extends AbstractExecutorService implements Sc
         @Override
         public Long call() throws ExecutionException {
           long maxDelay = 0;
-          for (Iterator<Runnable> it = scheduler.getQueue().iterator(); it.hasNext(); ) {
-            Runnable job = it.next();
-
-            if (job instanceof OutOfBandRsf) {
-              OutOfBandRsf<?> oobJob = (OutOfBandRsf<?>) job;
-              if (oobJob.getExecutor() == worker) {
-                if (oobJob.isPeriodic()) {
-                  oobJob.cancel(false);
-                  it.remove();
-                } else {
-                  maxDelay = Math.max(maxDelay, oobJob.getDelay(NANOSECONDS));
-                }
-              }
+          for (OutOfBandRsf<?> job : scheduler.getPendingTasks(worker)) {
+            if (job.isPeriodic()) {
+              job.cancel(false);
+            } else {
+              maxDelay = Math.max(maxDelay, job.getDelay(NANOSECONDS));
             }
           }
           return maxDelay;
@@ -157,15 +148,9 @@ class PartitionedScheduledExecutor extends AbstractExecutorService implements Sc
         @Override
         public List<Runnable> call() throws Exception {
           List<Runnable> abortedTasks = new ArrayList<Runnable>();
-          for (Iterator<Runnable> it = scheduler.getQueue().iterator(); it.hasNext(); ) {
-            Runnable job = it.next();
-
-            if (job instanceof OutOfBandRsf) {
-              OutOfBandRsf<?> oobJob = (OutOfBandRsf<?>) job;
-              if (oobJob.getExecutor() == worker) {
-                abortedTasks.add(job);
-                it.remove();
-              }
+          for (OutOfBandRsf<?> job : scheduler.getPendingTasks(worker)) {
+            if (scheduler.remove(job)) {
+              abortedTasks.add(job);
             }
           }
 
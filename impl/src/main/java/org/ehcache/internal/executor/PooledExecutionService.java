@@ -30,6 +30,7 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import org.ehcache.config.executor.PooledExecutionServiceConfiguration;
 import org.ehcache.config.executor.PooledExecutionServiceConfiguration.PoolConfiguration;
+import org.ehcache.internal.concurrent.WorkStealingExecutor;
 import org.ehcache.spi.ServiceProvider;
 import org.ehcache.spi.service.ExecutionService;
 import org.slf4j.Logger;
@@ -47,7 +48,8 @@ public class PooledExecutionService implements ExecutionService {
   
   private final String defaultPoolAlias;
   private final Map<String, PoolConfiguration> poolConfigurations;
-  private final Map<String, ThreadPoolExecutor> pools = new HashMap<String, ThreadPoolExecutor>();
+  private final Map<String, ExecutorService> pools = new HashMap<String, ExecutorService>();
+  private final Map<String, Integer> poolSizes = new HashMap<String, Integer>();
 
   private volatile boolean running = false;
   private volatile OutOfBandScheduledExecutor scheduledExecutor;
@@ -60,7 +62,7 @@ public class PooledExecutionService implements ExecutionService {
   @Override
   public ScheduledExecutorService getScheduledExecutor(String poolAlias) {
     if (running) {
-      ThreadPoolExecutor executor = pools.get(poolAlias);
+      ExecutorService executor = pools.get(poolAlias);
       if (executor == null) {
         throw new IllegalStateException("Pool '" + poolAlias + "' is not in the set of available pools " + pools.keySet());
       } else {
@@ -74,7 +76,7 @@ public class PooledExecutionService implements ExecutionService {
   @Override
   public ExecutorService getOrderedExecutor(String poolAlias, BlockingQueue<Runnable> queue) {
     if (running) {
-      ThreadPoolExecutor executor = pools.get(poolAlias);
+      ExecutorService executor = pools.get(poolAlias);
       if (executor == null) {
         throw new IllegalStateException("Pool '" + poolAlias + "' is not in the set of available pools " + pools.keySet());
       } else {
@@ -88,11 +90,11 @@ public class PooledExecutionService implements ExecutionService {
   @Override
   public ExecutorService getUnorderedExecutor(String poolAlias, BlockingQueue<Runnable> queue) {
     if (running) {
-      ThreadPoolExecutor executor = pools.get(poolAlias);
+      ExecutorService executor = pools.get(poolAlias);
       if (executor == null) {
         throw new IllegalStateException("Pool '" + poolAlias + "' is not in the set of available pools " + pools.keySet());
       } else {
-        return new PartitionedUnorderedExecutor(queue, executor, executor.getMaximumPoolSize());
+        return new PartitionedUnorderedExecutor(queue, executor, poolSizes.get(poolAlias));
       }
     } else {
       throw new IllegalStateException("Service cannot be used, it isn't running");
@@ -103,13 +105,15 @@ public class PooledExecutionService implements ExecutionService {
   public void start(ServiceProvider serviceProvider) {
     for (Entry<String, PoolConfiguration> e : poolConfigurations.entrySet()) {
       pools.put(e.getKey(), createPool(e.getKey(), e.getValue()));
+      poolSizes.put(e.getKey(), e.getValue().maxSize());
     }
     if (defaultPoolAlias != null) {
-      ThreadPoolExecutor defaultPool = pools.get(defaultPoolAlias);
+      ExecutorService defaultPool = pools.get(defaultPoolAlias);
       if (defaultPool == null) {
         throw new IllegalStateException("Pool for default pool alias is null");
       } else {
         pools.put(null, defaultPool);
+        poolSizes.put(null, poolSizes.get(defaultPoolAlias));
       }
     }
     scheduledExecutor = new OutOfBandScheduledExecutor();
@@ -121,8 +125,9 @@ public class PooledExecutionService implements ExecutionService {
     LOGGER.info("Shutting down PooledExecutionService");
     running = false;
     //scheduledExecutor.shutdown();
-    for (Iterator<Entry<String, ThreadPoolExecutor>> it = pools.entrySet().iterator(); it.hasNext(); ) {
-      Entry<String, ThreadPoolExecutor> e = it.next();
+    poolSizes.clear();
+    for (Iterator<Entry<String, ExecutorService>> it = pools.entrySet().iterator(); it.hasNext(); ) {
+      Entry<String, ExecutorService> e = it.next();
       try {
         if (e.getKey() != null) {
           destroyPool(e.getKey(), e.getValue());
@@ -133,11 +138,18 @@ public class PooledExecutionService implements ExecutionService {
     }
   }
 
-  private static ThreadPoolExecutor createPool(String alias, PoolConfiguration config) {
-    return new ThreadPoolExecutor(config.minSize(), config.maxSize(), 10, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), threadFactory(alias));
+  private static ExecutorService createPool(String alias, PoolConfiguration config) {
+    switch (config.backend()) {
+      case THREAD_POOL:
+        return new ThreadPoolExecutor(config.minSize(), config.maxSize(), 10, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), threadFactory(alias));
+      case FORK_JOIN:
+        return new WorkStealingExecutor(config.maxSize(), alias);
+      default:
+        throw new AssertionError("Unknown pool backend " + config.backend());
+    }
   }
 
-  private static void destroyPool(String alias, ThreadPoolExecutor executor) {
+  private static void destroyPool(String alias, ExecutorService executor) {
     List<Runnable> tasks = executor.shutdownNow();
     if (!tasks.isEmpty()) {
       LOGGER.warn("Tasks remaining in pool '{}' at shutdown: {}", alias, tasks);
@@ -37,7 +37,8 @@ import java.util.concurrent.atomic.AtomicInteger;
 
 import org.ehcache.exceptions.SerializerException;
 import org.ehcache.internal.util.ByteBufferInputStream;
-import org.ehcache.spi.serialization.Serializer;
+import org.ehcache.internal.util.ByteBufferOutputStream;
+import org.ehcache.spi.serialization.HeaderReservingSerializer;
 
 /**
  * A trivially compressed Java serialization based serializer.
@@ -49,7 +50,7 @@ import org.ehcache.spi.serialization.Serializer;
  *
  * @author Chris Dennis
  */
-public class CompactJavaSerializer<T> implements Serializer<T>, Closeable {
+public class CompactJavaSerializer<T> implements HeaderReservingSerializer<T>, Closeable {
 
   private final AtomicInteger nextStreamIndex = new AtomicInteger(0);
   
@@ -94,6 +95,23 @@ public class CompactJavaSerializer<T> implements Serializer<T>, Closeable {
     }
   }
 
+  @Override
+  public ByteBuffer serialize(T object, int headerSize) throws SerializerException {
+    try {
+      ByteBufferOutputStream bout = new ByteBufferOutputStream(headerSize + 32);
+      bout.reserve(headerSize);
+      ObjectOutputStream oout = getObjectOutputStream(bout);
+      try {
+        oout.writeObject(object);
+      } finally {
+        oout.close();
+      }
+      return bout.toByteBuffer();
+    } catch (IOException e) {
+      throw new SerializerException(e);
+    }
+  }
+
   @Override
   public T read(ByteBuffer binary) throws ClassNotFoundException, SerializerException {
     try {
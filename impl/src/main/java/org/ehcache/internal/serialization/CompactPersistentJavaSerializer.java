@@ -28,14 +28,14 @@ import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.util.Map;
 import org.ehcache.exceptions.SerializerException;
-import org.ehcache.spi.serialization.Serializer;
+import org.ehcache.spi.serialization.HeaderReservingSerializer;
 import org.ehcache.spi.service.FileBasedPersistenceContext;
 
 /**
  *
  * @author cdennis
  */
-public class CompactPersistentJavaSerializer<T> implements Serializer<T>, Closeable {
+public class CompactPersistentJavaSerializer<T> implements HeaderReservingSerializer<T>, Closeable {
 
   private final File stateFile;
   private final CompactJavaSerializer<T> serializer;
@@ -91,6 +91,11 @@ public class CompactPersistentJavaSerializer<T> implements Serializer<T>, Closea
     return serializer.serialize(object);
   }
 
+  @Override
+  public ByteBuffer serialize(T object, int headerSize) throws SerializerException {
+    return serializer.serialize(object, headerSize);
+  }
+
   @Override
   public T read(ByteBuffer binary) throws ClassNotFoundException, SerializerException {
     return serializer.read(binary);
@@ -0,0 +1,124 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.internal.store;
+
+import org.ehcache.internal.TimeSource;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Failure counting state machine used by {@link CircuitBreakingStore}.
+ * <P>
+ *   The breaker starts {@link State#CLOSED}. Once {@code failureThreshold} failures are recorded within a window it
+ *   becomes {@link State#OPEN} and rejects requests. After the probe interval has elapsed a single caller is granted
+ *   a probe and the breaker moves to {@link State#HALF_OPEN} until that probe is reported as a success or a failure.
+ * </P>
+ * The closed state is read through a volatile field only, so healthy operations never contend on the breaker.
+ */
+public class CircuitBreaker {
+
+  public enum State {
+    CLOSED,
+    OPEN,
+    HALF_OPEN
+  }
+
+  private final TimeSource timeSource;
+  private final int failureThreshold;
+  private final long windowMillis;
+  private final long probeIntervalMillis;
+
+  private volatile State state = State.CLOSED;
+
+  // guarded by this
+  private long windowStart;
+  private int failures;
+  private long openedAt;
+
+  public CircuitBreaker(TimeSource timeSource, int failureThreshold, long window, long probeInterval, TimeUnit unit) {
+    this.timeSource = timeSource;
+    this.failureThreshold = failureThreshold;
+    this.windowMillis = unit.toMillis(window);
+    this.probeIntervalMillis = unit.toMillis(probeInterval);
+  }
+
+  public State getState() {
+    return state;
+  }
+
+  /**
+   * Indicates whether requests may go through to the guarded resource.
+   *
+   * @return {@code true} if the breaker is closed
+   */
+  public boolean isClosed() {
+    return state == State.CLOSED;
+  }
+
+  /**
+   * Grants the probe to the caller if the breaker is open and the probe interval has elapsed.
+   *
+   * @return {@code true} if the caller must now probe the resource and report the outcome
+   */
+  public synchronized boolean tryProbe() {
+    if (state == State.OPEN && timeSource.getTimeMillis() - openedAt >= probeIntervalMillis) {
+      state = State.HALF_OPEN;
+      return true;
+    }
+    return false;
+  }
+
+  public synchronized void probeSucceeded() {
+    if (state == State.HALF_OPEN) {
+      failures = 0;
+      state = State.CLOSED;
+    }
+  }
+
+  public synchronized void probeFailed() {
+    if (state == State.HALF_OPEN) {
+      open();
+    }
+  }
+
+  /**
+   * Records a failure of the guarded resource.
+   *
+   * @return {@code true} if this failure tripped the breaker open
+   */
+  public synchronized boolean recordFailure() {
+    if (state != State.CLOSED) {
+      return false;
+    }
+    long now = timeSource.getTimeMillis();
+    if (failures == 0 || now - windowStart > windowMillis) {
+      windowStart = now;
+      failures = 0;
+    }
+    if (++failures >= failureThreshold) {
+      open();
+      return true;
+    }
+    return false;
+  }
+
+  private void open() {
+    openedAt = timeSource.getTimeMillis();
+    failures = 0;
+    state = State.OPEN;
+  }
+}
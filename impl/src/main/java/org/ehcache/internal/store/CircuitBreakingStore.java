@@ -0,0 +1,396 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.internal.store;
+
+import org.ehcache.Cache;
+import org.ehcache.CacheConfigurationChangeListener;
+import org.ehcache.events.StoreEventListener;
+import org.ehcache.exceptions.CacheAccessException;
+import org.ehcache.exceptions.CircuitBreakerOpenException;
+import org.ehcache.function.BiFunction;
+import org.ehcache.function.Function;
+import org.ehcache.function.NullaryFunction;
+import org.ehcache.function.Predicate;
+import org.ehcache.resilience.RecoveryCache;
+import org.ehcache.spi.cache.CacheStoreHelper;
+import org.ehcache.spi.cache.Store;
+import org.ehcache.statistics.StoreOperationOutcomes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terracotta.statistics.StatisticsManager;
+import org.terracotta.statistics.observer.OperationObserver;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import static org.terracotta.statistics.StatisticBuilder.operation;
+
+/**
+ * {@link Store} decorator that stops hitting a failing store once its {@link CircuitBreaker} opens.
+ * <P>
+ *   While the breaker is open every operation fails fast with a {@link CircuitBreakerOpenException}, which
+ *   {@link org.ehcache.Ehcache} handles like any other store failure: it falls through to the loader-writer, and the
+ *   resilience strategy skips the (pointless) clean-up of the store. Mutations made through the loader-writer while
+ *   the store is bypassed are not reflected in it, so the probe that closes the breaker again is a full clear of the
+ *   store.
+ * </P>
+ */
+public class CircuitBreakingStore<K, V> implements Store<K, V>, Store.Partitioned<K, V>, Store.Purgeable<K, V>, RecoveryCache<K> {
+
+  private static final Logger LOG = LoggerFactory.getLogger(CircuitBreakingStore.class);
+
+  private final Store<K, V> delegate;
+  private final CircuitBreaker circuitBreaker;
+
+  private final OperationObserver<StoreOperationOutcomes.CircuitBreakerOutcome> circuitBreakerObserver;
+
+  public CircuitBreakingStore(Store<K, V> delegate, CircuitBreaker circuitBreaker) {
+    this.delegate = delegate;
+    this.circuitBreaker = circuitBreaker;
+    StatisticsManager.associate(delegate).withParent(this);
+    this.circuitBreakerObserver = operation(StoreOperationOutcomes.CircuitBreakerOutcome.class).named("circuitBreaker").of(this).tag("circuit-breaker").build();
+  }
+
+  Store<K, V> getDelegate() {
+    return delegate;
+  }
+
+  public CircuitBreaker.State getCircuitBreakerState() {
+    return circuitBreaker.getState();
+  }
+
+  @Override
+  public ValueHolder<V> get(K key) throws CacheAccessException {
+    checkCircuit();
+    try {
+      return delegate.get(key);
+    } catch (CacheAccessException cae) {
+      throw failed(cae);
+    }
+  }
+
+  @Override
+  public boolean containsKey(K key) throws CacheAccessException {
+    checkCircuit();
+    try {
+      return delegate.containsKey(key);
+    } catch (CacheAccessException cae) {
+      throw failed(cae);
+    }
+  }
+
+  @Override
+  public void put(K key, V value) throws CacheAccessException {
+    checkCircuit();
+    try {
+      delegate.put(key, value);
+    } catch (CacheAccessException cae) {
+      throw failed(cae);
+    }
+  }
+
+  @Override
+  public ValueHolder<V> putIfAbsent(K key, V value) throws CacheAccessException {
+    checkCircuit();
+    try {
+      return delegate.putIfAbsent(key, value);
+    } catch (CacheAccessException cae) {
+      throw failed(cae);
+    }
+  }
+
+  @Override
+  public void remove(K key) throws CacheAccessException {
+    checkCircuit();
+    try {
+      delegate.remove(key);
+    } catch (CacheAccessException cae) {
+      throw failed(cae);
+    }
+  }
+
+  @Override
+  public boolean remove(K key, V value) throws CacheAccessException {
+    checkCircuit();
+    try {
+      return delegate.remove(key, value);
+    } catch (CacheAccessException cae) {
+      throw failed(cae);
+    }
+  }
+
+  @Override
+  public ValueHolder<V> replace(K key, V value) throws CacheAccessException {
+    checkCircuit();
+    try {
+      return delegate.replace(key, value);
+    } catch (CacheAccessException cae) {
+      throw failed(cae);
+    }
+  }
+
+  @Override
+  public boolean replace(K key, V oldValue, V newValue) throws CacheAccessException {
+    checkCircuit();
+    try {
+      return delegate.replace(key, oldValue, newValue);
+    } catch (CacheAccessException cae) {
+      throw failed(cae);
+    }
+  }
+
+  @Override
+  public void clear() throws CacheAccessException {
+    checkCircuit();
+    try {
+      delegate.clear();
+    } catch (CacheAccessException cae) {
+      throw failed(cae);
+    }
+  }
+
+  @Override
+  public void removeIf(Predicate<? super Cache.Entry<K, ValueHolder<V>>> predicate, boolean keysOnly,
+                       Function<? super Map<K, ValueHolder<V>>, ?> removals) throws CacheAccessException {
+    checkCircuit();
+    try {
+      CacheStoreHelper.removeIf(delegate, predicate, keysOnly, removals);
+    } catch (CacheAccessException cae) {
+      throw failed(cae);
+    }
+  }
+
+  @Override
+  public void enableStoreEventNotifications(StoreEventListener<K, V> listener) {
+    delegate.enableStoreEventNotifications(listener);
+  }
+
+  @Override
+  public void disableStoreEventNotifications() {
+    delegate.disableStoreEventNotifications();
+  }
+
+  @Override
+  public Iterator<Cache.Entry<K, ValueHolder<V>>> iterator() {
+    try {
+      checkCircuit();
+    } catch (CacheAccessException cae) {
+      // a bypassed store looks empty
+      return new Iterator<Cache.Entry<K, ValueHolder<V>>>() {
+        @Override
+        public boolean hasNext() {
+          return false;
+        }
+
+        @Override
+        public Cache.Entry<K, ValueHolder<V>> next() {
+          throw new NoSuchElementException();
+        }
+      };
+    }
+    return guard(delegate.iterator());
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public List<Iterator<Cache.Entry<K, ValueHolder<V>>>> partitionIterators(boolean recordAccess) {
+    if (!(delegate instanceof Store.Partitioned)) {
+      return Collections.singletonList(iterator());
+    }
+    try {
+      checkCircuit();
+    } catch (CacheAccessException cae) {
+      // a bypassed store looks empty
+      return Collections.emptyList();
+    }
+    List<Iterator<Cache.Entry<K, ValueHolder<V>>>> iterators = new ArrayList<Iterator<Cache.Entry<K, ValueHolder<V>>>>();
+    for (Iterator<Cache.Entry<K, ValueHolder<V>>> iterator : ((Store.Partitioned<K, V>) delegate).partitionIterators(recordAccess)) {
+      iterators.add(guard(iterator));
+    }
+    return iterators;
+  }
+
+  private Iterator<Cache.Entry<K, ValueHolder<V>>> guard(final Iterator<Cache.Entry<K, ValueHolder<V>>> iterator) {
+    return new Iterator<Cache.Entry<K, ValueHolder<V>>>() {
+      @Override
+      public boolean hasNext() {
+        return iterator.hasNext();
+      }
+
+      @Override
+      public Cache.Entry<K, ValueHolder<V>> next() throws CacheAccessException {
+        try {
+          return iterator.next();
+        } catch (CacheAccessException cae) {
+          throw failed(cae);
+        }
+      }
+    };
+  }
+
+  @Override
+  public ValueHolder<V> compute(K key, BiFunction<? super K, ? super V, ? extends V> mappingFunction) throws CacheAccessException {
+    checkCircuit();
+    try {
+      return delegate.compute(key, mappingFunction);
+    } catch (CacheAccessException cae) {
+      throw failed(cae);
+    }
+  }
+
+  @Override
+  public ValueHolder<V> compute(K key, BiFunction<? super K, ? super V, ? extends V> mappingFunction, NullaryFunction<Boolean> replaceEqual) throws CacheAccessException {
+    checkCircuit();
+    try {
+      return delegate.compute(key, mappingFunction, replaceEqual);
+    } catch (CacheAccessException cae) {
+      throw failed(cae);
+    }
+  }
+
+  @Override
+  public ValueHolder<V> computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) throws CacheAccessException {
+    checkCircuit();
+    try {
+      return delegate.computeIfAbsent(key, mappingFunction);
+    } catch (CacheAccessException cae) {
+      throw failed(cae);
+    }
+  }
+
+  @Override
+  public ValueHolder<V> computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) throws CacheAccessException {
+    checkCircuit();
+    try {
+      return delegate.computeIfPresent(key, remappingFunction);
+    } catch (CacheAccessException cae) {
+      throw failed(cae);
+    }
+  }
+
+  @Override
+  public ValueHolder<V> computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction, NullaryFunction<Boolean> replaceEqual) throws CacheAccessException {
+    checkCircuit();
+    try {
+      return delegate.computeIfPresent(key, remappingFunction, replaceEqual);
+    } catch (CacheAccessException cae) {
+      throw failed(cae);
+    }
+  }
+
+  @Override
+  public Map<K, ValueHolder<V>> bulkCompute(Set<? extends K> keys, Function<Iterable<? extends Map.Entry<? extends K, ? extends V>>, Iterable<? extends Map.Entry<? extends K, ? extends V>>> remappingFunction) throws CacheAccessException {
+    checkCircuit();
+    try {
+      return delegate.bulkCompute(keys, remappingFunction);
+    } catch (CacheAccessException cae) {
+      throw failed(cae);
+    }
+  }
+
+  @Override
+  public Map<K, ValueHolder<V>> bulkCompute(Set<? extends K> keys, Function<Iterable<? extends Map.Entry<? extends K, ? extends V>>, Iterable<? extends Map.Entry<? extends K, ? extends V>>> remappingFunction, NullaryFunction<Boolean> replaceEqual) throws CacheAccessException {
+    checkCircuit();
+    try {
+      return delegate.bulkCompute(keys, remappingFunction, replaceEqual);
+    } catch (CacheAccessException cae) {
+      throw failed(cae);
+    }
+  }
+
+  @Override
+  public Map<K, ValueHolder<V>> bulkComputeIfAbsent(Set<? extends K> keys, Function<Iterable<? extends K>, Iterable<? extends Map.Entry<? extends K, ? extends V>>> mappingFunction) throws CacheAccessException {
+    checkCircuit();
+    try {
+      return delegate.bulkComputeIfAbsent(keys, mappingFunction);
+    } catch (CacheAccessException cae) {
+      throw failed(cae);
+    }
+  }
+
+  @Override
+  public List<CacheConfigurationChangeListener> getConfigurationChangeListeners() {
+    return delegate.getConfigurationChangeListeners();
+  }
+
+  @Override
+  public void obliterate() throws CacheAccessException {
+    if (circuitBreaker.isClosed()) {
+      delegate.clear();
+    }
+  }
+
+  @Override
+  public void obliterate(K key) throws CacheAccessException {
+    if (circuitBreaker.isClosed()) {
+      delegate.remove(key);
+    }
+  }
+
+  @Override
+  public void obliterate(Iterable<? extends K> keys) throws CacheAccessException {
+    for (K key : keys) {
+      obliterate(key);
+    }
+  }
+
+  private void checkCircuit() throws CacheAccessException {
+    if (circuitBreaker.isClosed()) {
+      return;
+    }
+    if (circuitBreaker.tryProbe()) {
+      circuitBreakerObserver.begin();
+      try {
+        delegate.clear();
+      } catch (CacheAccessException cae) {
+        circuitBreaker.probeFailed();
+        circuitBreakerObserver.end(StoreOperationOutcomes.CircuitBreakerOutcome.PROBE_FAILURE);
+        LOG.warn("Store probe failed, circuit breaker stays open", cae);
+        throw cae;
+      }
+      circuitBreaker.probeSucceeded();
+      circuitBreakerObserver.end(StoreOperationOutcomes.CircuitBreakerOutcome.PROBE_SUCCESS);
+      LOG.info("Store probe succeeded, circuit breaker closed");
+      return;
+    }
+    circuitBreakerObserver.begin();
+    circuitBreakerObserver.end(StoreOperationOutcomes.CircuitBreakerOutcome.BYPASSED);
+    throw new CircuitBreakerOpenException("Circuit breaker is open, store bypassed");
+  }
+
+  private CacheAccessException failed(CacheAccessException cae) {
+    if (!isRethrowing(cae) && circuitBreaker.recordFailure()) {
+      circuitBreakerObserver.begin();
+      circuitBreakerObserver.end(StoreOperationOutcomes.CircuitBreakerOutcome.TRIPPED);
+      LOG.error("Store failure threshold reached, circuit breaker opened", cae);
+    }
+    return cae;
+  }
+
+  /**
+   * Rethrowing failures report a caller error rather than a store failure, so they must not trip the breaker.
+   * The type is deprecated until resilience strategies can be plugged in, but still raised by the XA store.
+   */
+  @SuppressWarnings("deprecation")
+  private static boolean isRethrowing(CacheAccessException cae) {
+    return cae instanceof org.ehcache.exceptions.RethrowingCacheAccessException;
+  }
+}
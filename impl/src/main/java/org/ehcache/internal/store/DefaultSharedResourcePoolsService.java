@@ -0,0 +1,92 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.internal.store;
+
+import org.ehcache.config.ResourcePool;
+import org.ehcache.config.ResourcePools;
+import org.ehcache.config.ResourceType;
+import org.ehcache.config.units.MemoryUnit;
+import org.ehcache.internal.store.heap.SharedHeapPool;
+import org.ehcache.internal.store.offheap.HeuristicConfiguration;
+import org.ehcache.spi.ServiceProvider;
+import org.terracotta.offheapstore.paging.PageSource;
+import org.terracotta.offheapstore.paging.UpfrontAllocatingPageSource;
+
+import static org.ehcache.internal.store.offheap.OffHeapStoreUtils.getBufferSource;
+
+/**
+ * DefaultSharedResourcePoolsService
+ */
+public class DefaultSharedResourcePoolsService implements SharedResourcePoolsService {
+
+  private final ResourcePools resourcePools;
+
+  private volatile SharedHeapPool heapPool;
+  private volatile long offHeapSize;
+  private volatile PageSource offHeapPageSource;
+
+  public DefaultSharedResourcePoolsService(ResourcePools resourcePools) {
+    this.resourcePools = resourcePools;
+  }
+
+  @Override
+  public SharedHeapPool getSharedHeapPool() {
+    SharedHeapPool pool = heapPool;
+    if (pool == null) {
+      throw new IllegalStateException("No shared heap pool configured");
+    }
+    return pool;
+  }
+
+  @Override
+  public PageSource getSharedOffHeapPageSource() {
+    PageSource source = offHeapPageSource;
+    if (source == null) {
+      throw new IllegalStateException("No shared offheap pool configured");
+    }
+    return source;
+  }
+
+  @Override
+  public long getSharedOffHeapSize() {
+    getSharedOffHeapPageSource();
+    return offHeapSize;
+  }
+
+  @Override
+  public void start(ServiceProvider serviceProvider) {
+    if (resourcePools == null) {
+      return;
+    }
+    ResourcePool heap = resourcePools.getPoolForResource(ResourceType.Core.HEAP);
+    if (heap != null) {
+      heapPool = new SharedHeapPool(heap.getSize());
+    }
+    ResourcePool offHeap = resourcePools.getPoolForResource(ResourceType.Core.OFFHEAP);
+    if (offHeap != null) {
+      offHeapSize = ((MemoryUnit) offHeap.getUnit()).toBytes(offHeap.getSize());
+      HeuristicConfiguration config = new HeuristicConfiguration(offHeapSize);
+      offHeapPageSource = new UpfrontAllocatingPageSource(getBufferSource(), config.getMaximumSize(), config.getMaximumChunkSize(), config.getMinimumChunkSize());
+    }
+  }
+
+  @Override
+  public void stop() {
+    heapPool = null;
+    offHeapPageSource = null;
+  }
+}
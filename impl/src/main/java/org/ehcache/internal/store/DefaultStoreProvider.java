@@ -17,6 +17,8 @@ package org.ehcache.internal.store;
 
 import org.ehcache.config.ResourcePool;
 import org.ehcache.config.ResourceType;
+import org.ehcache.config.store.CircuitBreakerConfiguration;
+import org.ehcache.internal.TimeSourceService;
 import org.ehcache.internal.store.disk.OffHeapDiskStore;
 import org.ehcache.internal.store.heap.OnHeapStore;
 import org.ehcache.internal.store.offheap.OffHeapStore;
@@ -37,11 +39,13 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.ConcurrentMap;
 
+import static org.ehcache.spi.ServiceLocator.findSingletonAmongst;
+
 /**
  * @author Ludovic Orban
  */
 @ServiceDependencies({CacheStore.Provider.class, CompoundCachingTier.Provider.class,
-    OnHeapStore.Provider.class, OffHeapStore.Provider.class, OffHeapDiskStore.Provider.class})
+    OnHeapStore.Provider.class, OffHeapStore.Provider.class, OffHeapDiskStore.Provider.class, TimeSourceService.class})
 public class DefaultStoreProvider implements Store.Provider {
   private static final Logger LOG = LoggerFactory.getLogger(DefaultStoreProvider.class);
 
@@ -85,6 +89,13 @@ public class DefaultStoreProvider implements Store.Provider {
     }
 
     Store<K, V> store = provider.createStore(storeConfig, enhancedServiceConfigs.toArray(new ServiceConfiguration<?>[0]));
+    CircuitBreakerConfiguration circuitBreakerConfig = findSingletonAmongst(CircuitBreakerConfiguration.class, (Object[]) serviceConfigs);
+    if (circuitBreakerConfig != null) {
+      CircuitBreaker circuitBreaker = new CircuitBreaker(serviceProvider.getService(TimeSourceService.class).getTimeSource(),
+          circuitBreakerConfig.getFailureThreshold(), circuitBreakerConfig.getWindow(), circuitBreakerConfig.getProbeInterval(),
+          circuitBreakerConfig.getUnit());
+      store = new CircuitBreakingStore<K, V>(store, circuitBreaker);
+    }
     if(providersMap.putIfAbsent(store, provider) != null) {
       throw new IllegalStateException("Instance of the Store already registered!");
     }
@@ -97,7 +108,7 @@ public class DefaultStoreProvider implements Store.Provider {
     if (provider == null) {
       throw new IllegalArgumentException("Given store is not managed by this provider : " + resource);
     }
-    provider.releaseStore(resource);
+    provider.releaseStore(unwrap(resource));
   }
 
   @Override
@@ -106,7 +117,14 @@ public class DefaultStoreProvider implements Store.Provider {
     if (provider == null) {
       throw new IllegalArgumentException("Given store is not managed by this provider : " + resource);
     }
-    provider.initStore(resource);
+    provider.initStore(unwrap(resource));
+  }
+
+  private static Store<?, ?> unwrap(Store<?, ?> resource) {
+    if (resource instanceof CircuitBreakingStore) {
+      return ((CircuitBreakingStore<?, ?>) resource).getDelegate();
+    }
+    return resource;
   }
 
   @Override
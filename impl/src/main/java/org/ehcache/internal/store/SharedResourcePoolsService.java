@@ -0,0 +1,56 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.internal.store;
+
+import org.ehcache.internal.store.heap.SharedHeapPool;
+import org.ehcache.spi.service.Service;
+import org.terracotta.offheapstore.paging.PageSource;
+
+/**
+ * Holds the resource pools shared by all caches of a {@link org.ehcache.CacheManager}, as declared by a
+ * {@link org.ehcache.config.store.SharedResourcePoolsConfiguration}.
+ * <P>
+ *   Stores whose resource pools reference a {@link org.ehcache.config.SharedResourcePool} draw from the pools
+ *   exposed here instead of sizing their own.
+ * </P>
+ */
+public interface SharedResourcePoolsService extends Service {
+
+  /**
+   * Returns the shared heap pool.
+   *
+   * @return the shared heap pool
+   * @throws IllegalStateException if no shared heap pool was declared
+   */
+  SharedHeapPool getSharedHeapPool();
+
+  /**
+   * Returns the page source all stores using the shared offheap pool allocate from.
+   *
+   * @return the shared page source
+   * @throws IllegalStateException if no shared offheap pool was declared
+   */
+  PageSource getSharedOffHeapPageSource();
+
+  /**
+   * Returns the size in bytes of the shared offheap pool.
+   *
+   * @return the shared offheap size
+   * @throws IllegalStateException if no shared offheap pool was declared
+   */
+  long getSharedOffHeapSize();
+}
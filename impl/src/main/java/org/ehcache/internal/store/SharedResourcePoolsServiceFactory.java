@@ -0,0 +1,43 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.internal.store;
+
+import org.ehcache.config.store.SharedResourcePoolsConfiguration;
+import org.ehcache.spi.service.ServiceCreationConfiguration;
+import org.ehcache.spi.service.ServiceFactory;
+
+/**
+ * SharedResourcePoolsServiceFactory
+ */
+public class SharedResourcePoolsServiceFactory implements ServiceFactory<SharedResourcePoolsService> {
+
+  @Override
+  public SharedResourcePoolsService create(ServiceCreationConfiguration<SharedResourcePoolsService> configuration) {
+    if (configuration == null) {
+      return new DefaultSharedResourcePoolsService(null);
+    } else if (configuration instanceof SharedResourcePoolsConfiguration) {
+      return new DefaultSharedResourcePoolsService(((SharedResourcePoolsConfiguration) configuration).getResourcePools());
+    } else {
+      throw new IllegalArgumentException("Unsupported configuration type " + configuration);
+    }
+  }
+
+  @Override
+  public Class<SharedResourcePoolsService> getServiceType() {
+    return SharedResourcePoolsService.class;
+  }
+}
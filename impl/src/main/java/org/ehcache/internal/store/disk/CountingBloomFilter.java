@@ -0,0 +1,160 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.ehcache.internal.store.disk;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * A counting Bloom filter over key hash codes, using 4 bit counters.
+ * <P>
+ *   Mutations must be serialized by the caller, the segment owning the filter does so under its write lock.
+ *   {@link #mightContain(int)} can be called concurrently without any locking : a mapping installed before the call
+ *   started is always reported. Counters saturate, a saturated counter is never decremented again.
+ * </P>
+ */
+public class CountingBloomFilter {
+
+  private static final int BITS_PER_COUNTER = 4;
+  private static final int COUNTERS_PER_WORD = Integer.SIZE / BITS_PER_COUNTER;
+  private static final int COUNTER_MASK = (1 << BITS_PER_COUNTER) - 1;
+  private static final int MINIMUM_SIZE = 64;
+
+  private final int size;
+  private final int hashFunctions;
+  private final AtomicIntegerArray words;
+
+  /**
+   * Creates a filter sized to hold {@code expectedEntries} with the given false positive rate.
+   *
+   * @param expectedEntries the number of entries the filter is sized for
+   * @param falsePositiveRate the false positive rate once holding {@code expectedEntries}
+   */
+  public CountingBloomFilter(long expectedEntries, double falsePositiveRate) {
+    this(optimalSize(expectedEntries, falsePositiveRate), optimalHashFunctions(expectedEntries, optimalSize(expectedEntries, falsePositiveRate)));
+  }
+
+  CountingBloomFilter(int size, int hashFunctions) {
+    this.size = size;
+    this.hashFunctions = hashFunctions;
+    this.words = new AtomicIntegerArray((size + COUNTERS_PER_WORD - 1) / COUNTERS_PER_WORD);
+  }
+
+  public void add(int hash) {
+    int h1 = mix(hash);
+    int h2 = mix(h1 ^ 0x9e3779b9) | 1;
+    for (int i = 0; i < hashFunctions; i++) {
+      int counter = index(h1 + i * h2);
+      int word = words.get(counter / COUNTERS_PER_WORD);
+      int shift = (counter % COUNTERS_PER_WORD) * BITS_PER_COUNTER;
+      int count = (word >>> shift) & COUNTER_MASK;
+      if (count < COUNTER_MASK) {
+        words.set(counter / COUNTERS_PER_WORD, word + (1 << shift));
+      }
+    }
+  }
+
+  public void remove(int hash) {
+    int h1 = mix(hash);
+    int h2 = mix(h1 ^ 0x9e3779b9) | 1;
+    for (int i = 0; i < hashFunctions; i++) {
+      int counter = index(h1 + i * h2);
+      int word = words.get(counter / COUNTERS_PER_WORD);
+      int shift = (counter % COUNTERS_PER_WORD) * BITS_PER_COUNTER;
+      int count = (word >>> shift) & COUNTER_MASK;
+      if (count > 0 && count < COUNTER_MASK) {
+        words.set(counter / COUNTERS_PER_WORD, word - (1 << shift));
+      }
+    }
+  }
+
+  public boolean mightContain(int hash) {
+    int h1 = mix(hash);
+    int h2 = mix(h1 ^ 0x9e3779b9) | 1;
+    for (int i = 0; i < hashFunctions; i++) {
+      int counter = index(h1 + i * h2);
+      int word = words.get(counter / COUNTERS_PER_WORD);
+      if (((word >>> ((counter % COUNTERS_PER_WORD) * BITS_PER_COUNTER)) & COUNTER_MASK) == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  public void clear() {
+    for (int i = 0; i < words.length(); i++) {
+      words.set(i, 0);
+    }
+  }
+
+  public void writeTo(ObjectOutput output) throws IOException {
+    output.writeInt(size);
+    output.writeInt(hashFunctions);
+    for (int i = 0; i < words.length(); i++) {
+      output.writeInt(words.get(i));
+    }
+  }
+
+  /**
+   * Restores the counters written by {@link #writeTo(ObjectOutput)} into this filter.
+   *
+   * @return {@code false} if the persisted filter has a different geometry, in which case nothing but the geometry
+   * was consumed from the input
+   */
+  public boolean readFrom(ObjectInput input) throws IOException {
+    int persistedSize = input.readInt();
+    int persistedHashFunctions = input.readInt();
+    if (persistedSize != size || persistedHashFunctions != hashFunctions) {
+      return false;
+    }
+    for (int i = 0; i < words.length(); i++) {
+      words.set(i, input.readInt());
+    }
+    return true;
+  }
+
+  private int index(int hash) {
+    return (hash & Integer.MAX_VALUE) % size;
+  }
+
+  private static int mix(int hash) {
+    hash ^= hash >>> 16;
+    hash *= 0x85ebca6b;
+    hash ^= hash >>> 13;
+    hash *= 0xc2b2ae35;
+    hash ^= hash >>> 16;
+    return hash;
+  }
+
+  private static int optimalSize(long expectedEntries, double falsePositiveRate) {
+    if (expectedEntries <= 0) {
+      throw new IllegalArgumentException("Expected entries must be positive");
+    }
+    if (falsePositiveRate <= 0.0 || falsePositiveRate >= 1.0) {
+      throw new IllegalArgumentException("False positive rate must be between 0 and 1 exclusive");
+    }
+    double size = -expectedEntries * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2));
+    return (int) Math.max(MINIMUM_SIZE, Math.min(Integer.MAX_VALUE - COUNTERS_PER_WORD, Math.ceil(size)));
+  }
+
+  private static int optimalHashFunctions(long expectedEntries, int size) {
+    return Math.max(1, (int) Math.round((double) size / expectedEntries * Math.log(2)));
+  }
+}
@@ -19,10 +19,14 @@ package org.ehcache.internal.store.disk;
 import org.ehcache.function.BiFunction;
 import org.ehcache.function.Function;
 import org.ehcache.internal.store.disk.factories.EhcachePersistentSegmentFactory;
+import org.ehcache.internal.store.disk.factories.EhcachePersistentSegmentFactory.EhcachePersistentSegment;
+import org.terracotta.offheapstore.Segment;
 import org.terracotta.offheapstore.disk.persistent.AbstractPersistentConcurrentOffHeapCache;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.ObjectInput;
+import java.io.ObjectOutput;
 import java.util.concurrent.atomic.AtomicLong;
 import org.ehcache.internal.store.offheap.EhcacheOffHeapBackingMap;
 
@@ -68,4 +72,48 @@ public class EhcachePersistentConcurrentOffHeapClockCache<K, V> extends Abstract
   public long nextIdFor(final K key) {
     return counters[getIndexFor(key.hashCode())].getAndIncrement();
   }
+
+  /**
+   * Returns {@code false} only if this map definitely holds no mapping for the given key, without locking or
+   * probing any segment. Always {@code true} when the segments maintain no Bloom filter.
+   */
+  public boolean mightContain(K key) {
+    int hash = key.hashCode();
+    return ((EhcachePersistentSegment<K, V>) segmentFor(hash)).mightContain(hash);
+  }
+
+  public boolean hasBloomFilters() {
+    return ((EhcachePersistentSegment<K, V>) segments[0]).getBloomFilter() != null;
+  }
+
+  /**
+   * Writes the Bloom filters of all segments, to be read back by {@link #bootstrapBloomFilters(ObjectInput)}.
+   */
+  public void persistBloomFilters(ObjectOutput output) throws IOException {
+    output.writeInt(segments.length);
+    for (Segment<K, V> segment : segments) {
+      ((EhcachePersistentSegment<K, V>) segment).getBloomFilter().writeTo(output);
+    }
+  }
+
+  /**
+   * Restores the Bloom filters of all segments from the input, rebuilding them from the segment tables when the
+   * input holds no filters or filters of a different geometry.
+   */
+  public void bootstrapBloomFilters(ObjectInput input) throws IOException {
+    boolean restored;
+    try {
+      restored = input.readInt() == segments.length;
+      for (int i = 0; restored && i < segments.length; i++) {
+        restored = ((EhcachePersistentSegment<K, V>) segments[i]).getBloomFilter().readFrom(input);
+      }
+    } catch (EOFException e) {
+      restored = false;
+    }
+    if (!restored) {
+      for (Segment<K, V> segment : segments) {
+        ((EhcachePersistentSegment<K, V>) segment).rebuildBloomFilter();
+      }
+    }
+  }
 }
@@ -16,20 +16,23 @@
 
 package org.ehcache.internal.store.disk;
 
+import org.ehcache.CacheConfigurationChangeEvent;
 import org.ehcache.CacheConfigurationChangeListener;
+import org.ehcache.CacheConfigurationProperty;
 import org.ehcache.Status;
 import org.ehcache.config.EvictionVeto;
 import org.ehcache.config.ResourcePool;
+import org.ehcache.config.ResourcePools;
 import org.ehcache.config.ResourceType;
 import org.ehcache.config.units.MemoryUnit;
 import org.ehcache.exceptions.CachePersistenceException;
+import org.ehcache.function.NullaryFunction;
 import org.ehcache.function.Predicate;
 import org.ehcache.function.Predicates;
 import org.ehcache.internal.TimeSource;
 import org.ehcache.internal.TimeSourceService;
 import org.ehcache.internal.store.disk.factories.EhcachePersistentSegmentFactory;
 import org.ehcache.internal.store.offheap.OffHeapValueHolder;
-import org.ehcache.internal.store.offheap.portability.OffHeapValueHolderPortability;
 import org.ehcache.internal.store.offheap.portability.SerializerPortability;
 import org.ehcache.spi.ServiceProvider;
 import org.ehcache.spi.cache.Store;
@@ -44,7 +47,6 @@ import org.ehcache.spi.service.SupplementaryService;
 import org.ehcache.util.ConcurrentWeakIdentityHashMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.terracotta.offheapstore.disk.paging.MappedPageSource;
 import org.terracotta.offheapstore.disk.persistent.Persistent;
 import org.terracotta.offheapstore.disk.persistent.PersistentPortability;
 import org.terracotta.offheapstore.disk.storage.FileBackedStorageEngine;
@@ -57,6 +59,8 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
@@ -67,21 +71,29 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
+import org.ehcache.config.store.CompressionConfiguration;
 import org.ehcache.config.store.disk.OffHeapDiskStoreConfiguration;
 import org.ehcache.internal.store.offheap.AbstractOffHeapStore;
 import org.ehcache.internal.store.offheap.EhcacheOffHeapBackingMap;
+import org.ehcache.internal.store.tiering.HotKeysPersistence;
 import static org.ehcache.spi.ServiceLocator.findSingletonAmongst;
 import org.ehcache.spi.service.ExecutionService;
+import org.ehcache.statistics.StoreOperationOutcomes;
+import org.terracotta.statistics.observer.OperationObserver;
+
+import static org.terracotta.statistics.StatisticBuilder.operation;
 import org.ehcache.spi.service.LocalPersistenceService.PersistenceSpaceIdentifier;
 
 /**
  *
  * @author Chris Dennis
  */
-public class OffHeapDiskStore<K, V> extends AbstractOffHeapStore<K, V> implements AuthoritativeTier<K, V> {
+public class OffHeapDiskStore<K, V> extends AbstractOffHeapStore<K, V> implements AuthoritativeTier<K, V>, HotKeysPersistence<K> {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(OffHeapDiskStore.class);
 
+  private static final int CONCURRENCY = 16;
+
   protected final AtomicReference<Status> status = new AtomicReference<Status>(Status.UNINITIALIZED);
 
   private final Predicate<Map.Entry<K, OffHeapValueHolder<V>>> evictionVeto;
@@ -92,17 +104,48 @@ public class OffHeapDiskStore<K, V> extends AbstractOffHeapStore<K, V> implement
   private final ExecutionService executionService;
   private final String threadPoolAlias;
   private final int writerConcurrency;
-  
+  private final long bloomFilterExpectedEntries;
+  private final double bloomFilterFalsePositiveRate;
+  private final OperationObserver<StoreOperationOutcomes.BloomFilterOutcome> bloomFilterObserver;
+
   private volatile EhcachePersistentConcurrentOffHeapClockCache<K, OffHeapValueHolder<V>> map;
+  private volatile ResizableMappedPageSource pageSource;
+
+  private final CacheConfigurationChangeListener cacheConfigurationChangeListener = new CacheConfigurationChangeListener() {
+    @Override
+    public void cacheConfigurationChange(CacheConfigurationChangeEvent event) {
+      if (event.getProperty().equals(CacheConfigurationProperty.UPDATESIZE)) {
+        ResourcePool updatedPool = ((ResourcePools)event.getNewValue()).getPoolForResource(ResourceType.Core.DISK);
+        ResourcePool configuredPool = ((ResourcePools)event.getOldValue()).getPoolForResource(ResourceType.Core.DISK);
+        if (updatedPool != null && configuredPool != null && updatedPool.getSize() != configuredPool.getSize()) {
+          resize(((MemoryUnit)updatedPool.getUnit()).toBytes(updatedPool.getSize()));
+        }
+      }
+    }
+  };
+
+  public OffHeapDiskStore(FileBasedPersistenceContext fileBasedPersistenceContext,
+          ExecutionService executionService, String threadPoolAlias, int writerConcurrency,
+          final Configuration<K, V> config, TimeSource timeSource, long sizeInBytes) {
+    this(fileBasedPersistenceContext, executionService, threadPoolAlias, writerConcurrency, 0, 0.0, config, timeSource, sizeInBytes);
+  }
 
+  /**
+   * Creates a disk store maintaining a Bloom filter over its keys, sized for {@code bloomFilterExpectedEntries} at
+   * the given false positive rate. No filter is maintained when the expected entries are {@code 0}.
+   */
   public OffHeapDiskStore(FileBasedPersistenceContext fileBasedPersistenceContext,
           ExecutionService executionService, String threadPoolAlias, int writerConcurrency,
+          long bloomFilterExpectedEntries, double bloomFilterFalsePositiveRate,
           final Configuration<K, V> config, TimeSource timeSource, long sizeInBytes) {
     super("local-disk", config, timeSource);
     this.fileBasedPersistenceContext = fileBasedPersistenceContext;
     this.executionService = executionService;
     this.threadPoolAlias = threadPoolAlias;
     this.writerConcurrency = writerConcurrency;
+    this.bloomFilterExpectedEntries = bloomFilterExpectedEntries;
+    this.bloomFilterFalsePositiveRate = bloomFilterFalsePositiveRate;
+    this.bloomFilterObserver = operation(StoreOperationOutcomes.BloomFilterOutcome.class).of(this).named("bloomFilter").tag("local-disk").build();
 
     EvictionVeto<? super K, ? super V> veto = config.getEvictionVeto();
     if (veto != null) {
@@ -121,7 +164,24 @@ public class OffHeapDiskStore<K, V> extends AbstractOffHeapStore<K, V> implement
 
   @Override
   public List<CacheConfigurationChangeListener> getConfigurationChangeListeners() {
-    return Collections.emptyList();
+    return Collections.singletonList(cacheConfigurationChangeListener);
+  }
+
+  void resize(long newSizeInBytes) {
+    final ResizableMappedPageSource source = pageSource;
+    if (source == null) {
+      throw new IllegalStateException("Store not initialized, it cannot be resized");
+    }
+    LOGGER.info("Resizing disk store from {} to {} bytes", source.getLimit(), newSizeInBytes);
+    source.resize(newSizeInBytes);
+    if (source.isOverLimit()) {
+      shrinkWhile(new NullaryFunction<Boolean>() {
+        @Override
+        public Boolean apply() {
+          return source.isOverLimit();
+        }
+      }, executionService, threadPoolAlias);
+    }
   }
 
   private EhcachePersistentConcurrentOffHeapClockCache<K, OffHeapValueHolder<V>> getBackingMap(long size, Serializer<K> keySerializer, Serializer<V> valueSerializer, Predicate<Map.Entry<K, OffHeapValueHolder<V>>> evictionVeto) {
@@ -161,10 +221,10 @@ public class OffHeapDiskStore<K, V> extends AbstractOffHeapStore<K, V> implement
                     dataFile.getName(), delta);
       }
 
-      MappedPageSource source = new MappedPageSource(dataFile, false, size);
+      ResizableMappedPageSource source = new ResizableMappedPageSource(dataFile, false, size);
       try {
         PersistentPortability<K> keyPortability = persistent(new SerializerPortability<K>(keySerializer));
-        PersistentPortability<OffHeapValueHolder<V>> elementPortability = persistent(new OffHeapValueHolderPortability<V>(valueSerializer));
+        PersistentPortability<OffHeapValueHolder<V>> elementPortability = persistent(createValuePortability(valueSerializer, true));
         DiskWriteThreadPool writeWorkers = new DiskWriteThreadPool(executionService, threadPoolAlias, writerConcurrency);
 
         Factory<FileBackedStorageEngine<K, OffHeapValueHolder<V>>> storageEngineFactory = FileBackedStorageEngine.createFactory(source,
@@ -175,13 +235,17 @@ public class OffHeapDiskStore<K, V> extends AbstractOffHeapStore<K, V> implement
             storageEngineFactory,
             64,
             evictionVeto,
-            mapEvictionListener, false);
+            mapEvictionListener, false, bloomFilterFactory());
             EhcachePersistentConcurrentOffHeapClockCache m = new EhcachePersistentConcurrentOffHeapClockCache<K, OffHeapValueHolder<V>>(input, factory);
 
 
 
 
         m.bootstrap(input);
+        if (m.hasBloomFilters()) {
+          m.bootstrapBloomFilters(input);
+        }
+        pageSource = source;
         return m;
       } catch (IOException e) {
         source.close();
@@ -197,15 +261,15 @@ public class OffHeapDiskStore<K, V> extends AbstractOffHeapStore<K, V> implement
   }
   
   private EhcachePersistentConcurrentOffHeapClockCache<K, OffHeapValueHolder<V>> createBackingMap(long size, Serializer<K> keySerializer, Serializer<V> valueSerializer, Predicate<Map.Entry<K, OffHeapValueHolder<V>>> evictionVeto) {
-    MappedPageSource source;
+    ResizableMappedPageSource source;
     try {
-      source = new MappedPageSource(getDataFile(), size);
+      source = new ResizableMappedPageSource(getDataFile(), true, size);
     } catch (IOException e) {
       // TODO proper exception
       throw new RuntimeException(e);
     }
     PersistentPortability<K> keyPortability = persistent(new SerializerPortability<K>(keySerializer));
-    PersistentPortability<OffHeapValueHolder<V>> elementPortability = persistent(new OffHeapValueHolderPortability<V>(valueSerializer));
+    PersistentPortability<OffHeapValueHolder<V>> elementPortability = persistent(createValuePortability(valueSerializer, true));
     DiskWriteThreadPool writeWorkers = new DiskWriteThreadPool(executionService, threadPoolAlias, writerConcurrency);
 
     Factory<FileBackedStorageEngine<K, OffHeapValueHolder<V>>> storageEngineFactory = FileBackedStorageEngine.createFactory(source,
@@ -216,16 +280,50 @@ public class OffHeapDiskStore<K, V> extends AbstractOffHeapStore<K, V> implement
         storageEngineFactory,
         64,
         evictionVeto,
-        mapEvictionListener, true);
-    return new EhcachePersistentConcurrentOffHeapClockCache<K, OffHeapValueHolder<V>>(factory, 16);
+        mapEvictionListener, true, bloomFilterFactory());
+    pageSource = source;
+    return new EhcachePersistentConcurrentOffHeapClockCache<K, OffHeapValueHolder<V>>(factory, CONCURRENCY);
 
   }
 
+  private Factory<CountingBloomFilter> bloomFilterFactory() {
+    if (bloomFilterExpectedEntries == 0) {
+      return null;
+    }
+    final long expectedEntriesPerSegment = (bloomFilterExpectedEntries + CONCURRENCY - 1) / CONCURRENCY;
+    return new Factory<CountingBloomFilter>() {
+      @Override
+      public CountingBloomFilter newInstance() {
+        return new CountingBloomFilter(expectedEntriesPerSegment, bloomFilterFalsePositiveRate);
+      }
+    };
+  }
+
   @Override
   protected EhcacheOffHeapBackingMap<K, OffHeapValueHolder<V>> backingMap() {
     return map;
   }
 
+  @Override
+  protected boolean mightContain(K key) {
+    EhcachePersistentConcurrentOffHeapClockCache<K, OffHeapValueHolder<V>> localMap = map;
+    if (localMap == null || bloomFilterExpectedEntries == 0) {
+      return true;
+    }
+    bloomFilterObserver.begin();
+    if (localMap.mightContain(key)) {
+      bloomFilterObserver.end(StoreOperationOutcomes.BloomFilterOutcome.MAYBE_PRESENT);
+      return true;
+    } else {
+      bloomFilterObserver.end(StoreOperationOutcomes.BloomFilterOutcome.DEFINITE_MISS);
+      return false;
+    }
+  }
+
+  ResizableMappedPageSource pageSource() {
+    return pageSource;
+  }
+
   private File getDataFile() {
     return new File(fileBasedPersistenceContext.getDirectory(), "ehcache-disk-store.data");
   }
@@ -234,6 +332,62 @@ public class OffHeapDiskStore<K, V> extends AbstractOffHeapStore<K, V> implement
     return new File(fileBasedPersistenceContext.getDirectory(), "ehcache-disk-store.index");
   }
 
+  private File getHotKeysFile() {
+    return new File(fileBasedPersistenceContext.getDirectory(), "ehcache-disk-store.hotkeys");
+  }
+
+  @Override
+  public void persistHotKeys(List<K> keys) {
+    try {
+      ObjectOutputStream output = new ObjectOutputStream(new FileOutputStream(getHotKeysFile()));
+      try {
+        output.writeInt(keys.size());
+        for (K key : keys) {
+          ByteBuffer binary = keySerializer.serialize(key);
+          byte[] bytes = new byte[binary.remaining()];
+          binary.get(bytes);
+          output.writeInt(bytes.length);
+          output.write(bytes);
+        }
+      } finally {
+        output.close();
+      }
+    } catch (IOException e) {
+      LOGGER.warn("Could not persist the hot keys of data file {}, the caching tier will not be warmed up on restart",
+          getDataFile().getName(), e);
+      getHotKeysFile().delete();
+    }
+  }
+
+  @Override
+  public List<K> recoverHotKeys() {
+    File hotKeysFile = getHotKeysFile();
+    if (!hotKeysFile.isFile()) {
+      return Collections.emptyList();
+    }
+    try {
+      ObjectInputStream input = new ObjectInputStream(new FileInputStream(hotKeysFile));
+      try {
+        int count = input.readInt();
+        List<K> keys = new ArrayList<K>(count);
+        for (int i = 0; i < count; i++) {
+          byte[] bytes = new byte[input.readInt()];
+          input.readFully(bytes);
+          keys.add(keySerializer.read(ByteBuffer.wrap(bytes)));
+        }
+        return keys;
+      } finally {
+        input.close();
+      }
+    } catch (Exception e) {
+      LOGGER.info("Could not recover the hot keys of data file {}, the caching tier will not be warmed up",
+          getDataFile().getName(), e);
+      return Collections.emptyList();
+    } finally {
+      hotKeysFile.delete();
+    }
+  }
+
   @SupplementaryService
   @ServiceDependencies({TimeSourceService.class, SerializationProvider.class, ExecutionService.class})
   public static class Provider implements Store.Provider, AuthoritativeTier.Provider {
@@ -271,13 +425,19 @@ public class OffHeapDiskStore<K, V> extends AbstractOffHeapStore<K, V> implement
 
       String threadPoolAlias;
       int writerConcurrency;
+      long bloomFilterExpectedEntries;
+      double bloomFilterFalsePositiveRate;
       OffHeapDiskStoreConfiguration config = findSingletonAmongst(OffHeapDiskStoreConfiguration.class, serviceConfigs);
       if (config == null) {
         threadPoolAlias = defaultThreadPool;
         writerConcurrency = 1;
+        bloomFilterExpectedEntries = 0;
+        bloomFilterFalsePositiveRate = 0.0;
       } else {
         threadPoolAlias = config.getThreadPoolAlias();
         writerConcurrency = config.getWriterConcurrency();
+        bloomFilterExpectedEntries = config.getBloomFilterExpectedEntries();
+        bloomFilterFalsePositiveRate = config.getBloomFilterFalsePositiveRate();
       }
       PersistenceSpaceIdentifier space = findSingletonAmongst(PersistenceSpaceIdentifier.class, (Object[]) serviceConfigs);
       try {
@@ -285,7 +445,9 @@ public class OffHeapDiskStore<K, V> extends AbstractOffHeapStore<K, V> implement
 
         OffHeapDiskStore<K, V> offHeapStore = new OffHeapDiskStore<K, V>(persistenceContext,
                 executionService, threadPoolAlias, writerConcurrency,
+                bloomFilterExpectedEntries, bloomFilterFalsePositiveRate,
                 storeConfig, timeSource, unit.toBytes(diskPool.getSize()));
+        offHeapStore.configureCompression(findSingletonAmongst(CompressionConfiguration.class, (Object[]) serviceConfigs));
         createdStores.add(offHeapStore);
         return offHeapStore;
       } catch (CachePersistenceException cpex) {
@@ -309,11 +471,15 @@ public class OffHeapDiskStore<K, V> extends AbstractOffHeapStore<K, V> implement
       EhcachePersistentConcurrentOffHeapClockCache<K, OffHeapValueHolder<V>> localMap = resource.map;
       if (localMap != null) {
         resource.map = null;
+        resource.pageSource = null;
         localMap.flush();
         ObjectOutputStream output = new ObjectOutputStream(new FileOutputStream(resource.getIndexFile()));
         try {
           output.writeLong(System.currentTimeMillis());
           localMap.persist(output);
+          if (localMap.hasBloomFilters()) {
+            localMap.persistBloomFilters(output);
+          }
         } finally {
           output.close();
         }
@@ -0,0 +1,135 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.ehcache.internal.store.disk;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.terracotta.offheapstore.disk.paging.MappedPageSource;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A {@link MappedPageSource} whose size can be changed while in use.
+ * <P>
+ *   Region allocations are refused once they would take the allocated size over the limit, or would end past it in
+ *   the file, as they can when the file is fragmented. Shrinking does not release regions already handed out, the
+ *   owner of the regions is expected to evict until {@link #isOverLimit()} returns {@code false}. As regions are freed
+ *   the file is truncated back to the limit, or to the end of the last region still in use if that lies past it.
+ * </P>
+ */
+class ResizableMappedPageSource extends MappedPageSource {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ResizableMappedPageSource.class);
+
+  private final Map<Long, Long> regionSizes = new HashMap<Long, Long>();
+
+  private long allocated;
+  private volatile long limit;
+
+  ResizableMappedPageSource(File file, boolean truncate, long size) throws IOException {
+    super(file, truncate);
+    this.limit = size;
+  }
+
+  @Override
+  public synchronized Long allocateRegion(long size) {
+    if (allocated + size > limit) {
+      return null;
+    }
+    Long address = super.allocateRegion(size);
+    if (address == null) {
+      return null;
+    } else if (address + size > limit) {
+      super.freeRegion(address);
+      truncate();
+      return null;
+    }
+    regionSizes.put(address, size);
+    allocated += size;
+    return address;
+  }
+
+  @Override
+  public synchronized void freeRegion(long address) {
+    super.freeRegion(address);
+    Long size = regionSizes.remove(address);
+    if (size != null) {
+      allocated -= size;
+    }
+    truncate();
+  }
+
+  @Override
+  public synchronized long claimRegion(long address, long size) throws IOException {
+    long claimed = super.claimRegion(address, size);
+    regionSizes.put(address, size);
+    allocated += size;
+    return claimed;
+  }
+
+  /**
+   * Changes the maximum number of bytes of the file this source hands out.
+   *
+   * @param size the new size in bytes
+   */
+  void resize(long size) {
+    if (size <= 0) {
+      throw new IllegalArgumentException("Size must be positive");
+    }
+    limit = size;
+  }
+
+  long getLimit() {
+    return limit;
+  }
+
+  synchronized long getAllocatedSize() {
+    return allocated;
+  }
+
+  synchronized boolean isOverLimit() {
+    return allocated > limit;
+  }
+
+  /**
+   * Truncates the file down to the limit, but not below the end of any region in use.
+   */
+  private void truncate() {
+    long end = limit;
+    FileChannel channel = getWritableChannel();
+    if (!channel.isOpen()) {
+      return;
+    }
+    try {
+      if (channel.size() > end) {
+        for (Map.Entry<Long, Long> region : regionSizes.entrySet()) {
+          end = Math.max(end, region.getKey() + region.getValue());
+        }
+        if (channel.size() > end) {
+          channel.truncate(end);
+        }
+      }
+    } catch (IOException e) {
+      LOGGER.warn("IOException while attempting to truncate file " + getFile().getAbsolutePath(), e);
+    }
+  }
+}
@@ -19,6 +19,7 @@ package org.ehcache.internal.store.disk.factories;
 import org.ehcache.function.BiFunction;
 import org.ehcache.function.Function;
 import org.ehcache.function.Predicate;
+import org.ehcache.internal.store.disk.CountingBloomFilter;
 import org.terracotta.offheapstore.Metadata;
 import org.terracotta.offheapstore.disk.paging.MappedPageSource;
 import org.terracotta.offheapstore.disk.persistent.PersistentReadWriteLockedOffHeapClockCache;
@@ -26,6 +27,7 @@ import org.terracotta.offheapstore.disk.persistent.PersistentStorageEngine;
 import org.terracotta.offheapstore.pinning.PinnableSegment;
 import org.terracotta.offheapstore.util.Factory;
 
+import java.nio.IntBuffer;
 import java.util.Map;
 import java.util.concurrent.locks.Lock;
 import org.ehcache.internal.store.offheap.factories.EhcacheSegmentFactory.EhcacheSegment;
@@ -46,8 +48,18 @@ public class EhcachePersistentSegmentFactory<K, V> implements Factory<PinnableSe
   private final EhcacheSegment.EvictionListener<K, V> evictionListener;
 
   private final boolean bootstrap;
+  private final Factory<CountingBloomFilter> bloomFilterFactory;
   
   public EhcachePersistentSegmentFactory(MappedPageSource source, Factory<? extends PersistentStorageEngine<? super K, ? super V>> storageEngineFactory, int initialTableSize, Predicate<Map.Entry<K, V>> evictionVeto, EhcacheSegment.EvictionListener<K, V> evictionListener, boolean bootstrap) {
+    this(source, storageEngineFactory, initialTableSize, evictionVeto, evictionListener, bootstrap, null);
+  }
+
+  /**
+   * Creates a factory whose segments each maintain a {@link CountingBloomFilter} from {@code bloomFilterFactory}
+   * over the hash codes of their keys, or none if the factory is {@code null}.
+   */
+  public EhcachePersistentSegmentFactory(MappedPageSource source, Factory<? extends PersistentStorageEngine<? super K, ? super V>> storageEngineFactory, int initialTableSize, Predicate<Map.Entry<K, V>> evictionVeto, EhcacheSegment.EvictionListener<K, V> evictionListener, boolean bootstrap, Factory<CountingBloomFilter> bloomFilterFactory) {
+    this.bloomFilterFactory = bloomFilterFactory;
     this.storageEngineFactory = storageEngineFactory;
     this.tableSource = source;
     this.tableSize = initialTableSize;
@@ -59,7 +71,8 @@ public class EhcachePersistentSegmentFactory<K, V> implements Factory<PinnableSe
   public EhcachePersistentSegment<K, V> newInstance() {
     PersistentStorageEngine<? super K, ? super V> storageEngine = storageEngineFactory.newInstance();
     try {
-      return new EhcachePersistentSegment<K, V>(tableSource, storageEngine, tableSize, bootstrap, evictionVeto, evictionListener);
+      CountingBloomFilter bloomFilter = bloomFilterFactory == null ? null : bloomFilterFactory.newInstance();
+      return new EhcachePersistentSegment<K, V>(tableSource, storageEngine, tableSize, bootstrap, evictionVeto, evictionListener, bloomFilter);
     } catch (RuntimeException e) {
       storageEngine.destroy();
       throw e;
@@ -68,13 +81,93 @@ public class EhcachePersistentSegmentFactory<K, V> implements Factory<PinnableSe
 
   public static class EhcachePersistentSegment<K, V> extends PersistentReadWriteLockedOffHeapClockCache<K, V> {
 
+    /**
+     * Offset of the key hash code within a table entry, mirroring the layout of {@code OffHeapHashMap}.
+     */
+    private static final int KEY_HASHCODE = 1;
+
     private final Predicate<Entry<K, V>> evictionVeto;
     private final EvictionListener<K, V> evictionListener;
+    private final CountingBloomFilter bloomFilter;
 
     EhcachePersistentSegment(MappedPageSource source, PersistentStorageEngine<? super K, ? super V> storageEngine, int tableSize, boolean bootstrap, Predicate<Entry<K, V>> evictionVeto, EvictionListener<K, V> evictionListener) {
+      this(source, storageEngine, tableSize, bootstrap, evictionVeto, evictionListener, null);
+    }
+
+    EhcachePersistentSegment(MappedPageSource source, PersistentStorageEngine<? super K, ? super V> storageEngine, int tableSize, boolean bootstrap, Predicate<Entry<K, V>> evictionVeto, EvictionListener<K, V> evictionListener, CountingBloomFilter bloomFilter) {
       super(source, storageEngine, tableSize, bootstrap);
       this.evictionVeto = evictionVeto;
       this.evictionListener = evictionListener;
+      this.bloomFilter = bloomFilter;
+    }
+
+    /**
+     * Returns the Bloom filter maintained over the key hash codes of this segment, {@code null} if there is none.
+     */
+    public CountingBloomFilter getBloomFilter() {
+      return bloomFilter;
+    }
+
+    /**
+     * Returns {@code false} only if this segment definitely holds no mapping for a key with the given hash code.
+     * Does not take the segment lock.
+     */
+    public boolean mightContain(int hash) {
+      return bloomFilter == null || bloomFilter.mightContain(hash);
+    }
+
+    /**
+     * Repopulates the Bloom filter from the hash codes held in the segment table, without reading any key.
+     */
+    public void rebuildBloomFilter() {
+      if (bloomFilter == null) {
+        return;
+      }
+      Lock lock = writeLock();
+      lock.lock();
+      try {
+        bloomFilter.clear();
+        IntBuffer table = hashtable;
+        if (table != null) {
+          for (int i = 0; i < table.capacity(); i += ENTRY_SIZE) {
+            if ((table.get(i + STATUS) & STATUS_USED) != 0) {
+              bloomFilter.add(table.get(i + KEY_HASHCODE));
+            }
+          }
+        }
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    @Override
+    protected void added(IntBuffer entry) {
+      super.added(entry);
+      if (bloomFilter != null) {
+        bloomFilter.add(entry.get(KEY_HASHCODE));
+      }
+    }
+
+    @Override
+    protected void removed(IntBuffer entry) {
+      super.removed(entry);
+      if (bloomFilter != null) {
+        bloomFilter.remove(entry.get(KEY_HASHCODE));
+      }
+    }
+
+    @Override
+    public void clear() {
+      Lock lock = writeLock();
+      lock.lock();
+      try {
+        super.clear();
+        if (bloomFilter != null) {
+          bloomFilter.clear();
+        }
+      } finally {
+        lock.unlock();
+      }
     }
 
     /**
@@ -0,0 +1,572 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.internal.store.heap;
+
+import org.ehcache.function.BiFunction;
+import org.ehcache.function.Function;
+import org.ehcache.function.Predicate;
+
+import java.util.AbstractMap.SimpleEntry;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A concurrent map from primitive {@code long} keys, sparing the boxed key, its wrapper and the hash entry each
+ * mapping of a {@link org.ehcache.internal.concurrent.ConcurrentHashMap} costs.
+ * <P>
+ *   Mappings are spread over lock striped segments, each an open addressed table of parallel key and value arrays
+ *   probed linearly. A {@code null} value marks a free slot and removals shift the following mappings back, so that
+ *   tables hold no tombstones. Functions passed to the compute methods run under the segment lock.
+ * </P>
+ * <P>
+ *   Reads take no lock: they probe the published table and check the segment sequence, which removals make odd
+ *   while they shift mappings around, retrying on a race and only locking when they keep losing it.
+ * </P>
+ * <P>
+ *   Iterators are weakly consistent: each segment is copied when the iteration reaches it.
+ * </P>
+ */
+final class LongKeyedMap<V> {
+
+  private static final int MAX_SEGMENTS = 1 << 10;
+  private static final int INITIAL_SEGMENT_CAPACITY = 16;
+  private static final int MAXIMUM_SEGMENT_CAPACITY = 1 << 30;
+
+  private final Segment<V>[] segments;
+  private final int segmentShift;
+
+  LongKeyedMap() {
+    this(Runtime.getRuntime().availableProcessors() * 4);
+  }
+
+  LongKeyedMap(int concurrency) {
+    int segmentCount = 1;
+    while (segmentCount < concurrency && segmentCount < MAX_SEGMENTS) {
+      segmentCount <<= 1;
+    }
+    @SuppressWarnings({"unchecked", "rawtypes"}) // generic arrays cannot be created, every segment holds V
+    Segment<V>[] segments = new Segment[segmentCount];
+    this.segments = segments;
+    for (int i = 0; i < segmentCount; i++) {
+      segments[i] = new Segment<V>();
+    }
+    this.segmentShift = 32 - Integer.numberOfTrailingZeros(segmentCount);
+  }
+
+  private static int spread(long key) {
+    long h = key * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32));
+  }
+
+  private Segment<V> segmentFor(int hash) {
+    // segments are picked by the high bits, slots by the low ones
+    return segmentShift == 32 ? segments[0] : segments[hash >>> segmentShift];
+  }
+
+  V get(long key) {
+    int hash = spread(key);
+    return segmentFor(hash).get(key, hash);
+  }
+
+  V putIfAbsent(long key, V value) {
+    int hash = spread(key);
+    return segmentFor(hash).putIfAbsent(key, hash, value);
+  }
+
+  boolean replace(long key, V oldValue, V newValue) {
+    int hash = spread(key);
+    return segmentFor(hash).replace(key, hash, oldValue, newValue);
+  }
+
+  V remove(long key) {
+    int hash = spread(key);
+    return segmentFor(hash).remove(key, hash, null);
+  }
+
+  boolean remove(long key, V value) {
+    if (value == null) {
+      throw new NullPointerException();
+    }
+    int hash = spread(key);
+    return segmentFor(hash).remove(key, hash, value) != null;
+  }
+
+  V compute(long key, BiFunction<Long, V, V> function) {
+    int hash = spread(key);
+    return segmentFor(hash).compute(key, hash, function, false);
+  }
+
+  V computeIfPresent(long key, BiFunction<Long, V, V> function) {
+    int hash = spread(key);
+    return segmentFor(hash).compute(key, hash, function, true);
+  }
+
+  /**
+   * Returns the lock of the segment holding this key. Mutations of the segment wait while it is held, and can be made
+   * by the thread holding it.
+   */
+  Lock lockFor(long key) {
+    return segmentFor(spread(key));
+  }
+
+  int size() {
+    long size = 0;
+    for (Segment<V> segment : segments) {
+      size += segment.count;
+    }
+    return (int) Math.min(size, Integer.MAX_VALUE);
+  }
+
+  void clear() {
+    for (Segment<V> segment : segments) {
+      segment.clear();
+    }
+  }
+
+  /**
+   * Removes the mappings passing {@code predicate} one segment at a time, under that segment's lock, handing the
+   * mappings removed from each segment over to {@code removals} once its lock is released.
+   */
+  void removeIf(Predicate<Map.Entry<Long, V>> predicate, Function<Map<Long, V>, ?> removals) {
+    for (Segment<V> segment : segments) {
+      Map<Long, V> removed = segment.removeIf(predicate);
+      if (!removed.isEmpty()) {
+        removals.apply(removed);
+      }
+    }
+  }
+
+  /**
+   * Samples up to {@code size} mappings not vetoed, scanning from a random slot of a random segment onwards.
+   */
+  Set<Map.Entry<Long, V>> getRandomValues(Random random, int size, Predicate<Map.Entry<Long, V>> veto) {
+    if (size == 0 || size() == 0) {
+      return Collections.emptySet();
+    }
+    Set<Map.Entry<Long, V>> sampled = new LinkedHashSet<Map.Entry<Long, V>>(size * 2);
+    int start = random.nextInt(segments.length);
+    for (int i = 0; i < segments.length && sampled.size() < size; i++) {
+      segments[(start + i) & (segments.length - 1)].sample(random, size, veto, sampled);
+    }
+    return sampled;
+  }
+
+  java.util.Iterator<Map.Entry<Long, V>> entryIterator() {
+    return new EntryIterator(0, segments.length);
+  }
+
+  /**
+   * Returns one iterator per segment, so that segments can be iterated concurrently.
+   */
+  List<java.util.Iterator<Map.Entry<Long, V>>> segmentIterators() {
+    List<java.util.Iterator<Map.Entry<Long, V>>> iterators = new ArrayList<java.util.Iterator<Map.Entry<Long, V>>>(segments.length);
+    for (int i = 0; i < segments.length; i++) {
+      iterators.add(new EntryIterator(i, i + 1));
+    }
+    return iterators;
+  }
+
+  private final class EntryIterator implements java.util.Iterator<Map.Entry<Long, V>> {
+
+    private final int segmentLimit;
+    private int segmentIndex;
+    private long[] keys = new long[0];
+    private Object[] values = new Object[0];
+    private int index = 0;
+    private Map.Entry<Long, V> last;
+
+    EntryIterator(int segmentIndex, int segmentLimit) {
+      this.segmentIndex = segmentIndex;
+      this.segmentLimit = segmentLimit;
+    }
+
+    @Override
+    public boolean hasNext() {
+      while (index == keys.length) {
+        if (segmentIndex == segmentLimit) {
+          return false;
+        }
+        Segment<V> segment = segments[segmentIndex++];
+        segment.lock();
+        try {
+          keys = new long[segment.count];
+          values = new Object[segment.count];
+          segment.copyTo(keys, values);
+        } finally {
+          segment.unlock();
+        }
+        index = 0;
+      }
+      return true;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Map.Entry<Long, V> next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      last = new SimpleEntry<Long, V>(keys[index], (V) values[index]);
+      values[index++] = null;
+      return last;
+    }
+
+    @Override
+    public void remove() {
+      if (last == null) {
+        throw new IllegalStateException();
+      }
+      LongKeyedMap.this.remove(last.getKey());
+      last = null;
+    }
+  }
+
+  private static final class Segment<V> extends ReentrantLock {
+
+    private static final long serialVersionUID = 1L;
+    private static final int OPTIMISTIC_READ_ATTEMPTS = 4;
+
+    private volatile Table table;
+    private volatile int count;
+    private int modCount;
+    /**
+     * Odd while a removal shifts mappings around, so that lock free reads can detect they raced with it.
+     */
+    private volatile int sequence;
+
+    Segment() {
+      this.table = new Table(INITIAL_SEGMENT_CAPACITY);
+    }
+
+    /**
+     * Returns the slot holding {@code key}, or {@code -(slot + 1)} for the free slot it would be inserted in.
+     * Only called under the segment lock.
+     */
+    private int indexOf(long key, int hash) {
+      Table table = this.table;
+      int mask = table.mask;
+      int i = hash & mask;
+      while (table.values.get(i) != null) {
+        if (table.keys.get(i) == key) {
+          return i;
+        }
+        i = (i + 1) & mask;
+      }
+      return -(i + 1);
+    }
+
+    @SuppressWarnings("unchecked")
+    V get(long key, int hash) {
+      for (int attempt = 0; attempt < OPTIMISTIC_READ_ATTEMPTS; attempt++) {
+        int expectedSequence = sequence;
+        if ((expectedSequence & 1) == 0) {
+          Object value = table.lookup(key, hash);
+          if (value != Table.TORN && sequence == expectedSequence) {
+            return (V) value;
+          }
+        }
+      }
+      // keeps losing races against removals, wait for them instead
+      lock();
+      try {
+        int i = indexOf(key, hash);
+        return i >= 0 ? (V) table.values.get(i) : null;
+      } finally {
+        unlock();
+      }
+    }
+
+    @SuppressWarnings("unchecked")
+    V putIfAbsent(long key, int hash, V value) {
+      if (value == null) {
+        throw new NullPointerException();
+      }
+      lock();
+      try {
+        int i = indexOf(key, hash);
+        if (i >= 0) {
+          return (V) table.values.get(i);
+        }
+        insert(key, hash, -(i + 1), value);
+        return null;
+      } finally {
+        unlock();
+      }
+    }
+
+    boolean replace(long key, int hash, V oldValue, V newValue) {
+      if (oldValue == null || newValue == null) {
+        throw new NullPointerException();
+      }
+      lock();
+      try {
+        int i = indexOf(key, hash);
+        if (i >= 0 && eq(oldValue, table.values.get(i))) {
+          table.values.lazySet(i, newValue);
+          modCount++;
+          return true;
+        }
+        return false;
+      } finally {
+        unlock();
+      }
+    }
+
+    /**
+     * Removes the mapping of {@code key}, only if mapped to {@code expected} unless that is {@code null}.
+     */
+    @SuppressWarnings("unchecked")
+    V remove(long key, int hash, V expected) {
+      lock();
+      try {
+        int i = indexOf(key, hash);
+        if (i >= 0) {
+          V removed = (V) table.values.get(i);
+          if (expected == null || eq(expected, removed)) {
+            removeAt(i);
+            return removed;
+          }
+        }
+        return null;
+      } finally {
+        unlock();
+      }
+    }
+
+    @SuppressWarnings("unchecked")
+    V compute(long key, int hash, BiFunction<Long, V, V> function, boolean onlyIfPresent) {
+      lock();
+      try {
+        int i = indexOf(key, hash);
+        V oldValue = i >= 0 ? (V) table.values.get(i) : null;
+        if (oldValue == null && onlyIfPresent) {
+          return null;
+        }
+        int expectedModCount = modCount;
+        V newValue = function.apply(key, oldValue);
+        if (modCount != expectedModCount) {
+          // the function modified this segment, its slot may have moved
+          i = indexOf(key, hash);
+        }
+        if (i >= 0) {
+          if (newValue == null) {
+            removeAt(i);
+          } else {
+            table.values.lazySet(i, newValue);
+            modCount++;
+          }
+        } else if (newValue != null) {
+          insert(key, hash, -(i + 1), newValue);
+        }
+        return newValue;
+      } finally {
+        unlock();
+      }
+    }
+
+    void clear() {
+      lock();
+      try {
+        table = new Table(INITIAL_SEGMENT_CAPACITY);
+        count = 0;
+        modCount++;
+      } finally {
+        unlock();
+      }
+    }
+
+    @SuppressWarnings("unchecked")
+    Map<Long, V> removeIf(Predicate<Map.Entry<Long, V>> predicate) {
+      lock();
+      try {
+        Map<Long, V> removed = new HashMap<Long, V>();
+        if (count == 0) {
+          return removed;
+        }
+        Table table = this.table;
+        for (int i = 0; i < table.capacity; i++) {
+          V value = (V) table.values.get(i);
+          if (value != null && predicate.test(new SimpleEntry<Long, V>(table.keys.get(i), value))) {
+            removed.put(table.keys.get(i), value);
+          }
+        }
+        // removals shift mappings around, so they only start once all slots were tested
+        for (Long key : removed.keySet()) {
+          int i = indexOf(key, spread(key));
+          if (i >= 0) {
+            removeAt(i);
+          }
+        }
+        return removed;
+      } finally {
+        unlock();
+      }
+    }
+
+    @SuppressWarnings("unchecked")
+    void sample(Random random, int size, Predicate<Map.Entry<Long, V>> veto, Set<Map.Entry<Long, V>> sampled) {
+      lock();
+      try {
+        if (count == 0) {
+          return;
+        }
+        Table table = this.table;
+        int start = random.nextInt(table.capacity);
+        for (int n = 0; n < table.capacity && sampled.size() < size; n++) {
+          int i = (start + n) & table.mask;
+          V value = (V) table.values.get(i);
+          if (value != null) {
+            Map.Entry<Long, V> entry = new SimpleEntry<Long, V>(table.keys.get(i), value);
+            if (!veto.test(entry)) {
+              sampled.add(entry);
+            }
+          }
+        }
+      } finally {
+        unlock();
+      }
+    }
+
+    /**
+     * Copies the keys and values of this segment's mappings, both arrays being sized to the mapping count.
+     */
+    void copyTo(long[] keys, Object[] values) {
+      Table table = this.table;
+      for (int i = 0, j = 0; i < table.capacity; i++) {
+        Object value = table.values.get(i);
+        if (value != null) {
+          keys[j] = table.keys.get(i);
+          values[j++] = value;
+        }
+      }
+    }
+
+    private void insert(long key, int hash, int slot, V value) {
+      // keep the load factor at or below 3/4
+      if ((count + 1) * 4L > table.capacity * 3L && table.capacity < MAXIMUM_SEGMENT_CAPACITY) {
+        rehash(table.capacity << 1);
+        slot = -(indexOf(key, hash) + 1);
+      }
+      // the key is written first, so that readers seeing the value see its key
+      table.keys.lazySet(slot, key);
+      table.values.lazySet(slot, value);
+      count = count + 1;
+      modCount++;
+    }
+
+    private void rehash(int capacity) {
+      // the old table is left untouched, so that reads still probing it see a consistent snapshot
+      Table oldTable = table;
+      Table newTable = new Table(capacity);
+      for (int j = 0; j < oldTable.capacity; j++) {
+        Object value = oldTable.values.get(j);
+        if (value != null) {
+          long key = oldTable.keys.get(j);
+          int i = spread(key) & newTable.mask;
+          while (newTable.values.get(i) != null) {
+            i = (i + 1) & newTable.mask;
+          }
+          newTable.keys.lazySet(i, key);
+          newTable.values.lazySet(i, value);
+        }
+      }
+      table = newTable;
+    }
+
+    private void removeAt(int i) {
+      Table table = this.table;
+      AtomicReferenceArray<Object> values = table.values;
+      AtomicLongArray keys = table.keys;
+      int mask = table.mask;
+      sequence++;
+      try {
+        values.lazySet(i, null);
+        // shift back the mappings whose probe sequence crossed the freed slot
+        for (int j = (i + 1) & mask; values.get(j) != null; j = (j + 1) & mask) {
+          int ideal = spread(keys.get(j)) & mask;
+          if (((j - ideal) & mask) >= ((j - i) & mask)) {
+            keys.lazySet(i, keys.get(j));
+            values.lazySet(i, values.get(j));
+            values.lazySet(j, null);
+            i = j;
+          }
+        }
+        count = count - 1;
+        modCount++;
+      } finally {
+        sequence++;
+      }
+    }
+
+    private static boolean eq(Object o1, Object o2) {
+      return o1 == o2 || o1.equals(o2);
+    }
+  }
+
+  /**
+   * An open addressed table, published whole so that lock free reads always probe matching key and value arrays.
+   */
+  private static final class Table {
+
+    /**
+     * Returned by {@link #lookup(long, int)} when a probe could not complete, having raced with removals.
+     */
+    static final Object TORN = new Object();
+
+    final AtomicLongArray keys;
+    final AtomicReferenceArray<Object> values;
+    final int capacity;
+    final int mask;
+
+    Table(int capacity) {
+      this.keys = new AtomicLongArray(capacity);
+      this.values = new AtomicReferenceArray<Object>(capacity);
+      this.capacity = capacity;
+      this.mask = capacity - 1;
+    }
+
+    /**
+     * Probes for {@code key} without locking, the caller validating the result against the segment sequence.
+     */
+    Object lookup(long key, int hash) {
+      int i = hash & mask;
+      for (int n = 0; n < capacity; n++) {
+        // the value is read first, as inserts publish it after its key
+        Object value = values.get(i);
+        if (value == null) {
+          return null;
+        }
+        if (keys.get(i) == key) {
+          return value;
+        }
+        i = (i + 1) & mask;
+      }
+      return TORN;
+    }
+  }
+}
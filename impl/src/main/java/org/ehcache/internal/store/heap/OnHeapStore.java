@@ -25,11 +25,15 @@ import org.ehcache.config.EvictionPrioritizer;
 import org.ehcache.config.ResourcePool;
 import org.ehcache.config.ResourcePools;
 import org.ehcache.config.ResourceType;
+import org.ehcache.config.SharedResourcePool;
+import org.ehcache.config.store.HitCountingConfiguration;
+import org.ehcache.config.store.ReadBufferConfiguration;
 import org.ehcache.config.units.EntryUnit;
 import org.ehcache.events.CacheEvents;
 import org.ehcache.events.StoreEventListener;
 import org.ehcache.exceptions.CacheAccessException;
 import org.ehcache.expiry.Duration;
+import org.ehcache.expiry.Expirations;
 import org.ehcache.expiry.Expiry;
 import org.ehcache.function.BiFunction;
 import org.ehcache.function.Function;
@@ -39,13 +43,17 @@ import org.ehcache.function.Predicates;
 import org.ehcache.internal.TimeSource;
 import org.ehcache.internal.TimeSourceService;
 import org.ehcache.internal.concurrent.ConcurrentHashMap;
+import org.ehcache.internal.copy.IdentityCopier;
 import org.ehcache.internal.copy.SerializingCopier;
+import org.ehcache.internal.store.SharedResourcePoolsService;
 import org.ehcache.internal.store.heap.holders.CopiedOnHeapKey;
 import org.ehcache.internal.store.heap.holders.CopiedOnHeapValueHolder;
 import org.ehcache.internal.store.heap.holders.LookupOnlyOnHeapKey;
 import org.ehcache.internal.store.heap.holders.OnHeapKey;
 import org.ehcache.internal.store.heap.holders.OnHeapValueHolder;
 import org.ehcache.internal.store.heap.holders.SerializedOnHeapValueHolder;
+import org.ehcache.internal.store.heap.holders.SlimOnHeapValueHolder;
+import org.ehcache.internal.store.tiering.HotKeysProvider;
 import org.ehcache.spi.ServiceProvider;
 import org.ehcache.spi.cache.CacheStoreHelper;
 import org.ehcache.spi.cache.Store;
@@ -73,38 +81,55 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import static org.ehcache.exceptions.CachePassThroughException.handleRuntimeException;
+import static org.ehcache.spi.ServiceLocator.findSingletonAmongst;
 import static org.terracotta.statistics.StatisticBuilder.operation;
 
 /**
  * @author Alex Snaps
  */
-public class OnHeapStore<K, V> implements Store<K,V>, HigherCachingTier<K, V> {
+public class OnHeapStore<K, V> implements Store<K,V>, Store.Partitioned<K, V>, Store.Purgeable<K, V>, HigherCachingTier<K, V>, HotKeysProvider<K> {
 
   private static final Logger LOG = LoggerFactory.getLogger(OnHeapStore.class);
 
   private static final int ATTEMPT_RATIO = 4;
-  private static final int EVICTION_RATIO = 2;
   static final int SAMPLE_SIZE = 8;
+  static final int MAX_EVICTION_BATCH = 64;
+  private static final Class<?> TIME_TO_LIVE_EXPIRY_TYPE = Expirations.timeToLiveExpiration(Duration.FOREVER).getClass();
   
   private final MapWrapper<K, V> map;
   private final Class<K> keyType;
   private final Class<V> valueType;
   private final Copier<K> keyCopier;
   private final Copier<V> valueCopier;
+  private final SlimOnHeapValueHolder.Expiration slimHolderExpiration;
+  private final boolean hitCounting;
+  private final ReadBuffer<OnHeapValueHolder<V>> readBuffer;
+  private final ReentrantLock evictionLock = new ReentrantLock();
+  private final Random evictionRandom = new Random();
+  private final AtomicLong evictionBacklog = new AtomicLong();
+  private final AtomicLong evictionBackPressure = new AtomicLong();
 
   private volatile long capacity;
+  private final SharedHeapPool sharedHeapPool;
   private final Predicate<? extends Map.Entry<? super K, ? extends OnHeapValueHolder<? super V>>> evictionVeto;
   private final Comparator<? extends Map.Entry<? super K, ? extends OnHeapValueHolder<? super V>>> evictionPrioritizer;
   private final Expiry<? super K, ? super V> expiry;
@@ -146,6 +171,14 @@ public class OnHeapStore<K, V> implements Store<K,V>, HigherCachingTier<K, V> {
 
   private final OnHeapStoreStatsSettings onHeapStoreStatsSettings;
 
+  private final ReadBuffer.Consumer<OnHeapValueHolder<V>> bufferedReadRecorder = new ReadBuffer.Consumer<OnHeapValueHolder<V>>() {
+    @Override
+    public void accept(OnHeapValueHolder<V> valueHolder, long time) {
+      // drained reads can be older than the last ones applied
+      valueHolder.accessed(Math.max(time, valueHolder.lastAccessTime(OnHeapValueHolder.TIME_UNIT)), null);
+    }
+  };
+
   private static final NullaryFunction<Boolean> REPLACE_EQUALS_TRUE = new NullaryFunction<Boolean>() {
     @Override
     public Boolean apply() {
@@ -154,6 +187,19 @@ public class OnHeapStore<K, V> implements Store<K,V>, HigherCachingTier<K, V> {
   };
 
   public OnHeapStore(final Configuration<K, V> config, TimeSource timeSource, Copier<K> keyCopier, Copier<V> valueCopier) {
+    this(config, timeSource, keyCopier, valueCopier, null);
+  }
+
+  public OnHeapStore(final Configuration<K, V> config, TimeSource timeSource, Copier<K> keyCopier, Copier<V> valueCopier, SharedHeapPool sharedHeapPool) {
+    this(config, timeSource, keyCopier, valueCopier, sharedHeapPool, true);
+  }
+
+  public OnHeapStore(final Configuration<K, V> config, TimeSource timeSource, Copier<K> keyCopier, Copier<V> valueCopier, SharedHeapPool sharedHeapPool, boolean hitCounting) {
+    this(config, timeSource, keyCopier, valueCopier, sharedHeapPool, hitCounting, null);
+  }
+
+  public OnHeapStore(final Configuration<K, V> config, TimeSource timeSource, Copier<K> keyCopier, Copier<V> valueCopier, SharedHeapPool sharedHeapPool,
+                     boolean hitCounting, ReadBufferConfiguration readBufferConfiguration) {
     if (keyCopier == null) {
       throw new NullPointerException("keyCopier must not be null");
     }
@@ -167,7 +213,15 @@ public class OnHeapStore<K, V> implements Store<K,V>, HigherCachingTier<K, V> {
     if (!heapPool.getUnit().equals(EntryUnit.ENTRIES)) {
       throw new IllegalArgumentException("OnHeap store only handles resource unit 'entries'");
     }
-    this.capacity = heapPool.getSize();
+    if (heapPool instanceof SharedResourcePool) {
+      if (sharedHeapPool == null) {
+        throw new IllegalArgumentException("OnHeap store configured with a shared heap resource but no shared heap pool available");
+      }
+      this.capacity = sharedHeapPool.getCapacity();
+    } else {
+      this.capacity = heapPool.getSize();
+    }
+    this.sharedHeapPool = sharedHeapPool;
     EvictionPrioritizer<? super K, ? super V> prioritizer = config.getEvictionPrioritizer();
     if(prioritizer == null) {
       prioritizer = Eviction.Prioritizer.LRU;
@@ -180,7 +234,14 @@ public class OnHeapStore<K, V> implements Store<K,V>, HigherCachingTier<K, V> {
     this.expiry = config.getExpiry();
     this.keyCopier = keyCopier;
     this.valueCopier = valueCopier;
-    this.map = new MapWrapper<K, V>(this.keyCopier);
+    this.map = MapWrapper.create(keyType, keyCopier);
+    if (!hitCounting && prioritizer == Eviction.Prioritizer.LFU) {
+      LOG.warn("Hit counting cannot be disabled on a store using the LFU eviction prioritizer - ignoring");
+      hitCounting = true;
+    }
+    this.hitCounting = hitCounting;
+    this.slimHolderExpiration = slimHolderExpiration(valueCopier, expiry);
+    this.readBuffer = readBufferConfiguration == null ? null : new ReadBuffer<OnHeapValueHolder<V>>(readBufferConfiguration.getBufferSize());
     onHeapStoreStatsSettings = new OnHeapStoreStatsSettings(this);
     StatisticsManager.associate(onHeapStoreStatsSettings).withParent(this);
     getObserver = operation(StoreOperationOutcomes.GetOutcome.class).named("get").of(this).tag("onheap-store").build();
@@ -198,6 +259,9 @@ public class OnHeapStore<K, V> implements Store<K,V>, HigherCachingTier<K, V> {
     getOrComputeIfAbsentObserver = operation(CachingTierOperationOutcomes.GetOrComputeIfAbsentOutcome.class).named("getOrComputeIfAbsent").of(this).tag("onheap-store").build();
     invalidateObserver = operation(CachingTierOperationOutcomes.InvalidateOutcome.class).named("invalidate").of(this).tag("onheap-store").build();
     silentInvalidateObserver = operation(HigherCachingTierOperationOutcomes.SilentInvalidateOutcome.class).named("silentInvalidate").of(this).tag("onheap-store").build();
+    Set<String> tags = Collections.singleton("onheap-store");
+    StatisticsManager.createPassThroughStatistic(this, "evictionBacklog", tags, statistic(evictionBacklog));
+    StatisticsManager.createPassThroughStatistic(this, "evictionBackPressure", tags, statistic(evictionBackPressure));
   }
 
   @Override
@@ -209,23 +273,18 @@ public class OnHeapStore<K, V> implements Store<K,V>, HigherCachingTier<K, V> {
   private OnHeapValueHolder<V> internalGet(final K key, final boolean updateAccess) throws CacheAccessException {
     getObserver.begin();
     try {
-      OnHeapValueHolder<V> result = map.computeIfPresent(key, new BiFunction<K, OnHeapValueHolder<V>, OnHeapValueHolder<V>>() {
-        @Override
-        public OnHeapValueHolder<V> apply(K mappedKey, OnHeapValueHolder<V> mappedValue) {
-          final long now = timeSource.getTimeMillis();
-
-          if (mappedValue.isExpired(now, TimeUnit.MILLISECONDS)) {
-            onExpiration(mappedKey, mappedValue);
-            return null;
-          }
-
-          if (updateAccess) {
-            return setAccessTimeAndExpiryThenReturnMapping(key, mappedValue, now, false);
-          }
-
-          return mappedValue;
+      // reads stay off the map locks: the access metadata is updated on the holder itself and only removing an
+      // expired mapping needs to lock
+      OnHeapValueHolder<V> result = map.get(key);
+      if (result != null) {
+        final long now = timeSource.getTimeMillis();
+        if (result.isExpired(now, TimeUnit.MILLISECONDS)) {
+          expireMapping(key, result);
+          result = null;
+        } else if (updateAccess) {
+          result = recordRead(key, result, now);
         }
-      });
+      }
       if (result == null) {
         getObserver.end(StoreOperationOutcomes.GetOutcome.MISS);
       } else {
@@ -483,13 +542,13 @@ public class OnHeapStore<K, V> implements Store<K,V>, HigherCachingTier<K, V> {
   }
 
   private void invalidate() {
-    if(map.keyCopyMap != null) {
-      for(OnHeapKey<K> key : map.keyCopyMap.keySet()) {
-        try {
-          invalidate(key.getActualKeyObject());
-        } catch (CacheAccessException cae) {
-          LOG.warn("Failed to invalidate mapping for key {}", key, cae);
-        }
+    java.util.Iterator<Map.Entry<K, OnHeapValueHolder<V>>> iterator = map.entrySetIterator();
+    while (iterator.hasNext()) {
+      K key = iterator.next().getKey();
+      try {
+        invalidate(key);
+      } catch (CacheAccessException cae) {
+        LOG.warn("Failed to invalidate mapping for key {}", key, cae);
       }
     }
     map.clear();
@@ -497,7 +556,43 @@ public class OnHeapStore<K, V> implements Store<K,V>, HigherCachingTier<K, V> {
 
   @Override
   public Iterator<Cache.Entry<K, ValueHolder<V>>> iterator() {
-    final java.util.Iterator<Map.Entry<K, OnHeapValueHolder<V>>> it = map.entrySetIterator();
+    return iterator(map.entrySetIterator(), true);
+  }
+
+  @Override
+  public List<Iterator<Cache.Entry<K, ValueHolder<V>>>> partitionIterators(boolean recordAccess) {
+    List<Iterator<Cache.Entry<K, ValueHolder<V>>>> iterators = new ArrayList<Iterator<Cache.Entry<K, ValueHolder<V>>>>();
+    for (java.util.Iterator<Map.Entry<K, OnHeapValueHolder<V>>> it : map.partitionIterators()) {
+      iterators.add(iterator(it, recordAccess));
+    }
+    return iterators;
+  }
+
+  @Override
+  public void removeIf(final Predicate<? super Cache.Entry<K, ValueHolder<V>>> predicate, boolean keysOnly,
+                       final Function<? super Map<K, ValueHolder<V>>, ?> removals) throws CacheAccessException {
+    // values are on heap already, so they get handed to the predicate whether it needs them or not
+    final long now = timeSource.getTimeMillis();
+    try {
+      map.removeIf(new Predicate<Map.Entry<K, OnHeapValueHolder<V>>>() {
+        @Override
+        public boolean test(Map.Entry<K, OnHeapValueHolder<V>> entry) {
+          return !entry.getValue().isExpired(now, TimeUnit.MILLISECONDS)
+              && predicate.test(CacheStoreHelper.<K, V>storeEntry(entry.getKey(), entry.getValue(), timeSource));
+        }
+      }, new Function<Map<K, OnHeapValueHolder<V>>, Void>() {
+        @Override
+        public Void apply(Map<K, OnHeapValueHolder<V>> removed) {
+          removals.apply(Collections.<K, ValueHolder<V>>unmodifiableMap(removed));
+          return null;
+        }
+      });
+    } catch (RuntimeException re) {
+      handleRuntimeException(re);
+    }
+  }
+
+  private Iterator<Cache.Entry<K, ValueHolder<V>>> iterator(final java.util.Iterator<Map.Entry<K, OnHeapValueHolder<V>>> it, final boolean recordAccess) {
     return new Iterator<Cache.Entry<K, ValueHolder<V>>>() {
       private Map.Entry<K, OnHeapValueHolder<V>> next = null;
       private CacheAccessException prefetchFailure = null;
@@ -544,7 +639,9 @@ public class OnHeapStore<K, V> implements Store<K,V>, HigherCachingTier<K, V> {
         final Map.Entry<K, OnHeapValueHolder<V>> thisEntry = next;
         advance();
 
-        setAccessTimeAndExpiryThenReturnMapping(thisEntry.getKey(), thisEntry.getValue(), timeSource.getTimeMillis(), true);
+        if (recordAccess) {
+          setAccessTimeAndExpiryThenReturnMapping(thisEntry.getKey(), thisEntry.getValue(), timeSource.getTimeMillis(), true);
+        }
 
         return new Cache.Entry<K, ValueHolder<V>>() {
           @Override
@@ -655,7 +752,7 @@ public class OnHeapStore<K, V> implements Store<K,V>, HigherCachingTier<K, V> {
           return null;
         }
         // TODO find a way to increment hit count on a fault
-        if (setAccessTimeAndExpiryThenReturnMapping(key, cachedValue, now, true) == null) {
+        if (recordRead(key, cachedValue, now) == null) {
           getOrComputeIfAbsentObserver.end(CachingTierOperationOutcomes.GetOrComputeIfAbsentOutcome.MISS);
           return null;
         }
@@ -771,15 +868,12 @@ public class OnHeapStore<K, V> implements Store<K,V>, HigherCachingTier<K, V> {
    */
   private static class Fault<V> extends OnHeapValueHolder<V> {
 
-    private static final int FAULT_ID = -1;
-
     private final NullaryFunction<ValueHolder<V>> source;
     private ValueHolder<V> value;
     private Throwable throwable;
     private boolean complete;
 
     public Fault(final NullaryFunction<ValueHolder<V>> source) {
-      super(FAULT_ID, 0);
       this.source = source;
     }
 
@@ -864,6 +958,21 @@ public class OnHeapStore<K, V> implements Store<K,V>, HigherCachingTier<K, V> {
       throw new UnsupportedOperationException();
     }
 
+    @Override
+    public void accessed(long now, Duration expiration) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public long hits() {
+      return 0;
+    }
+
+    @Override
+    public float hitRate(long now, TimeUnit unit) {
+      return 0;
+    }
+
     @Override
     public String toString() {
       return "[Fault : " + (complete ? (throwable == null ? value.toString() : throwable.getMessage()) : "???") + "]";
@@ -873,6 +982,11 @@ public class OnHeapStore<K, V> implements Store<K,V>, HigherCachingTier<K, V> {
     public boolean equals(Object obj) {
       return obj == this;
     }
+
+    @Override
+    public int hashCode() {
+      return System.identityHashCode(this);
+    }
   }
 
   @Override
@@ -882,6 +996,10 @@ public class OnHeapStore<K, V> implements Store<K,V>, HigherCachingTier<K, V> {
   
   @Override
   public ValueHolder<V> compute(final K key, final BiFunction<? super K, ? super V, ? extends V> mappingFunction, final NullaryFunction<Boolean> replaceEqual) throws CacheAccessException {
+    return enforceCapacityIfValueNotNull(computeMapping(key, mappingFunction, replaceEqual));
+  }
+
+  private OnHeapValueHolder<V> computeMapping(final K key, final BiFunction<? super K, ? super V, ? extends V> mappingFunction, final NullaryFunction<Boolean> replaceEqual) throws CacheAccessException {
     computeObserver.begin();
     checkKey(key);
 
@@ -930,7 +1048,7 @@ public class OnHeapStore<K, V> implements Store<K,V>, HigherCachingTier<K, V> {
       } else {
         computeObserver.end(StoreOperationOutcomes.ComputeOutcome.HIT);
       }
-      return enforceCapacityIfValueNotNull(computeResult);
+      return computeResult;
     } catch (RuntimeException re) {
       handleRuntimeException(re);
       return null;
@@ -1092,30 +1210,49 @@ public class OnHeapStore<K, V> implements Store<K,V>, HigherCachingTier<K, V> {
   public Map<K, ValueHolder<V>> bulkCompute(Set<? extends K> keys, final Function<Iterable<? extends Map.Entry<? extends K, ? extends V>>, Iterable<? extends Map.Entry<? extends K,? extends V>>> remappingFunction, NullaryFunction<Boolean> replaceEqual) throws CacheAccessException {
  
     // The Store here is free to slice & dice the keys as it sees fit
-    // As this OnHeapStore doesn't operate in segments, the best it can do is do a "bulk" write in batches of... one!
+    // This OnHeapStore hands the function the keys of one partition of its map at a time, locking that partition
 
-    Map<K, ValueHolder<V>> result = new HashMap<K, ValueHolder<V>>();
     for (K key : keys) {
       checkKey(key);
-      
-      final ValueHolder<V> newValue = compute(key, new BiFunction<K, V, V>() {
-        @Override
-        public V apply(final K k, final V oldValue) {
-          final Set<Map.Entry<K, V>> entrySet = Collections.singletonMap(k, oldValue).entrySet();
-          final Iterable<? extends Map.Entry<? extends K, ? extends V>> entries = remappingFunction.apply(entrySet);
-          final java.util.Iterator<? extends Map.Entry<? extends K, ? extends V>> iterator = entries.iterator();
-          final Map.Entry<? extends K, ? extends V> next = iterator.next();
-
-          K key = next.getKey();
-          V value = next.getValue();
-          checkKey(key);
-          if (value != null) {
-            checkValue(value);
+    }
+    Map<K, ValueHolder<V>> result = new HashMap<K, ValueHolder<V>>();
+    for (Map.Entry<Lock, List<K>> partition : map.partitions(keys).entrySet()) {
+      List<OnHeapValueHolder<V>> computedMappings = new ArrayList<OnHeapValueHolder<V>>(partition.getValue().size());
+      Lock lock = partition.getKey();
+      lock.lock();
+      try {
+        Iterable<? extends Map.Entry<? extends K, ? extends V>> entries;
+        try {
+          long now = timeSource.getTimeMillis();
+          Map<K, V> existingValues = new LinkedHashMap<K, V>();
+          for (K key : partition.getValue()) {
+            OnHeapValueHolder<V> mappedValue = map.get(key);
+            existingValues.put(key, mappedValue == null || mappedValue.isExpired(now, TimeUnit.MILLISECONDS) ? null : mappedValue.value());
           }
-          return value;
+          entries = remappingFunction.apply(existingValues.entrySet());
+        } catch (RuntimeException re) {
+          handleRuntimeException(re);
+          return null;
         }
-      }, replaceEqual);
-      result.put(key, newValue);
+
+        for (Map.Entry<? extends K, ? extends V> entry : entries) {
+          final V value = entry.getValue();
+          OnHeapValueHolder<V> computed = computeMapping(entry.getKey(), new BiFunction<K, V, V>() {
+            @Override
+            public V apply(K mappedKey, V mappedValue) {
+              return value;
+            }
+          }, replaceEqual);
+          result.put(entry.getKey(), computed);
+          computedMappings.add(computed);
+        }
+      } finally {
+        lock.unlock();
+      }
+      // evicting takes the locks of other partitions, so only once this one is released
+      for (OnHeapValueHolder<V> computed : computedMappings) {
+        enforceCapacityIfValueNotNull(computed);
+      }
     }
     return result;
   }
@@ -1148,6 +1285,37 @@ public class OnHeapStore<K, V> implements Store<K,V>, HigherCachingTier<K, V> {
     return valueHolder;
   }
 
+  /**
+   * Records a read of a mapping found without locking, deferring the update of its last access time and hit count
+   * when reads are buffered.
+   */
+  private OnHeapValueHolder<V> recordRead(K key, OnHeapValueHolder<V> valueHolder, long now) {
+    if (readBuffer == null) {
+      return setAccessTimeAndExpiryThenReturnMapping(key, valueHolder, now, true);
+    }
+    Duration duration;
+    try {
+      duration = expiry.getExpiryForAccess(key, valueHolder.value());
+    } catch (RuntimeException re) {
+      LOG.error("Expiry computation caused an exception - Expiry duration will be 0 ", re);
+      expireMapping(key, valueHolder);
+      return null;
+    }
+    if (duration != null) {
+      valueHolder.setExpirationTime(duration.isForever() ? ValueHolder.NO_EXPIRE : safeExpireTime(now, duration), OnHeapValueHolder.TIME_UNIT);
+    }
+    if (readBuffer.record(valueHolder, now)) {
+      readBuffer.tryDrain(bufferedReadRecorder);
+    }
+    return valueHolder;
+  }
+
+  private void drainReadBuffer() {
+    if (readBuffer != null) {
+      readBuffer.drain(bufferedReadRecorder);
+    }
+  }
+
   private void expireMapping(final K key, final ValueHolder<V> value) {
     map.computeIfPresent(key, new BiFunction<K, OnHeapValueHolder<V>, OnHeapValueHolder<V>>() {
       @Override
@@ -1247,9 +1415,28 @@ public class OnHeapStore<K, V> implements Store<K,V>, HigherCachingTier<K, V> {
   }
 
   private OnHeapValueHolder<V> makeCopiedValue(V value, long creationTime, long expirationTime, Copier<V> valueCopier) {
+    if (slimHolderExpiration != null) {
+      return SlimOnHeapValueHolder.create(value, creationTime, expirationTime, slimHolderExpiration, hitCounting);
+    }
     return new CopiedOnHeapValueHolder<V>(value, creationTime, expirationTime, valueCopier);
   }
 
+  /**
+   * Returns the expiration of the slim holders fitting the given copier and expiry, or {@code null} if values need
+   * copying and so the complete holders.
+   */
+  private static SlimOnHeapValueHolder.Expiration slimHolderExpiration(Copier<?> valueCopier, Expiry<?, ?> expiry) {
+    if (!(valueCopier instanceof IdentityCopier)) {
+      return null;
+    } else if (Expirations.noExpiration().equals(expiry)) {
+      return SlimOnHeapValueHolder.Expiration.NONE;
+    } else if (expiry.getClass() == TIME_TO_LIVE_EXPIRY_TYPE) {
+      return SlimOnHeapValueHolder.Expiration.FIXED;
+    } else {
+      return SlimOnHeapValueHolder.Expiration.VARIABLE;
+    }
+  }
+
   private static long safeExpireTime(long now, Duration duration) {
     long millis = OnHeapValueHolder.TIME_UNIT.convert(duration.getAmount(), duration.getTimeUnit());
     
@@ -1264,13 +1451,71 @@ public class OnHeapStore<K, V> implements Store<K,V>, HigherCachingTier<K, V> {
     return result;
   }
   
+  /**
+   * Brings this store back within capacity after mappings got added.
+   * <P>
+   *   Writers finding the store over capacity leave eviction to whichever of them gets hold of the eviction lock,
+   *   unless the backlog exceeds its limit, in which case they wait for their turn to evict. Either way a writer evicts
+   *   at most one batch, so what remains of the backlog is worked off by the writers that follow.
+   * </P>
+   */
   private void enforceCapacity(int delta) {
-    for (int attempts = 0, evicted = 0; attempts < ATTEMPT_RATIO * delta && evicted < EVICTION_RATIO * delta
-            && capacity < map.size(); attempts++) {
-      if (evict()) {
-        evicted++;
+    if (sharedHeapPool != null) {
+      sharedHeapPool.enforceCapacity(this, delta);
+      return;
+    }
+    long backlog = map.size() - capacity;
+    if (backlog <= 0) {
+      return;
+    }
+    evictionBacklog.lazySet(backlog);
+    if (evictionLock.tryLock()) {
+      try {
+        evictBacklog();
+      } finally {
+        evictionLock.unlock();
+      }
+    } else if (backlog > evictionBacklogLimit()) {
+      evictionBackPressure.incrementAndGet();
+      evictionLock.lock();
+      try {
+        evictBacklog();
+      } finally {
+        evictionLock.unlock();
+      }
+    }
+  }
+
+  private long evictionBacklogLimit() {
+    return Math.max(MAX_EVICTION_BATCH, capacity >>> 6);
+  }
+
+  /**
+   * Evicts up to {@link #MAX_EVICTION_BATCH} mappings, picked from single samplings of the store, stopping early once
+   * the store is within capacity or several samplings in a row failed to evict anything.
+   */
+  private void evictBacklog() {
+    drainReadBuffer();
+    long backlog;
+    int remaining = MAX_EVICTION_BATCH;
+    int fruitlessBatches = 0;
+    while (remaining > 0 && (backlog = map.size() - capacity) > 0 && fruitlessBatches < ATTEMPT_RATIO) {
+      int count = (int) Math.min(backlog, remaining);
+      List<Map.Entry<K, OnHeapValueHolder<V>>> candidates = evictionCandidates(evictionRandom, count);
+      int evicted = 0;
+      for (int i = 0; i < count && i < candidates.size(); i++) {
+        if (evict(candidates.get(i))) {
+          evicted++;
+        }
+      }
+      if (evicted == 0) {
+        fruitlessBatches++;
+      } else {
+        fruitlessBatches = 0;
+        remaining -= evicted;
       }
     }
+    evictionBacklog.set(Math.max(0, map.size() - capacity));
   }
 
   /**
@@ -1278,31 +1523,14 @@ public class OnHeapStore<K, V> implements Store<K,V>, HigherCachingTier<K, V> {
    * @return true if a mapping was evicted, false otherwise.
    */
   boolean evict() {
-    evictionObserver.begin();
-    final Random random = new Random();
-
-    @SuppressWarnings("unchecked")
-    Set<Map.Entry<K, OnHeapValueHolder<V>>> values = map.getRandomValues(random, SAMPLE_SIZE, (Predicate<Map.Entry<K, OnHeapValueHolder<V>>>)evictionVeto);
-   
-    if (values.isEmpty()) {
-      // 2nd attempt without any veto
-      values = map.getRandomValues(random, SAMPLE_SIZE, Predicates.<Map.Entry<K, OnHeapValueHolder<V>>>none());
-    }
+    return evict(evictionCandidate(evictionRandom));
+  }
 
-    if (values.isEmpty()) {
+  private boolean evict(final Map.Entry<K, OnHeapValueHolder<V>> evictionCandidate) {
+    if (evictionCandidate == null) {
       return false;
     } else {
-      Map.Entry<K, OnHeapValueHolder<V>> tmpEvict;
-      try {
-        tmpEvict = Collections.max(values, (Comparator<? super Entry<K, OnHeapValueHolder<V>>>)evictionPrioritizer);
-      } catch (Exception e) {
-        LOG.error("Exception raised when prioritizing eviction candidates " +
-                  "- eviction will continue simply picking first candidate", e);
-        tmpEvict = values.iterator().next();
-      }
-      final Map.Entry<K, OnHeapValueHolder<V>> evictionCandidate = tmpEvict;
-
-
+      evictionObserver.begin();
       final AtomicBoolean removed = new AtomicBoolean(false);
       map.computeIfPresent(evictionCandidate.getKey(), new BiFunction<K, OnHeapValueHolder<V>, OnHeapValueHolder<V>>() {
         @Override
@@ -1325,6 +1553,98 @@ public class OnHeapStore<K, V> implements Store<K,V>, HigherCachingTier<K, V> {
     }
   }
 
+  /**
+   * Returns the last access time of the mapping this store would currently pick for eviction.
+   * @return the last access time in milliseconds, or {@code Long.MAX_VALUE} if this store has nothing to evict.
+   */
+  long evictionCandidateAccessTime(Random random) {
+    drainReadBuffer();
+    Map.Entry<K, OnHeapValueHolder<V>> evictionCandidate = evictionCandidate(random);
+    if (evictionCandidate == null) {
+      return Long.MAX_VALUE;
+    } else {
+      return evictionCandidate.getValue().lastAccessTime(TimeUnit.MILLISECONDS);
+    }
+  }
+
+  long mappingCount() {
+    return map.size();
+  }
+
+  @Override
+  public List<K> hottestKeys(int count) {
+    if (count <= 0) {
+      return Collections.emptyList();
+    }
+    drainReadBuffer();
+    @SuppressWarnings("unchecked")
+    Comparator<Map.Entry<K, OnHeapValueHolder<V>>> prioritizer = (Comparator<Map.Entry<K, OnHeapValueHolder<V>>>) evictionPrioritizer;
+    // the head of the queue is the entry that would be evicted first
+    PriorityQueue<Map.Entry<K, OnHeapValueHolder<V>>> hottest = new PriorityQueue<Map.Entry<K, OnHeapValueHolder<V>>>(count + 1, Collections.reverseOrder(prioritizer));
+    java.util.Iterator<Map.Entry<K, OnHeapValueHolder<V>>> iterator = map.entrySetIterator();
+    while (iterator.hasNext()) {
+      Map.Entry<K, OnHeapValueHolder<V>> entry = iterator.next();
+      if (entry.getValue() instanceof Fault) {
+        continue;
+      }
+      hottest.add(entry);
+      if (hottest.size() > count) {
+        hottest.poll();
+      }
+    }
+    List<K> keys = new ArrayList<K>(hottest.size());
+    while (!hottest.isEmpty()) {
+      keys.add(hottest.poll().getKey());
+    }
+    Collections.reverse(keys);
+    return keys;
+  }
+
+  private Map.Entry<K, OnHeapValueHolder<V>> evictionCandidate(Random random) {
+    List<Map.Entry<K, OnHeapValueHolder<V>>> candidates = evictionCandidates(random, 1);
+    return candidates.isEmpty() ? null : candidates.get(0);
+  }
+
+  /**
+   * Samples {@link #SAMPLE_SIZE} mappings per eviction wanted and returns them in eviction order.
+   */
+  private List<Map.Entry<K, OnHeapValueHolder<V>>> evictionCandidates(Random random, int count) {
+    int sampleSize = SAMPLE_SIZE * count;
+    @SuppressWarnings("unchecked")
+    Set<Map.Entry<K, OnHeapValueHolder<V>>> values = map.getRandomValues(random, sampleSize, (Predicate<Map.Entry<K, OnHeapValueHolder<V>>>)evictionVeto);
+
+    if (values.isEmpty()) {
+      // 2nd attempt without any veto
+      values = map.getRandomValues(random, sampleSize, Predicates.<Map.Entry<K, OnHeapValueHolder<V>>>none());
+    }
+
+    List<Map.Entry<K, OnHeapValueHolder<V>>> candidates = new ArrayList<Map.Entry<K, OnHeapValueHolder<V>>>(values);
+    try {
+      @SuppressWarnings("unchecked")
+      Comparator<Map.Entry<K, OnHeapValueHolder<V>>> prioritizer = (Comparator<Map.Entry<K, OnHeapValueHolder<V>>>) evictionPrioritizer;
+      if (count == 1) {
+        if (candidates.size() > 1) {
+          candidates = Collections.singletonList(Collections.max(candidates, prioritizer));
+        }
+      } else {
+        Collections.sort(candidates, Collections.reverseOrder(prioritizer));
+      }
+    } catch (Exception e) {
+      LOG.error("Exception raised when prioritizing eviction candidates " +
+                "- eviction will continue simply picking first candidate", e);
+    }
+    return candidates;
+  }
+
+  private static Callable<Long> statistic(final AtomicLong value) {
+    return new Callable<Long>() {
+      @Override
+      public Long call() throws Exception {
+        return value.get();
+      }
+    };
+  }
+
   private void checkKey(K keyObject) {
     if (keyObject == null) {
       throw new NullPointerException();
@@ -1353,7 +1673,7 @@ public class OnHeapStore<K, V> implements Store<K,V>, HigherCachingTier<K, V> {
     return (o1 == o2) || (o1 != null && o1.equals(o2));
   }
 
-  @ServiceDependencies({TimeSourceService.class, CopyProvider.class})
+  @ServiceDependencies({TimeSourceService.class, CopyProvider.class, SharedResourcePoolsService.class})
   public static class Provider implements Store.Provider, CachingTier.Provider, HigherCachingTier.Provider {
     
     private volatile ServiceProvider serviceProvider;
@@ -1365,7 +1685,18 @@ public class OnHeapStore<K, V> implements Store<K,V>, HigherCachingTier<K, V> {
       CopyProvider copyProvider = serviceProvider.getService(CopyProvider.class);
       Copier<K> keyCopier  = copyProvider.createKeyCopier(storeConfig.getKeyType(), storeConfig.getKeySerializer(), serviceConfigs);
       Copier<V> valueCopier = copyProvider.createValueCopier(storeConfig.getValueType(), storeConfig.getValueSerializer(), serviceConfigs);
-      OnHeapStore<K, V> onHeapStore = new OnHeapStore<K, V>(storeConfig, timeSource, keyCopier, valueCopier);
+      SharedHeapPool sharedHeapPool = null;
+      if (storeConfig.getResourcePools().getPoolForResource(ResourceType.Core.HEAP) instanceof SharedResourcePool) {
+        sharedHeapPool = serviceProvider.getService(SharedResourcePoolsService.class).getSharedHeapPool();
+      }
+      HitCountingConfiguration hitCountingConfiguration = findSingletonAmongst(HitCountingConfiguration.class, (Object[]) serviceConfigs);
+      boolean hitCounting = hitCountingConfiguration == null || hitCountingConfiguration.isEnabled();
+      ReadBufferConfiguration readBufferConfiguration = findSingletonAmongst(ReadBufferConfiguration.class, (Object[]) serviceConfigs);
+      OnHeapStore<K, V> onHeapStore = new OnHeapStore<K, V>(storeConfig, timeSource, keyCopier, valueCopier, sharedHeapPool,
+          hitCounting, readBufferConfiguration);
+      if (sharedHeapPool != null) {
+        sharedHeapPool.register(onHeapStore);
+      }
       createdStores.add(onHeapStore);
       return onHeapStore;
     }
@@ -1380,6 +1711,9 @@ public class OnHeapStore<K, V> implements Store<K,V>, HigherCachingTier<K, V> {
     }
 
     static void close(final OnHeapStore onHeapStore) {
+      if (onHeapStore.sharedHeapPool != null) {
+        onHeapStore.sharedHeapPool.unregister(onHeapStore);
+      }
       onHeapStore.map.clear();
       onHeapStore.disableStoreEventNotifications();
     }
@@ -1478,19 +1812,125 @@ public class OnHeapStore<K, V> implements Store<K,V>, HigherCachingTier<K, V> {
   }
 
   // The idea of this wrapper is to let all the other code deal in terms of <K> and hide
-  // the potentially different key type of the underlying CHM 
-  private static class MapWrapper<K, V> {
+  // the potentially different key type of the underlying map
+  private static abstract class MapWrapper<K, V> {
+
+    /**
+     * Picks the map for the key type: {@code Long} keys that are not copied are held as primitives.
+     */
+    @SuppressWarnings("unchecked")
+    static <K, V> MapWrapper<K, V> create(Class<K> keyType, Copier<K> keyCopier) {
+      if (keyType == Long.class && keyCopier instanceof IdentityCopier) {
+        return (MapWrapper<K, V>) new LongKeyMapWrapper<V>();
+      } else {
+        return new KeyCopyMapWrapper<K, V>(keyCopier);
+      }
+    }
+
+    abstract boolean remove(K key, OnHeapValueHolder<V> value);
+
+    abstract Set<Map.Entry<K, OnHeapValueHolder<V>>> getRandomValues(Random random, int size, Predicate<Map.Entry<K, OnHeapValueHolder<V>>> veto);
+
+    abstract int size();
+
+    abstract java.util.Iterator<Map.Entry<K, OnHeapValueHolder<V>>> entrySetIterator();
+
+    abstract List<java.util.Iterator<Map.Entry<K, OnHeapValueHolder<V>>>> partitionIterators();
+
+    abstract OnHeapValueHolder<V> compute(K key, BiFunction<K, OnHeapValueHolder<V>, OnHeapValueHolder<V>> computeFunction);
+
+    /**
+     * Returns the lock of the partition this key belongs to. The mappings of a partition can only be changed by the
+     * thread holding its lock, if any.
+     */
+    abstract Lock partitionLock(K key);
+
+    /**
+     * Groups the keys by the partition they belong to, in the order the partitions are first met.
+     */
+    Map<Lock, List<K>> partitions(Iterable<? extends K> keys) {
+      Map<Lock, List<K>> partitions = new LinkedHashMap<Lock, List<K>>();
+      for (K key : keys) {
+        Lock lock = partitionLock(key);
+        List<K> partition = partitions.get(lock);
+        if (partition == null) {
+          partition = new ArrayList<K>();
+          partitions.put(lock, partition);
+        }
+        partition.add(key);
+      }
+      return partitions;
+    }
+
+    abstract void clear();
+
+    abstract OnHeapValueHolder<V> remove(K key);
+
+    abstract OnHeapValueHolder<V> computeIfPresent(K key, BiFunction<K, OnHeapValueHolder<V>, OnHeapValueHolder<V>> computeFunction);
+
+    abstract OnHeapValueHolder<V> get(K key);
+
+    abstract OnHeapValueHolder<V> putIfAbsent(K key, OnHeapValueHolder<V> valueHolder);
+
+    abstract boolean replace(K key, OnHeapValueHolder<V> oldValue, OnHeapValueHolder<V> newValue);
+
+    /**
+     * Removes the mappings passing {@code predicate} one partition at a time, handing the mappings removed from
+     * each partition over to {@code removals}.
+     */
+    void removeIf(Predicate<Map.Entry<K, OnHeapValueHolder<V>>> predicate, Function<Map<K, OnHeapValueHolder<V>>, ?> removals) {
+      for (java.util.Iterator<Map.Entry<K, OnHeapValueHolder<V>>> it : partitionIterators()) {
+        Map<K, OnHeapValueHolder<V>> removed = new HashMap<K, OnHeapValueHolder<V>>();
+        while (it.hasNext()) {
+          Map.Entry<K, OnHeapValueHolder<V>> entry = it.next();
+          if (predicate.test(entry) && remove(entry.getKey(), entry.getValue())) {
+            removed.put(entry.getKey(), entry.getValue());
+          }
+        }
+        if (!removed.isEmpty()) {
+          removals.apply(removed);
+        }
+      }
+    }
+  }
+
+  private static class KeyCopyMapWrapper<K, V> extends MapWrapper<K, V> {
 
     private final ConcurrentHashMap<OnHeapKey<K>, OnHeapValueHolder<V>> keyCopyMap;
     private final Copier<K> keyCopier;
+    // mutations share the read lock of their key's partition, the write lock keeps them off the whole partition
+    private final ReentrantReadWriteLock[] partitionLocks;
   
-    MapWrapper(Copier<K> keyCopier) {
+    KeyCopyMapWrapper(Copier<K> keyCopier) {
       this.keyCopier = keyCopier;
       keyCopyMap = new ConcurrentHashMap<OnHeapKey<K>, OnHeapValueHolder<V>>();
+      int partitionCount = 1;
+      while (partitionCount < Runtime.getRuntime().availableProcessors() * 4) {
+        partitionCount <<= 1;
+      }
+      partitionLocks = new ReentrantReadWriteLock[partitionCount];
+      for (int i = 0; i < partitionCount; i++) {
+        partitionLocks[i] = new ReentrantReadWriteLock();
+      }
+    }
+
+    private ReentrantReadWriteLock partitionFor(K key) {
+      int h = key.hashCode();
+      return partitionLocks[(h ^ (h >>> 16)) & (partitionLocks.length - 1)];
+    }
+
+    Lock partitionLock(K key) {
+      return partitionFor(key).writeLock();
     }
     
     boolean remove(K key, OnHeapValueHolder<V> value) {
-      return keyCopyMap.remove(lookupOnlyKey(key), value);
+      Lock lock = partitionFor(key).readLock();
+      lock.lock();
+      try {
+        return keyCopyMap.remove(lookupOnlyKey(key), value);
+      } finally {
+        lock.unlock();
+      }
     }
 
     Set<Map.Entry<K, OnHeapValueHolder<V>>> getRandomValues(Random random, int size,
@@ -1515,8 +1955,18 @@ public class OnHeapStore<K, V> implements Store<K,V>, HigherCachingTier<K, V> {
     }
 
     java.util.Iterator<Map.Entry<K, OnHeapValueHolder<V>>> entrySetIterator() {
+      return actualKeys(keyCopyMap.entrySet().iterator());
+    }
 
-      final java.util.Iterator<Map.Entry<OnHeapKey<K>, OnHeapValueHolder<V>>> iter = keyCopyMap.entrySet().iterator();
+    List<java.util.Iterator<Map.Entry<K, OnHeapValueHolder<V>>>> partitionIterators() {
+      List<java.util.Iterator<Map.Entry<K, OnHeapValueHolder<V>>>> iterators = new ArrayList<java.util.Iterator<Map.Entry<K, OnHeapValueHolder<V>>>>();
+      for (java.util.Iterator<Map.Entry<OnHeapKey<K>, OnHeapValueHolder<V>>> iter : keyCopyMap.entrySetIterators(Runtime.getRuntime().availableProcessors() * 4)) {
+        iterators.add(actualKeys(iter));
+      }
+      return iterators;
+    }
+
+    private java.util.Iterator<Map.Entry<K, OnHeapValueHolder<V>>> actualKeys(final java.util.Iterator<Map.Entry<OnHeapKey<K>, OnHeapValueHolder<V>>> iter) {
       return new java.util.Iterator<Map.Entry<K, OnHeapValueHolder<V>>>() {
         @Override
         public boolean hasNext() {
@@ -1537,13 +1987,18 @@ public class OnHeapStore<K, V> implements Store<K,V>, HigherCachingTier<K, V> {
     }
 
     OnHeapValueHolder<V> compute(final K key, final BiFunction<K, OnHeapValueHolder<V>, OnHeapValueHolder<V>> computeFunction) {
-
-      return keyCopyMap.compute(makeKey(key), new BiFunction<OnHeapKey<K>, OnHeapValueHolder<V>, OnHeapValueHolder<V>>() {
-        @Override
-        public OnHeapValueHolder<V> apply(OnHeapKey<K> mappedKey, OnHeapValueHolder<V> mappedValue) {
-          return computeFunction.apply(key, mappedValue);
-        }
-      });
+      Lock lock = partitionFor(key).readLock();
+      lock.lock();
+      try {
+        return keyCopyMap.compute(makeKey(key), new BiFunction<OnHeapKey<K>, OnHeapValueHolder<V>, OnHeapValueHolder<V>>() {
+          @Override
+          public OnHeapValueHolder<V> apply(OnHeapKey<K> mappedKey, OnHeapValueHolder<V> mappedValue) {
+            return computeFunction.apply(key, mappedValue);
+          }
+        });
+      } finally {
+        lock.unlock();
+      }
     }
 
     void clear() {
@@ -1551,17 +2006,28 @@ public class OnHeapStore<K, V> implements Store<K,V>, HigherCachingTier<K, V> {
     }
 
     OnHeapValueHolder<V> remove(K key) {
-      return keyCopyMap.remove(lookupOnlyKey(key));
+      Lock lock = partitionFor(key).readLock();
+      lock.lock();
+      try {
+        return keyCopyMap.remove(lookupOnlyKey(key));
+      } finally {
+        lock.unlock();
+      }
     }
 
     OnHeapValueHolder<V> computeIfPresent(final K key, final BiFunction<K, OnHeapValueHolder<V>, OnHeapValueHolder<V>> computeFunction) {
-
-      return keyCopyMap.computeIfPresent(lookupOnlyKey(key), new BiFunction<OnHeapKey<K>, OnHeapValueHolder<V>, OnHeapValueHolder<V>>() {
-        @Override
-        public OnHeapValueHolder<V> apply(OnHeapKey<K> mappedKey, OnHeapValueHolder<V> mappedValue) {
-          return computeFunction.apply(key, mappedValue);
-        }
-      });
+      Lock lock = partitionFor(key).readLock();
+      lock.lock();
+      try {
+        return keyCopyMap.computeIfPresent(lookupOnlyKey(key), new BiFunction<OnHeapKey<K>, OnHeapValueHolder<V>, OnHeapValueHolder<V>>() {
+          @Override
+          public OnHeapValueHolder<V> apply(OnHeapKey<K> mappedKey, OnHeapValueHolder<V> mappedValue) {
+            return computeFunction.apply(key, mappedValue);
+          }
+        });
+      } finally {
+        lock.unlock();
+      }
     }
     
     private OnHeapKey<K> makeKey(K key) {
@@ -1572,16 +2038,90 @@ public class OnHeapStore<K, V> implements Store<K,V>, HigherCachingTier<K, V> {
       return new LookupOnlyOnHeapKey<K>(key);
     }
 
-    public OnHeapValueHolder<V> get(K key) {
+    OnHeapValueHolder<V> get(K key) {
       return keyCopyMap.get(lookupOnlyKey(key));
     }
 
-    public OnHeapValueHolder<V> putIfAbsent(K key, OnHeapValueHolder<V> valueHolder) {
-      return keyCopyMap.putIfAbsent(makeKey(key), valueHolder);
+    OnHeapValueHolder<V> putIfAbsent(K key, OnHeapValueHolder<V> valueHolder) {
+      Lock lock = partitionFor(key).readLock();
+      lock.lock();
+      try {
+        return keyCopyMap.putIfAbsent(makeKey(key), valueHolder);
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    boolean replace(K key, OnHeapValueHolder<V> oldValue, OnHeapValueHolder<V> newValue) {
+      Lock lock = partitionFor(key).readLock();
+      lock.lock();
+      try {
+        return keyCopyMap.replace(lookupOnlyKey(key), oldValue, newValue);
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+
+  private static class LongKeyMapWrapper<V> extends MapWrapper<Long, V> {
+
+    private final LongKeyedMap<OnHeapValueHolder<V>> longKeyMap = new LongKeyedMap<OnHeapValueHolder<V>>();
+
+    boolean remove(Long key, OnHeapValueHolder<V> value) {
+      return longKeyMap.remove(key, value);
+    }
+
+    Set<Map.Entry<Long, OnHeapValueHolder<V>>> getRandomValues(Random random, int size, Predicate<Map.Entry<Long, OnHeapValueHolder<V>>> veto) {
+      return longKeyMap.getRandomValues(random, size, veto);
+    }
+
+    int size() {
+      return longKeyMap.size();
+    }
+
+    java.util.Iterator<Map.Entry<Long, OnHeapValueHolder<V>>> entrySetIterator() {
+      return longKeyMap.entryIterator();
+    }
+
+    List<java.util.Iterator<Map.Entry<Long, OnHeapValueHolder<V>>>> partitionIterators() {
+      return longKeyMap.segmentIterators();
+    }
+
+    @Override
+    void removeIf(Predicate<Map.Entry<Long, OnHeapValueHolder<V>>> predicate, Function<Map<Long, OnHeapValueHolder<V>>, ?> removals) {
+      longKeyMap.removeIf(predicate, removals);
+    }
+
+    OnHeapValueHolder<V> compute(Long key, BiFunction<Long, OnHeapValueHolder<V>, OnHeapValueHolder<V>> computeFunction) {
+      return longKeyMap.compute(key, computeFunction);
+    }
+
+    Lock partitionLock(Long key) {
+      return longKeyMap.lockFor(key);
+    }
+
+    void clear() {
+      longKeyMap.clear();
+    }
+
+    OnHeapValueHolder<V> remove(Long key) {
+      return longKeyMap.remove(key);
+    }
+
+    OnHeapValueHolder<V> computeIfPresent(Long key, BiFunction<Long, OnHeapValueHolder<V>, OnHeapValueHolder<V>> computeFunction) {
+      return longKeyMap.computeIfPresent(key, computeFunction);
+    }
+
+    OnHeapValueHolder<V> get(Long key) {
+      return longKeyMap.get(key);
+    }
+
+    OnHeapValueHolder<V> putIfAbsent(Long key, OnHeapValueHolder<V> valueHolder) {
+      return longKeyMap.putIfAbsent(key, valueHolder);
     }
 
-    public boolean replace(K key, OnHeapValueHolder<V> oldValue, OnHeapValueHolder<V> newValue) {
-      return keyCopyMap.replace(lookupOnlyKey(key), oldValue, newValue);
+    boolean replace(Long key, OnHeapValueHolder<V> oldValue, OnHeapValueHolder<V> newValue) {
+      return longKeyMap.replace(key, oldValue, newValue);
     }
   }
 
@@ -0,0 +1,153 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.internal.store.heap;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A lossy buffer of timestamped read events, letting readers record accesses without writing to shared state.
+ * <P>
+ *   Events are spread over ring buffers striped by thread. A record is dropped rather than waited for when its stripe
+ *   is full or another thread is racing for the same slot. Stripes are drained in batches by a single thread at a
+ *   time: {@link #record(Object, long)} tells its caller when its stripe is due for draining, which
+ *   {@link #tryDrain(Consumer)} then does if no other thread already is.
+ * </P>
+ */
+final class ReadBuffer<T> {
+
+  private static final int MAX_STRIPES = 1 << 8;
+
+  private final Stripe<T>[] stripes;
+  private final int stripeMask;
+  private final int drainThreshold;
+  private final ReentrantLock drainLock = new ReentrantLock();
+
+  ReadBuffer(int bufferSize) {
+    this(Runtime.getRuntime().availableProcessors(), bufferSize);
+  }
+
+  ReadBuffer(int concurrency, int bufferSize) {
+    if (bufferSize < 2 || Integer.bitCount(bufferSize) != 1) {
+      throw new IllegalArgumentException("Read buffer size must be a power of two, greater than 1 : " + bufferSize);
+    }
+    int stripeCount = 1;
+    while (stripeCount < concurrency && stripeCount < MAX_STRIPES) {
+      stripeCount <<= 1;
+    }
+    @SuppressWarnings({"unchecked", "rawtypes"}) // generic arrays cannot be created, every stripe holds T
+    Stripe<T>[] stripes = new Stripe[stripeCount];
+    this.stripes = stripes;
+    for (int i = 0; i < stripeCount; i++) {
+      stripes[i] = new Stripe<T>(bufferSize);
+    }
+    this.stripeMask = stripeCount - 1;
+    this.drainThreshold = bufferSize / 2;
+  }
+
+  /**
+   * Records {@code item} as read at {@code time}, unless its stripe is full or contended.
+   *
+   * @return {@code true} if the buffer should be drained
+   */
+  boolean record(T item, long time) {
+    long id = Thread.currentThread().getId();
+    Stripe<T> stripe = stripes[(int) (id * 0x9E3779B97F4A7C15L >>> 32) & stripeMask];
+    long head = stripe.readCounter.get();
+    long tail = stripe.writeCounter.get();
+    long pending = tail - head;
+    if (pending >= stripe.items.length()) {
+      return true;
+    }
+    if (stripe.writeCounter.compareAndSet(tail, tail + 1)) {
+      int index = (int) tail & stripe.mask;
+      stripe.times.lazySet(index, time);
+      // publishing the item last makes the time visible to the drainer seeing it
+      stripe.items.lazySet(index, item);
+      pending++;
+    }
+    return pending >= drainThreshold;
+  }
+
+  /**
+   * Drains all stripes if no other thread is doing so.
+   */
+  void tryDrain(Consumer<? super T> consumer) {
+    if (drainLock.tryLock()) {
+      try {
+        drainStripes(consumer);
+      } finally {
+        drainLock.unlock();
+      }
+    }
+  }
+
+  /**
+   * Drains all stripes, waiting for any concurrent drain to complete.
+   */
+  void drain(Consumer<? super T> consumer) {
+    drainLock.lock();
+    try {
+      drainStripes(consumer);
+    } finally {
+      drainLock.unlock();
+    }
+  }
+
+  private void drainStripes(Consumer<? super T> consumer) {
+    for (Stripe<T> stripe : stripes) {
+      long head = stripe.readCounter.get();
+      long tail = stripe.writeCounter.get();
+      while (head < tail) {
+        int index = (int) head & stripe.mask;
+        T item = stripe.items.get(index);
+        if (item == null) {
+          // the slot is claimed but its event not yet published
+          break;
+        }
+        long time = stripe.times.get(index);
+        stripe.items.lazySet(index, null);
+        head++;
+        consumer.accept(item, time);
+      }
+      stripe.readCounter.lazySet(head);
+    }
+  }
+
+  /**
+   * Receives the drained read events.
+   */
+  interface Consumer<T> {
+    void accept(T item, long time);
+  }
+
+  private static final class Stripe<T> {
+    private final AtomicLong readCounter = new AtomicLong();
+    private final AtomicLong writeCounter = new AtomicLong();
+    private final AtomicReferenceArray<T> items;
+    private final AtomicLongArray times;
+    private final int mask;
+
+    Stripe(int size) {
+      this.items = new AtomicReferenceArray<T>(size);
+      this.times = new AtomicLongArray(size);
+      this.mask = size - 1;
+    }
+  }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.internal.store.heap;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * An entry count budget shared by several {@link OnHeapStore}s.
+ * <P>
+ *   When the stores hold more mappings than the budget allows, eviction is arbitrated across them: the store
+ *   requiring space and a couple of randomly picked other stores each nominate their own eviction candidate, and
+ *   the store whose candidate was accessed least recently is the one evicting.
+ * </P>
+ */
+public class SharedHeapPool {
+
+  private static final int ATTEMPT_RATIO = 4;
+  private static final int EVICTION_RATIO = 2;
+  private static final int CONTENDERS = 2;
+
+  private final long capacity;
+  private final List<OnHeapStore<?, ?>> stores = new CopyOnWriteArrayList<OnHeapStore<?, ?>>();
+  private final Random random = new Random();
+
+  public SharedHeapPool(long capacity) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("Shared heap capacity must be positive");
+    }
+    this.capacity = capacity;
+  }
+
+  public long getCapacity() {
+    return capacity;
+  }
+
+  /**
+   * Returns the number of mappings held by all stores using this pool.
+   *
+   * @return the number of mappings
+   */
+  public long size() {
+    long size = 0;
+    for (OnHeapStore<?, ?> store : stores) {
+      size += store.mappingCount();
+    }
+    return size;
+  }
+
+  void register(OnHeapStore<?, ?> store) {
+    stores.add(store);
+  }
+
+  void unregister(OnHeapStore<?, ?> store) {
+    stores.remove(store);
+  }
+
+  void enforceCapacity(OnHeapStore<?, ?> requester, int delta) {
+    for (int attempts = 0, evicted = 0; attempts < ATTEMPT_RATIO * delta && evicted < EVICTION_RATIO * delta
+            && capacity < size(); attempts++) {
+      OnHeapStore<?, ?> victim = selectVictim(requester);
+      if (victim != null && victim.evict()) {
+        evicted++;
+      }
+    }
+  }
+
+  private OnHeapStore<?, ?> selectVictim(OnHeapStore<?, ?> requester) {
+    Object[] candidates = stores.toArray();
+    OnHeapStore<?, ?> victim = null;
+    long oldestAccess = Long.MAX_VALUE;
+
+    long requesterAccess = requester.evictionCandidateAccessTime(random);
+    if (requesterAccess != Long.MAX_VALUE) {
+      victim = requester;
+      oldestAccess = requesterAccess;
+    }
+    for (int i = 0; i < CONTENDERS && candidates.length > 0; i++) {
+      OnHeapStore<?, ?> contender = (OnHeapStore<?, ?>) candidates[random.nextInt(candidates.length)];
+      if (contender == requester) {
+        continue;
+      }
+      long contenderAccess = contender.evictionCandidateAccessTime(random);
+      if (contenderAccess < oldestAccess || victim == null && contenderAccess != Long.MAX_VALUE) {
+        victim = contender;
+        oldestAccess = contenderAccess;
+      }
+    }
+    return victim;
+  }
+}
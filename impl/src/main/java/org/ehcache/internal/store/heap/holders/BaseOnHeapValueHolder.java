@@ -0,0 +1,126 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.internal.store.heap.holders;
+
+import org.ehcache.expiry.Duration;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * An {@link OnHeapValueHolder} carrying the complete set of metadata: identifier, creation, last access and
+ * expiration times, and hit count.
+ *
+ * @author Ludovic Orban
+ */
+public abstract class BaseOnHeapValueHolder<V> extends OnHeapValueHolder<V> {
+
+  @SuppressWarnings("rawtypes") // field updaters are keyed on the erased class
+  private static final AtomicLongFieldUpdater<BaseOnHeapValueHolder> LAST_ACCESS_TIME_UPDATER = AtomicLongFieldUpdater.newUpdater(BaseOnHeapValueHolder.class, "lastAccessTime");
+  @SuppressWarnings("rawtypes")
+  private static final AtomicLongFieldUpdater<BaseOnHeapValueHolder> EXPIRATION_TIME_UPDATER = AtomicLongFieldUpdater.newUpdater(BaseOnHeapValueHolder.class, "expirationTime");
+  @SuppressWarnings("rawtypes")
+  private static final AtomicLongFieldUpdater<BaseOnHeapValueHolder> HITS_UPDATER = AtomicLongFieldUpdater.newUpdater(BaseOnHeapValueHolder.class, "hits");
+  private final long id;
+  private final long creationTime;
+  private volatile long lastAccessTime;
+  private volatile long expirationTime;
+  private volatile long hits;
+
+  protected BaseOnHeapValueHolder(long id, long creationTime) {
+    this(id, creationTime, NO_EXPIRE);
+  }
+
+  protected BaseOnHeapValueHolder(long id, long creationTime, long expirationTime) {
+    this.id = id;
+    this.creationTime = creationTime;
+    this.expirationTime = expirationTime;
+    this.lastAccessTime = creationTime;
+  }
+
+  @Override
+  public long creationTime(TimeUnit unit) {
+    return unit.convert(creationTime, TIME_UNIT);
+  }
+
+  @Override
+  public void setExpirationTime(long expirationTime, TimeUnit unit) {
+    final long expire;
+    if (expirationTime == NO_EXPIRE) {
+      expire = NO_EXPIRE;
+    } else if (expirationTime <= 0) {
+      throw new IllegalArgumentException("invalid expiration time: " + expirationTime);
+    } else {
+      expire = TIME_UNIT.convert(expirationTime, unit);
+    }
+    if (this.expirationTime != expire) {
+      EXPIRATION_TIME_UPDATER.lazySet(this, expire);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   * <P>
+   *   As reads record their accesses without holding any lock, the metadata is written with ordered stores and the
+   *   hit count incremented without atomicity: concurrent accesses can lose hits.
+   * </P>
+   */
+  @Override
+  public void accessed(long now, Duration expiration) {
+    if (expiration != null) {
+      setExpirationTime(expirationTimeFor(now, expiration), TIME_UNIT);
+    }
+    setLastAccessTime(now, TIME_UNIT);
+    HITS_UPDATER.lazySet(this, hits + 1);
+  }
+
+  @Override
+  public long expirationTime(TimeUnit unit) {
+    final long expire = this.expirationTime;
+    if (expire == NO_EXPIRE) {
+      return NO_EXPIRE;
+    }
+    return unit.convert(expire, TIME_UNIT);
+  }
+
+  @Override
+  public long lastAccessTime(TimeUnit unit) {
+    return unit.convert(lastAccessTime, TIME_UNIT);
+  }
+
+  @Override
+  public void setLastAccessTime(long lastAccessTime, TimeUnit unit) {
+    final long lastAccess = TIME_UNIT.convert(lastAccessTime, unit);
+    if (this.lastAccessTime != lastAccess) {
+      LAST_ACCESS_TIME_UPDATER.lazySet(this, lastAccess);
+    }
+  }
+
+  @Override
+  public long hits() {
+    return this.hits;
+  }
+
+  protected void setHits(long hits) {
+    HITS_UPDATER.set(this, hits);
+  }
+
+  @Override
+  public long getId() {
+    return id;
+  }
+}
@@ -23,7 +23,7 @@ import org.ehcache.spi.copy.Copier;
 /**
  * @author Albin Suresh
  */
-public class CopiedOnHeapValueHolder<V> extends OnHeapValueHolder<V> {
+public class CopiedOnHeapValueHolder<V> extends BaseOnHeapValueHolder<V> {
   private final V copiedValue;
   private final Copier<V> valueCopier;
 
@@ -13,38 +13,95 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
-
 package org.ehcache.internal.store.heap.holders;
 
-import org.ehcache.spi.cache.AbstractValueHolder;
+import org.ehcache.expiry.Duration;
+import org.ehcache.spi.cache.Store;
 
+import java.io.Serializable;
 import java.util.concurrent.TimeUnit;
 
 /**
+ * The value holders of the on-heap store.
+ * <P>
+ *   This class declares no state, leaving each implementation to keep only the metadata the store it serves makes
+ *   use of: see {@link BaseOnHeapValueHolder} for the complete set and {@link SlimOnHeapValueHolder} for the reduced
+ *   ones.
+ * </P>
+ *
  * @author Ludovic Orban
  */
-public abstract class OnHeapValueHolder<V> extends AbstractValueHolder<V> {
+public abstract class OnHeapValueHolder<V> implements Store.ValueHolder<V>, Serializable {
 
   public static final TimeUnit TIME_UNIT = TimeUnit.MILLISECONDS;
 
-  protected OnHeapValueHolder(long id, long creationTime) {
-    super(id, creationTime);
+  public abstract void setExpirationTime(long expirationTime, TimeUnit unit);
+
+  public abstract void setLastAccessTime(long lastAccessTime, TimeUnit unit);
+
+  /**
+   * Records an access at {@code now}, updating the expiration time unless {@code expiration} is {@code null}.
+   */
+  public abstract void accessed(long now, Duration expiration);
+
+  @Override
+  public boolean isExpired(long expirationTime, TimeUnit unit) {
+    final long expire = expirationTime(TIME_UNIT);
+    if (expire == NO_EXPIRE) {
+      return false;
+    }
+    return expire <= TIME_UNIT.convert(expirationTime, unit);
   }
 
-  protected OnHeapValueHolder(long id, long creationTime, long expirationTime) {
-    super(id, creationTime, expirationTime);
+  @Override
+  public float hitRate(long now, TimeUnit unit) {
+    final long endTime = TimeUnit.NANOSECONDS.convert(now, TimeUnit.MILLISECONDS);
+    final long startTime = TimeUnit.NANOSECONDS.convert(creationTime(TIME_UNIT), TIME_UNIT);
+    float duration = (endTime - startTime)/(float)TimeUnit.NANOSECONDS.convert(1, unit);
+    return (hits()/duration);
+  }
+
+  /**
+   * Returns the expiration time, in {@link #TIME_UNIT}, of a mapping accessed at {@code now} and expiring after
+   * {@code expiration}.
+   */
+  protected static long expirationTimeFor(long now, Duration expiration) {
+    if (expiration.isForever()) {
+      return NO_EXPIRE;
+    }
+    long millis = TIME_UNIT.convert(expiration.getAmount(), expiration.getTimeUnit());
+    if (millis == Long.MAX_VALUE) {
+      return Long.MAX_VALUE;
+    }
+    long expirationTime = now + millis;
+    return expirationTime < 0 ? Long.MAX_VALUE : expirationTime;
   }
 
   @Override
-  final protected TimeUnit nativeTimeUnit() {
-    return TIME_UNIT;
+  public int hashCode() {
+    long creationTime = creationTime(TIME_UNIT);
+    long lastAccessTime = lastAccessTime(TIME_UNIT);
+    long expirationTime = expirationTime(TIME_UNIT);
+    int result = 1;
+    result = 31 * result + (int)(creationTime ^ (creationTime >>> 32));
+    result = 31 * result + (int)(lastAccessTime ^ (lastAccessTime >>> 32));
+    result = 31 * result + (int)(expirationTime ^ (expirationTime >>> 32));
+    return result;
   }
 
   @Override
   public boolean equals(Object obj) {
     if (obj != null && this.getClass().equals(obj.getClass())) {
-      return super.equals(obj);
+      OnHeapValueHolder<?> other = (OnHeapValueHolder<?>) obj;
+      return other.creationTime(TIME_UNIT) == creationTime(TIME_UNIT)
+          && other.expirationTime(TIME_UNIT) == expirationTime(TIME_UNIT)
+          && other.lastAccessTime(TIME_UNIT) == lastAccessTime(TIME_UNIT);
     }
     return false;
   }
+
+  @Override
+  public String toString() {
+    return "" + value();
+  }
 }
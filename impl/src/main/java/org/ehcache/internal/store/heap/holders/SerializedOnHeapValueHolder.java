@@ -22,7 +22,7 @@ import org.ehcache.spi.serialization.Serializer;
 
 import java.nio.ByteBuffer;
 
-public class SerializedOnHeapValueHolder<V> extends OnHeapValueHolder<V> {
+public class SerializedOnHeapValueHolder<V> extends BaseOnHeapValueHolder<V> {
   private final ByteBuffer buffer;
   private final Serializer<V> serializer;
 
@@ -0,0 +1,279 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.internal.store.heap.holders;
+
+import org.ehcache.expiry.Duration;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * {@link OnHeapValueHolder}s holding their value by reference and only the metadata the owning store makes use of.
+ * <P>
+ *   These holders carry no identifier, their creation time is final, and the expiration time and hit count are only
+ *   present when the store's {@link Expiration} and hit counting settings require them. An access that leaves a field
+ *   unchanged writes nothing, and the fields that do change are published with ordered rather than volatile stores.
+ *   Hit counts are incremented without atomicity, so concurrent accesses can lose hits.
+ * </P>
+ */
+public abstract class SlimOnHeapValueHolder<V> extends OnHeapValueHolder<V> {
+
+  @SuppressWarnings("rawtypes") // field updaters are keyed on the erased class
+  private static final AtomicLongFieldUpdater<SlimOnHeapValueHolder> LAST_ACCESS_TIME_UPDATER = AtomicLongFieldUpdater.newUpdater(SlimOnHeapValueHolder.class, "lastAccessTime");
+
+  /**
+   * How the expiration time of the mappings of a store can change.
+   */
+  public enum Expiration {
+    /**
+     * Mappings never expire.
+     */
+    NONE,
+    /**
+     * Mappings expire at a time set on creation, that accesses never change.
+     */
+    FIXED,
+    /**
+     * Mappings expire at a time that accesses can change.
+     */
+    VARIABLE
+  }
+
+  private final V value;
+  private final long creationTime;
+  private volatile long lastAccessTime;
+
+  /**
+   * Creates a holder for {@code value} fitting a store with the given {@code expiration} and hit counting settings.
+   */
+  public static <V> SlimOnHeapValueHolder<V> create(V value, long creationTime, long expirationTime, Expiration expiration, boolean hitCounting) {
+    switch (expiration) {
+      case NONE:
+        if (expirationTime != NO_EXPIRE) {
+          throw new IllegalArgumentException("Eternal value holder cannot expire at " + expirationTime);
+        }
+        return hitCounting ? new EternalHitCounting<V>(value, creationTime) : new Eternal<V>(value, creationTime);
+      case FIXED:
+        return hitCounting ? new FixedHitCounting<V>(value, creationTime, expirationTime) : new Fixed<V>(value, creationTime, expirationTime);
+      case VARIABLE:
+        return hitCounting ? new VariableHitCounting<V>(value, creationTime, expirationTime) : new Variable<V>(value, creationTime, expirationTime);
+      default:
+        throw new AssertionError("Unknown expiration " + expiration);
+    }
+  }
+
+  SlimOnHeapValueHolder(V value, long creationTime) {
+    if (value == null) {
+      throw new NullPointerException("null value");
+    }
+    this.value = value;
+    this.creationTime = creationTime;
+    this.lastAccessTime = creationTime;
+  }
+
+  @Override
+  public V value() {
+    return value;
+  }
+
+  @Override
+  public long getId() {
+    return -1;
+  }
+
+  @Override
+  public long creationTime(TimeUnit unit) {
+    return unit.convert(creationTime, TIME_UNIT);
+  }
+
+  @Override
+  public long lastAccessTime(TimeUnit unit) {
+    return unit.convert(lastAccessTime, TIME_UNIT);
+  }
+
+  @Override
+  public void setLastAccessTime(long lastAccessTime, TimeUnit unit) {
+    touch(TIME_UNIT.convert(lastAccessTime, unit));
+  }
+
+  @Override
+  public long hits() {
+    return 0;
+  }
+
+  @Override
+  public void accessed(long now, Duration expiration) {
+    if (expiration != null) {
+      setExpirationTime(expirationTimeFor(now, expiration), TIME_UNIT);
+    }
+    touch(now);
+  }
+
+  private void touch(long now) {
+    if (lastAccessTime != now) {
+      LAST_ACCESS_TIME_UPDATER.lazySet(this, now);
+    }
+  }
+
+  private static long checkExpirationTime(long expirationTime, TimeUnit unit) {
+    if (expirationTime == NO_EXPIRE) {
+      return NO_EXPIRE;
+    } else if (expirationTime <= 0) {
+      throw new IllegalArgumentException("invalid expiration time: " + expirationTime);
+    } else {
+      return TIME_UNIT.convert(expirationTime, unit);
+    }
+  }
+
+  static class Eternal<V> extends SlimOnHeapValueHolder<V> {
+
+    Eternal(V value, long creationTime) {
+      super(value, creationTime);
+    }
+
+    @Override
+    public long expirationTime(TimeUnit unit) {
+      return NO_EXPIRE;
+    }
+
+    @Override
+    public boolean isExpired(long expirationTime, TimeUnit unit) {
+      return false;
+    }
+
+    @Override
+    public void setExpirationTime(long expirationTime, TimeUnit unit) {
+      if (expirationTime != NO_EXPIRE) {
+        throw new UnsupportedOperationException("Eternal value holder cannot expire");
+      }
+    }
+  }
+
+  static class Fixed<V> extends SlimOnHeapValueHolder<V> {
+
+    private final long expirationTime;
+
+    Fixed(V value, long creationTime, long expirationTime) {
+      super(value, creationTime);
+      this.expirationTime = checkExpirationTime(expirationTime, TIME_UNIT);
+    }
+
+    @Override
+    public long expirationTime(TimeUnit unit) {
+      return expirationTime == NO_EXPIRE ? NO_EXPIRE : unit.convert(expirationTime, TIME_UNIT);
+    }
+
+    @Override
+    public void setExpirationTime(long expirationTime, TimeUnit unit) {
+      if (checkExpirationTime(expirationTime, unit) != this.expirationTime) {
+        throw new UnsupportedOperationException("Fixed expiry value holder cannot change its expiration time");
+      }
+    }
+  }
+
+  static class Variable<V> extends SlimOnHeapValueHolder<V> {
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicLongFieldUpdater<Variable> EXPIRATION_TIME_UPDATER = AtomicLongFieldUpdater.newUpdater(Variable.class, "expirationTime");
+    private volatile long expirationTime;
+
+    Variable(V value, long creationTime, long expirationTime) {
+      super(value, creationTime);
+      this.expirationTime = checkExpirationTime(expirationTime, TIME_UNIT);
+    }
+
+    @Override
+    public long expirationTime(TimeUnit unit) {
+      final long expire = this.expirationTime;
+      return expire == NO_EXPIRE ? NO_EXPIRE : unit.convert(expire, TIME_UNIT);
+    }
+
+    @Override
+    public void setExpirationTime(long expirationTime, TimeUnit unit) {
+      long expire = checkExpirationTime(expirationTime, unit);
+      if (this.expirationTime != expire) {
+        EXPIRATION_TIME_UPDATER.lazySet(this, expire);
+      }
+    }
+  }
+
+  static final class EternalHitCounting<V> extends Eternal<V> {
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicLongFieldUpdater<EternalHitCounting> HITS_UPDATER = AtomicLongFieldUpdater.newUpdater(EternalHitCounting.class, "hits");
+    private volatile long hits;
+
+    EternalHitCounting(V value, long creationTime) {
+      super(value, creationTime);
+    }
+
+    @Override
+    public void accessed(long now, Duration expiration) {
+      super.accessed(now, expiration);
+      HITS_UPDATER.lazySet(this, hits + 1);
+    }
+
+    @Override
+    public long hits() {
+      return hits;
+    }
+  }
+
+  static final class FixedHitCounting<V> extends Fixed<V> {
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicLongFieldUpdater<FixedHitCounting> HITS_UPDATER = AtomicLongFieldUpdater.newUpdater(FixedHitCounting.class, "hits");
+    private volatile long hits;
+
+    FixedHitCounting(V value, long creationTime, long expirationTime) {
+      super(value, creationTime, expirationTime);
+    }
+
+    @Override
+    public void accessed(long now, Duration expiration) {
+      super.accessed(now, expiration);
+      HITS_UPDATER.lazySet(this, hits + 1);
+    }
+
+    @Override
+    public long hits() {
+      return hits;
+    }
+  }
+
+  static final class VariableHitCounting<V> extends Variable<V> {
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicLongFieldUpdater<VariableHitCounting> HITS_UPDATER = AtomicLongFieldUpdater.newUpdater(VariableHitCounting.class, "hits");
+    private volatile long hits;
+
+    VariableHitCounting(V value, long creationTime, long expirationTime) {
+      super(value, creationTime, expirationTime);
+    }
+
+    @Override
+    public void accessed(long now, Duration expiration) {
+      super.accessed(now, expiration);
+      HITS_UPDATER.lazySet(this, hits + 1);
+    }
+
+    @Override
+    public long hits() {
+      return hits;
+    }
+  }
+}
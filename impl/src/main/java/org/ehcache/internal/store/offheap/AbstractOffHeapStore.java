@@ -16,22 +16,29 @@
 
 package org.ehcache.internal.store.offheap;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.Lock;
 import org.ehcache.Cache;
 import org.ehcache.config.EvictionVeto;
+import org.ehcache.config.store.CompressionConfiguration;
 import org.ehcache.events.CacheEvents;
 import org.ehcache.events.StoreEventListener;
 import org.ehcache.exceptions.CacheAccessException;
 import org.ehcache.expiry.Duration;
+import org.ehcache.expiry.Expirations;
 import org.ehcache.expiry.Expiry;
 import org.ehcache.function.BiFunction;
 import org.ehcache.function.Function;
@@ -39,11 +46,16 @@ import org.ehcache.function.NullaryFunction;
 import org.ehcache.function.Predicate;
 import org.ehcache.internal.TimeSource;
 import org.ehcache.internal.store.offheap.factories.EhcacheSegmentFactory;
+import org.ehcache.internal.store.offheap.portability.OffHeapValueHolderPortability;
+import org.ehcache.internal.store.offheap.portability.ValueCompression;
+import org.ehcache.internal.store.tiering.SegmentedTier;
 import org.ehcache.spi.cache.CacheStoreHelper;
 import org.ehcache.spi.cache.Store;
 import org.ehcache.spi.cache.tiering.AuthoritativeTier;
 import org.ehcache.spi.cache.tiering.CachingTier;
 import org.ehcache.spi.cache.tiering.LowerCachingTier;
+import org.ehcache.spi.serialization.Serializer;
+import org.ehcache.spi.service.ExecutionService;
 import org.ehcache.statistics.AuthoritativeTierOperationOutcomes;
 import org.ehcache.statistics.LowerCachingTierOperationsOutcome;
 import org.ehcache.statistics.StoreOperationOutcomes;
@@ -51,12 +63,13 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.terracotta.offheapstore.Segment;
 import org.terracotta.offheapstore.exceptions.OversizeMappingException;
+import org.terracotta.statistics.StatisticsManager;
 
 import static org.ehcache.exceptions.CachePassThroughException.handleRuntimeException;
 import static org.terracotta.statistics.StatisticBuilder.operation;
 import org.terracotta.statistics.observer.OperationObserver;
 
-public abstract class AbstractOffHeapStore<K, V> implements AuthoritativeTier<K, V>, LowerCachingTier<K, V> {
+public abstract class AbstractOffHeapStore<K, V> implements AuthoritativeTier<K, V>, LowerCachingTier<K, V>, SegmentedTier<K>, Store.Partitioned<K, V>, Store.Purgeable<K, V> {
 
   private static final Logger LOG = LoggerFactory.getLogger(AbstractOffHeapStore.class);
 
@@ -87,6 +100,10 @@ public abstract class AbstractOffHeapStore<K, V> implements AuthoritativeTier<K,
   private final OperationObserver<LowerCachingTierOperationsOutcome.GetAndRemoveOutcome> getAndRemoveObserver;
   private final OperationObserver<LowerCachingTierOperationsOutcome.InstallMappingOutcome> installMappingObserver;
 
+  private final OperationObserver<StoreOperationOutcomes.CompressionOutcome> compressionObserver;
+  private final OperationObserver<StoreOperationOutcomes.DecompressionOutcome> decompressionObserver;
+  private final AtomicReference<ValueCompression> valueCompression = new AtomicReference<ValueCompression>();
+
   private volatile Callable<Void> valve;
   private volatile StoreEventListener<K, V> eventListener = CacheEvents.nullStoreEventListener();
   protected BackingMapEvictionListener<K, V> mapEvictionListener;
@@ -120,6 +137,13 @@ public abstract class AbstractOffHeapStore<K, V> implements AuthoritativeTier<K,
     this.getAndRemoveObserver= operation(LowerCachingTierOperationsOutcome.GetAndRemoveOutcome.class).of(this).named("getAndRemove").tag(statisticsTag).build();
     this.installMappingObserver= operation(LowerCachingTierOperationsOutcome.InstallMappingOutcome.class).of(this).named("installMapping").tag(statisticsTag).build();
 
+    this.compressionObserver = operation(StoreOperationOutcomes.CompressionOutcome.class).of(this).named("compression").tag(statisticsTag).build();
+    this.decompressionObserver = operation(StoreOperationOutcomes.DecompressionOutcome.class).of(this).named("decompression").tag(statisticsTag).build();
+    this.valueCompression.set(new ValueCompression(null, compressionObserver, decompressionObserver));
+    Set<String> tags = Collections.singleton(statisticsTag);
+    StatisticsManager.createPassThroughStatistic(this, "compressionInputBytes", tags, compressionBytes(valueCompression, true));
+    StatisticsManager.createPassThroughStatistic(this, "compressionOutputBytes", tags, compressionBytes(valueCompression, false));
+
     this.mapEvictionListener = new BackingMapEvictionListener<K, V>(evictionObserver);
   }
 
@@ -131,6 +155,10 @@ public abstract class AbstractOffHeapStore<K, V> implements AuthoritativeTier<K,
 
   private Store.ValueHolder<V> internalGet(K key, final boolean updateAccess) throws CacheAccessException {
     getObserver.begin();
+    if (!mightContain(key)) {
+      getObserver.end(StoreOperationOutcomes.GetOutcome.MISS);
+      return null;
+    }
     try {
       OffHeapValueHolder<V> result = backingMap().compute(key, new BiFunction<K, OffHeapValueHolder<V>, OffHeapValueHolder<V>>() {
         @Override
@@ -412,7 +440,58 @@ public abstract class AbstractOffHeapStore<K, V> implements AuthoritativeTier<K,
 
   @Override
   public Iterator<Cache.Entry<K, ValueHolder<V>>> iterator() {
-    return new OffHeapStoreIterator();
+    return new OffHeapStoreIterator(new DetachingEntryIterator<K, V>(backingMap().getSegments()), true);
+  }
+
+  @Override
+  public List<Iterator<Cache.Entry<K, ValueHolder<V>>>> partitionIterators(boolean recordAccess) {
+    List<Iterator<Cache.Entry<K, ValueHolder<V>>>> iterators = new ArrayList<Iterator<Cache.Entry<K, ValueHolder<V>>>>();
+    for (Segment<K, OffHeapValueHolder<V>> segment : backingMap().getSegments()) {
+      iterators.add(new OffHeapStoreIterator(new DetachingEntryIterator<K, V>(Collections.singletonList(segment)), recordAccess));
+    }
+    return iterators;
+  }
+
+  @Override
+  public void removeIf(Predicate<? super Cache.Entry<K, ValueHolder<V>>> predicate, boolean keysOnly,
+                       Function<? super Map<K, ValueHolder<V>>, ?> removals) throws CacheAccessException {
+    for (Segment<K, OffHeapValueHolder<V>> segment : backingMap().getSegments()) {
+      Map<K, ValueHolder<V>> removed = new HashMap<K, ValueHolder<V>>();
+      try {
+        Lock lock = segment.writeLock();
+        lock.lock();
+        try {
+          if (keysOnly) {
+            // values are never decoded
+            for (K key : segment.keySet()) {
+              if (predicate.test(CacheStoreHelper.<K, V>storeEntry(key, null, timeSource))) {
+                removed.put(key, null);
+              }
+            }
+          } else {
+            long now = timeSource.getTimeMillis();
+            for (Map.Entry<K, OffHeapValueHolder<V>> entry : segment.entrySet()) {
+              OffHeapValueHolder<V> valueHolder = entry.getValue();
+              if (!valueHolder.isExpired(now, TimeUnit.MILLISECONDS)
+                  && predicate.test(CacheStoreHelper.<K, V>storeEntry(entry.getKey(), valueHolder, timeSource))) {
+                valueHolder.detach();
+                removed.put(entry.getKey(), valueHolder);
+              }
+            }
+          }
+          for (K key : removed.keySet()) {
+            segment.removeNoReturn(key);
+          }
+        } finally {
+          lock.unlock();
+        }
+      } catch (RuntimeException re) {
+        handleRuntimeException(re);
+      }
+      if (!removed.isEmpty()) {
+        removals.apply(removed);
+      }
+    }
   }
 
   @Override
@@ -425,67 +504,86 @@ public abstract class AbstractOffHeapStore<K, V> implements AuthoritativeTier<K,
     computeObserver.begin();
     checkKey(key);
 
-    final AtomicBoolean write = new AtomicBoolean(false);
-    BiFunction<K, OffHeapValueHolder<V>, OffHeapValueHolder<V>> computeFunction = new BiFunction<K, OffHeapValueHolder<V>, OffHeapValueHolder<V>>() {
-      @Override
-      public OffHeapValueHolder<V> apply(K mappedKey, OffHeapValueHolder<V> mappedValue) {
-        long now = timeSource.getTimeMillis();
-        V existingValue = null;
-        if (mappedValue == null || mappedValue.isExpired(now, TimeUnit.MILLISECONDS)) {
-          if (mappedValue != null) {
-            onExpiration(mappedKey, mappedValue);
-          }
-          mappedValue = null;
-        } else {
-          existingValue = mappedValue.value();
-        }
-        V computedValue = mappingFunction.apply(mappedKey, existingValue);
-        if (computedValue == null) {
-          if (mappedValue != null) {
-            write.set(true);
-          }
-          return null;
-        } else if (safeEquals(existingValue, computedValue) && !replaceEqual.apply()) {
-          if (mappedValue != null) {
-            return setAccessTimeAndExpiryThenReturnMapping(mappedKey, mappedValue, now);
-          }
-          return mappedValue;
-        }
-
-        checkValue(computedValue);
-        write.set(true);
-        if (mappedValue != null) {
-          return newUpdatedValueHolder(key, computedValue, mappedValue, now);
-        } else {
-          return newCreateValueHolder(key, computedValue, now);
-        }
-      }
-    };
+    ComputeFunction computeFunction = new ComputeFunction(mappingFunction, replaceEqual);
+    return computeFunction.end(computeRetryingOversize(key, computeFunction));
+  }
 
-    OffHeapValueHolder<V> result;
+  private OffHeapValueHolder<V> computeRetryingOversize(K key, ComputeFunction computeFunction) throws CacheAccessException {
     while (true) {
       try {
         // TODO review as computeFunction can have side effects
-        result = backingMap().compute(key, computeFunction, false);
-        break;
+        return backingMap().compute(key, computeFunction, false);
       } catch (OversizeMappingException e) {
         handleOversizeMappingException(key, e);
       } catch (RuntimeException re) {
         handleRuntimeException(re);
       }
     }
-    if (result == null) {
-      if (write.get()) {
-        computeObserver.end(StoreOperationOutcomes.ComputeOutcome.REMOVED);
+  }
+
+  /**
+   * Computes a mapping for {@link #compute(Object, BiFunction, NullaryFunction)}, remembering whether it wrote so
+   * that the outcome can be observed once the compute is over.
+   */
+  private final class ComputeFunction implements BiFunction<K, OffHeapValueHolder<V>, OffHeapValueHolder<V>> {
+
+    private final BiFunction<? super K, ? super V, ? extends V> mappingFunction;
+    private final NullaryFunction<Boolean> replaceEqual;
+    private boolean write = false;
+
+    ComputeFunction(BiFunction<? super K, ? super V, ? extends V> mappingFunction, NullaryFunction<Boolean> replaceEqual) {
+      this.mappingFunction = mappingFunction;
+      this.replaceEqual = replaceEqual;
+    }
+
+    @Override
+    public OffHeapValueHolder<V> apply(K mappedKey, OffHeapValueHolder<V> mappedValue) {
+      long now = timeSource.getTimeMillis();
+      V existingValue = null;
+      if (mappedValue == null || mappedValue.isExpired(now, TimeUnit.MILLISECONDS)) {
+        if (mappedValue != null) {
+          onExpiration(mappedKey, mappedValue);
+        }
+        mappedValue = null;
       } else {
-        computeObserver.end(StoreOperationOutcomes.ComputeOutcome.MISS);
+        existingValue = mappedValue.value();
+      }
+      V computedValue = mappingFunction.apply(mappedKey, existingValue);
+      if (computedValue == null) {
+        if (mappedValue != null) {
+          write = true;
+        }
+        return null;
+      } else if (safeEquals(existingValue, computedValue) && !replaceEqual.apply()) {
+        if (mappedValue != null) {
+          return setAccessTimeAndExpiryThenReturnMapping(mappedKey, mappedValue, now);
+        }
+        return mappedValue;
+      }
+
+      checkValue(computedValue);
+      write = true;
+      if (mappedValue != null) {
+        return newUpdatedValueHolder(mappedKey, computedValue, mappedValue, now);
+      } else {
+        return newCreateValueHolder(mappedKey, computedValue, now);
       }
-    } else if (write.get()) {
-      computeObserver.end(StoreOperationOutcomes.ComputeOutcome.PUT);
-    } else {
-      computeObserver.end(StoreOperationOutcomes.ComputeOutcome.HIT);
     }
-    return result;
+
+    OffHeapValueHolder<V> end(OffHeapValueHolder<V> result) {
+      if (result == null) {
+        if (write) {
+          computeObserver.end(StoreOperationOutcomes.ComputeOutcome.REMOVED);
+        } else {
+          computeObserver.end(StoreOperationOutcomes.ComputeOutcome.MISS);
+        }
+      } else if (write) {
+        computeObserver.end(StoreOperationOutcomes.ComputeOutcome.PUT);
+      } else {
+        computeObserver.end(StoreOperationOutcomes.ComputeOutcome.HIT);
+      }
+      return result;
+    }
   }
 
   @Override
@@ -629,41 +727,69 @@ public abstract class AbstractOffHeapStore<K, V> implements AuthoritativeTier<K,
 
   @Override
   public Map<K, ValueHolder<V>> bulkCompute(Set<? extends K> keys, final Function<Iterable<? extends Map.Entry<? extends K, ? extends V>>, Iterable<? extends Map.Entry<? extends K, ? extends V>>> remappingFunction, NullaryFunction<Boolean> replaceEqual) throws CacheAccessException {
-    Map<K, ValueHolder<V>> result = new HashMap<K, ValueHolder<V>>();
+    // the function is handed the keys of one segment at a time, that segment write locked meanwhile
+    Map<Integer, List<K>> keysBySegment = new LinkedHashMap<Integer, List<K>>();
     for (K key : keys) {
       checkKey(key);
-      BiFunction<K, V, V> biFunction = new BiFunction<K, V, V>() {
-        @Override
-        public V apply(final K k, final V v) {
-          Map.Entry<K, V> entry = new Map.Entry<K, V>() {
-            @Override
-            public K getKey() {
-              return k;
-            }
+      Integer segment = segmentFor(key);
+      List<K> segmentKeys = keysBySegment.get(segment);
+      if (segmentKeys == null) {
+        segmentKeys = new ArrayList<K>();
+        keysBySegment.put(segment, segmentKeys);
+      }
+      segmentKeys.add(key);
+    }
 
-            @Override
-            public V getValue() {
-              return v;
-            }
+    Map<K, ValueHolder<V>> result = new HashMap<K, ValueHolder<V>>();
+    List<Segment<K, OffHeapValueHolder<V>>> segments = backingMap().getSegments();
+    for (Map.Entry<Integer, List<K>> segmentKeys : keysBySegment.entrySet()) {
+      Map<K, ComputeFunction> oversized = new LinkedHashMap<K, ComputeFunction>();
+      Lock lock = segments.get(segmentKeys.getKey()).writeLock();
+      lock.lock();
+      try {
+        Iterable<? extends Map.Entry<? extends K, ? extends V>> entries;
+        try {
+          long now = timeSource.getTimeMillis();
+          Map<K, V> existingValues = new LinkedHashMap<K, V>();
+          for (K key : segmentKeys.getValue()) {
+            OffHeapValueHolder<V> mappedValue = backingMap().get(key);
+            existingValues.put(key, mappedValue == null || mappedValue.isExpired(now, TimeUnit.MILLISECONDS) ? null : mappedValue.value());
+          }
+          entries = remappingFunction.apply(existingValues.entrySet());
+        } catch (RuntimeException re) {
+          handleRuntimeException(re);
+          return null;
+        }
 
+        for (Map.Entry<? extends K, ? extends V> entry : entries) {
+          if (entry == null) {
+            continue;
+          }
+          K key = entry.getKey();
+          checkKey(key);
+          final V value = entry.getValue();
+          computeObserver.begin();
+          ComputeFunction computeFunction = new ComputeFunction(new BiFunction<K, V, V>() {
             @Override
-            public V setValue(V value) {
-              throw new UnsupportedOperationException();
+            public V apply(K mappedKey, V mappedValue) {
+              return value;
             }
-          };
-          java.util.Iterator<? extends Map.Entry<? extends K, ? extends V>> iterator = remappingFunction.apply(Collections
-              .singleton(entry)).iterator();
-          Map.Entry<? extends K, ? extends V> result = iterator.next();
-          if (result != null) {
-            checkKey(result.getKey());
-            return result.getValue();
-          } else {
-            return null;
+          }, replaceEqual);
+          try {
+            result.put(key, computeFunction.end(backingMap().compute(key, computeFunction, false)));
+          } catch (OversizeMappingException e) {
+            // making room takes the locks of the other segments, so only once this one is released
+            oversized.put(key, computeFunction);
+          } catch (RuntimeException re) {
+            handleRuntimeException(re);
           }
         }
-      };
-      ValueHolder<V> computed = compute(key, biFunction, replaceEqual);
-      result.put(key, computed);
+      } finally {
+        lock.unlock();
+      }
+      for (Map.Entry<K, ComputeFunction> retry : oversized.entrySet()) {
+        result.put(retry.getKey(), retry.getValue().end(computeRetryingOversize(retry.getKey(), retry.getValue())));
+      }
     }
     return result;
   }
@@ -696,16 +822,26 @@ public abstract class AbstractOffHeapStore<K, V> implements AuthoritativeTier<K,
   public ValueHolder<V> getAndFault(K key) throws CacheAccessException {
     getAndFaultObserver.begin();
     checkKey(key);
+    if (!mightContain(key)) {
+      getAndFaultObserver.end(AuthoritativeTierOperationOutcomes.GetAndFaultOutcome.MISS);
+      return null;
+    }
     ValueHolder<V> mappedValue = null;
     try {
-      mappedValue = backingMap().getAndPin(key);
-
-      if(mappedValue != null && mappedValue.isExpired(timeSource.getTimeMillis(), TimeUnit.MILLISECONDS)) {
-        if(backingMap().remove(key, mappedValue)) {
-          onExpiration(key, mappedValue);
+      mappedValue = backingMap().compute(key, new BiFunction<K, OffHeapValueHolder<V>, OffHeapValueHolder<V>>() {
+        @Override
+        public OffHeapValueHolder<V> apply(K mappedKey, OffHeapValueHolder<V> mappedValue) {
+          if (mappedValue == null) {
+            return null;
+          }
+          if (mappedValue.isExpired(timeSource.getTimeMillis(), TimeUnit.MILLISECONDS)) {
+            onExpiration(mappedKey, mappedValue);
+            return null;
+          }
+          mappedValue.value();
+          return mappedValue;
         }
-        mappedValue = null;
-      }
+      }, true);
       if (mappedValue == null) {
         getAndFaultObserver.end(AuthoritativeTierOperationOutcomes.GetAndFaultOutcome.MISS);
       } else {
@@ -754,6 +890,11 @@ public abstract class AbstractOffHeapStore<K, V> implements AuthoritativeTier<K,
     }
   }
 
+  @Override
+  public int segmentFor(K key) {
+    return backingMap().getIndexFor(key.hashCode());
+  }
+
   @Override
   public void setInvalidationListener(CachingTier.InvalidationListener<K, V> invalidationListener) {
     this.invalidationListener = invalidationListener;
@@ -820,9 +961,10 @@ public abstract class AbstractOffHeapStore<K, V> implements AuthoritativeTier<K,
     }
   }
 
-  private void notifyInvalidation(final K key, final ValueHolder<V> p) {
+  private void notifyInvalidation(final K key, final OffHeapValueHolder<V> p) {
     final CachingTier.InvalidationListener<K, V> invalidationListener = this.invalidationListener;
     if (invalidationListener != null) {
+      p.detach();
       invalidationListener.onInvalidation(key, p);
     }
   }
@@ -846,6 +988,8 @@ public abstract class AbstractOffHeapStore<K, V> implements AuthoritativeTier<K,
             onExpiration(mappedKey, mappedValue);
           }
           mappedValue = null;
+        } else {
+          mappedValue.value();
         }
         valueHolderAtomicReference.set(mappedValue);
         return null;
@@ -931,9 +1075,11 @@ public abstract class AbstractOffHeapStore<K, V> implements AuthoritativeTier<K,
   };
 
   private OffHeapValueHolder<V> setAccessTimeAndExpiryThenReturnMapping(K key, OffHeapValueHolder<V> valueHolder, long now) {
+    // deserialized outside of the expiry failure handling, as the mapping is handed out
+    V value = valueHolder.value();
     Duration duration;
     try {
-      duration = expiry.getExpiryForAccess(key, valueHolder.value());
+      duration = expiry.getExpiryForAccess(key, value);
     } catch (RuntimeException re) {
       LOG.error("Expiry computation caused an exception - Expiry duration will be 0 ", re);
       onExpiration(key, valueHolder);
@@ -945,9 +1091,10 @@ public abstract class AbstractOffHeapStore<K, V> implements AuthoritativeTier<K,
   }
 
   private OffHeapValueHolder<V> newUpdatedValueHolder(K key, V value, OffHeapValueHolder<V> existing, long now) {
+    V existingValue = existing.value();
     Duration duration;
     try {
-      duration = expiry.getExpiryForUpdate(key, existing.value(), value);
+      duration = expiry.getExpiryForUpdate(key, existingValue, value);
     } catch (RuntimeException re) {
       LOG.error("Expiry computation caused an exception - Expiry duration will be 0 ", re);
       return null;
@@ -1066,11 +1213,95 @@ public abstract class AbstractOffHeapStore<K, V> implements AuthoritativeTier<K,
   private void onExpiration(K mappedKey, ValueHolder<V> mappedValue) {
     expirationObserver.begin();
     expirationObserver.end(StoreOperationOutcomes.ExpirationOutcome.SUCCESS);
+    if (mappedValue instanceof OffHeapValueHolder) {
+      // listeners may hold on to the holder
+      ((OffHeapValueHolder<V>) mappedValue).detach();
+    }
     eventListener.onExpiration(mappedKey, mappedValue);
   }
 
   protected abstract EhcacheOffHeapBackingMap<K, OffHeapValueHolder<V>> backingMap();
 
+  /**
+   * Compresses the values this store writes from its next initialization on. Values are stored uncompressed unless
+   * configured otherwise, compressed values written earlier are always readable.
+   *
+   * @param configuration the compression configuration, {@code null} to store values uncompressed
+   */
+  protected void configureCompression(CompressionConfiguration configuration) {
+    this.valueCompression.set(new ValueCompression(configuration, compressionObserver, decompressionObserver));
+  }
+
+  // static so that the statistic, which the statistics registry holds on to, does not retain the store
+  private static Callable<Long> compressionBytes(final AtomicReference<ValueCompression> valueCompression, final boolean input) {
+    return new Callable<Long>() {
+      @Override
+      public Long call() throws Exception {
+        ValueCompression compression = valueCompression.get();
+        return input ? compression.getInputBytes() : compression.getOutputBytes();
+      }
+    };
+  }
+
+  /**
+   * Creates the portability encoding the value holders of this store, leaving out the expiration time when entries
+   * never expire.
+   *
+   * @param valueSerializer the value serializer
+   * @param persistent {@code true} if the entries outlive this store, their creation times are then encoded relative
+   *                   to the fixed {@link OffHeapValueHolderPortability#FORMAT_EPOCH}
+   */
+  protected OffHeapValueHolderPortability<V> createValuePortability(Serializer<V> valueSerializer, boolean persistent) {
+    long epoch = persistent ? OffHeapValueHolderPortability.FORMAT_EPOCH : timeSource.getTimeMillis();
+    return new OffHeapValueHolderPortability<V>(valueSerializer, epoch, !Expirations.noExpiration().equals(expiry), true, valueCompression.get());
+  }
+
+  /**
+   * Returns {@code false} when the backing map definitely holds no mapping for the key, letting lookups return
+   * without probing it. This implementation always returns {@code true}.
+   */
+  protected boolean mightContain(K key) {
+    return true;
+  }
+
+  /**
+   * Evicts from the backing map, one segment shrink at a time, for as long as {@code overLimit} holds.
+   * <P>
+   *   The work runs on an executor obtained from {@code executionService} for {@code poolAlias}, or on the calling
+   *   thread when no such executor is available.
+   * </P>
+   */
+  protected void shrinkWhile(final NullaryFunction<Boolean> overLimit, ExecutionService executionService, String poolAlias) {
+    Runnable shrinker = new Runnable() {
+      @Override
+      public void run() {
+        try {
+          EhcacheOffHeapBackingMap<K, OffHeapValueHolder<V>> map = backingMap();
+          while (map != null && overLimit.apply() && map.shrink()) {
+            map = backingMap();
+          }
+        } catch (RuntimeException e) {
+          LOG.warn("Shrinking of the store after a resize was interrupted", e);
+        }
+      }
+    };
+
+    ExecutorService executor = null;
+    if (executionService != null) {
+      try {
+        executor = executionService.getUnorderedExecutor(poolAlias, new LinkedBlockingQueue<Runnable>());
+      } catch (IllegalStateException e) {
+        LOG.debug("No thread pool available for shrinking, shrinking on the calling thread", e);
+      }
+    }
+    if (executor == null) {
+      shrinker.run();
+    } else {
+      executor.execute(shrinker);
+      executor.shutdown();
+    }
+  }
+
   protected static <K, V> Predicate<Map.Entry<K, OffHeapValueHolder<V>>> wrap(EvictionVeto<? super K, ? super V> delegate, TimeSource timeSource) {
     return new OffHeapEvictionVetoWrapper<K, V>(delegate, timeSource);
   }
@@ -1098,13 +1329,63 @@ public abstract class AbstractOffHeapStore<K, V> implements AuthoritativeTier<K,
     }
   }
 
+  /**
+   * Iterates over the mappings of segments one after the other, detaching each value under the segment lock it was
+   * decoded under, as iterated mappings are handed out.
+   */
+  private static class DetachingEntryIterator<K, V> implements java.util.Iterator<Map.Entry<K, OffHeapValueHolder<V>>> {
+
+    private final java.util.Iterator<Segment<K, OffHeapValueHolder<V>>> segments;
+    private Segment<K, OffHeapValueHolder<V>> segment;
+    private java.util.Iterator<Map.Entry<K, OffHeapValueHolder<V>>> entries = Collections.<Map.Entry<K, OffHeapValueHolder<V>>>emptySet().iterator();
+
+    DetachingEntryIterator(List<Segment<K, OffHeapValueHolder<V>>> segments) {
+      this.segments = segments.iterator();
+    }
+
+    @Override
+    public boolean hasNext() {
+      while (!entries.hasNext()) {
+        if (!segments.hasNext()) {
+          return false;
+        }
+        segment = segments.next();
+        entries = segment.entrySet().iterator();
+      }
+      return true;
+    }
+
+    @Override
+    public Map.Entry<K, OffHeapValueHolder<V>> next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      Lock lock = segment.readLock();
+      lock.lock();
+      try {
+        Map.Entry<K, OffHeapValueHolder<V>> entry = entries.next();
+        entry.getValue().detach();
+        return entry;
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    @Override
+    public void remove() {
+      entries.remove();
+    }
+  }
+
   class OffHeapStoreIterator implements Iterator<Cache.Entry<K, ValueHolder<V>>> {
     private final java.util.Iterator<Map.Entry<K, OffHeapValueHolder<V>>> mapIterator;
+    private final boolean recordAccess;
     private Map.Entry<K, OffHeapValueHolder<V>> next = null;
     private CacheAccessException prefetchFailure = null;
 
-    OffHeapStoreIterator() {
-      mapIterator = backingMap().entrySet().iterator();
+    OffHeapStoreIterator(java.util.Iterator<Map.Entry<K, OffHeapValueHolder<V>>> mapIterator, boolean recordAccess) {
+      this.mapIterator = mapIterator;
+      this.recordAccess = recordAccess;
       advance();
     }
 
@@ -1119,6 +1400,8 @@ public abstract class AbstractOffHeapStore<K, V> implements AuthoritativeTier<K,
             continue;
           }
 
+          // deserialized here so that a failure is reported as an access failure of this store
+          entry.getValue().value();
           next = entry;
         }
       } catch (CacheAccessException ce) {
@@ -1146,25 +1429,9 @@ public abstract class AbstractOffHeapStore<K, V> implements AuthoritativeTier<K,
       final Map.Entry<K, OffHeapValueHolder<V>> thisEntry = next;
       advance();
 
-      final long now = timeSource.getTimeMillis();
-      backingMap().computeIfPresent(thisEntry.getKey(), new BiFunction<K, OffHeapValueHolder<V>, OffHeapValueHolder<V>>() {
-        @Override
-        public OffHeapValueHolder<V> apply(final K k, final OffHeapValueHolder<V> currentMapping) {
-          if (currentMapping.getId() == thisEntry.getValue().getId()) {
-            return setAccessTimeAndExpiryThenReturnMapping(k, currentMapping, now);
-          }
-          return currentMapping;
-        }
-      });
-
-      Duration duration;
-      try {
-        duration = expiry.getExpiryForAccess(thisEntry.getKey(), thisEntry.getValue().value());
-      } catch (RuntimeException re) {
-        LOG.error("Expiry computation caused an exception - Expiry duration will be 0 ", re);
-        duration = Duration.ZERO;
+      if (recordAccess) {
+        recordAccess(thisEntry);
       }
-      thisEntry.getValue().accessed(now, duration);
 
       return new Cache.Entry<K, ValueHolder<V>>() {
         @Override
@@ -1194,6 +1461,28 @@ public abstract class AbstractOffHeapStore<K, V> implements AuthoritativeTier<K,
         }
       };
     }
+
+    private void recordAccess(final Map.Entry<K, OffHeapValueHolder<V>> thisEntry) {
+      final long now = timeSource.getTimeMillis();
+      backingMap().computeIfPresent(thisEntry.getKey(), new BiFunction<K, OffHeapValueHolder<V>, OffHeapValueHolder<V>>() {
+        @Override
+        public OffHeapValueHolder<V> apply(final K k, final OffHeapValueHolder<V> currentMapping) {
+          if (currentMapping.getId() == thisEntry.getValue().getId()) {
+            return setAccessTimeAndExpiryThenReturnMapping(k, currentMapping, now);
+          }
+          return currentMapping;
+        }
+      });
+
+      Duration duration;
+      try {
+        duration = expiry.getExpiryForAccess(thisEntry.getKey(), thisEntry.getValue().value());
+      } catch (RuntimeException re) {
+        LOG.error("Expiry computation caused an exception - Expiry duration will be 0 ", re);
+        duration = Duration.ZERO;
+      }
+      thisEntry.getValue().accessed(now, duration);
+    }
   }
 
   static class BackingMapEvictionListener<K, V> implements EhcacheSegmentFactory.EhcacheSegment.EvictionListener<K, OffHeapValueHolder<V>> {
@@ -1215,6 +1504,7 @@ public abstract class AbstractOffHeapStore<K, V> implements AuthoritativeTier<K,
     public void onEviction(K key, OffHeapValueHolder<V> value) {
       evictionObserver.begin();
       evictionObserver.end(StoreOperationOutcomes.EvictionOutcome.SUCCESS);
+      value.detach();
       storeEventListener.onEviction(key, value);
     }
   }
@@ -40,4 +40,8 @@ public interface EhcacheOffHeapBackingMap<K, V> extends ConcurrentMap<K, V> {
   List<Segment<K, V>> getSegments();
   
   boolean shrinkOthers(int excludedHash);
+
+  boolean shrink();
+
+  int getIndexFor(int hash);
 }
@@ -16,16 +16,23 @@
 
 package org.ehcache.internal.store.offheap;
 
+import org.ehcache.CacheConfigurationChangeEvent;
 import org.ehcache.CacheConfigurationChangeListener;
+import org.ehcache.CacheConfigurationProperty;
 import org.ehcache.config.ResourcePool;
+import org.ehcache.config.ResourcePools;
 import org.ehcache.config.ResourceType;
+import org.ehcache.config.SharedResourcePool;
+import org.ehcache.config.store.CompressionConfiguration;
+import org.ehcache.config.store.OffHeapAllocationConfiguration;
 import org.ehcache.config.units.MemoryUnit;
 import org.ehcache.exceptions.CacheAccessException;
+import org.ehcache.function.NullaryFunction;
 import org.ehcache.function.Predicate;
 import org.ehcache.internal.TimeSource;
 import org.ehcache.internal.TimeSourceService;
+import org.ehcache.internal.store.SharedResourcePoolsService;
 import org.ehcache.internal.store.offheap.factories.EhcacheSegmentFactory;
-import org.ehcache.internal.store.offheap.portability.OffHeapValueHolderPortability;
 import org.ehcache.internal.store.offheap.portability.SerializerPortability;
 import org.ehcache.spi.ServiceProvider;
 import org.ehcache.spi.cache.Store;
@@ -33,13 +40,13 @@ import org.ehcache.spi.cache.tiering.AuthoritativeTier;
 import org.ehcache.spi.cache.tiering.LowerCachingTier;
 import org.ehcache.spi.serialization.SerializationProvider;
 import org.ehcache.spi.serialization.Serializer;
+import org.ehcache.spi.service.ExecutionService;
 import org.ehcache.spi.service.ServiceConfiguration;
 import org.ehcache.spi.service.ServiceDependencies;
 import org.ehcache.util.ConcurrentWeakIdentityHashMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.terracotta.offheapstore.paging.PageSource;
-import org.terracotta.offheapstore.paging.UpfrontAllocatingPageSource;
 import org.terracotta.offheapstore.pinning.PinnableSegment;
 import org.terracotta.offheapstore.storage.OffHeapBufferStorageEngine;
 import org.terracotta.offheapstore.storage.PointerSize;
@@ -50,24 +57,75 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
 import org.ehcache.config.EvictionVeto;
 import org.ehcache.function.Predicates;
 
 import static org.ehcache.internal.store.offheap.OffHeapStoreUtils.getBufferSource;
+import static org.ehcache.spi.ServiceLocator.findSingletonAmongst;
 
 /**
  * OffHeapStore
  */
 public class OffHeapStore<K, V> extends AbstractOffHeapStore<K, V> {
 
+  private static final Logger LOG = LoggerFactory.getLogger(OffHeapStore.class);
+
   private final Predicate<Map.Entry<K, OffHeapValueHolder<V>>> evictionVeto;
   private final Serializer<K> keySerializer;
   private final Serializer<V> valueSerializer;
   private final long sizeInBytes;
+  private final PageSource sharedPageSource;
+  private final ExecutionService executionService;
+  private final OffHeapAllocationConfiguration allocationConfiguration;
 
   private volatile EhcacheConcurrentOffHeapClockCache<K, OffHeapValueHolder<V>> map;
+  private volatile ResizablePageSource resizablePageSource;
+
+  private final CacheConfigurationChangeListener cacheConfigurationChangeListener = new CacheConfigurationChangeListener() {
+    @Override
+    public void cacheConfigurationChange(CacheConfigurationChangeEvent event) {
+      if (event.getProperty().equals(CacheConfigurationProperty.UPDATESIZE)) {
+        ResourcePool updatedPool = ((ResourcePools)event.getNewValue()).getPoolForResource(ResourceType.Core.OFFHEAP);
+        ResourcePool configuredPool = ((ResourcePools)event.getOldValue()).getPoolForResource(ResourceType.Core.OFFHEAP);
+        if (updatedPool != null && configuredPool != null && updatedPool.getSize() != configuredPool.getSize()) {
+          resize(((MemoryUnit)updatedPool.getUnit()).toBytes(updatedPool.getSize()));
+        }
+      }
+    }
+  };
 
   public OffHeapStore(final Configuration<K, V> config, TimeSource timeSource, long sizeInBytes) {
+    this(config, timeSource, null, sizeInBytes);
+  }
+
+  /**
+   * Creates a store reserving its own memory, using the given execution service to evict in the background when
+   * the store is shrunk.
+   */
+  public OffHeapStore(final Configuration<K, V> config, TimeSource timeSource, ExecutionService executionService, long sizeInBytes) {
+    this(config, timeSource, executionService, sizeInBytes, null);
+  }
+
+  /**
+   * Creates a store reserving its own memory as directed by the given allocation configuration, a {@code null}
+   * configuration allocating all of it upfront.
+   */
+  public OffHeapStore(final Configuration<K, V> config, TimeSource timeSource, ExecutionService executionService, long sizeInBytes, OffHeapAllocationConfiguration allocationConfiguration) {
+    this(config, timeSource, sizeInBytes, null, executionService, allocationConfiguration);
+  }
+
+  /**
+   * Creates a store allocating from the given page source, shared with the stores of other caches, instead of
+   * reserving its own memory.
+   */
+  public OffHeapStore(final Configuration<K, V> config, TimeSource timeSource, long sizeInBytes, PageSource sharedPageSource) {
+    this(config, timeSource, sizeInBytes, sharedPageSource, null, null);
+  }
+
+  private OffHeapStore(final Configuration<K, V> config, TimeSource timeSource, long sizeInBytes, PageSource sharedPageSource,
+                       ExecutionService executionService, OffHeapAllocationConfiguration allocationConfiguration) {
     super("local-offheap", config, timeSource);
     EvictionVeto<? super K, ? super V> veto = config.getEvictionVeto();
     if (veto != null) {
@@ -78,20 +136,58 @@ public class OffHeapStore<K, V> extends AbstractOffHeapStore<K, V> {
     this.keySerializer = config.getKeySerializer();
     this.valueSerializer = config.getValueSerializer();
     this.sizeInBytes = sizeInBytes;
+    this.sharedPageSource = sharedPageSource;
+    this.executionService = executionService;
+    this.allocationConfiguration = allocationConfiguration;
   }
 
   @Override
   public List<CacheConfigurationChangeListener> getConfigurationChangeListeners() {
-    return Collections.emptyList();
+    if (sharedPageSource == null) {
+      return Collections.singletonList(cacheConfigurationChangeListener);
+    } else {
+      return Collections.emptyList();
+    }
+  }
+
+  void resize(long newSizeInBytes) {
+    final ResizablePageSource source = resizablePageSource;
+    if (source == null) {
+      throw new IllegalStateException("Store not initialized or backed by a shared pool, it cannot be resized");
+    }
+    LOG.info("Resizing offheap store from {} to {} bytes", source.getLimit(), newSizeInBytes);
+    source.resize(newSizeInBytes);
+    if (source.isOverLimit()) {
+      shrinkWhile(new NullaryFunction<Boolean>() {
+        @Override
+        public Boolean apply() {
+          return source.isOverLimit();
+        }
+      }, executionService, null);
+    }
   }
 
   private EhcacheConcurrentOffHeapClockCache<K, OffHeapValueHolder<V>> createBackingMap(long size, Serializer<K> keySerializer, Serializer<V> valueSerializer, Predicate<Map.Entry<K, OffHeapValueHolder<V>>> evictionVeto) {
     HeuristicConfiguration config = new HeuristicConfiguration(size);
-    PageSource source = new UpfrontAllocatingPageSource(getBufferSource(), config.getMaximumSize(), config.getMaximumChunkSize(), config.getMinimumChunkSize());
+    PageSource source;
+    boolean thief;
+    if (sharedPageSource == null) {
+      boolean lazy = allocationConfiguration != null && allocationConfiguration.getMode() == OffHeapAllocationConfiguration.Mode.ON_DEMAND;
+      resizablePageSource = new ResizablePageSource(getBufferSource(), config.getMaximumSize(), config.getMaximumChunkSize(), config.getMinimumChunkSize(), lazy);
+      if (lazy && allocationConfiguration.isPreTouch()) {
+        preTouch(resizablePageSource, allocationConfiguration.getThreadPoolAlias());
+      }
+      source = resizablePageSource;
+      thief = false;
+    } else {
+      // storage pages of all caches are victims, a cache short of space takes pages from the others
+      source = sharedPageSource;
+      thief = true;
+    }
     Portability<K> keyPortability = new SerializerPortability<K>(keySerializer);
-    Portability<OffHeapValueHolder<V>> elementPortability = new OffHeapValueHolderPortability<V>(valueSerializer);
+    Portability<OffHeapValueHolder<V>> elementPortability = createValuePortability(valueSerializer, false);
     Factory<OffHeapBufferStorageEngine<K, OffHeapValueHolder<V>>> storageEngineFactory = OffHeapBufferStorageEngine.createFactory(PointerSize.INT, source, config
-        .getSegmentDataPageSize(), keyPortability, elementPortability, false, true);
+        .getSegmentDataPageSize(), keyPortability, elementPortability, thief, true);
 
     Factory<? extends PinnableSegment<K, OffHeapValueHolder<V>>> segmentFactory = new EhcacheSegmentFactory<K, OffHeapValueHolder<V>>(
                                                                                                          source,
@@ -108,7 +204,40 @@ public class OffHeapStore<K, V> extends AbstractOffHeapStore<K, V> {
     return map;
   }
 
-  @ServiceDependencies({TimeSourceService.class, SerializationProvider.class})
+  /**
+   * Reserves the chunks of a lazy page source in the background, until all are or the store is closed.
+   */
+  private void preTouch(final ResizablePageSource source, String poolAlias) {
+    ExecutorService executor = null;
+    if (executionService != null) {
+      try {
+        executor = executionService.getUnorderedExecutor(poolAlias, new LinkedBlockingQueue<Runnable>());
+      } catch (IllegalStateException e) {
+        LOG.warn("No thread pool available for pre-touching offheap memory, it will be allocated on demand", e);
+      }
+    }
+    if (executor != null) {
+      executor.execute(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            while (resizablePageSource == source && source.reserveChunk()) {
+              LOG.debug("Pre-touched offheap memory : {} of {} bytes", source.getReservedSize(), source.getLimit());
+            }
+          } catch (OutOfMemoryError e) {
+            LOG.warn("Pre-touching offheap memory failed, it will be allocated on demand", e);
+          }
+        }
+      });
+      executor.shutdown();
+    }
+  }
+
+  ResizablePageSource resizablePageSource() {
+    return resizablePageSource;
+  }
+
+  @ServiceDependencies({TimeSourceService.class, SerializationProvider.class, SharedResourcePoolsService.class, ExecutionService.class})
   public static class Provider implements Store.Provider, AuthoritativeTier.Provider, LowerCachingTier.Provider {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(Provider.class);
@@ -124,13 +253,23 @@ public class OffHeapStore<K, V> extends AbstractOffHeapStore<K, V> {
       TimeSource timeSource = serviceProvider.getService(TimeSourceService.class).getTimeSource();
 
       ResourcePool offHeapPool = storeConfig.getResourcePools().getPoolForResource(ResourceType.Core.OFFHEAP);
+      if (offHeapPool instanceof SharedResourcePool) {
+        SharedResourcePoolsService sharedPools = serviceProvider.getService(SharedResourcePoolsService.class);
+        OffHeapStore<K, V> offHeapStore = new OffHeapStore<K, V>(storeConfig, timeSource, sharedPools.getSharedOffHeapSize(), sharedPools.getSharedOffHeapPageSource());
+        offHeapStore.configureCompression(findSingletonAmongst(CompressionConfiguration.class, (Object[]) serviceConfigs));
+        createdStores.add(offHeapStore);
+        return offHeapStore;
+      }
       if (!(offHeapPool.getUnit() instanceof MemoryUnit)) {
         throw new IllegalArgumentException("OffHeapStore only supports resources with memory unit");
       }
       MemoryUnit unit = (MemoryUnit)offHeapPool.getUnit();
 
 
-      OffHeapStore<K, V> offHeapStore = new OffHeapStore<K, V>(storeConfig, timeSource, unit.toBytes(offHeapPool.getSize()));
+      ExecutionService executionService = serviceProvider.getService(ExecutionService.class);
+      OffHeapAllocationConfiguration allocationConfiguration = findSingletonAmongst(OffHeapAllocationConfiguration.class, (Object[]) serviceConfigs);
+      OffHeapStore<K, V> offHeapStore = new OffHeapStore<K, V>(storeConfig, timeSource, executionService, unit.toBytes(offHeapPool.getSize()), allocationConfiguration);
+      offHeapStore.configureCompression(findSingletonAmongst(CompressionConfiguration.class, (Object[]) serviceConfigs));
       createdStores.add(offHeapStore);
       return offHeapStore;
     }
@@ -146,6 +285,7 @@ public class OffHeapStore<K, V> extends AbstractOffHeapStore<K, V> {
     static void close(final OffHeapStore resource) {EhcacheConcurrentOffHeapClockCache<Object, OffHeapValueHolder<Object>> localMap = resource.map;
       if (localMap != null) {
         resource.map = null;
+        resource.resizablePageSource = null;
         localMap.destroy();
       }
     }
@@ -16,11 +16,14 @@
 
 package org.ehcache.internal.store.offheap;
 
+import org.ehcache.exceptions.SerializerException;
 import org.ehcache.internal.store.offheap.portability.OffHeapValueHolderPortability;
 import org.ehcache.spi.cache.AbstractValueHolder;
 import org.ehcache.spi.cache.Store;
+import org.ehcache.spi.serialization.Serializer;
 import org.terracotta.offheapstore.storage.portability.WriteContext;
 
+import java.nio.ByteBuffer;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -30,7 +33,9 @@ public final class OffHeapValueHolder<V> extends AbstractValueHolder<V> {
 
   public static final TimeUnit TIME_UNIT = TimeUnit.MILLISECONDS;
 
-  private final V value;
+  private volatile V value;
+  private volatile ByteBuffer binaryValue;
+  private final Serializer<V> serializer;
   private final WriteContext writeContext;
 
   public OffHeapValueHolder(long id, V value, long creationTime, long expireTime) {
@@ -41,13 +46,59 @@ public final class OffHeapValueHolder<V> extends AbstractValueHolder<V> {
     super(id, creationTime, expireTime);
     setLastAccessTime(lastAccessTime, TIME_UNIT);
     this.value = value;
+    this.binaryValue = null;
+    this.serializer = null;
+    this.setHits(hits);
+    this.writeContext = writeContext;
+  }
+
+  /**
+   * Creates a value holder whose value is only deserialized from {@code binaryValue} on the first call to
+   * {@link #value()}. The buffer must not be modified nor reused by the caller afterwards, unless it is a view on
+   * storage memory the holder is {@link #detach() detached} from first.
+   */
+  public OffHeapValueHolder(long id, ByteBuffer binaryValue, Serializer<V> serializer, long creationTime, long expireTime, long lastAccessTime, long hits, WriteContext writeContext) {
+    super(id, creationTime, expireTime);
+    setLastAccessTime(lastAccessTime, TIME_UNIT);
+    this.value = null;
+    this.binaryValue = binaryValue;
+    this.serializer = serializer;
     this.setHits(hits);
     this.writeContext = writeContext;
   }
 
   @Override
   public V value() {
-    return value;
+    V v = value;
+    if (v == null) {
+      ByteBuffer binary = binaryValue;
+      if (binary == null) {
+        // deserialized concurrently, binaryValue is only cleared once value is set
+        return value;
+      }
+      try {
+        v = serializer.read(binary.duplicate());
+      } catch (ClassNotFoundException e) {
+        throw new SerializerException(e);
+      }
+      value = v;
+      binaryValue = null;
+    }
+    return v;
+  }
+
+  /**
+   * Copies the serial form of a value not deserialized yet to the heap if it still is a direct view on storage
+   * memory. Such a view is only valid while the segment lock is held, this must be called before the holder
+   * outlives it.
+   */
+  public void detach() {
+    ByteBuffer binary = binaryValue;
+    if (binary != null && binary.isDirect()) {
+      ByteBuffer copy = ByteBuffer.allocate(binary.remaining());
+      copy.put(binary.duplicate()).flip();
+      binaryValue = copy;
+    }
   }
 
   @Override
@@ -58,7 +109,7 @@ public final class OffHeapValueHolder<V> extends AbstractValueHolder<V> {
     OffHeapValueHolder that = (OffHeapValueHolder)other;
 
     if (!super.equals(that)) return false;
-    if (!value.equals(that.value)) return false;
+    if (!value().equals(that.value())) return false;
 
     return true;
   }
@@ -71,7 +122,7 @@ public final class OffHeapValueHolder<V> extends AbstractValueHolder<V> {
   @Override
   public int hashCode() {
     int result = 1;
-    result = 31 * result + value.hashCode();
+    result = 31 * result + value().hashCode();
     result = 31 * result + super.hashCode();
     return result;
   }
@@ -0,0 +1,185 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.internal.store.offheap;
+
+import org.terracotta.offheapstore.buffersource.BufferSource;
+import org.terracotta.offheapstore.paging.OffHeapStorageArea;
+import org.terracotta.offheapstore.paging.Page;
+import org.terracotta.offheapstore.paging.PageSource;
+import org.terracotta.offheapstore.paging.UpfrontAllocatingPageSource;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link PageSource} whose size can be changed while in use.
+ * <P>
+ *   Memory is reserved upfront, as with a plain {@link UpfrontAllocatingPageSource}. Growing reserves an additional
+ *   source for the extra memory. Shrinking lowers the limit on allocations : pages already handed out stay valid
+ *   until they are freed, the owner of the pages is expected to evict until {@link #isOverLimit()} returns
+ *   {@code false}.
+ * </P>
+ * <P>
+ *   A lazy source reserves nothing upfront, memory is reserved one chunk at a time when allocations no longer fit in
+ *   the chunks reserved so far, or ahead of time through {@link #reserveChunk()}.
+ * </P>
+ */
+public class ResizablePageSource implements PageSource {
+
+  private final BufferSource bufferSource;
+  private final int maximumChunkSize;
+  private final int minimumChunkSize;
+  private final boolean lazy;
+  private final List<PageSource> sources = new CopyOnWriteArrayList<PageSource>();
+  private final Map<Page, PageSource> pageOwners = new ConcurrentHashMap<Page, PageSource>();
+  private final AtomicLong allocated = new AtomicLong();
+
+  private long reserved;
+  private volatile long limit;
+
+  public ResizablePageSource(BufferSource bufferSource, long size, int maximumChunkSize, int minimumChunkSize) {
+    this(bufferSource, size, maximumChunkSize, minimumChunkSize, false);
+  }
+
+  /**
+   * Creates a source of {@code size} bytes, reserving them all upfront or, if {@code lazy}, chunks of at least
+   * {@code minimumChunkSize} bytes on demand.
+   */
+  public ResizablePageSource(BufferSource bufferSource, long size, int maximumChunkSize, int minimumChunkSize, boolean lazy) {
+    this.bufferSource = bufferSource;
+    this.maximumChunkSize = maximumChunkSize;
+    this.minimumChunkSize = minimumChunkSize;
+    this.lazy = lazy;
+    if (lazy) {
+      this.reserved = 0;
+    } else {
+      this.sources.add(new UpfrontAllocatingPageSource(bufferSource, size, maximumChunkSize, minimumChunkSize));
+      this.reserved = size;
+    }
+    this.limit = size;
+  }
+
+  @Override
+  public Page allocate(int size, boolean thief, boolean victim, OffHeapStorageArea owner) {
+    long current;
+    do {
+      current = allocated.get();
+      if (current + size > limit) {
+        return null;
+      }
+    } while (!allocated.compareAndSet(current, current + size));
+
+    Page page = allocateFromSources(size, thief, victim, owner);
+    if (page == null && lazy) {
+      page = reserveAndAllocate(size, thief, victim, owner);
+    }
+    if (page == null) {
+      allocated.addAndGet(-size);
+    }
+    return page;
+  }
+
+  private Page allocateFromSources(int size, boolean thief, boolean victim, OffHeapStorageArea owner) {
+    for (PageSource source : sources) {
+      Page page = source.allocate(size, thief, victim, owner);
+      if (page != null) {
+        pageOwners.put(page, source);
+        return page;
+      }
+    }
+    return null;
+  }
+
+  private synchronized Page reserveAndAllocate(int size, boolean thief, boolean victim, OffHeapStorageArea owner) {
+    // a racing allocation may have reserved a chunk already
+    Page page = allocateFromSources(size, thief, victim, owner);
+    if (page == null && limit - reserved >= size) {
+      PageSource source = reserve(Math.min(limit - reserved, Math.max(size, minimumChunkSize)));
+      page = source.allocate(size, thief, victim, owner);
+      if (page != null) {
+        pageOwners.put(page, source);
+      }
+    }
+    return page;
+  }
+
+  private PageSource reserve(long size) {
+    int chunkSize = (int) Math.min(size, maximumChunkSize);
+    PageSource source = new UpfrontAllocatingPageSource(bufferSource, size, chunkSize, chunkSize);
+    sources.add(source);
+    reserved += size;
+    return source;
+  }
+
+  /**
+   * Reserves the next chunk of a lazy source ahead of the allocations needing it.
+   *
+   * @return {@code false} if the whole size of this source is reserved already
+   */
+  public synchronized boolean reserveChunk() {
+    if (reserved >= limit) {
+      return false;
+    }
+    reserve(Math.min(limit - reserved, minimumChunkSize));
+    return true;
+  }
+
+  @Override
+  public void free(Page page) {
+    PageSource source = pageOwners.remove(page);
+    if (source == null) {
+      throw new IllegalArgumentException("Page not allocated from this source");
+    }
+    source.free(page);
+    allocated.addAndGet(-page.size());
+  }
+
+  /**
+   * Changes the maximum number of bytes this source hands out.
+   *
+   * @param size the new size in bytes
+   */
+  public synchronized void resize(long size) {
+    if (size <= 0) {
+      throw new IllegalArgumentException("Size must be positive");
+    }
+    if (size > reserved && !lazy) {
+      sources.add(new UpfrontAllocatingPageSource(bufferSource, size - reserved, maximumChunkSize, Math.min(minimumChunkSize, maximumChunkSize)));
+      reserved = size;
+    }
+    limit = size;
+  }
+
+  public long getLimit() {
+    return limit;
+  }
+
+  public synchronized long getReservedSize() {
+    return reserved;
+  }
+
+  public long getAllocatedSize() {
+    return allocated.get();
+  }
+
+  public boolean isOverLimit() {
+    return allocated.get() > limit;
+  }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.internal.store.offheap.portability;
+
+import org.ehcache.config.store.CompressionConfiguration;
+import org.ehcache.exceptions.SerializerException;
+
+/**
+ * A compression algorithm usable on the payload of offheap and disk entries.
+ * <P>
+ *   Implementations are stateless and thread-safe, any scratch state being kept per thread.
+ * </P>
+ */
+abstract class CompressionCodec {
+
+  private final byte id;
+
+  CompressionCodec(int id) {
+    this.id = (byte) id;
+  }
+
+  /**
+   * The identifier of this codec, stored with each entry it compressed.
+   */
+  byte id() {
+    return id;
+  }
+
+  /**
+   * Compresses {@code length} bytes of {@code in} from {@code offset} into {@code out} from {@code outOffset}, as
+   * long as the compressed form fits in {@code maxLength} bytes.
+   *
+   * @return the length of the compressed form, or {@code -1} if it does not fit
+   */
+  abstract int compress(byte[] in, int offset, int length, byte[] out, int outOffset, int maxLength);
+
+  /**
+   * Decompresses {@code length} bytes of {@code in} from {@code offset} into {@code out} from {@code outOffset},
+   * the decompressed form being exactly {@code originalLength} bytes long.
+   *
+   * @throws SerializerException if the compressed form is corrupt
+   */
+  abstract void decompress(byte[] in, int offset, int length, byte[] out, int outOffset, int originalLength) throws SerializerException;
+
+  static CompressionCodec forAlgorithm(CompressionConfiguration.Algorithm algorithm) {
+    switch (algorithm) {
+      case LZF:
+        return LzfCodec.INSTANCE;
+      case DEFLATE:
+        return DeflateCodec.INSTANCE;
+      default:
+        throw new IllegalArgumentException("Unsupported compression algorithm " + algorithm);
+    }
+  }
+
+  static CompressionCodec forId(byte id) throws SerializerException {
+    if (id == LzfCodec.INSTANCE.id()) {
+      return LzfCodec.INSTANCE;
+    } else if (id == DeflateCodec.INSTANCE.id()) {
+      return DeflateCodec.INSTANCE;
+    } else {
+      throw new SerializerException("Unknown compression codec " + id);
+    }
+  }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.internal.store.offheap.portability;
+
+import org.ehcache.exceptions.SerializerException;
+
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * A codec producing raw Deflate streams, at the fastest compression level.
+ * <P>
+ *   Each thread reuses its own {@link Deflater} and {@link Inflater}, sparing the allocation of their native state
+ *   on every operation.
+ * </P>
+ */
+final class DeflateCodec extends CompressionCodec {
+
+  static final DeflateCodec INSTANCE = new DeflateCodec();
+
+  private static final ThreadLocal<Deflater> DEFLATER = new ThreadLocal<Deflater>() {
+    @Override
+    protected Deflater initialValue() {
+      return new Deflater(Deflater.BEST_SPEED, true);
+    }
+  };
+
+  private static final ThreadLocal<Inflater> INFLATER = new ThreadLocal<Inflater>() {
+    @Override
+    protected Inflater initialValue() {
+      return new Inflater(true);
+    }
+  };
+
+  private DeflateCodec() {
+    super(2);
+  }
+
+  @Override
+  int compress(byte[] in, int offset, int length, byte[] out, int outOffset, int maxLength) {
+    Deflater deflater = DEFLATER.get();
+    try {
+      deflater.setInput(in, offset, length);
+      deflater.finish();
+      int compressed = 0;
+      while (!deflater.finished() && compressed < maxLength) {
+        compressed += deflater.deflate(out, outOffset + compressed, maxLength - compressed);
+      }
+      return deflater.finished() ? compressed : -1;
+    } finally {
+      deflater.reset();
+    }
+  }
+
+  @Override
+  void decompress(byte[] in, int offset, int length, byte[] out, int outOffset, int originalLength) throws SerializerException {
+    Inflater inflater = INFLATER.get();
+    try {
+      inflater.setInput(in, offset, length);
+      int decompressed = 0;
+      while (decompressed < originalLength) {
+        int read = inflater.inflate(out, outOffset + decompressed, originalLength - decompressed);
+        if (read == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+          break;
+        }
+        decompressed += read;
+      }
+      if (decompressed != originalLength) {
+        throw new SerializerException("Corrupted Deflate data : decompressed " + decompressed + " bytes instead of " + originalLength);
+      }
+    } catch (DataFormatException e) {
+      throw new SerializerException("Corrupted Deflate data", e);
+    } finally {
+      inflater.reset();
+    }
+  }
+}
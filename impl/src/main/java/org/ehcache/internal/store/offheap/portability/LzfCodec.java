@@ -0,0 +1,153 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.internal.store.offheap.portability;
+
+import org.ehcache.exceptions.SerializerException;
+
+/**
+ * A pure Java codec producing the LZF format: a fast LZ77 variant trading compression ratio for speed.
+ * <P>
+ *   The compressed form is a sequence of literal runs, a control byte {@code 000LLLLL} followed by {@code L + 1}
+ *   literals, and back references, a control byte {@code LLLOOOOO} possibly followed by a length byte when
+ *   {@code L} is 7, then the low byte of the offset. A back reference copies {@code L + 2} bytes from
+ *   {@code offset + 1} bytes behind.
+ * </P>
+ */
+final class LzfCodec extends CompressionCodec {
+
+  static final LzfCodec INSTANCE = new LzfCodec();
+
+  private static final int HASH_BITS = 14;
+  private static final int MAX_LITERAL = 1 << 5;
+  private static final int MAX_OFFSET = 1 << 13;
+  private static final int MAX_REFERENCE = (1 << 8) + (1 << 3);
+
+  private static final ThreadLocal<int[]> HASH_TABLE = new ThreadLocal<int[]>() {
+    @Override
+    protected int[] initialValue() {
+      return new int[1 << HASH_BITS];
+    }
+  };
+
+  private LzfCodec() {
+    super(1);
+  }
+
+  @Override
+  int compress(byte[] in, int offset, int length, byte[] out, int outOffset, int maxLength) {
+    // stale positions left by previous calls are harmless, candidates are checked against the input
+    int[] hashTable = HASH_TABLE.get();
+    int inEnd = offset + length;
+    int outEnd = outOffset + maxLength;
+    int op = outOffset;
+    int literalStart = offset;
+    int ip = offset;
+    while (ip < inEnd - 2) {
+      int hash = hash(in, ip);
+      int ref = hashTable[hash];
+      hashTable[hash] = ip;
+      int distance = ip - ref - 1;
+      if (ref >= offset && ref < ip && distance < MAX_OFFSET
+          && in[ref] == in[ip] && in[ref + 1] == in[ip + 1] && in[ref + 2] == in[ip + 2]) {
+        int maxMatch = Math.min(inEnd - ip, MAX_REFERENCE);
+        int match = 3;
+        while (match < maxMatch && in[ref + match] == in[ip + match]) {
+          match++;
+        }
+        op = writeLiterals(in, literalStart, ip - literalStart, out, op, outEnd);
+        if (op < 0 || op + 3 > outEnd) {
+          return -1;
+        }
+        int len = match - 2;
+        if (len < 7) {
+          out[op++] = (byte) ((len << 5) | (distance >>> 8));
+        } else {
+          out[op++] = (byte) ((7 << 5) | (distance >>> 8));
+          out[op++] = (byte) (len - 7);
+        }
+        out[op++] = (byte) distance;
+        ip += match;
+        literalStart = ip;
+      } else {
+        ip++;
+      }
+    }
+    op = writeLiterals(in, literalStart, inEnd - literalStart, out, op, outEnd);
+    return op < 0 ? -1 : op - outOffset;
+  }
+
+  private static int writeLiterals(byte[] in, int offset, int length, byte[] out, int op, int outEnd) {
+    while (length > 0) {
+      int run = Math.min(length, MAX_LITERAL);
+      if (op + 1 + run > outEnd) {
+        return -1;
+      }
+      out[op++] = (byte) (run - 1);
+      System.arraycopy(in, offset, out, op, run);
+      op += run;
+      offset += run;
+      length -= run;
+    }
+    return op;
+  }
+
+  private static int hash(byte[] in, int ip) {
+    int value = (in[ip] & 0xff) << 16 | (in[ip + 1] & 0xff) << 8 | (in[ip + 2] & 0xff);
+    return (value * 0x9E3779B1) >>> (32 - HASH_BITS);
+  }
+
+  @Override
+  void decompress(byte[] in, int offset, int length, byte[] out, int outOffset, int originalLength) throws SerializerException {
+    int ip = offset;
+    int inEnd = offset + length;
+    int op = outOffset;
+    int outEnd = outOffset + originalLength;
+    try {
+      while (ip < inEnd) {
+        int control = in[ip++] & 0xff;
+        if (control < MAX_LITERAL) {
+          int run = control + 1;
+          if (op + run > outEnd) {
+            throw new SerializerException("Corrupted LZF data : literal run overflows the output");
+          }
+          System.arraycopy(in, ip, out, op, run);
+          ip += run;
+          op += run;
+        } else {
+          int len = control >>> 5;
+          if (len == 7) {
+            len += in[ip++] & 0xff;
+          }
+          len += 2;
+          int ref = op - ((control & 0x1f) << 8) - (in[ip++] & 0xff) - 1;
+          if (ref < outOffset || op + len > outEnd) {
+            throw new SerializerException("Corrupted LZF data : back reference out of bounds");
+          }
+          // byte by byte, the reference may overlap the bytes being written
+          for (int i = 0; i < len; i++) {
+            out[op++] = out[ref++];
+          }
+        }
+      }
+    } catch (ArrayIndexOutOfBoundsException e) {
+      throw new SerializerException("Corrupted LZF data", e);
+    }
+    if (op != outEnd) {
+      throw new SerializerException("Corrupted LZF data : decompressed " + (op - outOffset) + " bytes instead of " + originalLength);
+    }
+  }
+}
@@ -16,46 +16,149 @@
 
 package org.ehcache.internal.store.offheap.portability;
 
+import org.ehcache.exceptions.SerializerException;
 import org.ehcache.internal.store.offheap.OffHeapValueHolder;
+import org.ehcache.spi.serialization.HeaderReservingSerializer;
 import org.ehcache.spi.serialization.Serializer;
 
 import org.terracotta.offheapstore.storage.portability.WriteBackPortability;
 import org.terracotta.offheapstore.storage.portability.WriteContext;
 
-import java.io.IOException;
 import java.nio.ByteBuffer;
-import org.ehcache.exceptions.SerializerException;
 
 /**
  * OffHeapValueHolderPortability
+ * <P>
+ *   Entries are encoded in a compact format: a format byte holding the version and the optional fields present, the
+ *   id and the creation time relative to an epoch as variable length integers, then the last access time, the
+ *   expiration time and the hits as longs, these being updated in place by {@link OffHeapValueHolder#writeBack()}.
+ *   The expiration time is only present when the store expires entries and the hits only when they are tracked.
+ *   A flag marks the payloads compressed by the {@link ValueCompression} stage.
+ * </P>
+ * <P>
+ *   Entries written in the legacy format, a fixed header of five longs, are still decoded. That header starts with
+ *   the most significant byte of the id, {@code 0x00} or {@code 0xff}, which no compact format byte can take.
+ * </P>
  */
 public class OffHeapValueHolderPortability<V> implements WriteBackPortability<OffHeapValueHolder<V>> {
 
+  /**
+   * Epoch of the creation times of persistent entries, these outliving the store that wrote them.
+   */
+  public static final long FORMAT_EPOCH = 1420070400000L;
+
   public static final int ACCESS_TIME_OFFSET = 16;
   public static final int EXPIRE_TIME_OFFSET = 24;
   public static final int HITS_OFFSET = 32;
 
-  // 5 longs: id, access, expire, creation time, hits
+  // legacy format, 5 longs: id, access, expire, creation time, hits
   private static final int FIELDS_OVERHEAD = 40;
 
+  private static final int FORMAT_VERSION = 1;
+  private static final int HAS_EXPIRE_TIME = 0x1;
+  private static final int HAS_HITS = 0x2;
+  private static final int COMPRESSED = 0x4;
+
   private final Serializer<V> serializer;
+  private final long epoch;
+  private final boolean expiring;
+  private final boolean hitTracking;
+  private final ValueCompression compression;
+  private final Serializer<V> decompressingSerializer;
 
   public OffHeapValueHolderPortability(Serializer<V> serializer) {
+    this(serializer, FORMAT_EPOCH, true, true);
+  }
+
+  public OffHeapValueHolderPortability(Serializer<V> serializer, long epoch, boolean expiring, boolean hitTracking) {
+    this(serializer, epoch, expiring, hitTracking, null);
+  }
+
+  /**
+   * Creates a portability leaving out the metadata its store never uses.
+   *
+   * @param serializer the value serializer
+   * @param epoch the time creation times are encoded relative to, it must not change for the lifetime of the entries
+   * @param expiring {@code false} if entries never expire, the expiration time is then omitted for eternal entries
+   *                 which cannot be given one afterwards
+   * @param hitTracking {@code false} if hits are not tracked, they are then omitted and decoded as zero
+   * @param compression the compression stage, {@code null} if payloads are neither compressed nor decompressed
+   */
+  public OffHeapValueHolderPortability(Serializer<V> serializer, long epoch, boolean expiring, boolean hitTracking, ValueCompression compression) {
     this.serializer = serializer;
+    this.epoch = epoch;
+    this.expiring = expiring;
+    this.hitTracking = hitTracking;
+    this.compression = compression;
+    this.decompressingSerializer = compression == null ? null : new DecompressingSerializer<V>(serializer, compression);
   }
 
+  /**
+   * Encodes the metadata header followed by the serialized value.
+   * <P>
+   *   When the serializer is a {@link HeaderReservingSerializer} the header is written in place in front of the serial
+   *   form, the storage engine then copies the returned buffer once. Other serializers have their output copied into
+   *   a new buffer behind the header. Payloads the compression stage shrinks are copied, compressed, behind the
+   *   header instead.
+   * </P>
+   */
   @Override
   public ByteBuffer encode(OffHeapValueHolder<V> valueHolder) {
-    ByteBuffer serialized = serializer.serialize(valueHolder.value());
-    ByteBuffer byteBuffer = ByteBuffer.allocate(serialized.remaining() + FIELDS_OVERHEAD);
-    byteBuffer.putLong(valueHolder.getId());
-    byteBuffer.putLong(valueHolder.creationTime(OffHeapValueHolder.TIME_UNIT));
+    long id = zigZag(valueHolder.getId());
+    long creationTime = zigZag(valueHolder.creationTime(OffHeapValueHolder.TIME_UNIT) - epoch);
+    int flags = 0;
+    int headerSize = 1 + varLongSize(id) + varLongSize(creationTime) + 8;
+    if (expiring || valueHolder.expirationTime(OffHeapValueHolder.TIME_UNIT) != OffHeapValueHolder.NO_EXPIRE) {
+      flags |= HAS_EXPIRE_TIME;
+      headerSize += 8;
+    }
+    if (hitTracking) {
+      flags |= HAS_HITS;
+      headerSize += 8;
+    }
+
+    ByteBuffer reserved;
+    ByteBuffer serialized;
+    if (serializer instanceof HeaderReservingSerializer) {
+      reserved = ((HeaderReservingSerializer<V>) serializer).serialize(valueHolder.value(), headerSize);
+      serialized = reserved.duplicate();
+      serialized.position(serialized.position() + headerSize);
+    } else {
+      reserved = null;
+      serialized = serializer.serialize(valueHolder.value());
+    }
+
+    if (compression != null && compression.isEnabled()) {
+      ByteBuffer compressed = compression.compress(serialized, headerSize);
+      if (compressed != null) {
+        writeHeader(valueHolder, flags | COMPRESSED, id, creationTime, compressed.duplicate());
+        return compressed;
+      }
+    }
+
+    if (reserved != null) {
+      writeHeader(valueHolder, flags, id, creationTime, reserved.duplicate());
+      return reserved;
+    } else {
+      ByteBuffer byteBuffer = ByteBuffer.allocate(serialized.remaining() + headerSize);
+      writeHeader(valueHolder, flags, id, creationTime, byteBuffer);
+      byteBuffer.put(serialized);
+      byteBuffer.flip();
+      return byteBuffer;
+    }
+  }
+
+  private static void writeHeader(OffHeapValueHolder<?> valueHolder, int flags, long id, long creationTime, ByteBuffer byteBuffer) {
+    byteBuffer.put((byte) (FORMAT_VERSION << 4 | flags));
+    putVarLong(byteBuffer, id);
+    putVarLong(byteBuffer, creationTime);
     byteBuffer.putLong(valueHolder.lastAccessTime(OffHeapValueHolder.TIME_UNIT));
-    byteBuffer.putLong(valueHolder.expirationTime(OffHeapValueHolder.TIME_UNIT));
-    byteBuffer.putLong(valueHolder.hits());
-    byteBuffer.put(serialized);
-    byteBuffer.flip();
-    return byteBuffer;
+    if ((flags & HAS_EXPIRE_TIME) != 0) {
+      byteBuffer.putLong(valueHolder.expirationTime(OffHeapValueHolder.TIME_UNIT));
+    }
+    if ((flags & HAS_HITS) != 0) {
+      byteBuffer.putLong(valueHolder.hits());
+    }
   }
 
   @Override
@@ -68,18 +171,179 @@ public class OffHeapValueHolderPortability<V> implements WriteBackPortability<Of
     return o.equals(decode(byteBuffer));
   }
 
+  /**
+   * Decodes the metadata header eagerly, the value itself is only deserialized when first accessed.
+   * <P>
+   *   The payload is not copied. Direct buffers are views on storage memory that can be released or reused once the
+   *   segment lock is dropped: the store deserializes or {@link OffHeapValueHolder#detach() detaches} the holders
+   *   it lets outlive the lock, so that paths only looking at metadata never copy the payload. Heap buffers are
+   *   private copies handed out by the storage engine. Compressed payloads are likewise only decompressed when the
+   *   value is first accessed.
+   * </P>
+   */
   @Override
   public OffHeapValueHolder<V> decode(ByteBuffer byteBuffer, WriteContext writeContext) {
-    try {
-      long id = byteBuffer.getLong();
-      long creationTime = byteBuffer.getLong();
-      long lastAccessTime = byteBuffer.getLong();
-      long expireTime = byteBuffer.getLong();
-      long hits = byteBuffer.getLong();
-      OffHeapValueHolder<V> valueHolder = new OffHeapValueHolder<V>(id, serializer.read(byteBuffer), creationTime, expireTime, lastAccessTime, hits, writeContext);
-      return valueHolder;
-    } catch (ClassNotFoundException e) {
-      throw new SerializerException(e);
+    int start = byteBuffer.position();
+    byte format = byteBuffer.get(start);
+    long id;
+    long creationTime;
+    long lastAccessTime;
+    long expireTime;
+    long hits;
+    boolean compressed = false;
+    if (format == 0 || format == (byte) 0xff) {
+      id = byteBuffer.getLong();
+      creationTime = byteBuffer.getLong();
+      lastAccessTime = byteBuffer.getLong();
+      expireTime = byteBuffer.getLong();
+      hits = byteBuffer.getLong();
+    } else if ((format & 0xff) >>> 4 == FORMAT_VERSION) {
+      byteBuffer.get();
+      id = unZigZag(getVarLong(byteBuffer));
+      creationTime = unZigZag(getVarLong(byteBuffer)) + epoch;
+      int accessTimeOffset = byteBuffer.position() - start;
+      lastAccessTime = byteBuffer.getLong();
+      int expireTimeOffset = -1;
+      if ((format & HAS_EXPIRE_TIME) != 0) {
+        expireTimeOffset = byteBuffer.position() - start;
+        expireTime = byteBuffer.getLong();
+      } else {
+        expireTime = OffHeapValueHolder.NO_EXPIRE;
+      }
+      int hitsOffset = -1;
+      if ((format & HAS_HITS) != 0) {
+        hitsOffset = byteBuffer.position() - start;
+        hits = byteBuffer.getLong();
+      } else {
+        hits = 0;
+      }
+      compressed = (format & COMPRESSED) != 0;
+      if (writeContext != null) {
+        writeContext = new CompactWriteContext(writeContext, accessTimeOffset, expireTimeOffset, hitsOffset);
+      }
+    } else {
+      throw new SerializerException("Unsupported value holder format version " + ((format & 0xff) >>> 4));
+    }
+
+    ByteBuffer binaryValue = byteBuffer.slice();
+    if (compressed) {
+      if (decompressingSerializer == null) {
+        throw new SerializerException("Compressed value found but no compression stage configured");
+      }
+      // kept writable so that the codec reads the backing array of heap buffers directly
+      return new OffHeapValueHolder<V>(id, binaryValue, decompressingSerializer, creationTime, expireTime, lastAccessTime, hits, writeContext);
+    }
+    return new OffHeapValueHolder<V>(id, binaryValue.asReadOnlyBuffer(), serializer, creationTime, expireTime, lastAccessTime, hits, writeContext);
+  }
+
+  private static long zigZag(long value) {
+    return (value << 1) ^ (value >> 63);
+  }
+
+  private static long unZigZag(long value) {
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+  static int varLongSize(long value) {
+    int size = 1;
+    while ((value & ~0x7fL) != 0) {
+      value >>>= 7;
+      size++;
+    }
+    return size;
+  }
+
+  static void putVarLong(ByteBuffer buffer, long value) {
+    while ((value & ~0x7fL) != 0) {
+      buffer.put((byte) ((value & 0x7f) | 0x80));
+      value >>>= 7;
+    }
+    buffer.put((byte) value);
+  }
+
+  static long getVarLong(ByteBuffer buffer) {
+    long value = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      byte b = buffer.get();
+      value |= (long) (b & 0x7f) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+    throw new SerializerException("Malformed variable length integer");
+  }
+
+  /**
+   * Reads values through the compression stage, {@link OffHeapValueHolder} deserializing them lazily.
+   */
+  private static final class DecompressingSerializer<V> implements Serializer<V> {
+
+    private final Serializer<V> delegate;
+    private final ValueCompression compression;
+
+    DecompressingSerializer(Serializer<V> delegate, ValueCompression compression) {
+      this.delegate = delegate;
+      this.compression = compression;
+    }
+
+    @Override
+    public ByteBuffer serialize(V object) throws SerializerException {
+      return delegate.serialize(object);
+    }
+
+    @Override
+    public V read(ByteBuffer binary) throws ClassNotFoundException, SerializerException {
+      return delegate.read(compression.decompress(binary));
+    }
+
+    @Override
+    public boolean equals(V object, ByteBuffer binary) throws ClassNotFoundException, SerializerException {
+      return delegate.equals(object, compression.decompress(binary));
+    }
+  }
+
+  /**
+   * Maps the legacy field offsets {@link OffHeapValueHolder#writeBack()} writes to onto those of a compact entry.
+   * Fields the entry was encoded without are dropped: entries of stores which never expire stay eternal.
+   */
+  private static final class CompactWriteContext implements WriteContext {
+
+    private final WriteContext delegate;
+    private final int accessTimeOffset;
+    private final int expireTimeOffset;
+    private final int hitsOffset;
+
+    CompactWriteContext(WriteContext delegate, int accessTimeOffset, int expireTimeOffset, int hitsOffset) {
+      this.delegate = delegate;
+      this.accessTimeOffset = accessTimeOffset;
+      this.expireTimeOffset = expireTimeOffset;
+      this.hitsOffset = hitsOffset;
+    }
+
+    @Override
+    public void setLong(int offset, long value) {
+      switch (offset) {
+        case ACCESS_TIME_OFFSET:
+          delegate.setLong(accessTimeOffset, value);
+          break;
+        case EXPIRE_TIME_OFFSET:
+          if (expireTimeOffset >= 0) {
+            delegate.setLong(expireTimeOffset, value);
+          }
+          break;
+        case HITS_OFFSET:
+          if (hitsOffset >= 0) {
+            delegate.setLong(hitsOffset, value);
+          }
+          break;
+        default:
+          throw new IllegalArgumentException("Unknown field offset " + offset);
+      }
+    }
+
+    @Override
+    public void flush() {
+      delegate.flush();
     }
   }
 }
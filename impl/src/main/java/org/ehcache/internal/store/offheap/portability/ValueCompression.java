@@ -0,0 +1,210 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.internal.store.offheap.portability;
+
+import org.ehcache.config.store.CompressionConfiguration;
+import org.ehcache.exceptions.SerializerException;
+import org.ehcache.statistics.StoreOperationOutcomes;
+import org.terracotta.statistics.observer.OperationObserver;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The compression stage of a {@link OffHeapValueHolderPortability}.
+ * <P>
+ *   A compressed payload is the codec identifier, the uncompressed length as a variable length integer, then the
+ *   compressed bytes. Decompression relies on the identifier alone, a stage configured without compression still
+ *   decompresses the entries stored by a previous one.
+ * </P>
+ * <P>
+ *   Codecs work on arrays: payloads not backed by one are copied to a per thread scratch array, as is the output of
+ *   the codec before being copied behind the entry header. Scratch arrays larger than {@link #MAX_SCRATCH_SIZE} are
+ *   not retained.
+ * </P>
+ */
+public final class ValueCompression {
+
+  static final int MAX_SCRATCH_SIZE = 1024 * 1024;
+
+  private static final ThreadLocal<Scratch> SCRATCH = new ThreadLocal<Scratch>() {
+    @Override
+    protected Scratch initialValue() {
+      return new Scratch();
+    }
+  };
+
+  private final CompressionCodec codec;
+  private final int threshold;
+  private final OperationObserver<StoreOperationOutcomes.CompressionOutcome> compressionObserver;
+  private final OperationObserver<StoreOperationOutcomes.DecompressionOutcome> decompressionObserver;
+  private final AtomicLong inputBytes = new AtomicLong();
+  private final AtomicLong outputBytes = new AtomicLong();
+
+  /**
+   * Creates a compression stage.
+   *
+   * @param configuration the compression configuration, {@code null} to only decompress
+   * @param compressionObserver the observer of the compressions
+   * @param decompressionObserver the observer of the decompressions
+   */
+  public ValueCompression(CompressionConfiguration configuration,
+                          OperationObserver<StoreOperationOutcomes.CompressionOutcome> compressionObserver,
+                          OperationObserver<StoreOperationOutcomes.DecompressionOutcome> decompressionObserver) {
+    if (configuration == null) {
+      this.codec = null;
+      this.threshold = Integer.MAX_VALUE;
+    } else {
+      this.codec = CompressionCodec.forAlgorithm(configuration.getAlgorithm());
+      this.threshold = configuration.getThreshold();
+    }
+    this.compressionObserver = compressionObserver;
+    this.decompressionObserver = decompressionObserver;
+  }
+
+  /**
+   * The total size of the serialized values this stage was given to compress.
+   */
+  public long getInputBytes() {
+    return inputBytes.get();
+  }
+
+  /**
+   * The total size those values were stored as, compressed or not.
+   */
+  public long getOutputBytes() {
+    return outputBytes.get();
+  }
+
+  boolean isEnabled() {
+    return codec != null;
+  }
+
+  /**
+   * Compresses the remaining bytes of {@code payload} behind {@code headerSize} bytes left for the entry header.
+   *
+   * @return a buffer holding the header space then the compressed payload, or {@code null} if the payload is to be
+   * stored as is
+   */
+  ByteBuffer compress(ByteBuffer payload, int headerSize) {
+    int length = payload.remaining();
+    compressionObserver.begin();
+    inputBytes.addAndGet(length);
+    if (length < threshold) {
+      outputBytes.addAndGet(length);
+      compressionObserver.end(StoreOperationOutcomes.CompressionOutcome.SKIPPED);
+      return null;
+    }
+
+    int prefixSize = 1 + OffHeapValueHolderPortability.varLongSize(length);
+    int maxLength = length - prefixSize - 1;
+    if (maxLength > 0) {
+      Scratch scratch = SCRATCH.get();
+      byte[] in;
+      int offset;
+      if (payload.hasArray()) {
+        in = payload.array();
+        offset = payload.arrayOffset() + payload.position();
+      } else {
+        in = scratch.input(length);
+        payload.duplicate().get(in, 0, length);
+        offset = 0;
+      }
+      byte[] out = scratch.output(maxLength);
+      int compressedLength = codec.compress(in, offset, length, out, 0, maxLength);
+      if (compressedLength >= 0) {
+        ByteBuffer compressed = ByteBuffer.allocate(headerSize + prefixSize + compressedLength);
+        compressed.position(headerSize);
+        compressed.put(codec.id());
+        OffHeapValueHolderPortability.putVarLong(compressed, length);
+        compressed.put(out, 0, compressedLength);
+        compressed.rewind();
+        outputBytes.addAndGet(prefixSize + compressedLength);
+        compressionObserver.end(StoreOperationOutcomes.CompressionOutcome.COMPRESSED);
+        return compressed;
+      }
+    }
+    outputBytes.addAndGet(length);
+    compressionObserver.end(StoreOperationOutcomes.CompressionOutcome.INCOMPRESSIBLE);
+    return null;
+  }
+
+  /**
+   * Decompresses the remaining bytes of {@code compressed}, as written by {@link #compress(ByteBuffer, int)}, into a
+   * new heap buffer.
+   */
+  ByteBuffer decompress(ByteBuffer compressed) throws SerializerException {
+    decompressionObserver.begin();
+    try {
+      ByteBuffer source = compressed.duplicate();
+      CompressionCodec decoder = CompressionCodec.forId(source.get());
+      long originalLength = OffHeapValueHolderPortability.getVarLong(source);
+      if (originalLength < 0 || originalLength > Integer.MAX_VALUE) {
+        throw new SerializerException("Invalid uncompressed length " + originalLength);
+      }
+      int length = source.remaining();
+      byte[] in;
+      int offset;
+      if (source.hasArray()) {
+        in = source.array();
+        offset = source.arrayOffset() + source.position();
+      } else {
+        in = SCRATCH.get().input(length);
+        source.get(in, 0, length);
+        offset = 0;
+      }
+      byte[] out = new byte[(int) originalLength];
+      decoder.decompress(in, offset, length, out, 0, out.length);
+      decompressionObserver.end(StoreOperationOutcomes.DecompressionOutcome.SUCCESS);
+      return ByteBuffer.wrap(out);
+    } catch (SerializerException e) {
+      decompressionObserver.end(StoreOperationOutcomes.DecompressionOutcome.FAILURE);
+      throw e;
+    } catch (RuntimeException e) {
+      decompressionObserver.end(StoreOperationOutcomes.DecompressionOutcome.FAILURE);
+      throw new SerializerException("Corrupted compressed value", e);
+    }
+  }
+
+  private static final class Scratch {
+
+    private byte[] input = new byte[0];
+    private byte[] output = new byte[0];
+
+    byte[] input(int size) {
+      if (input.length >= size) {
+        return input;
+      }
+      byte[] array = new byte[size];
+      if (size <= MAX_SCRATCH_SIZE) {
+        input = array;
+      }
+      return array;
+    }
+
+    byte[] output(int size) {
+      if (output.length >= size) {
+        return output;
+      }
+      byte[] array = new byte[size];
+      if (size <= MAX_SCRATCH_SIZE) {
+        output = array;
+      }
+      return array;
+    }
+  }
+}
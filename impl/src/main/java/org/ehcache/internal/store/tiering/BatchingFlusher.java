@@ -0,0 +1,204 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.ehcache.internal.store.tiering;
+
+import org.ehcache.internal.TimeSource;
+import org.ehcache.spi.cache.Store;
+import org.ehcache.spi.cache.tiering.AuthoritativeTier;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Applies the flushes of mappings leaving a caching tier to its authoritative tier asynchronously.
+ * <P>
+ *   Flushes are coalesced per key, and applied in batches sorted by segment of the authority when it is a
+ *   {@link SegmentedTier}. As a flush makes the mapping evictable again, a pending flush is applied before its key
+ *   gets faulted again, see {@link #flushPending(Object)}, and flushes exceeding the backlog are applied on the
+ *   calling thread instead of being dropped.
+ * </P>
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ */
+final class BatchingFlusher<K, V> {
+
+  private static final int LOCK_STRIPES = 64;
+
+  private final AuthoritativeTier<K, V> authoritativeTier;
+  private final TimeSource timeSource;
+  private final ExecutorService executor;
+  private final int maxBacklog;
+  private final int batchSize;
+
+  private final ConcurrentMap<K, PendingFlush<V>> pendingFlushes = new ConcurrentHashMap<K, PendingFlush<V>>();
+  private final Queue<K> flushQueue = new ConcurrentLinkedQueue<K>();
+  private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+  private final AtomicBoolean drainScheduled = new AtomicBoolean();
+  private final Comparator<K> segmentOrder;
+
+  final AtomicLong backlog = new AtomicLong();
+  final AtomicLong lag = new AtomicLong();
+  final AtomicLong overflows = new AtomicLong();
+
+  private final Runnable drainer = new Runnable() {
+    @Override
+    public void run() {
+      drainScheduled.set(false);
+      drain();
+    }
+  };
+
+  BatchingFlusher(final AuthoritativeTier<K, V> authoritativeTier, TimeSource timeSource, ExecutorService executor, int maxBacklog, int batchSize) {
+    this.authoritativeTier = authoritativeTier;
+    this.timeSource = timeSource;
+    this.executor = executor;
+    this.maxBacklog = maxBacklog;
+    this.batchSize = batchSize;
+    for (int i = 0; i < locks.length; i++) {
+      locks[i] = new ReentrantLock();
+    }
+    this.segmentOrder = new Comparator<K>() {
+      @Override
+      @SuppressWarnings("unchecked")
+      public int compare(K a, K b) {
+        if (authoritativeTier instanceof SegmentedTier) {
+          SegmentedTier<K> segmentedTier = (SegmentedTier<K>) authoritativeTier;
+          return compareInts(segmentedTier.segmentFor(a), segmentedTier.segmentFor(b));
+        } else {
+          return compareInts(a.hashCode(), b.hashCode());
+        }
+      }
+    };
+  }
+
+  /**
+   * Queues the flush of a mapping, replacing any flush pending for the same key.
+   */
+  void flush(K key, Store.ValueHolder<V> valueHolder) {
+    if (backlog.get() >= maxBacklog && !pendingFlushes.containsKey(key)) {
+      overflows.incrementAndGet();
+      ReentrantLock lock = lockFor(key);
+      lock.lock();
+      try {
+        authoritativeTier.flush(key, valueHolder);
+      } finally {
+        lock.unlock();
+      }
+      return;
+    }
+    if (pendingFlushes.put(key, new PendingFlush<V>(valueHolder, timeSource.getTimeMillis())) == null) {
+      backlog.incrementAndGet();
+      flushQueue.offer(key);
+      if (!drainScheduled.get() && drainScheduled.compareAndSet(false, true)) {
+        try {
+          executor.execute(drainer);
+        } catch (RejectedExecutionException ree) {
+          drainScheduled.set(false);
+          drain();
+        }
+      }
+    }
+  }
+
+  /**
+   * Applies the flush pending for the given key, if any. Must be called before faulting the key again.
+   */
+  void flushPending(K key) {
+    ReentrantLock lock = lockFor(key);
+    lock.lock();
+    try {
+      apply(key);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Stops the background flushing, and applies all pending flushes on the calling thread.
+   */
+  void stop() {
+    executor.shutdown();
+    drain();
+  }
+
+  private void drain() {
+    List<K> batch = new ArrayList<K>(batchSize);
+    while (true) {
+      for (K key; batch.size() < batchSize && (key = flushQueue.poll()) != null; ) {
+        batch.add(key);
+      }
+      if (batch.isEmpty()) {
+        return;
+      }
+      Collections.sort(batch, segmentOrder);
+      for (K key : batch) {
+        ReentrantLock lock = lockFor(key);
+        lock.lock();
+        try {
+          apply(key);
+        } finally {
+          lock.unlock();
+        }
+      }
+      batch.clear();
+    }
+  }
+
+  private void apply(K key) {
+    PendingFlush<V> pendingFlush = pendingFlushes.remove(key);
+    if (pendingFlush != null) {
+      backlog.decrementAndGet();
+      lag.set(timeSource.getTimeMillis() - pendingFlush.queuedAt);
+      authoritativeTier.flush(key, pendingFlush.valueHolder);
+    }
+  }
+
+  private ReentrantLock lockFor(K key) {
+    int hash = key.hashCode();
+    hash ^= (hash >>> 20) ^ (hash >>> 12);
+    hash ^= (hash >>> 7) ^ (hash >>> 4);
+    return locks[hash & (LOCK_STRIPES - 1)];
+  }
+
+  private static int compareInts(int a, int b) {
+    return a < b ? -1 : (a == b ? 0 : 1);
+  }
+
+  private static final class PendingFlush<V> {
+
+    private final Store.ValueHolder<V> valueHolder;
+    private final long queuedAt;
+
+    PendingFlush(Store.ValueHolder<V> valueHolder, long queuedAt) {
+      this.valueHolder = valueHolder;
+      this.queuedAt = queuedAt;
+    }
+  }
+}
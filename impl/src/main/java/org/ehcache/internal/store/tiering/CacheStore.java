@@ -16,40 +16,57 @@
 package org.ehcache.internal.store.tiering;
 
 import org.ehcache.Cache;
+import org.ehcache.config.store.FlushBatchingConfiguration;
+import org.ehcache.config.store.WarmUpConfiguration;
 import org.ehcache.CacheConfigurationChangeListener;
 import org.ehcache.events.StoreEventListener;
 import org.ehcache.exceptions.CacheAccessException;
 import org.ehcache.function.BiFunction;
 import org.ehcache.function.Function;
 import org.ehcache.function.NullaryFunction;
+import org.ehcache.function.Predicate;
+import org.ehcache.internal.TimeSource;
+import org.ehcache.internal.TimeSourceService;
 import org.ehcache.spi.ServiceProvider;
+import org.ehcache.spi.cache.CacheStoreHelper;
 import org.ehcache.spi.cache.Store;
 import org.ehcache.spi.cache.tiering.AuthoritativeTier;
 import org.ehcache.spi.cache.tiering.CachingTier;
+import org.ehcache.spi.service.ExecutionService;
 import org.ehcache.spi.service.ServiceConfiguration;
+import org.ehcache.spi.service.ServiceDependencies;
 import org.ehcache.spi.service.SupplementaryService;
+import org.ehcache.statistics.StoreOperationOutcomes;
 import org.ehcache.util.ConcurrentWeakIdentityHashMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.terracotta.context.annotations.ContextAttribute;
 import org.terracotta.statistics.StatisticsManager;
+import org.terracotta.statistics.observer.OperationObserver;
 
 import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
 import static org.ehcache.spi.ServiceLocator.findSingletonAmongst;
+import static org.terracotta.statistics.StatisticBuilder.operation;
 
 /**
  * @author Ludovic Orban
  */
-public class CacheStore<K, V> implements Store<K, V> {
+public class CacheStore<K, V> implements Store<K, V>, Store.Partitioned<K, V>, Store.Purgeable<K, V> {
 
   private static final Logger LOG = LoggerFactory.getLogger(CacheStore.class);
 
@@ -59,7 +76,11 @@ public class CacheStore<K, V> implements Store<K, V> {
   private final AuthoritativeTier<K, V> authoritativeTier;
 
   private final CacheStoreStatsSettings cacheStoreStatsSettings;
+  private final OperationObserver<StoreOperationOutcomes.WarmUpOutcome> warmUpObserver;
 
+  private volatile WarmUpConfiguration warmUpConfiguration;
+  private volatile boolean warmUpCancelled;
+  private volatile BatchingFlusher<K, V> batchingFlusher;
 
   public CacheStore(CachingTier<K, V> cachingTier, AuthoritativeTier<K, V> authoritativeTier) {
     this.cachingTierRef = new AtomicReference<CachingTier<K, V>>(cachingTier);
@@ -71,7 +92,12 @@ public class CacheStore<K, V> implements Store<K, V> {
     this.realCachingTier.setInvalidationListener(new CachingTier.InvalidationListener<K, V>() {
       @Override
       public void onInvalidation(K key, ValueHolder<V> valueHolder) {
-        CacheStore.this.authoritativeTier.flush(key, valueHolder);
+        BatchingFlusher<K, V> flusher = batchingFlusher;
+        if (flusher == null) {
+          CacheStore.this.authoritativeTier.flush(key, valueHolder);
+        } else {
+          flusher.flush(key, valueHolder);
+        }
       }
     });
 
@@ -79,6 +105,34 @@ public class CacheStore<K, V> implements Store<K, V> {
     StatisticsManager.associate(authoritativeTier).withParent(this);
     cacheStoreStatsSettings = new CacheStoreStatsSettings(cachingTier, authoritativeTier);
     StatisticsManager.associate(cacheStoreStatsSettings).withParent(this);
+    this.warmUpObserver = operation(StoreOperationOutcomes.WarmUpOutcome.class).of(this).named("warmUp").tag("store").build();
+  }
+
+  /**
+   * Makes this store flush the mappings leaving its caching tier through the given flusher.
+   */
+  void batchFlushes(BatchingFlusher<K, V> flusher) {
+    this.batchingFlusher = flusher;
+    Set<String> tags = Collections.singleton("store");
+    StatisticsManager.createPassThroughStatistic(this, "flushBacklog", tags, statistic(flusher.backlog));
+    StatisticsManager.createPassThroughStatistic(this, "flushLag", tags, statistic(flusher.lag));
+    StatisticsManager.createPassThroughStatistic(this, "flushOverflows", tags, statistic(flusher.overflows));
+  }
+
+  private void flushPending(K key) {
+    BatchingFlusher<K, V> flusher = batchingFlusher;
+    if (flusher != null) {
+      flusher.flushPending(key);
+    }
+  }
+
+  private static Callable<Long> statistic(final AtomicLong value) {
+    return new Callable<Long>() {
+      @Override
+      public Long call() throws Exception {
+        return value.get();
+      }
+    };
   }
 
 
@@ -89,6 +143,7 @@ public class CacheStore<K, V> implements Store<K, V> {
         @Override
         public ValueHolder<V> apply(K key) {
           try {
+            flushPending(key);
             return authoritativeTier.getAndFault(key);
           } catch (CacheAccessException cae) {
             throw new ComputationException(cae);
@@ -225,6 +280,30 @@ public class CacheStore<K, V> implements Store<K, V> {
     }
   }
 
+  @Override
+  public void removeIf(Predicate<? super Cache.Entry<K, ValueHolder<V>>> predicate, boolean keysOnly,
+                       final Function<? super Map<K, ValueHolder<V>>, ?> removals) throws CacheAccessException {
+    final AtomicReference<CacheAccessException> invalidationFailure = new AtomicReference<CacheAccessException>();
+    CacheStoreHelper.removeIf(authoritativeTier, predicate, keysOnly, new Function<Map<K, ValueHolder<V>>, Void>() {
+      @Override
+      public Void apply(Map<K, ValueHolder<V>> removed) {
+        // each key of a batch removed from the authority is invalidated in the caching tier before the batch is reported
+        for (K key : removed.keySet()) {
+          try {
+            cachingTier().invalidate(key);
+          } catch (CacheAccessException cae) {
+            invalidationFailure.compareAndSet(null, cae);
+          }
+        }
+        removals.apply(removed);
+        return null;
+      }
+    });
+    if (invalidationFailure.get() != null) {
+      throw invalidationFailure.get();
+    }
+  }
+
   @Override
   public void enableStoreEventNotifications(StoreEventListener<K, V> listener) {
     authoritativeTier.enableStoreEventNotifications(listener);
@@ -240,6 +319,16 @@ public class CacheStore<K, V> implements Store<K, V> {
     return authoritativeTier.iterator();
   }
 
+  @Override
+  @SuppressWarnings("unchecked")
+  public List<Iterator<Cache.Entry<K, ValueHolder<V>>>> partitionIterators(boolean recordAccess) {
+    if (authoritativeTier instanceof Store.Partitioned) {
+      return ((Store.Partitioned<K, V>) authoritativeTier).partitionIterators(recordAccess);
+    } else {
+      return Collections.singletonList(authoritativeTier.iterator());
+    }
+  }
+
   @Override
   public ValueHolder<V> compute(final K key, final BiFunction<? super K, ? super V, ? extends V> mappingFunction) throws CacheAccessException {
     try {
@@ -264,6 +353,7 @@ public class CacheStore<K, V> implements Store<K, V> {
         @Override
         public ValueHolder<V> apply(K k) {
           try {
+            flushPending(k);
             return authoritativeTier.computeIfAbsentAndFault(k, mappingFunction);
           } catch (CacheAccessException cae) {
             throw new ComputationException(cae);
@@ -339,7 +429,56 @@ public class CacheStore<K, V> implements Store<K, V> {
     return cachingTierRef.get();
   }
 
+  /**
+   * Faults the given keys into the caching tier on the given executor, hottest first.
+   * Returns once {@code blockUntilWarmPercent} percent of the keys have been processed.
+   */
+  void warmUp(final List<K> keys, ExecutorService executor, int blockUntilWarmPercent) {
+    final CountDownLatch warm = new CountDownLatch((int) Math.ceil(keys.size() * blockUntilWarmPercent / 100.0));
+    warmUpCancelled = false;
+    executor.execute(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          for (K key : keys) {
+            if (warmUpCancelled) {
+              break;
+            }
+            warmUpObserver.begin();
+            try {
+              if (get(key) == null) {
+                warmUpObserver.end(StoreOperationOutcomes.WarmUpOutcome.MISSING);
+              } else {
+                warmUpObserver.end(StoreOperationOutcomes.WarmUpOutcome.FAULTED);
+              }
+            } catch (CacheAccessException cae) {
+              warmUpObserver.end(StoreOperationOutcomes.WarmUpOutcome.FAILURE);
+              LOG.debug("Error faulting '{}' while warming up the caching tier", key, cae);
+            } catch (RuntimeException re) {
+              warmUpObserver.end(StoreOperationOutcomes.WarmUpOutcome.FAILURE);
+              LOG.warn("Warming up the caching tier was interrupted", re);
+              break;
+            }
+            warm.countDown();
+          }
+        } finally {
+          while (warm.getCount() > 0) {
+            warm.countDown();
+          }
+        }
+      }
+    });
+    executor.shutdown();
+
+    try {
+      warm.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
   @SupplementaryService
+  @ServiceDependencies({ExecutionService.class, TimeSourceService.class})
   public static class Provider implements Store.Provider {
 
     private volatile ServiceProvider serviceProvider;
@@ -373,6 +512,11 @@ public class CacheStore<K, V> implements Store<K, V> {
       AuthoritativeTier<K, V> authoritativeTier = authoritativeTierProvider.createAuthoritativeTier(storeConfig, serviceConfigs);
 
       CacheStore<K, V> store = new CacheStore<K, V>(cachingTier, authoritativeTier);
+      store.warmUpConfiguration = findSingletonAmongst(WarmUpConfiguration.class, (Object[])serviceConfigs);
+      FlushBatchingConfiguration flushBatchingConfiguration = findSingletonAmongst(FlushBatchingConfiguration.class, (Object[])serviceConfigs);
+      if (flushBatchingConfiguration != null) {
+        batchFlushes(store, flushBatchingConfiguration);
+      }
       registerStore(store, cachingTierProvider, authoritativeTierProvider);
       return store;
     }
@@ -389,8 +533,13 @@ public class CacheStore<K, V> implements Store<K, V> {
       if (entry == null) {
         throw new IllegalArgumentException("Given store is not managed by this provider : " + resource);
       }
-      CacheStore cacheStore = (CacheStore) resource;
+      CacheStore<?, ?> cacheStore = (CacheStore<?, ?>) resource;
+      cacheStore.warmUpCancelled = true;
+      persistHotKeys(cacheStore);
       entry.getKey().releaseCachingTier(cacheStore.realCachingTier);
+      if (cacheStore.batchingFlusher != null) {
+        cacheStore.batchingFlusher.stop();
+      }
       entry.getValue().releaseAuthoritativeTier(cacheStore.authoritativeTier);
     }
 
@@ -400,9 +549,59 @@ public class CacheStore<K, V> implements Store<K, V> {
       if (entry == null) {
         throw new IllegalArgumentException("Given store is not managed by this provider : " + resource);
       }
-      CacheStore cacheStore = (CacheStore) resource;
+      CacheStore<?, ?> cacheStore = (CacheStore<?, ?>) resource;
       entry.getKey().initCachingTier(cacheStore.realCachingTier);
       entry.getValue().initAuthoritativeTier(cacheStore.authoritativeTier);
+      warmUp(cacheStore);
+    }
+
+    private <K, V> void batchFlushes(CacheStore<K, V> store, FlushBatchingConfiguration flushBatchingConfiguration) {
+      ExecutorService executor;
+      try {
+        executor = serviceProvider.getService(ExecutionService.class)
+            .getOrderedExecutor(flushBatchingConfiguration.getThreadPoolAlias(), new LinkedBlockingQueue<Runnable>());
+      } catch (IllegalStateException ise) {
+        LOG.warn("No thread pool available for batching flushes, flushing on the invalidating threads", ise);
+        return;
+      }
+      TimeSource timeSource = serviceProvider.getService(TimeSourceService.class).getTimeSource();
+      store.batchFlushes(new BatchingFlusher<K, V>(store.authoritativeTier, timeSource, executor,
+          flushBatchingConfiguration.getMaxBacklog(), flushBatchingConfiguration.getBatchSize()));
+    }
+
+    @SuppressWarnings("unchecked")
+    private <K, V> void persistHotKeys(CacheStore<K, V> cacheStore) {
+      WarmUpConfiguration warmUpConfiguration = cacheStore.warmUpConfiguration;
+      if (warmUpConfiguration != null && cacheStore.realCachingTier instanceof HotKeysProvider
+          && cacheStore.authoritativeTier instanceof HotKeysPersistence) {
+        try {
+          List<K> hotKeys = ((HotKeysProvider<K>) cacheStore.realCachingTier).hottestKeys(warmUpConfiguration.getHotKeyCount());
+          ((HotKeysPersistence<K>) cacheStore.authoritativeTier).persistHotKeys(hotKeys);
+        } catch (RuntimeException re) {
+          LOG.warn("Could not persist the hot keys of the caching tier", re);
+        }
+      }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <K, V> void warmUp(CacheStore<K, V> cacheStore) {
+      WarmUpConfiguration warmUpConfiguration = cacheStore.warmUpConfiguration;
+      if (warmUpConfiguration == null || !(cacheStore.authoritativeTier instanceof HotKeysPersistence)) {
+        return;
+      }
+      List<K> hotKeys = ((HotKeysPersistence<K>) cacheStore.authoritativeTier).recoverHotKeys();
+      if (hotKeys.isEmpty()) {
+        return;
+      }
+      ExecutionService executionService = serviceProvider.getService(ExecutionService.class);
+      ExecutorService executor;
+      try {
+        executor = executionService.getOrderedExecutor(warmUpConfiguration.getThreadPoolAlias(), new LinkedBlockingQueue<Runnable>());
+      } catch (IllegalStateException ise) {
+        LOG.warn("No thread pool available to warm the caching tier up, skipping warm-up", ise);
+        return;
+      }
+      cacheStore.warmUp(hotKeys, executor, warmUpConfiguration.getBlockUntilWarmPercent());
     }
 
     @Override
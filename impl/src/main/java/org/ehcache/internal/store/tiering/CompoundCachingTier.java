@@ -16,14 +16,19 @@
 package org.ehcache.internal.store.tiering;
 
 import org.ehcache.CacheConfigurationChangeListener;
+import org.ehcache.config.store.DemotionBatchingConfiguration;
 import org.ehcache.exceptions.CacheAccessException;
 import org.ehcache.function.Function;
+import org.ehcache.internal.TimeSource;
+import org.ehcache.internal.TimeSourceService;
 import org.ehcache.spi.ServiceProvider;
 import org.ehcache.spi.cache.Store;
 import org.ehcache.spi.cache.tiering.CachingTier;
 import org.ehcache.spi.cache.tiering.HigherCachingTier;
 import org.ehcache.spi.cache.tiering.LowerCachingTier;
+import org.ehcache.spi.service.ExecutionService;
 import org.ehcache.spi.service.ServiceConfiguration;
+import org.ehcache.spi.service.ServiceDependencies;
 import org.ehcache.spi.service.SupplementaryService;
 import org.ehcache.util.ConcurrentWeakIdentityHashMap;
 import org.slf4j.Logger;
@@ -31,16 +36,28 @@ import org.slf4j.LoggerFactory;
 
 import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import static org.ehcache.spi.ServiceLocator.findSingletonAmongst;
 
 /**
  * @author Ludovic Orban
  */
-public class CompoundCachingTier<K, V> implements CachingTier<K, V> {
+public class CompoundCachingTier<K, V> implements CachingTier<K, V>, HotKeysProvider<K> {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(CompoundCachingTier.class);
 
@@ -48,27 +65,170 @@ public class CompoundCachingTier<K, V> implements CachingTier<K, V> {
   private final LowerCachingTier<K, V> lower;
   private volatile InvalidationListener<K, V> invalidationListener;
 
+  private final TimeSource timeSource;
+  private final ExecutorService demotionExecutor;
+  private final ConcurrentMap<K, Store.ValueHolder<V>> pendingDemotions;
+  private final BlockingQueue<K> demotionQueue;
+  private final int demotionBatchSize;
+  private final AtomicBoolean demotionScheduled = new AtomicBoolean();
+  private final Lock demotionLock = new ReentrantLock();
+  private final Runnable demotionDrainer = new Runnable() {
+    @Override
+    public void run() {
+      demotionScheduled.set(false);
+      drainDemotions();
+    }
+  };
+
   public CompoundCachingTier(HigherCachingTier<K, V> higher, final LowerCachingTier<K, V> lower) {
+    this(higher, lower, null, null, 0, 0);
+  }
+
+  /**
+   * Creates a compound caching tier demoting the mappings invalidated from {@code higher} through a queue of
+   * {@code maxQueueSize} keys, installed into {@code lower} in batches of {@code batchSize} by tasks submitted to
+   * {@code demotionExecutor}.
+   * Without a {@code demotionExecutor}, mappings are demoted on the invalidating thread.
+   */
+  public CompoundCachingTier(HigherCachingTier<K, V> higher, final LowerCachingTier<K, V> lower, TimeSource timeSource,
+                             ExecutorService demotionExecutor, int maxQueueSize, int batchSize) {
     this.higher = higher;
     this.lower = lower;
+    this.timeSource = timeSource;
+    this.demotionExecutor = demotionExecutor;
+    if (demotionExecutor == null) {
+      this.pendingDemotions = null;
+      this.demotionQueue = null;
+    } else {
+      this.pendingDemotions = new ConcurrentHashMap<K, Store.ValueHolder<V>>();
+      this.demotionQueue = new ArrayBlockingQueue<K>(maxQueueSize);
+    }
+    this.demotionBatchSize = batchSize;
     this.higher.setInvalidationListener(new InvalidationListener<K, V>() {
       @Override
       public void onInvalidation(final K key, final Store.ValueHolder<V> valueHolder) {
-        try {
-          CompoundCachingTier.this.lower.installMapping(key, new Function<K, Store.ValueHolder<V>>() {
-            @Override
-            public Store.ValueHolder<V> apply(K k) {
-              return valueHolder;
-            }
-          });
-        } catch (CacheAccessException cae) {
-          notifyInvalidation(key, valueHolder);
-          LOGGER.warn("Error overflowing '{}' into lower caching tier {}", key, lower, cae);
+        if (pendingDemotions == null) {
+          demote(key, valueHolder);
+        } else {
+          queueDemotion(key, valueHolder);
         }
       }
     });
   }
 
+  private void demote(K key, final Store.ValueHolder<V> valueHolder) {
+    try {
+      lower.installMapping(key, new Function<K, Store.ValueHolder<V>>() {
+        @Override
+        public Store.ValueHolder<V> apply(K k) {
+          return valueHolder;
+        }
+      });
+    } catch (CacheAccessException cae) {
+      notifyInvalidation(key, valueHolder);
+      LOGGER.warn("Error overflowing '{}' into lower caching tier {}", key, lower, cae);
+    }
+  }
+
+  /**
+   * Queues the demotion of a mapping just invalidated from the higher tier, or drops it to the authority when the
+   * queue is full. Being called while the higher tier holds the key, this can't race with a fault of the same key.
+   */
+  private void queueDemotion(K key, Store.ValueHolder<V> valueHolder) {
+    pendingDemotions.put(key, valueHolder);
+    if (demotionQueue.offer(key)) {
+      if (!demotionScheduled.get() && demotionScheduled.compareAndSet(false, true)) {
+        try {
+          demotionExecutor.execute(demotionDrainer);
+        } catch (RejectedExecutionException ree) {
+          demotionScheduled.set(false);
+          drainDemotions();
+        }
+      }
+    } else if (pendingDemotions.remove(key, valueHolder)) {
+      notifyInvalidation(key, valueHolder);
+    }
+  }
+
+  /**
+   * Installs the queued demotions into the lower tier. Keys whose demotion got superseded, by a fault back into the
+   * higher tier or an invalidation, are skipped. As queued mappings are only ever installed here, under the
+   * demotion lock, a key still pending can't have a mapping in the lower tier yet.
+   */
+  private void drainDemotions() {
+    demotionLock.lock();
+    try {
+      List<K> batch = new ArrayList<K>(demotionBatchSize);
+      while (demotionQueue.drainTo(batch, demotionBatchSize) > 0) {
+        for (K key : batch) {
+          if (pendingDemotions.containsKey(key)) {
+            installPendingDemotion(key);
+          }
+        }
+        batch.clear();
+      }
+    } finally {
+      demotionLock.unlock();
+    }
+  }
+
+  private void installPendingDemotion(K key) {
+    final AtomicReference<Store.ValueHolder<V>> demoted = new AtomicReference<Store.ValueHolder<V>>();
+    try {
+      lower.installMapping(key, new Function<K, Store.ValueHolder<V>>() {
+        @Override
+        public Store.ValueHolder<V> apply(K k) {
+          Store.ValueHolder<V> valueHolder = pendingDemotions.remove(k);
+          demoted.set(valueHolder);
+          return valueHolder;
+        }
+      });
+    } catch (CacheAccessException cae) {
+      Store.ValueHolder<V> valueHolder = demoted.get();
+      if (valueHolder == null) {
+        valueHolder = pendingDemotions.remove(key);
+      }
+      if (valueHolder != null) {
+        notifyInvalidation(key, valueHolder);
+      }
+      LOGGER.warn("Error overflowing '{}' into lower caching tier {}", key, lower, cae);
+    }
+  }
+
+  /**
+   * Takes the mapping of a key out of the demotion queue, dropping it to the authority if it expired while queued.
+   */
+  private Store.ValueHolder<V> takePendingDemotion(K key) {
+    Store.ValueHolder<V> valueHolder = pendingDemotions.remove(key);
+    if (valueHolder != null && valueHolder.isExpired(timeSource.getTimeMillis(), TimeUnit.MILLISECONDS)) {
+      notifyInvalidation(key, valueHolder);
+      return null;
+    }
+    return valueHolder;
+  }
+
+  private void stopDemotions() {
+    if (demotionExecutor != null) {
+      demotionExecutor.shutdown();
+      demotionLock.lock();
+      try {
+        demotionQueue.clear();
+        pendingDemotions.clear();
+      } finally {
+        demotionLock.unlock();
+      }
+    }
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public List<K> hottestKeys(int count) {
+    if (higher instanceof HotKeysProvider) {
+      return ((HotKeysProvider<K>) higher).hottestKeys(count);
+    }
+    return Collections.emptyList();
+  }
+
   private void notifyInvalidation(K key, Store.ValueHolder<V> p) {
     final InvalidationListener<K, V> invalidationListener = this.invalidationListener;
     if (invalidationListener != null) {
@@ -99,6 +259,12 @@ public class CompoundCachingTier<K, V> implements CachingTier<K, V> {
         @Override
         public Store.ValueHolder<V> apply(K k) {
           try {
+            if (pendingDemotions != null) {
+              Store.ValueHolder<V> valueHolder = takePendingDemotion(k);
+              if (valueHolder != null) {
+                return valueHolder;
+              }
+            }
             Store.ValueHolder<V> valueHolder = lower.getAndRemove(k);
             if (valueHolder != null) {
               return valueHolder;
@@ -124,8 +290,13 @@ public class CompoundCachingTier<K, V> implements CachingTier<K, V> {
           try {
             if (mappedValue != null) {
               notifyInvalidation(key, mappedValue);
-            }  else {
-              lower.invalidate(key);
+            } else {
+              Store.ValueHolder<V> pending = pendingDemotions == null ? null : pendingDemotions.remove(key);
+              if (pending != null) {
+                notifyInvalidation(key, pending);
+              } else {
+                lower.invalidate(key);
+              }
             }
           } catch (CacheAccessException cae) {
             throw new ComputationException(cae);
@@ -143,6 +314,9 @@ public class CompoundCachingTier<K, V> implements CachingTier<K, V> {
     try {
       higher.clear();
     } finally {
+      if (pendingDemotions != null) {
+        pendingDemotions.clear();
+      }
       lower.clear();
     }
   }
@@ -163,6 +337,7 @@ public class CompoundCachingTier<K, V> implements CachingTier<K, V> {
 
 
   @SupplementaryService
+  @ServiceDependencies({TimeSourceService.class, ExecutionService.class})
   public static class Provider implements CachingTier.Provider {
     private volatile ServiceProvider serviceProvider;
     private final ConcurrentMap<CachingTier<?, ?>, Map.Entry<HigherCachingTier.Provider, LowerCachingTier.Provider>> providersMap = new ConcurrentWeakIdentityHashMap<CachingTier<?, ?>, Map.Entry<HigherCachingTier.Provider, LowerCachingTier.Provider>>();
@@ -184,7 +359,24 @@ public class CompoundCachingTier<K, V> implements CachingTier<K, V> {
       LowerCachingTier.Provider lowerProvider = serviceProvider.getService(compoundCachingTierServiceConfiguration.lowerProvider());
       LowerCachingTier<K, V> lowerCachingTier = lowerProvider.createCachingTier(storeConfig, serviceConfigs);
 
-      CompoundCachingTier<K, V> compoundCachingTier = new CompoundCachingTier<K, V>(higherCachingTier, lowerCachingTier);
+      CompoundCachingTier<K, V> compoundCachingTier;
+      DemotionBatchingConfiguration demotionBatchingConfiguration = findSingletonAmongst(DemotionBatchingConfiguration.class, (Object[])serviceConfigs);
+      ExecutorService demotionExecutor = null;
+      if (demotionBatchingConfiguration != null) {
+        try {
+          demotionExecutor = serviceProvider.getService(ExecutionService.class)
+              .getOrderedExecutor(demotionBatchingConfiguration.getThreadPoolAlias(), new LinkedBlockingQueue<Runnable>());
+        } catch (IllegalStateException ise) {
+          LOGGER.warn("No thread pool available for batching demotions, demoting on the evicting threads", ise);
+        }
+      }
+      if (demotionExecutor == null) {
+        compoundCachingTier = new CompoundCachingTier<K, V>(higherCachingTier, lowerCachingTier);
+      } else {
+        TimeSource timeSource = serviceProvider.getService(TimeSourceService.class).getTimeSource();
+        compoundCachingTier = new CompoundCachingTier<K, V>(higherCachingTier, lowerCachingTier, timeSource, demotionExecutor,
+            demotionBatchingConfiguration.getMaxQueueSize(), demotionBatchingConfiguration.getBatchSize());
+      }
       providersMap.put(compoundCachingTier, new AbstractMap.SimpleEntry<HigherCachingTier.Provider, LowerCachingTier.Provider>(higherProvider, lowerProvider));
       return compoundCachingTier;
     }
@@ -197,6 +389,7 @@ public class CompoundCachingTier<K, V> implements CachingTier<K, V> {
       CompoundCachingTier compoundCachingTier = (CompoundCachingTier) resource;
       Map.Entry<HigherCachingTier.Provider, LowerCachingTier.Provider> entry = providersMap.get(resource);
 
+      compoundCachingTier.stopDemotions();
       entry.getKey().releaseHigherCachingTier(compoundCachingTier.higher);
       entry.getValue().releaseCachingTier(compoundCachingTier.lower);
     }
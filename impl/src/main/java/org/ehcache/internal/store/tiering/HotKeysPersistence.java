@@ -0,0 +1,43 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.ehcache.internal.store.tiering;
+
+import java.util.List;
+
+/**
+ * An authoritative tier able to persist a list of keys alongside its data, so that they can be faulted into the
+ * caching tier again after a restart.
+ *
+ * @param <K> the key type
+ */
+public interface HotKeysPersistence<K> {
+
+  /**
+   * Persists the given keys, replacing any previously persisted ones.
+   *
+   * @param keys the keys to persist, hottest first
+   */
+  void persistHotKeys(List<K> keys);
+
+  /**
+   * Returns the keys persisted by the previous {@link #persistHotKeys(List)} call and forgets them.
+   *
+   * @return the recovered keys, empty if there are none
+   */
+  List<K> recoverHotKeys();
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.ehcache.internal.store.tiering;
+
+import java.util.List;
+
+/**
+ * A caching tier able to tell which of its keys are the most recently or frequently used, according to its
+ * eviction prioritizer. Used to warm the caching tier up after a restart.
+ *
+ * @param <K> the key type
+ */
+public interface HotKeysProvider<K> {
+
+  /**
+   * Returns at most {@code count} keys of this tier, hottest first.
+   *
+   * @param count the maximum number of keys to return
+   * @return the hottest keys
+   */
+  List<K> hottestKeys(int count);
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.ehcache.internal.store.tiering;
+
+/**
+ * A tier partitioning its mappings in segments, able to tell which segment a key belongs to. Used to order batched
+ * operations on that tier so that the mappings of a segment get visited together.
+ *
+ * @param <K> the key type
+ */
+public interface SegmentedTier<K> {
+
+  /**
+   * Returns the index of the segment holding, or that would hold, the mapping of the given key.
+   *
+   * @param key the key
+   * @return the segment index
+   */
+  int segmentFor(K key);
+}
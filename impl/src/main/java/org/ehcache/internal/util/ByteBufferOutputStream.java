@@ -0,0 +1,48 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.internal.util;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * A {@link ByteArrayOutputStream} whose content can be exposed as a {@link ByteBuffer} without being copied.
+ */
+public class ByteBufferOutputStream extends ByteArrayOutputStream {
+
+  public ByteBufferOutputStream(int size) {
+    super(size);
+  }
+
+  /**
+   * Skips {@code length} bytes, leaving them zeroed for later absolute writes.
+   *
+   * @param length the number of bytes to skip
+   */
+  public void reserve(int length) {
+    write(new byte[length], 0, length);
+  }
+
+  /**
+   * Wraps the bytes written so far, the returned buffer shares the internal array of this stream.
+   *
+   * @return a buffer over the written bytes
+   */
+  public ByteBuffer toByteBuffer() {
+    return ByteBuffer.wrap(buf, 0, count);
+  }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.ehcache.integration;
+
+import org.ehcache.Cache;
+import org.ehcache.CacheManager;
+import org.ehcache.config.ResourcePools;
+import org.ehcache.config.units.EntryUnit;
+import org.ehcache.config.units.MemoryUnit;
+import org.ehcache.function.Function;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.ehcache.CacheManagerBuilder.newCacheManagerBuilder;
+import static org.ehcache.config.CacheConfigurationBuilder.newCacheConfigurationBuilder;
+import static org.ehcache.config.ResourcePoolsBuilder.newResourcePoolsBuilder;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Measures the throughput of a scan of a heap and of an offheap cache as the number of threads visiting their
+ * partitions grows, with and without recording access.
+ */
+public class ScanScalingITest {
+
+  private static final int MAX_THREADS = 64;
+  private static final int ENTRIES = 200000;
+  private static final int SCANS = 10;
+
+  private CacheManager cacheManager;
+
+  @Before
+  public void setUp() {
+    cacheManager = newCacheManagerBuilder().build(true);
+  }
+
+  @After
+  public void tearDown() {
+    if (cacheManager != null) {
+      cacheManager.close();
+    }
+  }
+
+  @Test
+  public void testOnHeapScanScaling() throws Exception {
+    scanScaling("onHeap", newResourcePoolsBuilder().heap(ENTRIES, EntryUnit.ENTRIES).build());
+  }
+
+  @Test
+  public void testOffHeapScanScaling() throws Exception {
+    scanScaling("offHeap", newResourcePoolsBuilder().heap(100, EntryUnit.ENTRIES).offheap(128, MemoryUnit.MB).build());
+  }
+
+  private void scanScaling(String name, ResourcePools resourcePools) throws Exception {
+    Cache<Long, String> cache = cacheManager.createCache(name, newCacheConfigurationBuilder()
+        .withResourcePools(resourcePools).buildConfig(Long.class, String.class));
+    for (long i = 0; i < ENTRIES; i++) {
+      cache.put(i, "value" + i);
+    }
+
+    // warm-up round
+    throughput(cache, 4, false);
+    for (int threads = 1; threads <= MAX_THREADS; threads *= 2) {
+      System.out.println(String.format("%-8s : %2d threads : %,14.0f entries/s : %,14.0f entries/s recording access",
+          name, threads, throughput(cache, threads, false), throughput(cache, threads, true)));
+    }
+  }
+
+  private static double throughput(Cache<Long, String> cache, int threads, boolean recordAccess) throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      long begin = System.nanoTime();
+      for (int i = 0; i < SCANS; i++) {
+        cache.scan(new Function<Cache.Entry<Long, String>, Void>() {
+          @Override
+          public Void apply(Cache.Entry<Long, String> entry) {
+            assertThat(entry.getValue() != null, is(true));
+            return null;
+          }
+        }, executor, recordAccess);
+      }
+      long elapsed = System.nanoTime() - begin;
+      return (double) ENTRIES * SCANS / elapsed * 1e9;
+    } finally {
+      executor.shutdown();
+    }
+  }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.internal.executor;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Measures the cost of scheduling and then cancelling one million pending timers on the timing wheel, against the
+ * delay queue of a {@code ScheduledThreadPoolExecutor} (what the out of band scheduler used to be built on).
+ */
+public class OutOfBandScheduledExecutorITest {
+
+  private static final int TIMERS = 1000000;
+
+  @Test
+  public void testOneMillionPendingTimers() {
+    for (int round = 0; round < 3; round++) {
+      delayQueue(round > 0);
+      timingWheel(round > 0);
+    }
+  }
+
+  private static void delayQueue(boolean report) {
+    ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1);
+    try {
+      Random random = new Random(1);
+      ScheduledFuture<?>[] futures = new ScheduledFuture<?>[TIMERS];
+      Runnable task = new OutOfBandScheduledExecutorTest.Noop();
+
+      long start = System.nanoTime();
+      for (int i = 0; i < TIMERS; i++) {
+        futures[i] = scheduler.schedule(task, delay(random), MILLISECONDS);
+      }
+      long scheduled = System.nanoTime();
+      for (ScheduledFuture<?> future : futures) {
+        future.cancel(false);
+      }
+      long cancelled = System.nanoTime();
+
+      if (report) {
+        report("delay queue", scheduled - start, cancelled - scheduled, scheduler.getQueue().size());
+      }
+    } finally {
+      scheduler.shutdownNow();
+    }
+  }
+
+  private static void timingWheel(boolean report) {
+    OutOfBandScheduledExecutor scheduler = new OutOfBandScheduledExecutor();
+    Random random = new Random(1);
+    ScheduledFuture<?>[] futures = new ScheduledFuture<?>[TIMERS];
+    Runnable task = new OutOfBandScheduledExecutorTest.Noop();
+
+    long start = System.nanoTime();
+    for (int i = 0; i < TIMERS; i++) {
+      futures[i] = scheduler.schedule(null, task, delay(random), MILLISECONDS);
+    }
+    long scheduled = System.nanoTime();
+    for (ScheduledFuture<?> future : futures) {
+      future.cancel(false);
+    }
+    long cancelled = System.nanoTime();
+
+    assertThat(scheduler.size(), is(0));
+    if (report) {
+      report("timing wheel", scheduled - start, cancelled - scheduled, scheduler.size());
+    }
+  }
+
+  /**
+   * Write-behind style delays: one second to ten minutes.
+   */
+  private static long delay(Random random) {
+    return 1000 + random.nextInt(600000);
+  }
+
+  private static void report(String name, long scheduleNanos, long cancelNanos, int leftOver) {
+    System.out.println(String.format("%-12s : schedule %,6d ns/timer : cancel %,6d ns/timer : %,9d cancelled timers still queued",
+        name, scheduleNanos / TIMERS, cancelNanos / TIMERS, leftOver));
+  }
+}
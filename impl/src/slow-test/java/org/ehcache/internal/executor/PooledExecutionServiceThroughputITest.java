@@ -0,0 +1,161 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.internal.executor;
+
+import org.ehcache.Cache;
+import org.ehcache.CacheManager;
+import org.ehcache.config.CacheConfigurationBuilder;
+import org.ehcache.config.executor.PooledExecutionServiceConfiguration;
+import org.ehcache.config.executor.PooledExecutionServiceConfiguration.PoolBackend;
+import org.ehcache.config.loaderwriter.DefaultCacheLoaderWriterConfiguration;
+import org.ehcache.event.CacheEvent;
+import org.ehcache.event.CacheEventListener;
+import org.ehcache.event.EventType;
+import org.ehcache.spi.loaderwriter.CacheLoaderWriter;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.ehcache.CacheManagerBuilder.newCacheManagerBuilder;
+import static org.ehcache.config.CacheConfigurationBuilder.newCacheConfigurationBuilder;
+import static org.ehcache.config.event.CacheEventListenerConfigurationBuilder.newEventListenerConfiguration;
+import static org.ehcache.config.writebehind.WriteBehindConfigurationBuilder.newUnBatchedWriteBehindConfiguration;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Measures the throughput of the asynchronous event dispatch and write-behind pipelines when the default pool
+ * is backed by a thread pool and by a work-stealing fork/join pool.
+ */
+public class PooledExecutionServiceThroughputITest {
+
+  private static final int CACHES = 4;
+  private static final int OPERATIONS = 200000;
+  private static final int POOL_SIZE = 4;
+
+  private static volatile CountDownLatch pending;
+
+  @Test
+  public void testEventDispatchThroughput() throws Exception {
+    for (PoolBackend backend : PoolBackend.values()) {
+      // warm-up round
+      eventDispatch(backend);
+    }
+    for (PoolBackend backend : PoolBackend.values()) {
+      report("events", backend, eventDispatch(backend));
+    }
+  }
+
+  @Test
+  public void testWriteBehindThroughput() throws Exception {
+    for (PoolBackend backend : PoolBackend.values()) {
+      // warm-up round
+      writeBehind(backend);
+    }
+    for (PoolBackend backend : PoolBackend.values()) {
+      report("write-behind", backend, writeBehind(backend));
+    }
+  }
+
+  private static long eventDispatch(PoolBackend backend) throws InterruptedException {
+    CacheConfigurationBuilder<Object, Object> configurationBuilder = newCacheConfigurationBuilder()
+        .add(newEventListenerConfiguration(CountingListener.class, EventType.CREATED, EventType.UPDATED).unordered().asynchronous());
+    return run(backend, configurationBuilder);
+  }
+
+  private static long writeBehind(PoolBackend backend) throws InterruptedException {
+    CacheConfigurationBuilder<Object, Object> configurationBuilder = newCacheConfigurationBuilder()
+        .add(new DefaultCacheLoaderWriterConfiguration(new CountingWriter()))
+        .add(newUnBatchedWriteBehindConfiguration().concurrencyLevel(POOL_SIZE).queueSize(OPERATIONS).build());
+    return run(backend, configurationBuilder);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static long run(PoolBackend backend, CacheConfigurationBuilder<Object, Object> configurationBuilder) throws InterruptedException {
+    PooledExecutionServiceConfiguration pools = new PooledExecutionServiceConfiguration();
+    pools.addDefaultPool("pool", 1, POOL_SIZE, backend);
+    CacheManager cacheManager = newCacheManagerBuilder().using(pools).build(true);
+    try {
+      Cache<Long, Long>[] caches = new Cache[CACHES];
+      for (int i = 0; i < CACHES; i++) {
+        caches[i] = cacheManager.createCache("cache-" + i, configurationBuilder.buildConfig(Long.class, Long.class));
+      }
+
+      pending = new CountDownLatch(OPERATIONS);
+      long start = System.nanoTime();
+      for (long i = 0; i < OPERATIONS; i++) {
+        caches[(int) (i % CACHES)].put(i, i);
+      }
+      assertThat(pending.await(5, TimeUnit.MINUTES), is(true));
+      return System.nanoTime() - start;
+    } finally {
+      cacheManager.close();
+    }
+  }
+
+  private static void report(String pipeline, PoolBackend backend, long duration) {
+    System.out.println(String.format("%-12s %-11s : %,10d ops/s", pipeline, backend,
+        TimeUnit.SECONDS.toNanos(OPERATIONS) / duration));
+  }
+
+  public static class CountingListener implements CacheEventListener<Object, Object> {
+
+    @Override
+    public void onEvent(CacheEvent<Object, Object> event) {
+      pending.countDown();
+    }
+  }
+
+  static class CountingWriter implements CacheLoaderWriter<Object, Object> {
+
+    @Override
+    public Object load(Object key) {
+      return null;
+    }
+
+    @Override
+    public Map<Object, Object> loadAll(Iterable<?> keys) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void write(Object key, Object value) {
+      pending.countDown();
+    }
+
+    @Override
+    public void writeAll(Iterable<? extends Map.Entry<?, ?>> entries) {
+      for (Map.Entry<?, ?> entry : entries) {
+        pending.countDown();
+      }
+    }
+
+    @Override
+    public void delete(Object key) {
+      pending.countDown();
+    }
+
+    @Override
+    public void deleteAll(Iterable<?> keys) {
+      for (Object key : keys) {
+        pending.countDown();
+      }
+    }
+  }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.ehcache.internal.store.heap;
+
+import org.ehcache.config.StoreConfigurationImpl;
+import org.ehcache.config.store.ReadBufferConfiguration;
+import org.ehcache.config.units.EntryUnit;
+import org.ehcache.expiry.Duration;
+import org.ehcache.expiry.Expirations;
+import org.ehcache.expiry.Expiry;
+import org.ehcache.internal.SystemTimeSource;
+import org.ehcache.internal.copy.IdentityCopier;
+import org.ehcache.spi.cache.Store;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.ehcache.config.ResourcePoolsBuilder.newResourcePoolsBuilder;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Measures the read throughput of a store on a single hot key as the number of reader threads grows, for an eternal
+ * and a time-to-idle cache, the latter refreshing the expiration time on every read, with and without read buffers.
+ * Long keys are measured too, as their stores are backed by a {@link LongKeyedMap}.
+ */
+public class OnHeapStoreHotKeyITest {
+
+  private static final int MAX_THREADS = 64;
+  private static final int READS = 500000;
+
+  @Test
+  public void testHotKeyReadScaling() throws Exception {
+    hotKeyReadScaling("eternal", String.class, "hot", Expirations.noExpiration(), null);
+    hotKeyReadScaling("time-to-idle", String.class, "hot", Expirations.timeToIdleExpiration(new Duration(1, TimeUnit.HOURS)), null);
+    hotKeyReadScaling("eternal/rb", String.class, "hot", Expirations.noExpiration(), new ReadBufferConfiguration());
+    hotKeyReadScaling("tti/rb", String.class, "hot", Expirations.timeToIdleExpiration(new Duration(1, TimeUnit.HOURS)), new ReadBufferConfiguration());
+  }
+
+  @Test
+  public void testLongHotKeyReadScaling() throws Exception {
+    hotKeyReadScaling("long/eternal", Long.class, 42L, Expirations.noExpiration(), null);
+    hotKeyReadScaling("long/tti", Long.class, 42L, Expirations.timeToIdleExpiration(new Duration(1, TimeUnit.HOURS)), null);
+    hotKeyReadScaling("long/eter/rb", Long.class, 42L, Expirations.noExpiration(), new ReadBufferConfiguration());
+    hotKeyReadScaling("long/tti/rb", Long.class, 42L, Expirations.timeToIdleExpiration(new Duration(1, TimeUnit.HOURS)), new ReadBufferConfiguration());
+  }
+
+  private static <K> void hotKeyReadScaling(String name, Class<K> keyType, K hotKey, Expiry<Object, Object> expiry, ReadBufferConfiguration readBuffer) throws Exception {
+    Store.Configuration<K, String> configuration = new StoreConfigurationImpl<K, String>(keyType, String.class, null, null,
+        OnHeapStoreHotKeyITest.class.getClassLoader(), expiry,
+        newResourcePoolsBuilder().heap(100, EntryUnit.ENTRIES).build(), null, null);
+    OnHeapStore<K, String> store = new OnHeapStore<K, String>(configuration, SystemTimeSource.INSTANCE,
+        new IdentityCopier<K>(), new IdentityCopier<String>(), null, true, readBuffer);
+    store.put(hotKey, "value");
+
+    // warm-up round
+    throughput(store, hotKey, 4);
+    for (int threads = 1; threads <= MAX_THREADS; threads *= 2) {
+      System.out.println(String.format("%-12s : %2d threads : %,14.0f gets/s", name, threads, throughput(store, hotKey, threads)));
+    }
+  }
+
+  private static <K> double throughput(final Store<K, String> store, final K hotKey, int threads) throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      final CountDownLatch start = new CountDownLatch(1);
+      List<Future<Void>> results = new ArrayList<Future<Void>>();
+      for (int t = 0; t < threads; t++) {
+        results.add(executor.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            start.await();
+            for (int i = 0; i < READS; i++) {
+              assertThat(store.get(hotKey).value(), is("value"));
+            }
+            return null;
+          }
+        }));
+      }
+      long begin = System.nanoTime();
+      start.countDown();
+      for (Future<Void> result : results) {
+        result.get();
+      }
+      long elapsed = System.nanoTime() - begin;
+      return threads * (double) READS / elapsed * 1e9;
+    } finally {
+      executor.shutdown();
+    }
+  }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.internal.store.heap;
+
+import org.ehcache.config.StoreConfigurationImpl;
+import org.ehcache.config.units.EntryUnit;
+import org.ehcache.exceptions.CacheAccessException;
+import org.ehcache.expiry.Expirations;
+import org.ehcache.internal.SystemTimeSource;
+import org.ehcache.internal.copy.IdentityCopier;
+import org.ehcache.spi.cache.Store;
+import org.ehcache.spi.copy.Copier;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.ehcache.config.ResourcePoolsBuilder.newResourcePoolsBuilder;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Compares the heap footprint and the read throughput of a store holding {@code Long} keys as primitives against the
+ * generic store, forced by a key copier which is not the identity copier.
+ */
+public class OnHeapStoreLongKeyITest {
+
+  private static final int ENTRIES = 1000000;
+  private static final int THREADS = 4;
+  private static final int READS = 5000000;
+
+  @Test
+  public void testFootprintAndThroughput() throws Exception {
+    Copier<Long> identity = new IdentityCopier<Long>();
+    Copier<Long> generic = new Copier<Long>() {
+      @Override
+      public Long copyForRead(Long obj) {
+        return obj;
+      }
+
+      @Override
+      public Long copyForWrite(Long obj) {
+        return obj;
+      }
+    };
+
+    long genericFootprint = footprint(generic);
+    long primitiveFootprint = footprint(identity);
+    System.out.println(String.format("generic store   : %6.1f bytes/entry", genericFootprint / (double) ENTRIES));
+    System.out.println(String.format("primitive store : %6.1f bytes/entry", primitiveFootprint / (double) ENTRIES));
+
+    // one warm-up round each before measuring
+    throughput(generic);
+    throughput(identity);
+    double genericThroughput = throughput(generic);
+    double primitiveThroughput = throughput(identity);
+    System.out.println(String.format("generic store   : %,12.0f gets/s over %d threads", genericThroughput, THREADS));
+    System.out.println(String.format("primitive store : %,12.0f gets/s over %d threads", primitiveThroughput, THREADS));
+
+    assertThat(primitiveFootprint, lessThan(genericFootprint));
+  }
+
+  private static long footprint(Copier<Long> keyCopier) throws CacheAccessException {
+    long before = usedMemory();
+    OnHeapStore<Long, Long> store = filledStore(keyCopier);
+    long after = usedMemory();
+    // all mappings share one value, leaving keys, mappings and value holders measured; keeps the store reachable
+    if (store.get(0L) == null) {
+      throw new AssertionError();
+    }
+    return after - before;
+  }
+
+  private static double throughput(Copier<Long> keyCopier) throws Exception {
+    final OnHeapStore<Long, Long> store = filledStore(keyCopier);
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    try {
+      List<Future<Long>> results = new ArrayList<Future<Long>>();
+      long start = System.nanoTime();
+      for (int t = 0; t < THREADS; t++) {
+        final int seed = t;
+        results.add(executor.submit(new Callable<Long>() {
+          @Override
+          public Long call() throws Exception {
+            Random random = new Random(seed);
+            long hits = 0;
+            for (int i = 0; i < READS; i++) {
+              if (store.get((long) random.nextInt(ENTRIES)) != null) {
+                hits++;
+              }
+            }
+            return hits;
+          }
+        }));
+      }
+      for (Future<Long> result : results) {
+        result.get();
+      }
+      long elapsed = System.nanoTime() - start;
+      return THREADS * (double) READS / elapsed * 1e9;
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  private static OnHeapStore<Long, Long> filledStore(Copier<Long> keyCopier) throws CacheAccessException {
+    Store.Configuration<Long, Long> configuration = new StoreConfigurationImpl<Long, Long>(Long.class, Long.class, null, null,
+        OnHeapStoreLongKeyITest.class.getClassLoader(), Expirations.noExpiration(),
+        newResourcePoolsBuilder().heap(ENTRIES * 2, EntryUnit.ENTRIES).build(), null, null);
+    OnHeapStore<Long, Long> store = new OnHeapStore<Long, Long>(configuration, SystemTimeSource.INSTANCE, keyCopier, new IdentityCopier<Long>());
+    Long value = 42L;
+    for (long i = 0; i < ENTRIES; i++) {
+      store.put(i, value);
+    }
+    return store;
+  }
+
+  private static long usedMemory() {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 4; i++) {
+      System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+}
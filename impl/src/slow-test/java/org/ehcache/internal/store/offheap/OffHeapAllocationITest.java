@@ -0,0 +1,117 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.internal.store.offheap;
+
+import org.ehcache.config.StoreConfigurationImpl;
+import org.ehcache.config.store.OffHeapAllocationConfiguration;
+import org.ehcache.config.units.MemoryUnit;
+import org.ehcache.expiry.Expirations;
+import org.ehcache.internal.SystemTimeSource;
+import org.ehcache.internal.executor.OnDemandExecutionService;
+import org.ehcache.internal.serialization.CompactJavaSerializer;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Measures the creation time of a large offheap store, and its direct memory and resident set size as it fills up,
+ * when allocating upfront and on demand. The store size can be set through the {@code offheapSize} system property,
+ * in megabytes.
+ */
+public class OffHeapAllocationITest {
+
+  private static final long SIZE = MemoryUnit.MB.toBytes(Long.getLong("offheapSize", 512L));
+  private static final int VALUE_SIZE = 4096;
+  private static final int STEPS = 4;
+
+  @Test
+  public void testOnDemandAllocationStartsFaster() throws Exception {
+    long upfront = measure(null);
+    long onDemand = measure(new OffHeapAllocationConfiguration(OffHeapAllocationConfiguration.Mode.ON_DEMAND));
+    measure(new OffHeapAllocationConfiguration(OffHeapAllocationConfiguration.Mode.ON_DEMAND, true, null));
+
+    assertThat(onDemand, lessThan(upfront));
+  }
+
+  private long measure(OffHeapAllocationConfiguration allocationConfiguration) throws Exception {
+    String mode = allocationConfiguration == null ? "upfront" : allocationConfiguration.getMode()
+        + (allocationConfiguration.isPreTouch() ? " pre-touched" : "");
+    System.gc();
+    ClassLoader classLoader = getClass().getClassLoader();
+    StoreConfigurationImpl<Long, byte[]> configuration = new StoreConfigurationImpl<Long, byte[]>(Long.class, byte[].class,
+        null, null, classLoader, Expirations.noExpiration(), null, new CompactJavaSerializer<Long>(classLoader), new CompactJavaSerializer<byte[]>(classLoader));
+
+    long start = System.nanoTime();
+    OffHeapStore<Long, byte[]> store = new OffHeapStore<Long, byte[]>(configuration, SystemTimeSource.INSTANCE,
+        new OnDemandExecutionService(), SIZE, allocationConfiguration);
+    OffHeapStore.Provider.init(store);
+    long creationTime = System.nanoTime() - start;
+    try {
+      System.out.println(String.format("%-22s created in %6d ms, direct memory %6d MB, rss %6d MB", mode,
+          creationTime / 1000000, directMemoryUsed() / MemoryUnit.MB.toBytes(1), residentSetSize() / MemoryUnit.MB.toBytes(1)));
+
+      long entriesPerStep = SIZE / (VALUE_SIZE * 2 * STEPS);
+      long key = 0;
+      for (int step = 1; step <= STEPS; step++) {
+        for (long i = 0; i < entriesPerStep; i++) {
+          store.put(key++, new byte[VALUE_SIZE]);
+        }
+        System.out.println(String.format("%-22s %8d entries      , direct memory %6d MB, rss %6d MB", mode, key,
+            directMemoryUsed() / MemoryUnit.MB.toBytes(1), residentSetSize() / MemoryUnit.MB.toBytes(1)));
+      }
+    } finally {
+      OffHeapStore.Provider.close(store);
+    }
+    return creationTime;
+  }
+
+  private static long directMemoryUsed() {
+    for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+      if ("direct".equals(pool.getName())) {
+        return pool.getMemoryUsed();
+      }
+    }
+    return -1;
+  }
+
+  private static long residentSetSize() throws IOException {
+    File status = new File("/proc/self/status");
+    if (!status.exists()) {
+      return -1;
+    }
+    BufferedReader reader = new BufferedReader(new FileReader(status));
+    try {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (line.startsWith("VmRSS:")) {
+          return MemoryUnit.KB.toBytes(Long.parseLong(line.replaceAll("[^0-9]", "")));
+        }
+      }
+      return -1;
+    } finally {
+      reader.close();
+    }
+  }
+}
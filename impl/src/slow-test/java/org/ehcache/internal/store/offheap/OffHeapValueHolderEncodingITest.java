@@ -0,0 +1,113 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.internal.store.offheap;
+
+import org.ehcache.internal.serialization.CompactJavaSerializer;
+import org.ehcache.internal.store.offheap.portability.OffHeapValueHolderPortability;
+import org.ehcache.spi.serialization.Serializer;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assume.assumeThat;
+
+/**
+ * Measures encoding throughput and heap allocation per put for values of growing sizes, comparing the in-place
+ * header path against copying the serial form behind the header.
+ */
+public class OffHeapValueHolderEncodingITest {
+
+  private static final int[] VALUE_SIZES = {128, 1024, 10 * 1024, 100 * 1024};
+  private static final int WARMUP_ITERATIONS = 2000;
+  private static final int ITERATIONS = 5000;
+
+  @Test
+  public void testInPlaceEncodingAllocatesLess() {
+    assumeThat(ManagementFactory.getThreadMXBean(), instanceOf(com.sun.management.ThreadMXBean.class));
+
+    final Serializer<byte[]> serializer = new CompactJavaSerializer<byte[]>(getClass().getClassLoader());
+    Serializer<byte[]> copying = new Serializer<byte[]>() {
+      @Override
+      public ByteBuffer serialize(byte[] object) {
+        return serializer.serialize(object);
+      }
+
+      @Override
+      public byte[] read(ByteBuffer binary) throws ClassNotFoundException {
+        return serializer.read(binary);
+      }
+
+      @Override
+      public boolean equals(byte[] object, ByteBuffer binary) throws ClassNotFoundException {
+        return serializer.equals(object, binary);
+      }
+    };
+
+    OffHeapValueHolderPortability<byte[]> inPlace = new OffHeapValueHolderPortability<byte[]>(serializer);
+    OffHeapValueHolderPortability<byte[]> copied = new OffHeapValueHolderPortability<byte[]>(copying);
+
+    for (int size : VALUE_SIZES) {
+      OffHeapValueHolder<byte[]> valueHolder = new OffHeapValueHolder<byte[]>(1L, new byte[size], 0L, 0L);
+      ByteBuffer storage = ByteBuffer.allocateDirect(size + 1024);
+
+      Result copiedResult = measure(copied, valueHolder, storage);
+      Result inPlaceResult = measure(inPlace, valueHolder, storage);
+      System.out.println(String.format("value size %6d bytes : copying %10.0f puts/s %9d bytes/put, in place %10.0f puts/s %9d bytes/put",
+          size, copiedResult.throughput, copiedResult.allocatedPerPut, inPlaceResult.throughput, inPlaceResult.allocatedPerPut));
+
+      assertThat(inPlaceResult.allocatedPerPut, lessThan(copiedResult.allocatedPerPut));
+    }
+  }
+
+  private static Result measure(OffHeapValueHolderPortability<byte[]> portability, OffHeapValueHolder<byte[]> valueHolder, ByteBuffer storage) {
+    for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+      put(portability, valueHolder, storage);
+    }
+
+    com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long threadId = Thread.currentThread().getId();
+    long allocatedBefore = threadMXBean.getThreadAllocatedBytes(threadId);
+    long start = System.nanoTime();
+    for (int i = 0; i < ITERATIONS; i++) {
+      put(portability, valueHolder, storage);
+    }
+    long elapsed = System.nanoTime() - start;
+    long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+    return new Result(ITERATIONS * 1000000000.0 / elapsed, allocated / ITERATIONS);
+  }
+
+  private static void put(OffHeapValueHolderPortability<byte[]> portability, OffHeapValueHolder<byte[]> valueHolder, ByteBuffer storage) {
+    // the storage engine copy into native memory
+    storage.clear();
+    storage.put(portability.encode(valueHolder));
+  }
+
+  private static class Result {
+    private final double throughput;
+    private final long allocatedPerPut;
+
+    Result(double throughput, long allocatedPerPut) {
+      this.throughput = throughput;
+      this.allocatedPerPut = allocatedPerPut;
+    }
+  }
+}
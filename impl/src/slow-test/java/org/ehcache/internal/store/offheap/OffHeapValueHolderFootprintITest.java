@@ -0,0 +1,101 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.internal.store.offheap;
+
+import org.ehcache.config.StoreConfigurationImpl;
+import org.ehcache.config.units.MemoryUnit;
+import org.ehcache.exceptions.CacheAccessException;
+import org.ehcache.expiry.Duration;
+import org.ehcache.expiry.Expirations;
+import org.ehcache.expiry.Expiry;
+import org.ehcache.internal.SystemTimeSource;
+import org.ehcache.internal.serialization.CompactJavaSerializer;
+import org.ehcache.internal.store.offheap.portability.OffHeapValueHolderPortability;
+import org.ehcache.spi.serialization.Serializer;
+import org.junit.Test;
+import org.terracotta.offheapstore.concurrent.AbstractConcurrentOffHeapMap;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Compares the footprint of small entries in the legacy fixed header format against the compact format, both as
+ * encoded bytes per entry and as data memory occupied by a filled store.
+ */
+public class OffHeapValueHolderFootprintITest {
+
+  private static final int ENTRIES = 100000;
+  private static final int VALUE_SIZE = 50;
+  private static final int LEGACY_HEADER_SIZE = 40;
+
+  @Test
+  public void testCompactFormatFootprint() throws Exception {
+    Serializer<byte[]> serializer = new CompactJavaSerializer<byte[]>(getClass().getClassLoader());
+    long now = System.currentTimeMillis();
+    int payload = serializer.serialize(new byte[VALUE_SIZE]).remaining();
+
+    long legacy = (long) ENTRIES * (LEGACY_HEADER_SIZE + payload);
+    long eternal = encodedSize(new OffHeapValueHolderPortability<byte[]>(serializer, now, false, true), now, false);
+    long expiring = encodedSize(new OffHeapValueHolderPortability<byte[]>(serializer, now, true, true), now, true);
+    long persistent = encodedSize(new OffHeapValueHolderPortability<byte[]>(serializer), now, true);
+
+    System.out.println(String.format("%d entries of %d byte values, serialized to %d bytes", ENTRIES, VALUE_SIZE, payload));
+    System.out.println(String.format("legacy format         : %6.1f bytes/entry", legacy / (double) ENTRIES));
+    System.out.println(String.format("compact, eternal      : %6.1f bytes/entry", eternal / (double) ENTRIES));
+    System.out.println(String.format("compact, expiring     : %6.1f bytes/entry", expiring / (double) ENTRIES));
+    System.out.println(String.format("compact, persistent   : %6.1f bytes/entry", persistent / (double) ENTRIES));
+
+    long storeEternal = occupiedDataMemory(Expirations.noExpiration());
+    long storeExpiring = occupiedDataMemory(Expirations.timeToLiveExpiration(new Duration(1, TimeUnit.HOURS)));
+    System.out.println(String.format("store data memory, eternal  : %6.1f bytes/entry (legacy format ~%6.1f)",
+        storeEternal / (double) ENTRIES, (storeEternal + legacy - eternal) / (double) ENTRIES));
+    System.out.println(String.format("store data memory, expiring : %6.1f bytes/entry (legacy format ~%6.1f)",
+        storeExpiring / (double) ENTRIES, (storeExpiring + legacy - expiring) / (double) ENTRIES));
+
+    assertThat(eternal, lessThan(expiring));
+    assertThat(expiring, lessThan(legacy));
+    assertThat(persistent, lessThan(legacy));
+  }
+
+  private static long encodedSize(OffHeapValueHolderPortability<byte[]> portability, long now, boolean expiring) {
+    long size = 0;
+    for (int i = 0; i < ENTRIES; i++) {
+      long expirationTime = expiring ? now + i + TimeUnit.HOURS.toMillis(1) : OffHeapValueHolder.NO_EXPIRE;
+      OffHeapValueHolder<byte[]> valueHolder = new OffHeapValueHolder<byte[]>(i, new byte[VALUE_SIZE], now + i, expirationTime);
+      size += portability.encode(valueHolder).remaining();
+    }
+    return size;
+  }
+
+  private long occupiedDataMemory(Expiry<Object, Object> expiry) throws CacheAccessException {
+    ClassLoader classLoader = getClass().getClassLoader();
+    StoreConfigurationImpl<Long, byte[]> configuration = new StoreConfigurationImpl<Long, byte[]>(Long.class, byte[].class,
+        null, null, classLoader, expiry, null, new CompactJavaSerializer<Long>(classLoader), new CompactJavaSerializer<byte[]>(classLoader));
+    OffHeapStore<Long, byte[]> store = new OffHeapStore<Long, byte[]>(configuration, SystemTimeSource.INSTANCE, MemoryUnit.MB.toBytes(64));
+    OffHeapStore.Provider.init(store);
+    try {
+      for (long i = 0; i < ENTRIES; i++) {
+        store.put(i, new byte[VALUE_SIZE]);
+      }
+      return ((AbstractConcurrentOffHeapMap<?, ?>) store.backingMap()).getDataOccupiedMemory();
+    } finally {
+      OffHeapStore.Provider.close(store);
+    }
+  }
+}
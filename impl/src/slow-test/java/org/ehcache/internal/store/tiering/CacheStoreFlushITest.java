@@ -0,0 +1,101 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.ehcache.internal.store.tiering;
+
+import org.ehcache.Cache;
+import org.ehcache.CacheManager;
+import org.ehcache.config.CacheConfigurationBuilder;
+import org.ehcache.config.persistence.CacheManagerPersistenceConfiguration;
+import org.ehcache.config.store.FlushBatchingConfiguration;
+import org.ehcache.config.units.EntryUnit;
+import org.ehcache.config.units.MemoryUnit;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.ehcache.CacheManagerBuilder.newCacheManagerBuilder;
+import static org.ehcache.config.ResourcePoolsBuilder.newResourcePoolsBuilder;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Measures the latency of the operations of a heap and disk cache whose heap tier constantly evicts, with the
+ * flushes to the disk tier applied on the evicting threads and batched in the background.
+ */
+public class CacheStoreFlushITest {
+
+  private static final int KEYS = 20000;
+  private static final int OPERATIONS = 200000;
+
+  @Rule
+  public final TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testLatencyUnderEvictionPressure() throws Exception {
+    latencyUnderEvictionPressure("inline", null);
+    latencyUnderEvictionPressure("batched", new FlushBatchingConfiguration());
+  }
+
+  private void latencyUnderEvictionPressure(String name, FlushBatchingConfiguration flushBatching) throws Exception {
+    CacheConfigurationBuilder<Object, Object> configurationBuilder = CacheConfigurationBuilder.newCacheConfigurationBuilder()
+        .withResourcePools(newResourcePoolsBuilder().heap(1000, EntryUnit.ENTRIES).disk(64, MemoryUnit.MB));
+    if (flushBatching != null) {
+      configurationBuilder = configurationBuilder.add(flushBatching);
+    }
+    CacheManager cacheManager = newCacheManagerBuilder()
+        .with(new CacheManagerPersistenceConfiguration(folder.newFolder(name)))
+        .withCache("cache", configurationBuilder.buildConfig(Long.class, String.class))
+        .build(true);
+    try {
+      Cache<Long, String> cache = cacheManager.getCache("cache", Long.class, String.class);
+      for (long i = 0; i < KEYS; i++) {
+        cache.put(i, "value-" + i);
+      }
+
+      // warm-up round
+      run(cache, new Random(1));
+      long[] latencies = run(cache, new Random(2));
+      Arrays.sort(latencies);
+      System.out.println(String.format("%-8s : p50 %,8d ns : p99 %,8d ns : p99.9 %,10d ns", name,
+          latencies[latencies.length / 2], latencies[latencies.length * 99 / 100], latencies[latencies.length * 999 / 1000]));
+    } finally {
+      cacheManager.close();
+    }
+  }
+
+  /**
+   * Mixes gets, which fault mappings into the heap tier and evict others, with puts, which invalidate them.
+   */
+  private static long[] run(Cache<Long, String> cache, Random random) {
+    long[] latencies = new long[OPERATIONS];
+    for (int i = 0; i < OPERATIONS; i++) {
+      long key = random.nextInt(KEYS);
+      long start = System.nanoTime();
+      if (random.nextInt(4) == 0) {
+        cache.put(key, "value-" + key);
+      } else {
+        assertThat(cache.get(key), is("value-" + key));
+      }
+      latencies[i] = System.nanoTime() - start;
+    }
+    return latencies;
+  }
+}
@@ -64,6 +64,35 @@ public class EhcacheRuntimeConfigurationTest {
     cacheManager.close();
   }
 
+  @Test
+  public void testUpdateOffHeapResource() {
+    CacheConfiguration<Long, String> cacheConfiguration = CacheConfigurationBuilder.newCacheConfigurationBuilder()
+        .withResourcePools(ResourcePoolsBuilder.newResourcePoolsBuilder()
+            .heap(10L, EntryUnit.ENTRIES).offheap(10, MemoryUnit.MB).build()).buildConfig(Long.class, String.class);
+
+    final CacheManager cacheManager = CacheManagerBuilder.newCacheManagerBuilder()
+        .withCache("cache", cacheConfiguration).build(true);
+
+    Cache<Long, String> cache = cacheManager.getCache("cache", Long.class, String.class);
+    for (long i = 0; i < 1000; i++) {
+      cache.put(i, "value" + i);
+    }
+
+    ResourcePools pools = ResourcePoolsBuilder.newResourcePoolsBuilder().offheap(20L, MemoryUnit.MB).build();
+    cache.getRuntimeConfiguration().updateResourcePools(pools);
+    assertThat(cache.getRuntimeConfiguration().getResourcePools()
+        .getPoolForResource(ResourceType.Core.OFFHEAP).getSize(), is(20L));
+
+    pools = ResourcePoolsBuilder.newResourcePoolsBuilder().offheap(2L, MemoryUnit.MB).build();
+    cache.getRuntimeConfiguration().updateResourcePools(pools);
+    assertThat(cache.getRuntimeConfiguration().getResourcePools()
+        .getPoolForResource(ResourceType.Core.OFFHEAP).getSize(), is(2L));
+
+    cache.put(1000L, "value1000");
+    assertThat(cache.get(1000L), is("value1000"));
+    cacheManager.close();
+  }
+
   @Test
   public void testUpdateFailureDoesNotUpdate() {
     CacheConfiguration<Long, String> cacheConfiguration = CacheConfigurationBuilder.newCacheConfigurationBuilder()
@@ -0,0 +1,103 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache;
+
+import org.ehcache.config.CacheConfiguration;
+import org.ehcache.config.CacheConfigurationBuilder;
+import org.ehcache.config.ResourcePoolsBuilder;
+import org.ehcache.config.store.SharedResourcePoolsConfiguration;
+import org.ehcache.config.units.EntryUnit;
+import org.ehcache.config.units.MemoryUnit;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+/**
+ * SharedResourcePoolsTest
+ */
+public class SharedResourcePoolsTest {
+
+  @Test
+  public void testSharedHeapBoundsAllCaches() throws Exception {
+    CacheConfiguration<Long, String> cacheConfiguration = CacheConfigurationBuilder.newCacheConfigurationBuilder()
+        .withResourcePools(ResourcePoolsBuilder.newResourcePoolsBuilder().sharedHeap())
+        .buildConfig(Long.class, String.class);
+
+    CacheManager cacheManager = CacheManagerBuilder.newCacheManagerBuilder()
+        .using(new SharedResourcePoolsConfiguration(ResourcePoolsBuilder.newResourcePoolsBuilder().heap(100, EntryUnit.ENTRIES).build()))
+        .withCache("hot", cacheConfiguration)
+        .withCache("cold", cacheConfiguration)
+        .build(true);
+    try {
+      Cache<Long, String> hot = cacheManager.getCache("hot", Long.class, String.class);
+      Cache<Long, String> cold = cacheManager.getCache("cold", Long.class, String.class);
+
+      for (long i = 0; i < 50; i++) {
+        cold.put(i, "cold" + i);
+      }
+      for (long i = 0; i < 500; i++) {
+        hot.put(i, "hot" + i);
+      }
+
+      int hotCount = count(hot);
+      int coldCount = count(cold);
+      assertThat(hotCount + coldCount, lessThanOrEqualTo(100));
+      assertThat(hotCount, greaterThan(50));
+    } finally {
+      cacheManager.close();
+    }
+  }
+
+  @Test
+  public void testSharedOffHeap() throws Exception {
+    CacheConfiguration<Long, String> cacheConfiguration = CacheConfigurationBuilder.newCacheConfigurationBuilder()
+        .withResourcePools(ResourcePoolsBuilder.newResourcePoolsBuilder().heap(10, EntryUnit.ENTRIES).sharedOffheap())
+        .buildConfig(Long.class, String.class);
+
+    CacheManager cacheManager = CacheManagerBuilder.newCacheManagerBuilder()
+        .using(new SharedResourcePoolsConfiguration(ResourcePoolsBuilder.newResourcePoolsBuilder().offheap(2, MemoryUnit.MB).build()))
+        .withCache("one", cacheConfiguration)
+        .withCache("two", cacheConfiguration)
+        .build(true);
+    try {
+      Cache<Long, String> one = cacheManager.getCache("one", Long.class, String.class);
+      Cache<Long, String> two = cacheManager.getCache("two", Long.class, String.class);
+
+      one.put(1L, "one");
+      two.put(1L, "two");
+      for (long i = 2; i < 100; i++) {
+        one.put(i, "one" + i);
+      }
+
+      assertThat(one.get(1L), equalTo("one"));
+      assertThat(two.get(1L), equalTo("two"));
+    } finally {
+      cacheManager.close();
+    }
+  }
+
+  private static int count(Cache<Long, String> cache) {
+    int count = 0;
+    for (Cache.Entry<Long, String> ignored : cache) {
+      count++;
+    }
+    return count;
+  }
+}
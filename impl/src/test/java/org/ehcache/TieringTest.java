@@ -20,6 +20,7 @@ import org.ehcache.config.CacheConfiguration;
 import org.ehcache.config.CacheConfigurationBuilder;
 import org.ehcache.config.ResourcePoolsBuilder;
 import org.ehcache.config.persistence.CacheManagerPersistenceConfiguration;
+import org.ehcache.config.store.WarmUpConfiguration;
 import org.ehcache.config.units.EntryUnit;
 import org.ehcache.config.units.MemoryUnit;
 import org.junit.Test;
@@ -95,4 +96,34 @@ public class TieringTest {
 
     persistentCacheManager.close();
   }
+
+  @Test
+  public void testPersistentDiskCacheWarmsUpOnRestart() throws Exception {
+    CacheConfiguration<Long, String> cacheConfiguration = CacheConfigurationBuilder.newCacheConfigurationBuilder()
+        .withResourcePools(ResourcePoolsBuilder.newResourcePoolsBuilder().heap(10, EntryUnit.ENTRIES).disk(10L, MemoryUnit.MB, true))
+        .add(new WarmUpConfiguration(5, null, 100))
+        .buildConfig(Long.class, String.class);
+
+    File directory = new File(getClass().getClassLoader().getResource(".").toURI().getPath() + "/../../warm-up-cache-data");
+    PersistentCacheManager persistentCacheManager = CacheManagerBuilder.newCacheManagerBuilder()
+        .with(new CacheManagerPersistenceConfiguration(directory))
+        .withCache("warm-up-cache", cacheConfiguration)
+        .build(true);
+    Cache<Long, String> cache = persistentCacheManager.getCache("warm-up-cache", Long.class, String.class);
+    for (long i = 0; i < 20; i++) {
+      cache.put(i, "value" + i);
+    }
+    for (long i = 15; i < 20; i++) {
+      cache.get(i);
+    }
+    persistentCacheManager.close();
+
+    persistentCacheManager.init();
+    cache = persistentCacheManager.getCache("warm-up-cache", Long.class, String.class);
+    for (long i = 0; i < 20; i++) {
+      assertThat(cache.get(i), is("value" + i));
+    }
+    persistentCacheManager.destroyCache("warm-up-cache");
+    persistentCacheManager.close();
+  }
 }
@@ -0,0 +1,158 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.integration;
+
+import org.ehcache.Cache;
+import org.ehcache.CacheManager;
+import org.ehcache.config.CacheConfiguration;
+import org.ehcache.config.ResourcePools;
+import org.ehcache.config.loaderwriter.DefaultCacheLoaderWriterConfiguration;
+import org.ehcache.config.loaderwriter.WriteCoalescingConfiguration;
+import org.ehcache.config.units.EntryUnit;
+import org.ehcache.config.units.MemoryUnit;
+import org.ehcache.expiry.Duration;
+import org.ehcache.spi.loaderwriter.CacheLoaderWriter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.ehcache.CacheManagerBuilder.newCacheManagerBuilder;
+import static org.ehcache.config.CacheConfigurationBuilder.newCacheConfigurationBuilder;
+import static org.ehcache.config.ResourcePoolsBuilder.newResourcePoolsBuilder;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Checks that bulk writes through a cache reach its writer in batches, without waiting for the window in which single
+ * key writes get coalesced.
+ */
+public class BulkWriteThroughTest {
+
+  private static final int KEY_COUNT = 4096;
+  private static final long BATCH_WINDOW_MILLIS = 5000;
+
+  private CacheManager cacheManager;
+
+  @Before
+  public void setUp() {
+    cacheManager = newCacheManagerBuilder().build(true);
+  }
+
+  @After
+  public void tearDown() {
+    if (cacheManager != null) {
+      cacheManager.close();
+    }
+  }
+
+  @Test
+  public void testOnHeapBulkWritesAreBatchedPerPartition() throws Exception {
+    testBulkWritesAreBatched("onHeap", newResourcePoolsBuilder().heap(KEY_COUNT, EntryUnit.ENTRIES).build());
+  }
+
+  @Test
+  public void testOffHeapBulkWritesAreBatchedPerSegment() throws Exception {
+    testBulkWritesAreBatched("offHeap", newResourcePoolsBuilder().heap(10, EntryUnit.ENTRIES).offheap(10, MemoryUnit.MB).build());
+  }
+
+  private void testBulkWritesAreBatched(String alias, ResourcePools resourcePools) throws Exception {
+    CountingWriter writer = new CountingWriter();
+    CacheConfiguration<String, String> configuration = newCacheConfigurationBuilder()
+        .withResourcePools(resourcePools)
+        .add(new DefaultCacheLoaderWriterConfiguration(writer))
+        .add(new WriteCoalescingConfiguration(64, new Duration(BATCH_WINDOW_MILLIS, TimeUnit.MILLISECONDS)))
+        .buildConfig(String.class, String.class);
+    Cache<String, String> cache = cacheManager.createCache(alias, configuration);
+
+    Map<String, String> entries = new HashMap<String, String>();
+    for (int i = 0; i < KEY_COUNT; i++) {
+      entries.put("key" + i, "value" + i);
+    }
+
+    long start = System.nanoTime();
+    cache.putAll(entries);
+    assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), lessThan(BATCH_WINDOW_MILLIS));
+    assertThat(writer.written, is(entries));
+    assertThat(writer.writeAllCalls.get(), lessThan(KEY_COUNT / 4));
+    assertThat(cache.get("key0"), is("value0"));
+
+    start = System.nanoTime();
+    cache.removeAll(entries.keySet());
+    assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), lessThan(BATCH_WINDOW_MILLIS));
+    assertThat(writer.written.isEmpty(), is(true));
+    assertThat(writer.deleteAllCalls.get(), lessThan(KEY_COUNT / 4));
+    assertThat(writer.writeCalls.get() + writer.deleteCalls.get(), is(0));
+  }
+
+  private static class CountingWriter implements CacheLoaderWriter<String, String> {
+
+    private final Map<String, String> written = new ConcurrentHashMap<String, String>();
+    private final AtomicInteger writeCalls = new AtomicInteger();
+    private final AtomicInteger writeAllCalls = new AtomicInteger();
+    private final AtomicInteger deleteCalls = new AtomicInteger();
+    private final AtomicInteger deleteAllCalls = new AtomicInteger();
+
+    @Override
+    public String load(String key) {
+      return written.get(key);
+    }
+
+    @Override
+    public Map<String, String> loadAll(Iterable<? extends String> keys) {
+      Map<String, String> loaded = new HashMap<String, String>();
+      for (String key : keys) {
+        loaded.put(key, written.get(key));
+      }
+      return loaded;
+    }
+
+    @Override
+    public void write(String key, String value) {
+      writeCalls.incrementAndGet();
+      written.put(key, value);
+    }
+
+    @Override
+    public void writeAll(Iterable<? extends Map.Entry<? extends String, ? extends String>> entries) {
+      writeAllCalls.incrementAndGet();
+      for (Map.Entry<? extends String, ? extends String> entry : entries) {
+        written.put(entry.getKey(), entry.getValue());
+      }
+    }
+
+    @Override
+    public void delete(String key) {
+      deleteCalls.incrementAndGet();
+      written.remove(key);
+    }
+
+    @Override
+    public void deleteAll(Iterable<? extends String> keys) {
+      deleteAllCalls.incrementAndGet();
+      for (String key : keys) {
+        written.remove(key);
+      }
+    }
+  }
+}
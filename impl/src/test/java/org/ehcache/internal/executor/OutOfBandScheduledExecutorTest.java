@@ -0,0 +1,156 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.internal.executor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Test;
+
+import static java.util.concurrent.TimeUnit.DAYS;
+import static java.util.concurrent.TimeUnit.HOURS;
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class OutOfBandScheduledExecutorTest {
+
+  @Test
+  public void testCancelledTasksAreRemovedImmediately() {
+    OutOfBandScheduledExecutor scheduler = new OutOfBandScheduledExecutor();
+    List<ScheduledFuture<?>> futures = new ArrayList<ScheduledFuture<?>>();
+    for (int i = 0; i < 1000; i++) {
+      futures.add(scheduler.schedule(null, new Noop(), i + 1, HOURS));
+    }
+    assertThat(scheduler.size(), is(1000));
+
+    for (ScheduledFuture<?> future : futures) {
+      assertThat(future.cancel(false), is(true));
+    }
+    assertThat(scheduler.size(), is(0));
+  }
+
+  @Test
+  public void testImmediateTasksFireInScheduleOrder() throws InterruptedException {
+    OutOfBandScheduledExecutor scheduler = new OutOfBandScheduledExecutor();
+    ExecutorService worker = Executors.newSingleThreadExecutor();
+    try {
+      final List<Integer> order = new CopyOnWriteArrayList<Integer>();
+      final CountDownLatch latch = new CountDownLatch(100);
+      for (int i = 0; i < 100; i++) {
+        final int value = i;
+        scheduler.schedule(worker, new Runnable() {
+          @Override
+          public void run() {
+            order.add(value);
+            latch.countDown();
+          }
+        }, 0, NANOSECONDS);
+      }
+      assertThat(latch.await(30, SECONDS), is(true));
+      for (int i = 0; i < 100; i++) {
+        assertThat(order.get(i), is(i));
+      }
+    } finally {
+      worker.shutdown();
+    }
+  }
+
+  @Test
+  public void testTasksCascadingThroughTheWheelLevelsNeverFireEarly() throws InterruptedException {
+    OutOfBandScheduledExecutor scheduler = new OutOfBandScheduledExecutor(MICROSECONDS.toNanos(1));
+    Random random = new Random();
+    final AtomicInteger early = new AtomicInteger();
+    final CountDownLatch latch = new CountDownLatch(200);
+    for (int i = 0; i < 200; i++) {
+      // spans the first four levels of a microsecond tick wheel
+      final long delay = (long) Math.pow(2, random.nextDouble() * 19);
+      final long start = System.nanoTime();
+      scheduler.schedule(null, new Runnable() {
+        @Override
+        public void run() {
+          if (System.nanoTime() - start < MICROSECONDS.toNanos(delay)) {
+            early.incrementAndGet();
+          }
+          latch.countDown();
+        }
+      }, delay, MICROSECONDS);
+    }
+    assertThat(latch.await(30, SECONDS), is(true));
+    assertThat(early.get(), is(0));
+    assertThat(scheduler.size(), is(0));
+  }
+
+  @Test
+  public void testTaskBeyondTheWheelHorizonIsKept() {
+    OutOfBandScheduledExecutor scheduler = new OutOfBandScheduledExecutor();
+    ScheduledFuture<?> future = scheduler.schedule(null, new Noop(), Long.MAX_VALUE, DAYS);
+    assertThat(scheduler.size(), is(1));
+    assertThat(future.getDelay(DAYS), greaterThan(365L * 100));
+    assertThat(future.cancel(false), is(true));
+    assertThat(scheduler.size(), is(0));
+  }
+
+  @Test
+  public void testFixedRateTaskRepeatsUntilCancelled() throws InterruptedException {
+    OutOfBandScheduledExecutor scheduler = new OutOfBandScheduledExecutor();
+    ExecutorService worker = Executors.newSingleThreadExecutor();
+    try {
+      final AtomicLong runs = new AtomicLong();
+      final CountDownLatch latch = new CountDownLatch(5);
+      ScheduledFuture<?> future = scheduler.scheduleAtFixedRate(worker, new Runnable() {
+        @Override
+        public void run() {
+          runs.incrementAndGet();
+          latch.countDown();
+        }
+      }, 0, 5, MILLISECONDS);
+      assertThat(latch.await(30, SECONDS), is(true));
+      assertThat(future.cancel(false), is(true));
+      assertThat(scheduler.size(), is(0));
+
+      // let any execution already handed to the worker complete
+      Thread.sleep(20);
+      long cancelledRuns = runs.get();
+      Thread.sleep(50);
+      assertThat(runs.get(), is(cancelledRuns));
+      assertThat(cancelledRuns, greaterThanOrEqualTo(5L));
+    } finally {
+      worker.shutdown();
+    }
+  }
+
+  static class Noop implements Runnable {
+
+    @Override
+    public void run() {
+      //no-op
+    }
+  }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.internal.executor;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.ehcache.config.executor.PooledExecutionServiceConfiguration;
+import org.ehcache.config.executor.PooledExecutionServiceConfiguration.PoolBackend;
+import org.ehcache.spi.ServiceProvider;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+
+public class PooledExecutionServiceTest {
+
+  @Test
+  public void testForkJoinPoolRunsOrderedTasksInOrder() throws InterruptedException {
+    PooledExecutionServiceConfiguration configuration = new PooledExecutionServiceConfiguration();
+    configuration.addPool("stealing", 0, 4, PoolBackend.FORK_JOIN);
+    PooledExecutionService service = new PooledExecutionService(configuration);
+    service.start(mock(ServiceProvider.class));
+    try {
+      ExecutorService executor = service.getOrderedExecutor("stealing", new LinkedBlockingQueue<Runnable>());
+      final List<Integer> order = new CopyOnWriteArrayList<Integer>();
+      final List<String> threads = new CopyOnWriteArrayList<String>();
+      for (int i = 0; i < 100; i++) {
+        final int value = i;
+        executor.execute(new Runnable() {
+          @Override
+          public void run() {
+            order.add(value);
+            threads.add(Thread.currentThread().getName());
+          }
+        });
+      }
+      executor.shutdown();
+      assertThat(executor.awaitTermination(30, TimeUnit.SECONDS), is(true));
+
+      for (int i = 0; i < 100; i++) {
+        assertThat(order.get(i), is(i));
+        assertThat(threads.get(i), startsWith("[stealing]-"));
+      }
+    } finally {
+      service.stop();
+    }
+  }
+
+  @Test
+  public void testForkJoinDefaultPoolRunsUnorderedTasks() throws InterruptedException {
+    PooledExecutionServiceConfiguration configuration = new PooledExecutionServiceConfiguration();
+    configuration.addDefaultPool("stealing", 0, 4, PoolBackend.FORK_JOIN);
+    PooledExecutionService service = new PooledExecutionService(configuration);
+    service.start(mock(ServiceProvider.class));
+    try {
+      ExecutorService executor = service.getUnorderedExecutor(null, new LinkedBlockingQueue<Runnable>());
+      final CountDownLatch latch = new CountDownLatch(1000);
+      for (int i = 0; i < 1000; i++) {
+        executor.execute(new Runnable() {
+          @Override
+          public void run() {
+            latch.countDown();
+          }
+        });
+      }
+      assertThat(latch.await(30, TimeUnit.SECONDS), is(true));
+      executor.shutdown();
+      assertThat(executor.awaitTermination(30, TimeUnit.SECONDS), is(true));
+    } finally {
+      service.stop();
+    }
+  }
+
+  @Test
+  public void testPoolBackendDefaultsToThreadPool() {
+    PooledExecutionServiceConfiguration configuration = new PooledExecutionServiceConfiguration();
+    configuration.addPool("classic", 1, 2);
+    assertThat(configuration.getPoolConfigurations().values().iterator().next().backend(), is(PoolBackend.THREAD_POOL));
+  }
+}
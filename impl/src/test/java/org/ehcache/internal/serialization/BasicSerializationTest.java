@@ -20,6 +20,7 @@ import java.io.Serializable;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.Random;
 
@@ -66,6 +67,23 @@ public class BasicSerializationTest {
 
   }
   
+  @Test
+  public void testReservedHeader() throws ClassNotFoundException {
+    CompactJavaSerializer<Serializable> test = new CompactJavaSerializer<Serializable>(null);
+
+    String input = "reserved";
+    ByteBuffer plain = test.serialize(input);
+    ByteBuffer reserved = test.serialize(input, 16);
+    Assert.assertThat(reserved.remaining(), Is.is(plain.remaining() + 16));
+    for (int i = 0; i < 16; i++) {
+      Assert.assertThat(reserved.get(reserved.position() + i), Is.is((byte) 0));
+    }
+
+    reserved.position(reserved.position() + 16);
+    Assert.assertThat(reserved, IsEqual.equalTo(plain));
+    Assert.assertEquals(input, test.read(reserved));
+  }
+
   private static final Class[] PRIMITIVE_CLASSES = new Class[] {
      boolean.class, byte.class, char.class, short.class, 
      int.class, long.class, float.class, double.class, void.class
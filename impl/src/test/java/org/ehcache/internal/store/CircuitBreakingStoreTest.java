@@ -0,0 +1,183 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.internal.store;
+
+import org.ehcache.exceptions.CacheAccessException;
+import org.ehcache.exceptions.CircuitBreakerOpenException;
+import org.ehcache.internal.TestTimeSource;
+import org.ehcache.spi.cache.Store;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class CircuitBreakingStoreTest {
+
+  private TestTimeSource timeSource;
+  private Store<String, String> delegate;
+  private CircuitBreakingStore<String, String> store;
+
+  @Before
+  @SuppressWarnings("unchecked")
+  public void setUp() {
+    timeSource = new TestTimeSource();
+    delegate = mock(Store.class);
+    store = new CircuitBreakingStore<String, String>(delegate, new CircuitBreaker(timeSource, 2, 1, 5, TimeUnit.SECONDS));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testDelegatesWhileClosed() throws Exception {
+    Store.ValueHolder<String> valueHolder = mock(Store.ValueHolder.class);
+    when(delegate.get("foo")).thenReturn(valueHolder);
+
+    assertThat(store.get("foo"), sameInstance(valueHolder));
+    assertThat(store.getCircuitBreakerState(), is(CircuitBreaker.State.CLOSED));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testOpensAfterThresholdAndBypassesStore() throws Exception {
+    CacheAccessException failure = new CacheAccessException("boom");
+    when(delegate.get("foo")).thenThrow(failure);
+
+    assertThrows(failure);
+    assertThat(store.getCircuitBreakerState(), is(CircuitBreaker.State.CLOSED));
+    assertThrows(failure);
+    assertThat(store.getCircuitBreakerState(), is(CircuitBreaker.State.OPEN));
+
+    reset(delegate);
+    try {
+      store.get("foo");
+      fail("Expected CircuitBreakerOpenException");
+    } catch (CircuitBreakerOpenException e) {
+      // expected
+    }
+    verify(delegate, never()).get("foo");
+    assertThat(store.iterator().hasNext(), is(false));
+  }
+
+  @Test
+  public void testFailuresOutsideWindowDoNotOpen() throws Exception {
+    CacheAccessException failure = new CacheAccessException("boom");
+    when(delegate.get("foo")).thenThrow(failure);
+
+    assertThrows(failure);
+    timeSource.advanceTime(TimeUnit.SECONDS.toMillis(2));
+    assertThrows(failure);
+
+    assertThat(store.getCircuitBreakerState(), is(CircuitBreaker.State.CLOSED));
+  }
+
+  @Test
+  @SuppressWarnings("deprecation") // still the type the XA store raises for caller errors
+  public void testRethrowingFailuresAreIgnored() throws Exception {
+    CacheAccessException failure = new org.ehcache.exceptions.RethrowingCacheAccessException(new IllegalStateException());
+    when(delegate.get("foo")).thenThrow(failure);
+
+    assertThrows(failure);
+    assertThrows(failure);
+
+    assertThat(store.getCircuitBreakerState(), is(CircuitBreaker.State.CLOSED));
+  }
+
+  @Test
+  public void testProbeClearsStoreAndCloses() throws Exception {
+    tripBreaker();
+
+    timeSource.advanceTime(TimeUnit.SECONDS.toMillis(5));
+    store.put("foo", "bar");
+
+    verify(delegate).clear();
+    verify(delegate).put("foo", "bar");
+    assertThat(store.getCircuitBreakerState(), is(CircuitBreaker.State.CLOSED));
+  }
+
+  @Test
+  public void testFailedProbeReopens() throws Exception {
+    tripBreaker();
+    CacheAccessException failure = new CacheAccessException("still broken");
+    doThrow(failure).when(delegate).clear();
+
+    timeSource.advanceTime(TimeUnit.SECONDS.toMillis(5));
+    try {
+      store.put("foo", "bar");
+      fail("Expected CacheAccessException");
+    } catch (CacheAccessException e) {
+      assertThat(e, sameInstance(failure));
+    }
+    assertThat(store.getCircuitBreakerState(), is(CircuitBreaker.State.OPEN));
+
+    try {
+      store.put("foo", "bar");
+      fail("Expected CircuitBreakerOpenException");
+    } catch (CacheAccessException e) {
+      assertThat(e, instanceOf(CircuitBreakerOpenException.class));
+    }
+    verify(delegate, times(1)).clear();
+    verify(delegate, never()).put("foo", "bar");
+  }
+
+  @Test
+  public void testObliterateIsNoopWhileOpen() throws Exception {
+    tripBreaker();
+
+    store.obliterate("foo");
+    store.obliterate();
+
+    verify(delegate, never()).remove("foo");
+    verify(delegate, never()).clear();
+  }
+
+  @SuppressWarnings("unchecked")
+  private void tripBreaker() throws Exception {
+    CacheAccessException failure = new CacheAccessException("boom");
+    doThrow(failure).when(delegate).remove("foo");
+    for (int i = 0; i < 2; i++) {
+      try {
+        store.remove("foo");
+        fail("Expected CacheAccessException");
+      } catch (CacheAccessException e) {
+        assertThat(e, sameInstance(failure));
+      }
+    }
+    assertThat(store.getCircuitBreakerState(), is(CircuitBreaker.State.OPEN));
+    reset(delegate);
+  }
+
+  private void assertThrows(CacheAccessException expected) {
+    try {
+      store.get("foo");
+      fail("Expected CacheAccessException");
+    } catch (CacheAccessException e) {
+      assertThat(e, sameInstance(expected));
+    }
+  }
+}
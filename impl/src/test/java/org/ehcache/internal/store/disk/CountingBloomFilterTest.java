@@ -0,0 +1,108 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.ehcache.internal.store.disk;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+
+public class CountingBloomFilterTest {
+
+  @Test
+  public void testNoFalseNegatives() {
+    CountingBloomFilter filter = new CountingBloomFilter(1000, 0.01);
+    for (int i = 0; i < 1000; i++) {
+      filter.add(i);
+    }
+    for (int i = 0; i < 1000; i++) {
+      assertThat(filter.mightContain(i), is(true));
+    }
+  }
+
+  @Test
+  public void testFalsePositiveRateIsNearConfigured() {
+    CountingBloomFilter filter = new CountingBloomFilter(10000, 0.01);
+    for (int i = 0; i < 10000; i++) {
+      filter.add(i);
+    }
+    int falsePositives = 0;
+    for (int i = 10000; i < 110000; i++) {
+      if (filter.mightContain(i)) {
+        falsePositives++;
+      }
+    }
+    assertThat(falsePositives, lessThan(2000));
+  }
+
+  @Test
+  public void testRemoveForgetsKey() {
+    CountingBloomFilter filter = new CountingBloomFilter(1000, 0.01);
+    filter.add(42);
+    filter.add(43);
+    filter.remove(42);
+    assertThat(filter.mightContain(42), is(false));
+    assertThat(filter.mightContain(43), is(true));
+  }
+
+  @Test
+  public void testSaturatedCountersAreNeverDecremented() {
+    CountingBloomFilter filter = new CountingBloomFilter(1, 4);
+    for (int i = 0; i < 20; i++) {
+      filter.add(7);
+    }
+    for (int i = 0; i < 19; i++) {
+      filter.remove(7);
+    }
+    filter.add(8);
+    filter.remove(7);
+    assertThat(filter.mightContain(8), is(true));
+  }
+
+  @Test
+  public void testClear() {
+    CountingBloomFilter filter = new CountingBloomFilter(1000, 0.01);
+    filter.add(42);
+    filter.clear();
+    assertThat(filter.mightContain(42), is(false));
+  }
+
+  @Test
+  public void testPersistence() throws Exception {
+    CountingBloomFilter filter = new CountingBloomFilter(1000, 0.01);
+    filter.add(42);
+
+    ByteArrayOutputStream bout = new ByteArrayOutputStream();
+    ObjectOutputStream output = new ObjectOutputStream(bout);
+    filter.writeTo(output);
+    output.close();
+
+    CountingBloomFilter restored = new CountingBloomFilter(1000, 0.01);
+    assertThat(restored.readFrom(new ObjectInputStream(new ByteArrayInputStream(bout.toByteArray()))), is(true));
+    assertThat(restored.mightContain(42), is(true));
+
+    CountingBloomFilter different = new CountingBloomFilter(5000, 0.01);
+    assertThat(different.readFrom(new ObjectInputStream(new ByteArrayInputStream(bout.toByteArray()))), is(false));
+  }
+}
@@ -40,12 +40,16 @@ import org.junit.Rule;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.util.Arrays;
 
 import static org.ehcache.expiry.Expirations.noExpiration;
 import org.ehcache.internal.executor.OnDemandExecutionService;
 import static org.ehcache.spi.TestServiceProvider.providerContaining;
 import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.Matchers.lessThan;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
@@ -72,6 +76,115 @@ public class OffHeapDiskStoreTest extends AbstractOffHeapStoreTest {
     }
   }
   
+  @Test
+  public void testHotKeysArePersistedOnce() throws Exception {
+    OffHeapDiskStore<String, String> offHeapDiskStore = createAndInitStore(SystemTimeSource.INSTANCE, noExpiration());
+    try {
+      offHeapDiskStore.persistHotKeys(Arrays.asList("key2", "key1"));
+
+      assertThat(offHeapDiskStore.recoverHotKeys(), is(Arrays.asList("key2", "key1")));
+      assertThat(offHeapDiskStore.recoverHotKeys().isEmpty(), is(true));
+    } finally {
+      destroyStore(offHeapDiskStore);
+    }
+  }
+
+  @Test
+  public void testShrinkingEvictsInTheBackground() throws Exception {
+    OffHeapDiskStore<String, byte[]> offHeapDiskStore = createAndInitStore(SystemTimeSource.INSTANCE, noExpiration(), null);
+    try {
+      for (int i = 0; i < 4096; i++) {
+        offHeapDiskStore.put("key-" + i, new byte[512]);
+      }
+      long sizeBefore = offHeapDiskStore.backingMap().size();
+
+      offHeapDiskStore.resize(MemoryUnit.KB.toBytes(256));
+
+      ResizableMappedPageSource source = offHeapDiskStore.pageSource();
+      long deadline = System.currentTimeMillis() + 10000;
+      while (source.isOverLimit() && System.currentTimeMillis() < deadline) {
+        Thread.sleep(10);
+      }
+      assertThat(source.isOverLimit(), is(false));
+      assertThat((long) offHeapDiskStore.backingMap().size(), lessThan(sizeBefore));
+    } finally {
+      destroyStore(offHeapDiskStore);
+    }
+  }
+
+  @Test
+  public void testBloomFilterShortCircuitsAbsentKeys() throws Exception {
+    OffHeapDiskStore<String, String> offHeapDiskStore = createAndInitBloomFilteredStore(1000);
+    try {
+      offHeapDiskStore.put("key1", "value1");
+      offHeapDiskStore.put("key2", "value2");
+      offHeapDiskStore.remove("key2");
+
+      assertThat(offHeapDiskStore.get("key1"), notNullValue());
+      assertThat(offHeapDiskStore.getAndFault("key1"), notNullValue());
+      assertThat(offHeapDiskStore.get("key2"), nullValue());
+      assertThat(offHeapDiskStore.containsKey("key2"), is(false));
+      assertThat(offHeapDiskStore.getAndFault("key3"), nullValue());
+
+      offHeapDiskStore.clear();
+      assertThat(offHeapDiskStore.get("key1"), nullValue());
+    } finally {
+      destroyStore(offHeapDiskStore);
+    }
+  }
+
+  @Test
+  public void testBloomFilterSurvivesRecovery() throws Exception {
+    OffHeapDiskStore<String, String> offHeapDiskStore = createAndInitBloomFilteredStore(1000);
+    try {
+      for (int i = 0; i < 100; i++) {
+        offHeapDiskStore.put("key" + i, "value" + i);
+      }
+      OffHeapDiskStore.Provider.close(offHeapDiskStore);
+      OffHeapDiskStore.Provider.init(offHeapDiskStore);
+
+      for (int i = 0; i < 100; i++) {
+        assertThat(offHeapDiskStore.get("key" + i), notNullValue());
+      }
+      assertThat(offHeapDiskStore.get("absent"), nullValue());
+    } finally {
+      destroyStore(offHeapDiskStore);
+    }
+  }
+
+  @Test
+  public void testBloomFilterIsRebuiltFromIndexWithoutFilter() throws Exception {
+    OffHeapDiskStore<String, String> plainStore = createAndInitStore(SystemTimeSource.INSTANCE, noExpiration());
+    for (int i = 0; i < 100; i++) {
+      plainStore.put("key" + i, "value" + i);
+    }
+    destroyStore(plainStore);
+
+    OffHeapDiskStore<String, String> offHeapDiskStore = createAndInitBloomFilteredStore(1000);
+    try {
+      for (int i = 0; i < 100; i++) {
+        assertThat(offHeapDiskStore.get("key" + i), notNullValue());
+      }
+    } finally {
+      destroyStore(offHeapDiskStore);
+    }
+  }
+
+  private OffHeapDiskStore<String, String> createAndInitBloomFilteredStore(long expectedEntries) throws Exception {
+    SerializationProvider serializationProvider = new DefaultSerializationProvider(null);
+    serializationProvider.start(providerContaining(persistenceService));
+    ClassLoader classLoader = getClass().getClassLoader();
+    Serializer<String> keySerializer = serializationProvider.createKeySerializer(String.class, classLoader);
+    Serializer<String> valueSerializer = serializationProvider.createValueSerializer(String.class, classLoader);
+    StoreConfigurationImpl<String, String> storeConfiguration = new StoreConfigurationImpl<String, String>(String.class, String.class, null, null, classLoader, noExpiration(), null, keySerializer, valueSerializer);
+    OffHeapDiskStore<String, String> offHeapStore = new OffHeapDiskStore<String, String>(
+            getPersistenceContext(),
+            new OnDemandExecutionService(), null, 1, expectedEntries, 0.01,
+            storeConfiguration, SystemTimeSource.INSTANCE, MemoryUnit.MB.toBytes(1));
+    OffHeapDiskStore.Provider.init(offHeapStore);
+    return offHeapStore;
+  }
+
   @Override
   protected OffHeapDiskStore<String, String> createAndInitStore(final TimeSource timeSource, final Expiry<? super String, ? super String> expiry) {
     try {
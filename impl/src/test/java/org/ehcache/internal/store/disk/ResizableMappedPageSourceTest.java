@@ -0,0 +1,92 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.internal.store.disk;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class ResizableMappedPageSourceTest {
+
+  private static final long REGION = 64 * 1024;
+
+  @Rule
+  public final TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testFragmentedAllocationDoesNotGrowFilePastLimit() throws Exception {
+    File file = folder.newFile("fragmented.data");
+    ResizableMappedPageSource source = new ResizableMappedPageSource(file, true, 3 * REGION);
+    try {
+      assertThat(source.allocateRegion(REGION), is(0L));
+      // fits in the allocated size, but power of two alignment would place it past the limit
+      assertThat(source.allocateRegion(2 * REGION), nullValue());
+      assertThat(file.length(), lessThanOrEqualTo(3 * REGION));
+      assertThat(source.getAllocatedSize(), is(REGION));
+    } finally {
+      source.close();
+    }
+  }
+
+  @Test
+  public void testFileStaysWithinLimitAfterGrowAndShrink() throws Exception {
+    File file = folder.newFile("resized.data");
+    ResizableMappedPageSource source = new ResizableMappedPageSource(file, true, 16 * REGION);
+    try {
+      source.resize(32 * REGION);
+      List<Long> regions = new ArrayList<Long>();
+      for (Long address; (address = source.allocateRegion(REGION)) != null; ) {
+        regions.add(address);
+      }
+      assertThat(regions.size(), is(32));
+      assertThat(file.length(), lessThanOrEqualTo(32 * REGION));
+
+      source.resize(16 * REGION);
+      assertThat(source.isOverLimit(), is(true));
+      // the owner evicts until back within the limit, here freeing every other region
+      for (int i = 0; source.isOverLimit(); i++) {
+        source.freeRegion(regions.remove(i));
+      }
+      // the file shrinks back once the regions past the limit are freed too
+      for (Long address : new ArrayList<Long>(regions)) {
+        if (address + REGION > 16 * REGION) {
+          source.freeRegion(address);
+          regions.remove(address);
+        }
+      }
+      assertThat(file.length(), lessThanOrEqualTo(16 * REGION));
+
+      for (int i = regions.size(); i < 16; i++) {
+        assertThat(source.allocateRegion(REGION), notNullValue());
+      }
+      assertThat(source.allocateRegion(REGION), nullValue());
+      assertThat(file.length(), lessThanOrEqualTo(16 * REGION));
+    } finally {
+      source.close();
+    }
+  }
+}
@@ -32,6 +32,7 @@ import org.ehcache.expiry.Expiry;
 import org.ehcache.function.BiFunction;
 import org.ehcache.function.Function;
 import org.ehcache.function.NullaryFunction;
+import org.ehcache.function.Predicate;
 import org.ehcache.internal.TimeSource;
 import org.ehcache.internal.copy.IdentityCopier;
 import org.ehcache.internal.store.heap.holders.CopiedOnHeapValueHolder;
@@ -45,7 +46,13 @@ import org.ehcache.statistics.StoreOperationOutcomes;
 import org.junit.Test;
 import org.mockito.ArgumentMatcher;
 import org.mockito.Matchers;
+import org.terracotta.context.ContextElement;
+import org.terracotta.context.TreeNode;
+import org.terracotta.context.query.QueryBuilder;
+import org.terracotta.statistics.StatisticsManager;
+import org.terracotta.statistics.ValueStatistic;
 
+import java.util.Arrays;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.Map;
@@ -59,6 +66,7 @@ import static org.ehcache.config.ResourcePoolsBuilder.newResourcePoolsBuilder;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.nullValue;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.fail;
@@ -69,6 +77,11 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.terracotta.context.query.Matchers.attributes;
+import static org.terracotta.context.query.Matchers.context;
+import static org.terracotta.context.query.Matchers.hasAttribute;
+import static org.terracotta.context.query.Matchers.identifier;
+import static org.terracotta.context.query.Matchers.subclassOf;
 
 public abstract class BaseOnHeapStoreTest {
 
@@ -82,6 +95,30 @@ public abstract class BaseOnHeapStoreTest {
     verify(listener, never()).onEviction(Matchers.<String>any(), Matchers.<Store.ValueHolder<String>>any());
   }
 
+  @Test
+  public void testEnforceCapacityEvictsBacklogInBatches() throws Exception {
+    OnHeapStore<String, String> store = newStore(1000, Eviction.Prioritizer.LRU);
+    StoreEventListener<String, String> listener = addListener(store);
+    for (int i = 0; i < 1000; i++) {
+      store.put(Integer.toString(i), Integer.toString(i));
+    }
+    updateStoreCapacity(store, 50);
+    store.put("trigger", "value");
+    assertThat(storeSize(store), is(1001 - OnHeapStore.MAX_EVICTION_BATCH));
+    verify(listener, times(OnHeapStore.MAX_EVICTION_BATCH)).onEviction(Matchers.<String>any(), Matchers.<Store.ValueHolder<String>>any());
+    assertThat(passThroughStatistic(store, "evictionBacklog").longValue(), is(951L - OnHeapStore.MAX_EVICTION_BATCH));
+
+    int writes = 1;
+    while (storeSize(store) > 50) {
+      int before = storeSize(store);
+      store.put("trigger" + writes++, "value");
+      assertThat(before + 1 - storeSize(store) <= OnHeapStore.MAX_EVICTION_BATCH, is(true));
+    }
+    assertThat(storeSize(store), is(50));
+    assertThat(passThroughStatistic(store, "evictionBacklog").longValue(), is(0L));
+    assertThat(passThroughStatistic(store, "evictionBackPressure").longValue(), is(0L));
+  }
+
   @Test
   public void testEvictWithNoVetoDoesEvict() throws Exception {
     OnHeapStore<String, String> store = newStore();
@@ -217,6 +254,23 @@ public abstract class BaseOnHeapStoreTest {
     StatisticsTestUtils.validateStats(store, EnumSet.of(StoreOperationOutcomes.GetOutcome.HIT));
   }
 
+  @Test
+  public void testHottestKeys() throws Exception {
+    TestTimeSource timeSource = new TestTimeSource();
+    OnHeapStore<String, String> store = newStore(timeSource, Expirations.noExpiration());
+    store.put("key1", "value1");
+    timeSource.advanceTime(1);
+    store.put("key2", "value2");
+    timeSource.advanceTime(1);
+    store.put("key3", "value3");
+    timeSource.advanceTime(1);
+    store.get("key1");
+
+    assertThat(store.hottestKeys(2), equalTo(Arrays.asList("key1", "key3")));
+    assertThat(store.hottestKeys(10).size(), is(3));
+    assertThat(store.hottestKeys(0).isEmpty(), is(true));
+  }
+
   @Test
   public void testAccessTime() throws Exception {
     TestTimeSource timeSource = new TestTimeSource();
@@ -522,6 +576,86 @@ public abstract class BaseOnHeapStoreTest {
     assertThat(times.get("key2"), equalTo(5L));
   }
 
+  @Test
+  public void testPartitionIterators() throws Exception {
+    OnHeapStore<String, String> store = newStore();
+    for (int i = 0; i < 100; i++) {
+      store.put("key" + i, "value" + i);
+    }
+
+    Map<String, String> observed = new HashMap<String, String>();
+    for (Iterator<Entry<String, ValueHolder<String>>> iter : store.partitionIterators(true)) {
+      Map<String, String> partition = observe(iter);
+      for (String key : partition.keySet()) {
+        assertThat(observed.containsKey(key), equalTo(false));
+      }
+      observed.putAll(partition);
+    }
+    assertThat(observed.size(), equalTo(100));
+    assertThat(observed.get("key42"), equalTo("value42"));
+  }
+
+  @Test
+  public void testPartitionIteratorsRecordAccess() throws Exception {
+    TestTimeSource timeSource = new TestTimeSource();
+    OnHeapStore<String, String> store = newStore(timeSource, Expirations.noExpiration());
+
+    store.put("key1", "value1");
+    store.put("key2", "value2");
+
+    timeSource.advanceTime(5);
+
+    Map<String, Long> times = new HashMap<String, Long>();
+    for (Iterator<Entry<String, ValueHolder<String>>> iter : store.partitionIterators(false)) {
+      times.putAll(observeAccessTimes(iter));
+    }
+    assertThat(times.get("key1"), equalTo(0L));
+    assertThat(times.get("key2"), equalTo(0L));
+
+    times.clear();
+    for (Iterator<Entry<String, ValueHolder<String>>> iter : store.partitionIterators(true)) {
+      times.putAll(observeAccessTimes(iter));
+    }
+    assertThat(times.get("key1"), equalTo(5L));
+    assertThat(times.get("key2"), equalTo(5L));
+  }
+
+  @Test
+  public void testRemoveIf() throws Exception {
+    TestTimeSource timeSource = new TestTimeSource();
+    OnHeapStore<String, String> store = newStore(timeSource,
+        Expirations.timeToLiveExpiration(new Duration(10, TimeUnit.MILLISECONDS)));
+    store.put("expired", "tenantA");
+    timeSource.advanceTime(5);
+    for (int i = 0; i < 40; i++) {
+      store.put("key" + i, i % 2 == 0 ? "tenantA" : "tenantB");
+    }
+    timeSource.advanceTime(5);
+
+    final Map<String, String> removed = new HashMap<String, String>();
+    store.removeIf(new Predicate<Entry<String, ValueHolder<String>>>() {
+      @Override
+      public boolean test(Entry<String, ValueHolder<String>> entry) {
+        assertThat(entry.getKey(), not(equalTo("expired")));
+        return entry.getValue().value().equals("tenantA");
+      }
+    }, false, new Function<Map<String, ValueHolder<String>>, Void>() {
+      @Override
+      public Void apply(Map<String, ValueHolder<String>> segmentRemovals) {
+        for (Map.Entry<String, ValueHolder<String>> entry : segmentRemovals.entrySet()) {
+          assertThat(removed.put(entry.getKey(), entry.getValue().value()), nullValue());
+        }
+        return null;
+      }
+    });
+
+    assertThat(removed.size(), equalTo(20));
+    assertThat(removed.get("key0"), equalTo("tenantA"));
+    Map<String, String> remaining = observe(store.iterator());
+    assertThat(remaining.size(), equalTo(20));
+    assertThat(remaining.get("key1"), equalTo("tenantB"));
+  }
+
   @Test
   public void testComputeReplaceTrue() throws Exception {
     TestTimeSource timeSource = new TestTimeSource();
@@ -1404,7 +1538,18 @@ public abstract class BaseOnHeapStoreTest {
         newResourcePoolsBuilder().heap(newCapacity, EntryUnit.ENTRIES).build()));
   }
 
-  private static class TestTimeSource implements TimeSource {
+  private static Number passThroughStatistic(Store<?, ?> store, String name) throws Exception {
+    StatisticsManager statisticsManager = new StatisticsManager();
+    statisticsManager.root(store);
+    TreeNode treeNode = statisticsManager.queryForSingleton(QueryBuilder.queryBuilder()
+        .descendants()
+        .filter(context(org.terracotta.context.query.Matchers.<ContextElement>allOf(identifier(subclassOf(ValueStatistic.class)),
+            attributes(hasAttribute("name", name)))))
+        .build());
+    return ((ValueStatistic<?>) treeNode.getContext().attributes().get("this")).value();
+  }
+
+  static class TestTimeSource implements TimeSource {
 
     private long time = 0;
 
@@ -1413,7 +1558,7 @@ public abstract class BaseOnHeapStoreTest {
       return time;
     }
 
-    private void advanceTime(long delta) {
+    void advanceTime(long delta) {
       this.time += delta;
     }
   }
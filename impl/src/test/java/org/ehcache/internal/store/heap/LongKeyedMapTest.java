@@ -0,0 +1,264 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.internal.store.heap;
+
+import org.ehcache.function.BiFunction;
+import org.ehcache.function.Function;
+import org.ehcache.function.Predicate;
+import org.ehcache.function.Predicates;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class LongKeyedMapTest {
+
+  @Test
+  public void testMatchesHashMap() {
+    LongKeyedMap<String> map = new LongKeyedMap<String>(4);
+    Map<Long, String> reference = new HashMap<Long, String>();
+    Random random = new Random(42);
+    for (int i = 0; i < 200000; i++) {
+      // a narrow key range with colliding patterns exercises probing and backward shifts
+      long key = random.nextInt(2048) * (random.nextBoolean() ? 1L : 1L << 32);
+      String value = Integer.toString(i);
+      switch (random.nextInt(5)) {
+        case 0:
+          assertThat(map.putIfAbsent(key, value), is(reference.containsKey(key) ? reference.get(key) : null));
+          if (!reference.containsKey(key)) {
+            reference.put(key, value);
+          }
+          break;
+        case 1:
+          assertThat(map.remove(key), is(reference.remove(key)));
+          break;
+        case 2:
+          String old = reference.get(key);
+          assertThat(map.replace(key, old == null ? "absent" : old, value), is(old != null));
+          if (old != null) {
+            reference.put(key, value);
+          }
+          break;
+        case 3:
+          assertThat(map.compute(key, constant(value)), is(value));
+          reference.put(key, value);
+          break;
+        default:
+          assertThat(map.get(key), is(reference.get(key)));
+      }
+    }
+    assertThat(map.size(), is(reference.size()));
+    Map<Long, String> iterated = new HashMap<Long, String>();
+    for (Iterator<Map.Entry<Long, String>> it = map.entryIterator(); it.hasNext(); ) {
+      Map.Entry<Long, String> entry = it.next();
+      iterated.put(entry.getKey(), entry.getValue());
+    }
+    assertThat(iterated, is(reference));
+    for (Map.Entry<Long, String> entry : reference.entrySet()) {
+      assertThat(map.get(entry.getKey()), is(entry.getValue()));
+    }
+  }
+
+  @Test
+  public void testComputeRemovesOnNull() {
+    LongKeyedMap<String> map = new LongKeyedMap<String>();
+    map.putIfAbsent(0L, "zero");
+    assertThat(map.computeIfPresent(1L, constant("one")), nullValue());
+    assertThat(map.get(1L), nullValue());
+    assertThat(map.compute(0L, constant(null)), nullValue());
+    assertThat(map.get(0L), nullValue());
+    assertThat(map.size(), is(0));
+  }
+
+  @Test
+  public void testComputeFunctionModifyingTheMap() {
+    final LongKeyedMap<String> map = new LongKeyedMap<String>(1);
+    map.compute(1L, new BiFunction<Long, String, String>() {
+      @Override
+      public String apply(Long key, String value) {
+        // forces rehashes of the segment the computed key lives in
+        for (long i = 2; i < 100; i++) {
+          map.putIfAbsent(i, "filler");
+        }
+        return "one";
+      }
+    });
+    assertThat(map.get(1L), is("one"));
+    assertThat(map.size(), is(99));
+  }
+
+  @Test
+  public void testIteratorRemove() {
+    LongKeyedMap<String> map = new LongKeyedMap<String>();
+    for (long i = 0; i < 1000; i++) {
+      map.putIfAbsent(i, "value");
+    }
+    for (Iterator<Map.Entry<Long, String>> it = map.entryIterator(); it.hasNext(); ) {
+      if (it.next().getKey() % 2 == 0) {
+        it.remove();
+      }
+    }
+    assertThat(map.size(), is(500));
+    assertThat(map.get(2L), nullValue());
+    assertThat(map.get(3L), is("value"));
+  }
+
+  @Test
+  public void testSegmentIteratorsCoverAllEntries() {
+    LongKeyedMap<String> map = new LongKeyedMap<String>(4);
+    for (long i = 0; i < 1000; i++) {
+      map.putIfAbsent(i, "value" + i);
+    }
+    Map<Long, String> observed = new HashMap<Long, String>();
+    List<Iterator<Map.Entry<Long, String>>> iterators = map.segmentIterators();
+    assertThat(iterators.size(), is(4));
+    for (Iterator<Map.Entry<Long, String>> it : iterators) {
+      while (it.hasNext()) {
+        Map.Entry<Long, String> entry = it.next();
+        assertThat(observed.put(entry.getKey(), entry.getValue()), nullValue());
+      }
+    }
+    assertThat(observed.size(), is(1000));
+    assertThat(observed.get(42L), is("value42"));
+  }
+
+  @Test
+  public void testRemoveIf() {
+    LongKeyedMap<String> map = new LongKeyedMap<String>(4);
+    for (long i = 0; i < 1000; i++) {
+      map.putIfAbsent(i, "value" + i);
+    }
+    final Map<Long, String> removed = new HashMap<Long, String>();
+    final AtomicInteger batches = new AtomicInteger();
+    map.removeIf(new Predicate<Map.Entry<Long, String>>() {
+      @Override
+      public boolean test(Map.Entry<Long, String> entry) {
+        return entry.getKey() % 3 == 0;
+      }
+    }, new Function<Map<Long, String>, Void>() {
+      @Override
+      public Void apply(Map<Long, String> segmentRemovals) {
+        batches.incrementAndGet();
+        removed.putAll(segmentRemovals);
+        return null;
+      }
+    });
+    assertThat(batches.get(), is(4));
+    assertThat(removed.size(), is(334));
+    assertThat(removed.get(3L), is("value3"));
+    assertThat(map.size(), is(666));
+    for (long i = 0; i < 1000; i++) {
+      if (i % 3 == 0) {
+        assertThat(map.get(i), nullValue());
+      } else {
+        assertThat(map.get(i), is("value" + i));
+      }
+    }
+  }
+
+  @Test
+  public void testRandomValues() {
+    LongKeyedMap<String> map = new LongKeyedMap<String>();
+    assertThat(map.getRandomValues(new Random(), 8, Predicates.<Map.Entry<Long, String>>none()).isEmpty(), is(true));
+    for (long i = 0; i < 1000; i++) {
+      map.putIfAbsent(i, i % 10 == 0 ? "even" : "odd");
+    }
+    Set<Map.Entry<Long, String>> sampled = map.getRandomValues(new Random(), 8, new Predicate<Map.Entry<Long, String>>() {
+      @Override
+      public boolean test(Map.Entry<Long, String> entry) {
+        return entry.getValue().equals("odd");
+      }
+    });
+    assertThat(sampled.size(), is(8));
+    for (Map.Entry<Long, String> entry : sampled) {
+      assertThat(entry.getValue(), is("even"));
+    }
+  }
+
+  @Test
+  public void testLockFreeReadsSeeConsistentMappingsWhileRemovalsShiftThemAround() throws Exception {
+    // a single segment, so that every write races with every read
+    final LongKeyedMap<String> map = new LongKeyedMap<String>(1);
+    for (long key = 0; key < 64; key++) {
+      map.putIfAbsent(key, Long.toString(key));
+    }
+    final AtomicBoolean done = new AtomicBoolean();
+    final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+    List<Thread> readers = new ArrayList<Thread>();
+    for (int t = 0; t < 4; t++) {
+      final Random random = new Random(t);
+      Thread reader = new Thread() {
+        @Override
+        public void run() {
+          try {
+            while (!done.get()) {
+              long stable = random.nextInt(64);
+              assertThat(map.get(stable), is(Long.toString(stable)));
+              long churned = 64 + random.nextInt(4096);
+              String value = map.get(churned);
+              if (value != null) {
+                assertThat(value, is(Long.toString(churned)));
+              }
+            }
+          } catch (Throwable e) {
+            failure.compareAndSet(null, e);
+          }
+        }
+      };
+      reader.start();
+      readers.add(reader);
+    }
+    Random random = new Random(42);
+    try {
+      for (int i = 0; i < 200000 && failure.get() == null; i++) {
+        long churned = 64 + random.nextInt(4096);
+        if (random.nextBoolean()) {
+          map.putIfAbsent(churned, Long.toString(churned));
+        } else {
+          map.remove(churned);
+        }
+      }
+    } finally {
+      done.set(true);
+      for (Thread reader : readers) {
+        reader.join();
+      }
+    }
+    assertThat(failure.get(), nullValue());
+  }
+
+  private static BiFunction<Long, String, String> constant(final String value) {
+    return new BiFunction<Long, String, String>() {
+      @Override
+      public String apply(Long key, String old) {
+        return value;
+      }
+    };
+  }
+}
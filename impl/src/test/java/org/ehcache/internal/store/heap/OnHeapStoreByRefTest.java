@@ -19,7 +19,9 @@ import org.ehcache.config.Eviction;
 import org.ehcache.config.EvictionVeto;
 import org.ehcache.config.EvictionPrioritizer;
 import org.ehcache.config.ResourcePools;
+import org.ehcache.config.store.ReadBufferConfiguration;
 import org.ehcache.config.units.EntryUnit;
+import org.ehcache.expiry.Duration;
 import org.ehcache.expiry.Expirations;
 import org.ehcache.expiry.Expiry;
 import org.ehcache.internal.SystemTimeSource;
@@ -27,8 +29,15 @@ import org.ehcache.internal.TimeSource;
 import org.ehcache.internal.copy.IdentityCopier;
 import org.ehcache.spi.cache.Store;
 import org.ehcache.spi.copy.Copier;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
 
 import static org.ehcache.config.ResourcePoolsBuilder.newResourcePoolsBuilder;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
 import org.ehcache.spi.serialization.Serializer;
 
 public class OnHeapStoreByRefTest extends BaseOnHeapStoreTest {
@@ -61,9 +70,67 @@ public class OnHeapStoreByRefTest extends BaseOnHeapStoreTest {
     return newStore(timeSource, expiry, veto, 100, Eviction.Prioritizer.LRU);
   }
 
+  @Test
+  public void testHitCountingDisabled() throws Exception {
+    OnHeapStore<String, String> store = newStore(SystemTimeSource.INSTANCE, Expirations.noExpiration(), Eviction.none(), 100, Eviction.Prioritizer.LRU, false);
+    store.put("key", "value");
+    store.get("key");
+    assertThat(store.get("key").hits(), is(0L));
+  }
+
+  @Test
+  public void testHitCountingKeptForLfu() throws Exception {
+    OnHeapStore<String, String> store = newStore(SystemTimeSource.INSTANCE, Expirations.noExpiration(), Eviction.none(), 100, Eviction.Prioritizer.LFU, false);
+    store.put("key", "value");
+    store.get("key");
+    assertThat(store.get("key").hits(), is(2L));
+  }
+
+  @Test
+  public void testBufferedReadsAppliedBeforeEviction() throws Exception {
+    TestTimeSource timeSource = new TestTimeSource();
+    OnHeapStore<String, String> store = newStore(timeSource, Expirations.noExpiration(), Eviction.none(), 100, Eviction.Prioritizer.LRU,
+        true, new ReadBufferConfiguration(4));
+    store.put("key1", "value1");
+    store.put("key2", "value2");
+    timeSource.advanceTime(10);
+    store.get("key1");
+
+    assertThat(store.hottestKeys(2), contains("key1", "key2"));
+    assertThat(store.get("key1").lastAccessTime(TimeUnit.MILLISECONDS), is(10L));
+  }
+
+  @Test
+  public void testBufferedReadsRefreshTimeToIdle() throws Exception {
+    TestTimeSource timeSource = new TestTimeSource();
+    OnHeapStore<String, String> store = newStore(timeSource, Expirations.timeToIdleExpiration(new Duration(10, TimeUnit.MILLISECONDS)),
+        Eviction.none(), 100, Eviction.Prioritizer.LRU, true, new ReadBufferConfiguration(4));
+    store.put("key", "value");
+    timeSource.advanceTime(8);
+    assertThat(store.get("key").value(), is("value"));
+    timeSource.advanceTime(8);
+    assertThat(store.get("key").value(), is("value"));
+    timeSource.advanceTime(10);
+    assertThat(store.get("key"), nullValue());
+  }
+
   private <K, V> OnHeapStore<K, V> newStore(final TimeSource timeSource,
                                             final Expiry<? super K, ? super V> expiry, final EvictionVeto<? super K, ? super V> veto,
                                             final int capacity, final EvictionPrioritizer<? super K, ? super V> prioritizer) {
+    return newStore(timeSource, expiry, veto, capacity, prioritizer, true);
+  }
+
+  private <K, V> OnHeapStore<K, V> newStore(final TimeSource timeSource,
+                                            final Expiry<? super K, ? super V> expiry, final EvictionVeto<? super K, ? super V> veto,
+                                            final int capacity, final EvictionPrioritizer<? super K, ? super V> prioritizer,
+                                            final boolean hitCounting) {
+    return newStore(timeSource, expiry, veto, capacity, prioritizer, hitCounting, null);
+  }
+
+  private <K, V> OnHeapStore<K, V> newStore(final TimeSource timeSource,
+                                            final Expiry<? super K, ? super V> expiry, final EvictionVeto<? super K, ? super V> veto,
+                                            final int capacity, final EvictionPrioritizer<? super K, ? super V> prioritizer,
+                                            final boolean hitCounting, final ReadBufferConfiguration readBufferConfiguration) {
     return new OnHeapStore<K, V>(new Store.Configuration<K, V>() {
       @SuppressWarnings("unchecked")
       @Override
@@ -111,6 +178,6 @@ public class OnHeapStoreByRefTest extends BaseOnHeapStoreTest {
       public Serializer<V> getValueSerializer() {
         throw new AssertionError("By-ref heap store using serializers!");
       }
-    }, timeSource, DEFAULT_COPIER, DEFAULT_COPIER);
+    }, timeSource, DEFAULT_COPIER, DEFAULT_COPIER, null, hitCounting, readBufferConfiguration);
   }
 }
@@ -28,6 +28,7 @@ import org.ehcache.function.Function;
 import org.ehcache.internal.SystemTimeSource;
 import org.ehcache.internal.TimeSource;
 import org.ehcache.internal.copy.IdentityCopier;
+import org.ehcache.internal.store.heap.holders.BaseOnHeapValueHolder;
 import org.ehcache.internal.store.heap.holders.OnHeapValueHolder;
 import org.ehcache.spi.cache.Store;
 import org.ehcache.spi.cache.Store.ValueHolder;
@@ -109,7 +110,7 @@ public class OnHeapStoreEvictionTest {
             @Override
             public ValueHolder<String> apply(final String key) {
               semaphore.acquireUninterruptibly();
-              return new OnHeapValueHolder<String>(0, 0) {
+              return new BaseOnHeapValueHolder<String>(0, 0) {
                 @Override
                 public String value() {
                   return key;
@@ -155,7 +156,7 @@ public class OnHeapStoreEvictionTest {
             @Override
             public ValueHolder<String> apply(final String key) {
               semaphore.acquireUninterruptibly();
-              return new OnHeapValueHolder<String>(0, 0) {
+              return new BaseOnHeapValueHolder<String>(0, 0) {
                 @Override
                 public String value() {
                   return key;
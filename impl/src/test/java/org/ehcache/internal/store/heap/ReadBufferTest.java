@@ -0,0 +1,95 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.internal.store.heap;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class ReadBufferTest {
+
+  @Test
+  public void testDrainReturnsRecordsInOrder() {
+    ReadBuffer<String> buffer = new ReadBuffer<String>(1, 8);
+    buffer.record("a", 1L);
+    buffer.record("b", 2L);
+    buffer.record("c", 3L);
+
+    final List<String> drained = new ArrayList<String>();
+    ReadBuffer.Consumer<String> consumer = new ReadBuffer.Consumer<String>() {
+      @Override
+      public void accept(String item, long time) {
+        drained.add(item + time);
+      }
+    };
+    buffer.drain(consumer);
+    assertThat(drained, contains("a1", "b2", "c3"));
+
+    drained.clear();
+    buffer.drain(consumer);
+    assertThat(drained, is(empty()));
+  }
+
+  @Test
+  public void testRecordSignalsDrainAtHalfCapacity() {
+    ReadBuffer<String> buffer = new ReadBuffer<String>(1, 8);
+    for (int i = 0; i < 3; i++) {
+      assertThat(buffer.record("a", i), is(false));
+    }
+    assertThat(buffer.record("a", 3L), is(true));
+  }
+
+  @Test
+  public void testFullBufferDropsRecords() {
+    ReadBuffer<String> buffer = new ReadBuffer<String>(1, 4);
+    for (int i = 0; i < 10; i++) {
+      buffer.record("a", i);
+    }
+    final AtomicInteger count = new AtomicInteger();
+    buffer.drain(new ReadBuffer.Consumer<String>() {
+      @Override
+      public void accept(String item, long time) {
+        assertThat(time < 4, is(true));
+        count.incrementAndGet();
+      }
+    });
+    assertThat(count.get(), is(4));
+
+    // draining frees the slots up
+    buffer.record("b", 10L);
+    final List<String> drained = new ArrayList<String>();
+    buffer.drain(new ReadBuffer.Consumer<String>() {
+      @Override
+      public void accept(String item, long time) {
+        drained.add(item + time);
+      }
+    });
+    assertThat(drained, contains("b10"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testBufferSizeMustBePowerOfTwo() {
+    new ReadBuffer<String>(1, 6);
+  }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.internal.store.heap.holders;
+
+import org.ehcache.expiry.Duration;
+import org.ehcache.spi.cache.Store;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.ehcache.internal.store.heap.holders.SlimOnHeapValueHolder.Expiration.FIXED;
+import static org.ehcache.internal.store.heap.holders.SlimOnHeapValueHolder.Expiration.NONE;
+import static org.ehcache.internal.store.heap.holders.SlimOnHeapValueHolder.Expiration.VARIABLE;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class SlimOnHeapValueHolderTest {
+
+  @Test
+  public void testValueByRef() {
+    Object value = new Object();
+    for (SlimOnHeapValueHolder.Expiration expiration : SlimOnHeapValueHolder.Expiration.values()) {
+      assertThat(SlimOnHeapValueHolder.create(value, 1L, Store.ValueHolder.NO_EXPIRE, expiration, true).value(), sameInstance(value));
+      assertThat(SlimOnHeapValueHolder.create(value, 1L, Store.ValueHolder.NO_EXPIRE, expiration, false).value(), sameInstance(value));
+    }
+  }
+
+  @Test
+  public void testEternalHolderNeverExpires() {
+    SlimOnHeapValueHolder<String> valueHolder = SlimOnHeapValueHolder.create("foo", 1L, Store.ValueHolder.NO_EXPIRE, NONE, false);
+    valueHolder.accessed(5L, null);
+    assertThat(valueHolder.expirationTime(TimeUnit.MILLISECONDS), is(Store.ValueHolder.NO_EXPIRE));
+    assertThat(valueHolder.isExpired(Long.MAX_VALUE, TimeUnit.MILLISECONDS), is(false));
+    assertThat(valueHolder.lastAccessTime(TimeUnit.MILLISECONDS), is(5L));
+    try {
+      SlimOnHeapValueHolder.create("foo", 1L, 10L, NONE, false);
+      fail("Expected IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testFixedHolderKeepsItsExpirationTime() {
+    SlimOnHeapValueHolder<String> valueHolder = SlimOnHeapValueHolder.create("foo", 1L, 10L, FIXED, false);
+    valueHolder.accessed(5L, null);
+    assertThat(valueHolder.expirationTime(TimeUnit.MILLISECONDS), is(10L));
+    assertThat(valueHolder.isExpired(9L, TimeUnit.MILLISECONDS), is(false));
+    assertThat(valueHolder.isExpired(10L, TimeUnit.MILLISECONDS), is(true));
+    assertThat(valueHolder.lastAccessTime(TimeUnit.MILLISECONDS), is(5L));
+    try {
+      valueHolder.accessed(6L, new Duration(20L, TimeUnit.MILLISECONDS));
+      fail("Expected UnsupportedOperationException");
+    } catch (UnsupportedOperationException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testVariableHolderUpdatesItsExpirationTime() {
+    SlimOnHeapValueHolder<String> valueHolder = SlimOnHeapValueHolder.create("foo", 1L, 10L, VARIABLE, false);
+    valueHolder.accessed(5L, null);
+    assertThat(valueHolder.expirationTime(TimeUnit.MILLISECONDS), is(10L));
+    valueHolder.accessed(6L, new Duration(20L, TimeUnit.MILLISECONDS));
+    assertThat(valueHolder.expirationTime(TimeUnit.MILLISECONDS), is(26L));
+    assertThat(valueHolder.lastAccessTime(TimeUnit.MILLISECONDS), is(6L));
+    valueHolder.accessed(7L, Duration.FOREVER);
+    assertThat(valueHolder.expirationTime(TimeUnit.MILLISECONDS), is(Store.ValueHolder.NO_EXPIRE));
+  }
+
+  @Test
+  public void testHitCounting() {
+    for (SlimOnHeapValueHolder.Expiration expiration : SlimOnHeapValueHolder.Expiration.values()) {
+      SlimOnHeapValueHolder<String> counting = SlimOnHeapValueHolder.create("foo", 0L, Store.ValueHolder.NO_EXPIRE, expiration, true);
+      SlimOnHeapValueHolder<String> notCounting = SlimOnHeapValueHolder.create("foo", 0L, Store.ValueHolder.NO_EXPIRE, expiration, false);
+      for (int i = 0; i < 3; i++) {
+        counting.accessed(1000L, null);
+        notCounting.accessed(1000L, null);
+      }
+      assertThat(counting.hits(), is(3L));
+      assertThat(counting.hitRate(1000L, TimeUnit.SECONDS), is(3f));
+      assertThat(notCounting.hits(), is(0L));
+    }
+  }
+
+  @Test
+  public void testEquals() {
+    SlimOnHeapValueHolder<String> valueHolder = SlimOnHeapValueHolder.create("foo", 1L, 10L, VARIABLE, false);
+    assertThat(valueHolder.equals(SlimOnHeapValueHolder.create("foo", 1L, 10L, VARIABLE, true)), is(false));
+    assertThat(valueHolder.equals(SlimOnHeapValueHolder.create("foo", 1L, 10L, FIXED, false)), is(false));
+    assertThat(valueHolder.equals(SlimOnHeapValueHolder.create("foo", 2L, 10L, VARIABLE, false)), is(false));
+    SlimOnHeapValueHolder<String> accessed = SlimOnHeapValueHolder.create("foo", 1L, 10L, VARIABLE, false);
+    accessed.accessed(5L, null);
+    assertThat(valueHolder, not(accessed));
+  }
+}
@@ -18,10 +18,13 @@ package org.ehcache.internal.store.offheap;
 
 import java.util.ArrayList;
 import java.util.EnumSet;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
 import org.ehcache.Cache;
@@ -35,6 +38,7 @@ import org.ehcache.expiry.Expiry;
 import org.ehcache.function.BiFunction;
 import org.ehcache.function.Function;
 import org.ehcache.function.NullaryFunction;
+import org.ehcache.function.Predicate;
 import org.ehcache.internal.TimeSource;
 import org.ehcache.spi.cache.AbstractValueHolder;
 import org.ehcache.spi.cache.Store;
@@ -46,6 +50,7 @@ import static org.hamcrest.CoreMatchers.notNullValue;
 import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
@@ -667,6 +672,101 @@ public abstract class AbstractOffHeapStoreTest {
     }
   }
 
+  @Test
+  public void testPartitionIteratorsCoverAllEntries() throws Exception {
+    TestTimeSource timeSource = new TestTimeSource();
+    AbstractOffHeapStore<String, String> offHeapStore = createAndInitStore(timeSource, Expirations.noExpiration());
+    try {
+      for (int i = 0; i < 100; i++) {
+        offHeapStore.put("key" + i, "value" + i);
+      }
+
+      List<String> iteratedKeys = new ArrayList<String>();
+      List<Store.Iterator<Cache.Entry<String, Store.ValueHolder<String>>>> iterators = offHeapStore.partitionIterators(false);
+      assertThat(iterators.size(), is(offHeapStore.backingMap().getSegments().size()));
+      for (Store.Iterator<Cache.Entry<String, Store.ValueHolder<String>>> iterator : iterators) {
+        while (iterator.hasNext()) {
+          iteratedKeys.add(iterator.next().getKey());
+        }
+      }
+
+      assertThat(iteratedKeys.size(), is(100));
+      assertThat(new HashSet<String>(iteratedKeys).size(), is(100));
+    } finally {
+      destroyStore(offHeapStore);
+    }
+  }
+
+  @Test
+  public void testRemoveIf() throws Exception {
+    TestTimeSource timeSource = new TestTimeSource();
+    AbstractOffHeapStore<String, String> offHeapStore = createAndInitStore(timeSource, Expirations.noExpiration());
+    try {
+      for (int i = 0; i < 100; i++) {
+        offHeapStore.put("key" + i, i % 2 == 0 ? "tenantA" : "tenantB");
+      }
+
+      final List<String> removedKeys = new ArrayList<String>();
+      final AtomicInteger batches = new AtomicInteger();
+      offHeapStore.removeIf(new Predicate<Cache.Entry<String, Store.ValueHolder<String>>>() {
+        @Override
+        public boolean test(Cache.Entry<String, Store.ValueHolder<String>> entry) {
+          return entry.getValue().value().equals("tenantA");
+        }
+      }, false, new Function<Map<String, Store.ValueHolder<String>>, Void>() {
+        @Override
+        public Void apply(Map<String, Store.ValueHolder<String>> segmentRemovals) {
+          batches.incrementAndGet();
+          for (Map.Entry<String, Store.ValueHolder<String>> entry : segmentRemovals.entrySet()) {
+            assertThat(entry.getValue().value(), is("tenantA"));
+            removedKeys.add(entry.getKey());
+          }
+          return null;
+        }
+      });
+
+      assertThat(removedKeys.size(), is(50));
+      assertThat(batches.get(), lessThanOrEqualTo(offHeapStore.backingMap().getSegments().size()));
+      for (int i = 0; i < 100; i++) {
+        assertThat(offHeapStore.containsKey("key" + i), is(i % 2 != 0));
+      }
+    } finally {
+      destroyStore(offHeapStore);
+    }
+  }
+
+  @Test
+  public void testRemoveIfKeysOnly() throws Exception {
+    TestTimeSource timeSource = new TestTimeSource();
+    AbstractOffHeapStore<String, String> offHeapStore = createAndInitStore(timeSource, Expirations.noExpiration());
+    try {
+      for (int i = 0; i < 100; i++) {
+        offHeapStore.put("key" + i, "value" + i);
+      }
+
+      final List<String> removedKeys = new ArrayList<String>();
+      offHeapStore.removeIf(new Predicate<Cache.Entry<String, Store.ValueHolder<String>>>() {
+        @Override
+        public boolean test(Cache.Entry<String, Store.ValueHolder<String>> entry) {
+          assertThat(entry.getValue(), nullValue());
+          return entry.getKey().endsWith("7");
+        }
+      }, true, new Function<Map<String, Store.ValueHolder<String>>, Void>() {
+        @Override
+        public Void apply(Map<String, Store.ValueHolder<String>> segmentRemovals) {
+          removedKeys.addAll(segmentRemovals.keySet());
+          return null;
+        }
+      });
+
+      assertThat(removedKeys.size(), is(10));
+      assertThat(offHeapStore.containsKey("key17"), is(false));
+      assertThat(offHeapStore.containsKey("key18"), is(true));
+    } finally {
+      destroyStore(offHeapStore);
+    }
+  }
+
   protected abstract AbstractOffHeapStore<String, String> createAndInitStore(final TimeSource timeSource, final Expiry<? super String, ? super String> expiry);
 
   protected abstract AbstractOffHeapStore<String, byte[]> createAndInitStore(final TimeSource timeSource, final Expiry<? super String, ? super byte[]> expiry, EvictionVeto<? super String, ? super byte[]> evictionVeto);
@@ -16,16 +16,36 @@
 
 package org.ehcache.internal.store.offheap;
 
+import org.ehcache.Cache;
 import org.ehcache.config.EvictionVeto;
 import org.ehcache.config.StoreConfigurationImpl;
+import org.ehcache.config.store.OffHeapAllocationConfiguration;
 import org.ehcache.config.units.MemoryUnit;
+import org.ehcache.exceptions.CacheAccessException;
+import org.ehcache.exceptions.SerializerException;
+import org.ehcache.expiry.Expirations;
 import org.ehcache.expiry.Expiry;
+import org.ehcache.internal.SystemTimeSource;
 import org.ehcache.internal.TimeSource;
+import org.ehcache.internal.executor.OnDemandExecutionService;
+import org.ehcache.spi.cache.Store;
 import static org.ehcache.spi.TestServiceProvider.providerContaining;
 import org.ehcache.spi.serialization.DefaultSerializationProvider;
 import org.ehcache.spi.serialization.SerializationProvider;
 import org.ehcache.spi.serialization.Serializer;
 import org.ehcache.spi.serialization.UnsupportedTypeException;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
 
 public class OffHeapStoreTest extends AbstractOffHeapStoreTest {
 
@@ -63,8 +83,161 @@ public class OffHeapStoreTest extends AbstractOffHeapStoreTest {
     }
   }
 
+  @Test
+  public void testGrowingAllowsMoreMappings() throws Exception {
+    OffHeapStore<String, byte[]> store = createAndInitStore(SystemTimeSource.INSTANCE, Expirations.noExpiration(), null);
+    try {
+      fill(store, 4096);
+      long sizeBefore = store.backingMap().size();
+
+      store.resize(MemoryUnit.MB.toBytes(4));
+      fill(store, 4096);
+
+      assertThat((long) store.backingMap().size(), greaterThan(sizeBefore));
+    } finally {
+      destroyStore(store);
+    }
+  }
+
+  @Test
+  public void testShrinkingEvictsDownToNewSize() throws Exception {
+    OffHeapStore<String, byte[]> store = createAndInitStore(SystemTimeSource.INSTANCE, Expirations.noExpiration(), null);
+    try {
+      fill(store, 4096);
+      long sizeBefore = store.backingMap().size();
+
+      store.resize(MemoryUnit.KB.toBytes(512));
+
+      assertThat((long) store.backingMap().size(), lessThan(sizeBefore));
+      ResizablePageSource source = store.resizablePageSource();
+      assertThat(source.getAllocatedSize(), lessThanOrEqualTo(MemoryUnit.KB.toBytes(512)));
+
+      fill(store, 4096);
+      assertThat(source.getAllocatedSize(), lessThanOrEqualTo(MemoryUnit.KB.toBytes(512)));
+    } finally {
+      destroyStore(store);
+    }
+  }
+
+  @Test
+  public void testOnDemandAllocationReservesAsTheStoreFills() throws Exception {
+    OffHeapStore<String, byte[]> store = createAndInitStore(new OffHeapAllocationConfiguration(OffHeapAllocationConfiguration.Mode.ON_DEMAND));
+    try {
+      ResizablePageSource source = store.resizablePageSource();
+      long initiallyReserved = source.getReservedSize();
+      assertThat(initiallyReserved, lessThan(MemoryUnit.MB.toBytes(1)));
+
+      fill(store, 4096);
+
+      assertThat(source.getReservedSize(), greaterThan(initiallyReserved));
+      assertThat(source.getReservedSize(), lessThanOrEqualTo(MemoryUnit.MB.toBytes(1)));
+      assertThat(source.getAllocatedSize(), lessThanOrEqualTo(MemoryUnit.MB.toBytes(1)));
+    } finally {
+      destroyStore(store);
+    }
+  }
+
+  @Test
+  public void testPreTouchReservesTheWholeSize() throws Exception {
+    OffHeapStore<String, byte[]> store = createAndInitStore(new OffHeapAllocationConfiguration(OffHeapAllocationConfiguration.Mode.ON_DEMAND, true, null));
+    try {
+      ResizablePageSource source = store.resizablePageSource();
+      long deadline = System.currentTimeMillis() + 10000;
+      while (source.getReservedSize() < MemoryUnit.MB.toBytes(1) && System.currentTimeMillis() < deadline) {
+        Thread.sleep(10);
+      }
+      assertThat(source.getReservedSize(), is(MemoryUnit.MB.toBytes(1)));
+    } finally {
+      destroyStore(store);
+    }
+  }
+
+  @Test
+  public void testValueFailingToDeserializeIsACacheAccessFailure() throws Exception {
+    OffHeapStore<String, String> store = createAndInitStore(new UnreadableSerializer());
+    try {
+      store.put("key", "value");
+      // metadata only lookups never deserialize
+      assertThat(store.containsKey("key"), is(true));
+
+      try {
+        store.get("key");
+        fail("Expected CacheAccessException");
+      } catch (CacheAccessException e) {
+        assertThat(e.getCause(), instanceOf(SerializerException.class));
+      }
+      try {
+        store.getAndFault("key");
+        fail("Expected CacheAccessException");
+      } catch (CacheAccessException e) {
+        assertThat(e.getCause(), instanceOf(SerializerException.class));
+      }
+      Store.Iterator<Cache.Entry<String, Store.ValueHolder<String>>> iterator = store.iterator();
+      assertThat(iterator.hasNext(), is(true));
+      try {
+        iterator.next();
+        fail("Expected CacheAccessException");
+      } catch (CacheAccessException e) {
+        assertThat(e.getCause(), instanceOf(SerializerException.class));
+      }
+    } finally {
+      destroyStore(store);
+    }
+  }
+
+  private OffHeapStore<String, String> createAndInitStore(Serializer<String> valueSerializer) throws UnsupportedTypeException {
+    SerializationProvider serializationProvider = new DefaultSerializationProvider(null);
+    serializationProvider.start(providerContaining());
+    ClassLoader classLoader = getClass().getClassLoader();
+    Serializer<String> keySerializer = serializationProvider.createKeySerializer(String.class, classLoader);
+    StoreConfigurationImpl<String, String> storeConfiguration = new StoreConfigurationImpl<String, String>(String.class, String.class, null, null, classLoader, Expirations.noExpiration(), null, keySerializer, valueSerializer);
+    OffHeapStore<String, String> offHeapStore = new OffHeapStore<String, String>(storeConfiguration, SystemTimeSource.INSTANCE, MemoryUnit.MB.toBytes(1));
+    OffHeapStore.Provider.init(offHeapStore);
+    return offHeapStore;
+  }
+
+  private OffHeapStore<String, byte[]> createAndInitStore(OffHeapAllocationConfiguration allocationConfiguration) throws UnsupportedTypeException {
+    SerializationProvider serializationProvider = new DefaultSerializationProvider(null);
+    serializationProvider.start(providerContaining());
+    ClassLoader classLoader = getClass().getClassLoader();
+    Serializer<String> keySerializer = serializationProvider.createKeySerializer(String.class, classLoader);
+    Serializer<byte[]> valueSerializer = serializationProvider.createValueSerializer(byte[].class, classLoader);
+    StoreConfigurationImpl<String, byte[]> storeConfiguration = new StoreConfigurationImpl<String, byte[]>(String.class, byte[].class, null, null, classLoader, Expirations.noExpiration(), null, keySerializer, valueSerializer);
+    OffHeapStore<String, byte[]> offHeapStore = new OffHeapStore<String, byte[]>(storeConfiguration, SystemTimeSource.INSTANCE,
+        new OnDemandExecutionService(), MemoryUnit.MB.toBytes(1), allocationConfiguration);
+    OffHeapStore.Provider.init(offHeapStore);
+    return offHeapStore;
+  }
+
+  private static void fill(OffHeapStore<String, byte[]> store, int count) throws Exception {
+    for (int i = 0; i < count; i++) {
+      store.put("key-" + i, new byte[512]);
+    }
+  }
+
   @Override
   protected void destroyStore(AbstractOffHeapStore<?, ?> store) {
     OffHeapStore.Provider.close((OffHeapStore<?, ?>) store);
   }
-}
\ No newline at end of file
+
+  /**
+   * Writes values as UTF-8 but cannot read them back, as when the value class went missing.
+   */
+  private static class UnreadableSerializer implements Serializer<String> {
+
+    @Override
+    public ByteBuffer serialize(String object) {
+      return ByteBuffer.wrap(object.getBytes(Charset.forName("UTF-8")));
+    }
+
+    @Override
+    public String read(ByteBuffer binary) throws ClassNotFoundException {
+      throw new ClassNotFoundException("gone");
+    }
+
+    @Override
+    public boolean equals(String object, ByteBuffer binary) throws ClassNotFoundException {
+      return object.equals(read(binary));
+    }
+  }
+}
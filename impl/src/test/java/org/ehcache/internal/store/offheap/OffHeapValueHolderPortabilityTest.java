@@ -16,13 +16,20 @@
 
 package org.ehcache.internal.store.offheap;
 
+import org.ehcache.config.store.CompressionConfiguration;
+import org.ehcache.exceptions.SerializerException;
+import org.ehcache.internal.serialization.CompactJavaSerializer;
 import org.ehcache.internal.store.offheap.portability.OffHeapValueHolderPortability;
+import org.ehcache.internal.store.offheap.portability.ValueCompression;
 import org.ehcache.spi.cache.AbstractValueHolder;
 import org.ehcache.spi.serialization.DefaultSerializationProvider;
 import org.ehcache.spi.serialization.SerializationProvider;
+import org.ehcache.spi.serialization.Serializer;
+import org.ehcache.statistics.StoreOperationOutcomes;
 import org.junit.Before;
 import org.junit.Test;
 import org.terracotta.offheapstore.storage.portability.WriteContext;
+import org.terracotta.statistics.observer.OperationObserver;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
@@ -32,8 +39,15 @@ import static org.ehcache.spi.TestServiceProvider.providerContaining;
 import org.ehcache.spi.serialization.UnsupportedTypeException;
 
 import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.lessThan;
 import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
 public class OffHeapValueHolderPortabilityTest {
@@ -62,22 +76,262 @@ public class OffHeapValueHolderPortabilityTest {
 
   @Test
   public void testWriteBackSupport() throws NoSuchMethodException, InvocationTargetException, IllegalAccessException {
-    ByteBuffer encoded = valueHolderPortability.encode(originalValue);
-    WriteContext writeContext = mock(WriteContext.class);
-    OffHeapValueHolder<String> decoded = valueHolderPortability.decode(encoded, writeContext);
+    final ByteBuffer encoded = valueHolderPortability.encode(originalValue);
+    OffHeapValueHolder<String> decoded = valueHolderPortability.decode(encoded.duplicate(), new BufferWriteContext(encoded));
 
-    Class<?> abstractValueHolder = AbstractValueHolder.class;
-    Method setHits = abstractValueHolder.getDeclaredMethod("setHits", long.class);
-    setHits.setAccessible(true);
-    
     decoded.setExpirationTime(4L, TimeUnit.MILLISECONDS);
     decoded.setLastAccessTime(6L, TimeUnit.MILLISECONDS);
-    setHits.invoke(decoded, 8L);
-    
+    setHits(decoded, 8L);
     decoded.writeBack();
-    verify(writeContext).setLong(OffHeapValueHolderPortability.ACCESS_TIME_OFFSET, 6L);
-    verify(writeContext).setLong(OffHeapValueHolderPortability.EXPIRE_TIME_OFFSET, 4L);
-    verify(writeContext).setLong(OffHeapValueHolderPortability.HITS_OFFSET, 8L);
+
+    OffHeapValueHolder<String> written = valueHolderPortability.decode(encoded.duplicate());
+    assertThat(written.lastAccessTime(TimeUnit.MILLISECONDS), is(6L));
+    assertThat(written.expirationTime(TimeUnit.MILLISECONDS), is(4L));
+    assertThat(written.hits(), is(8L));
+    assertThat(written.creationTime(TimeUnit.MILLISECONDS), is(1L));
+    assertThat(written.getId(), is(-1L));
   }
 
-}
\ No newline at end of file
+  @Test
+  public void testUnusedFieldsAreOmitted() throws Exception {
+    Serializer<String> serializer = new CompactJavaSerializer<String>(getClass().getClassLoader());
+    OffHeapValueHolder<String> eternal = new OffHeapValueHolder<String>(42L, "aValue", 1000L, OffHeapValueHolder.NO_EXPIRE, 1500L, 3L, null);
+
+    ByteBuffer full = new OffHeapValueHolderPortability<String>(serializer, 900L, true, true).encode(eternal);
+    ByteBuffer compact = new OffHeapValueHolderPortability<String>(serializer, 900L, false, false).encode(eternal);
+    int payload = serializer.serialize("aValue").remaining();
+
+    // format byte, one byte id and two bytes creation time, then the longs
+    assertThat(full.remaining(), is(payload + 4 + 3 * 8));
+    assertThat(compact.remaining(), is(payload + 4 + 8));
+
+    OffHeapValueHolderPortability<String> portability = new OffHeapValueHolderPortability<String>(serializer, 900L, true, true);
+    OffHeapValueHolder<String> decoded = portability.decode(compact);
+    assertThat(decoded.getId(), is(42L));
+    assertThat(decoded.creationTime(TimeUnit.MILLISECONDS), is(1000L));
+    assertThat(decoded.lastAccessTime(TimeUnit.MILLISECONDS), is(1500L));
+    assertThat(decoded.expirationTime(TimeUnit.MILLISECONDS), is(OffHeapValueHolder.NO_EXPIRE));
+    assertThat(decoded.hits(), is(0L));
+    assertThat(decoded.value(), is("aValue"));
+  }
+
+  @Test
+  public void testWriteBackDropsOmittedFields() throws Exception {
+    Serializer<String> serializer = new CompactJavaSerializer<String>(getClass().getClassLoader());
+    OffHeapValueHolderPortability<String> portability = new OffHeapValueHolderPortability<String>(serializer, 0L, false, false);
+    ByteBuffer encoded = portability.encode(originalValue);
+    OffHeapValueHolder<String> decoded = portability.decode(encoded.duplicate(), new BufferWriteContext(encoded));
+
+    decoded.setLastAccessTime(6L, TimeUnit.MILLISECONDS);
+    setHits(decoded, 8L);
+    decoded.writeBack();
+
+    OffHeapValueHolder<String> written = portability.decode(encoded.duplicate());
+    assertThat(written.lastAccessTime(TimeUnit.MILLISECONDS), is(6L));
+    assertThat(written.hits(), is(0L));
+    assertThat(written.value(), is("aValue"));
+  }
+
+  @Test
+  public void testDecodeLegacyFormat() throws Exception {
+    WriteContext writeContext = mock(WriteContext.class);
+    for (long id : new long[] { 12L, -1L }) {
+      ByteBuffer serialized = new CompactJavaSerializer<String>(getClass().getClassLoader()).serialize("aValue");
+      ByteBuffer legacy = ByteBuffer.allocate(40 + serialized.remaining());
+      legacy.putLong(id).putLong(1L).putLong(3L).putLong(2L).putLong(5L).put(serialized).flip();
+
+      OffHeapValueHolder<String> decoded = valueHolderPortability.decode(legacy, writeContext);
+      assertThat(decoded.getId(), is(id));
+      assertThat(decoded.creationTime(TimeUnit.MILLISECONDS), is(1L));
+      assertThat(decoded.lastAccessTime(TimeUnit.MILLISECONDS), is(3L));
+      assertThat(decoded.expirationTime(TimeUnit.MILLISECONDS), is(2L));
+      assertThat(decoded.hits(), is(5L));
+      assertThat(decoded.value(), is("aValue"));
+
+      decoded.writeBack();
+      verify(writeContext).setLong(OffHeapValueHolderPortability.ACCESS_TIME_OFFSET, 3L);
+      verify(writeContext).setLong(OffHeapValueHolderPortability.HITS_OFFSET, 5L);
+      reset(writeContext);
+    }
+  }
+
+  @Test(expected = SerializerException.class)
+  public void testDecodeUnknownFormatVersion() {
+    ByteBuffer encoded = valueHolderPortability.encode(originalValue);
+    encoded.put(encoded.position(), (byte) 0x20);
+    valueHolderPortability.decode(encoded);
+  }
+
+  @Test
+  public void testDecodeDefersDeserialization() throws Exception {
+    SerializationProvider provider = new DefaultSerializationProvider(null);
+    provider.start(providerContaining());
+    Serializer<String> serializer = spy(provider.createValueSerializer(String.class, getClass().getClassLoader()));
+    OffHeapValueHolderPortability<String> portability = new OffHeapValueHolderPortability<String>(serializer);
+
+    OffHeapValueHolder<String> decoded = portability.decode(portability.encode(originalValue));
+    assertThat(decoded.expirationTime(TimeUnit.MILLISECONDS), equalTo(2L));
+    assertThat(decoded.lastAccessTime(TimeUnit.MILLISECONDS), equalTo(3L));
+    verify(serializer, never()).read(any(ByteBuffer.class));
+
+    assertThat(decoded.value(), equalTo("aValue"));
+    assertThat(decoded.value(), equalTo("aValue"));
+    verify(serializer, times(1)).read(any(ByteBuffer.class));
+  }
+
+  @Test
+  public void testDetachCopiesDirectBufferPayload() {
+    ByteBuffer encoded = valueHolderPortability.encode(originalValue);
+    ByteBuffer direct = ByteBuffer.allocateDirect(encoded.remaining());
+    direct.put(encoded).flip();
+
+    OffHeapValueHolder<String> decoded = valueHolderPortability.decode(direct);
+    decoded.detach();
+    direct.clear();
+    while (direct.hasRemaining()) {
+      direct.put((byte) 0);
+    }
+
+    assertThat(decoded.value(), equalTo("aValue"));
+  }
+
+  @Test
+  public void testEncodeInPlaceMatchesCopyingEncode() throws Exception {
+    final Serializer<String> serializer = new CompactJavaSerializer<String>(getClass().getClassLoader());
+    Serializer<String> copying = new Serializer<String>() {
+      @Override
+      public ByteBuffer serialize(String object) {
+        return serializer.serialize(object);
+      }
+
+      @Override
+      public String read(ByteBuffer binary) throws ClassNotFoundException {
+        return serializer.read(binary);
+      }
+
+      @Override
+      public boolean equals(String object, ByteBuffer binary) throws ClassNotFoundException {
+        return serializer.equals(object, binary);
+      }
+    };
+
+    ByteBuffer inPlace = new OffHeapValueHolderPortability<String>(serializer).encode(originalValue);
+    ByteBuffer copied = new OffHeapValueHolderPortability<String>(copying).encode(originalValue);
+
+    assertThat(inPlace, equalTo(copied));
+    assertThat(valueHolderPortability.decode(inPlace), equalTo(originalValue));
+  }
+
+  @Test
+  public void testCompressedEncodeDecode() throws Exception {
+    OperationObserver<StoreOperationOutcomes.CompressionOutcome> compressionObserver = mock(OperationObserver.class);
+    OperationObserver<StoreOperationOutcomes.DecompressionOutcome> decompressionObserver = mock(OperationObserver.class);
+    ValueCompression compression = new ValueCompression(new CompressionConfiguration(CompressionConfiguration.Algorithm.LZF, 64),
+        compressionObserver, decompressionObserver);
+    OffHeapValueHolderPortability<String> portability = compressingPortability(compression);
+    OffHeapValueHolder<String> value = new OffHeapValueHolder<String>(-1, repeat("aValue", 200), 1L, 2L, 3L, 0, null);
+
+    ByteBuffer plain = valueHolderPortability.encode(value);
+    ByteBuffer compressed = portability.encode(value);
+    assertThat(compressed.remaining(), lessThan(plain.remaining() / 4));
+    verify(compressionObserver).end(StoreOperationOutcomes.CompressionOutcome.COMPRESSED);
+    assertThat(compression.getOutputBytes(), lessThan(compression.getInputBytes()));
+
+    OffHeapValueHolder<String> decoded = portability.decode(compressed);
+    verify(decompressionObserver, never()).begin();
+    assertThat(decoded, equalTo(value));
+    verify(decompressionObserver).end(StoreOperationOutcomes.DecompressionOutcome.SUCCESS);
+  }
+
+  @Test
+  public void testSmallValuesAreNotCompressed() throws Exception {
+    OperationObserver<StoreOperationOutcomes.CompressionOutcome> compressionObserver = mock(OperationObserver.class);
+    ValueCompression compression = new ValueCompression(new CompressionConfiguration(CompressionConfiguration.Algorithm.DEFLATE),
+        compressionObserver, mock(OperationObserver.class));
+    OffHeapValueHolderPortability<String> portability = compressingPortability(compression);
+
+    ByteBuffer encoded = portability.encode(originalValue);
+    verify(compressionObserver).end(StoreOperationOutcomes.CompressionOutcome.SKIPPED);
+    assertThat(encoded, equalTo(compressingPortability(null).encode(originalValue)));
+    assertThat(valueHolderPortability.decode(encoded), equalTo(originalValue));
+  }
+
+  @Test
+  public void testCompressedValuesDecodeWithoutCompressionConfigured() throws Exception {
+    OffHeapValueHolder<String> value = new OffHeapValueHolder<String>(-1, repeat("aValue", 200), 1L, 2L, 3L, 0, null);
+    for (CompressionConfiguration.Algorithm algorithm : CompressionConfiguration.Algorithm.values()) {
+      ByteBuffer encoded = compressingPortability(new ValueCompression(new CompressionConfiguration(algorithm),
+          mock(OperationObserver.class), mock(OperationObserver.class))).encode(value);
+
+      OffHeapValueHolderPortability<String> portability = compressingPortability(new ValueCompression(null,
+          mock(OperationObserver.class), mock(OperationObserver.class)));
+      assertThat(portability.decode(encoded), equalTo(value));
+    }
+  }
+
+  @Test
+  public void testWriteBackToCompressedValue() throws Exception {
+    OffHeapValueHolderPortability<String> portability = compressingPortability(new ValueCompression(
+        new CompressionConfiguration(CompressionConfiguration.Algorithm.LZF, 0), mock(OperationObserver.class), mock(OperationObserver.class)));
+    OffHeapValueHolder<String> value = new OffHeapValueHolder<String>(-1, repeat("aValue", 200), 1L, 2L, 3L, 0, null);
+    ByteBuffer encoded = portability.encode(value);
+
+    OffHeapValueHolder<String> decoded = portability.decode(encoded.duplicate(), new BufferWriteContext(encoded));
+    decoded.setLastAccessTime(6L, TimeUnit.MILLISECONDS);
+    setHits(decoded, 8L);
+    decoded.writeBack();
+
+    OffHeapValueHolder<String> written = portability.decode(encoded.duplicate());
+    assertThat(written.lastAccessTime(TimeUnit.MILLISECONDS), is(6L));
+    assertThat(written.hits(), is(8L));
+    assertThat(written.value(), equalTo(value.value()));
+  }
+
+  @Test(expected = SerializerException.class)
+  public void testCorruptCompressedValue() throws Exception {
+    OffHeapValueHolderPortability<String> portability = compressingPortability(new ValueCompression(
+        new CompressionConfiguration(CompressionConfiguration.Algorithm.DEFLATE, 0), mock(OperationObserver.class), mock(OperationObserver.class)));
+    ByteBuffer encoded = portability.encode(new OffHeapValueHolder<String>(-1, repeat("aValue", 200), 1L, 2L, 3L, 0, null));
+    encoded.put(encoded.limit() - 4, (byte) (encoded.get(encoded.limit() - 4) ^ 0xff));
+    encoded.put(encoded.limit() - 8, (byte) (encoded.get(encoded.limit() - 8) ^ 0xff));
+
+    portability.decode(encoded).value();
+  }
+
+  private OffHeapValueHolderPortability<String> compressingPortability(ValueCompression compression) {
+    Serializer<String> serializer = new CompactJavaSerializer<String>(getClass().getClassLoader());
+    return new OffHeapValueHolderPortability<String>(serializer, OffHeapValueHolderPortability.FORMAT_EPOCH, true, true, compression);
+  }
+
+  private static String repeat(String string, int times) {
+    char[] chars = new char[string.length() * times];
+    for (int i = 0; i < times; i++) {
+      string.getChars(0, string.length(), chars, i * string.length());
+    }
+    return new String(chars);
+  }
+
+  private static void setHits(AbstractValueHolder<?> valueHolder, long hits) throws NoSuchMethodException, InvocationTargetException, IllegalAccessException {
+    Method setHits = AbstractValueHolder.class.getDeclaredMethod("setHits", long.class);
+    setHits.setAccessible(true);
+    setHits.invoke(valueHolder, hits);
+  }
+
+  private static class BufferWriteContext implements WriteContext {
+
+    private final ByteBuffer buffer;
+
+    BufferWriteContext(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    @Override
+    public void setLong(int offset, long value) {
+      buffer.putLong(buffer.position() + offset, value);
+    }
+
+    @Override
+    public void flush() {
+    }
+  }
+}
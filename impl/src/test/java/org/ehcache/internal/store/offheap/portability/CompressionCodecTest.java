@@ -0,0 +1,111 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.ehcache.internal.store.offheap.portability;
+
+import org.ehcache.config.store.CompressionConfiguration;
+import org.ehcache.exceptions.SerializerException;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class CompressionCodecTest {
+
+  @Test
+  public void testRoundTrip() {
+    Random random = new Random(42);
+    for (CompressionConfiguration.Algorithm algorithm : CompressionConfiguration.Algorithm.values()) {
+      CompressionCodec codec = CompressionCodec.forAlgorithm(algorithm);
+      for (int size : new int[] { 1, 3, 31, 32, 33, 300, 8192, 70000 }) {
+        byte[] data = compressible(random, size);
+        byte[] compressed = new byte[size + 64];
+        int length = codec.compress(data, 0, size, compressed, 7, compressed.length - 7);
+        assertThat(length, greaterThan(0));
+
+        byte[] decompressed = new byte[size + 3];
+        codec.decompress(compressed, 7, length, decompressed, 3, size);
+        assertThat(Arrays.equals(Arrays.copyOfRange(decompressed, 3, size + 3), data), is(true));
+      }
+    }
+  }
+
+  @Test
+  public void testCompressibleDataShrinks() {
+    Random random = new Random(42);
+    byte[] data = compressible(random, 4096);
+    for (CompressionConfiguration.Algorithm algorithm : CompressionConfiguration.Algorithm.values()) {
+      CompressionCodec codec = CompressionCodec.forAlgorithm(algorithm);
+      int length = codec.compress(data, 0, data.length, new byte[data.length], 0, data.length);
+      assertThat(length, lessThan(data.length / 2));
+    }
+  }
+
+  @Test
+  public void testIncompressibleDataDoesNotFit() {
+    byte[] data = new byte[4096];
+    new Random(42).nextBytes(data);
+    for (CompressionConfiguration.Algorithm algorithm : CompressionConfiguration.Algorithm.values()) {
+      CompressionCodec codec = CompressionCodec.forAlgorithm(algorithm);
+      assertThat(codec.compress(data, 0, data.length, new byte[data.length], 0, data.length - 1), is(-1));
+    }
+  }
+
+  @Test
+  public void testCodecLookup() {
+    for (CompressionConfiguration.Algorithm algorithm : CompressionConfiguration.Algorithm.values()) {
+      CompressionCodec codec = CompressionCodec.forAlgorithm(algorithm);
+      assertThat(CompressionCodec.forId(codec.id()) == codec, is(true));
+    }
+  }
+
+  @Test(expected = SerializerException.class)
+  public void testUnknownCodec() {
+    CompressionCodec.forId((byte) 0x7f);
+  }
+
+  @Test
+  public void testTruncatedDataIsDetected() {
+    byte[] data = compressible(new Random(42), 4096);
+    for (CompressionConfiguration.Algorithm algorithm : CompressionConfiguration.Algorithm.values()) {
+      CompressionCodec codec = CompressionCodec.forAlgorithm(algorithm);
+      byte[] compressed = new byte[data.length];
+      int length = codec.compress(data, 0, data.length, compressed, 0, compressed.length);
+      try {
+        codec.decompress(compressed, 0, length / 2, new byte[data.length], 0, data.length);
+        fail("Expected SerializerException");
+      } catch (SerializerException e) {
+        // expected
+      }
+    }
+  }
+
+  private static final String[] WORDS = { "cache ", "store ", "tier ", "value ", "key ", "offheap ", "disk ", "heap " };
+
+  private static byte[] compressible(Random random, int size) {
+    StringBuilder text = new StringBuilder(size + 16);
+    while (text.length() < size) {
+      text.append(WORDS[random.nextInt(WORDS.length)]);
+    }
+    return text.substring(0, size).getBytes();
+  }
+}
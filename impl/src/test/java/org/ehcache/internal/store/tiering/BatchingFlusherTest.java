@@ -0,0 +1,126 @@
+/*
+ * Copyright Terracotta, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.ehcache.internal.store.tiering;
+
+import org.ehcache.internal.SystemTimeSource;
+import org.ehcache.spi.cache.Store;
+import org.ehcache.spi.cache.tiering.AuthoritativeTier;
+import org.junit.Test;
+import org.mockito.InOrder;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+public class BatchingFlusherTest {
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testFlushesAreCoalescedAndAppliedInTheBackground() {
+    AuthoritativeTier<String, String> authoritativeTier = mock(AuthoritativeTier.class);
+    Store.ValueHolder<String> first = mock(Store.ValueHolder.class);
+    Store.ValueHolder<String> second = mock(Store.ValueHolder.class);
+    CompoundCachingTierTest.ManualExecutor executor = new CompoundCachingTierTest.ManualExecutor();
+    BatchingFlusher<String, String> flusher = new BatchingFlusher<String, String>(authoritativeTier, SystemTimeSource.INSTANCE, executor, 16, 4);
+
+    flusher.flush("1", first);
+    flusher.flush("1", second);
+    verify(authoritativeTier, never()).flush(anyString(), any(Store.ValueHolder.class));
+    assertThat(flusher.backlog.get(), is(1L));
+
+    executor.runAll();
+    verify(authoritativeTier).flush("1", second);
+    verify(authoritativeTier, never()).flush("1", first);
+    assertThat(flusher.backlog.get(), is(0L));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testPendingFlushIsAppliedBeforeFault() {
+    AuthoritativeTier<String, String> authoritativeTier = mock(AuthoritativeTier.class);
+    Store.ValueHolder<String> valueHolder = mock(Store.ValueHolder.class);
+    CompoundCachingTierTest.ManualExecutor executor = new CompoundCachingTierTest.ManualExecutor();
+    BatchingFlusher<String, String> flusher = new BatchingFlusher<String, String>(authoritativeTier, SystemTimeSource.INSTANCE, executor, 16, 4);
+
+    flusher.flush("1", valueHolder);
+    flusher.flushPending("1");
+    verify(authoritativeTier).flush("1", valueHolder);
+
+    executor.runAll();
+    verify(authoritativeTier).flush(anyString(), any(Store.ValueHolder.class));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testFlushesBeyondBacklogAreAppliedInline() {
+    AuthoritativeTier<String, String> authoritativeTier = mock(AuthoritativeTier.class);
+    Store.ValueHolder<String> first = mock(Store.ValueHolder.class);
+    Store.ValueHolder<String> second = mock(Store.ValueHolder.class);
+    CompoundCachingTierTest.ManualExecutor executor = new CompoundCachingTierTest.ManualExecutor();
+    BatchingFlusher<String, String> flusher = new BatchingFlusher<String, String>(authoritativeTier, SystemTimeSource.INSTANCE, executor, 1, 1);
+
+    flusher.flush("1", first);
+    flusher.flush("2", second);
+    verify(authoritativeTier, never()).flush("1", first);
+    verify(authoritativeTier).flush("2", second);
+    assertThat(flusher.overflows.get(), is(1L));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testBatchesAreAppliedInSegmentOrder() {
+    AuthoritativeTier<String, String> authoritativeTier = mock(AuthoritativeTier.class, withSettings().extraInterfaces(SegmentedTier.class));
+    SegmentedTier<String> segmentedTier = (SegmentedTier<String>) authoritativeTier;
+    when(segmentedTier.segmentFor("a")).thenReturn(2);
+    when(segmentedTier.segmentFor("b")).thenReturn(0);
+    when(segmentedTier.segmentFor("c")).thenReturn(1);
+    Store.ValueHolder<String> valueHolder = mock(Store.ValueHolder.class);
+    CompoundCachingTierTest.ManualExecutor executor = new CompoundCachingTierTest.ManualExecutor();
+    BatchingFlusher<String, String> flusher = new BatchingFlusher<String, String>(authoritativeTier, SystemTimeSource.INSTANCE, executor, 16, 4);
+
+    flusher.flush("a", valueHolder);
+    flusher.flush("b", valueHolder);
+    flusher.flush("c", valueHolder);
+    executor.runAll();
+
+    InOrder inOrder = inOrder(authoritativeTier);
+    inOrder.verify(authoritativeTier).flush("b", valueHolder);
+    inOrder.verify(authoritativeTier).flush("c", valueHolder);
+    inOrder.verify(authoritativeTier).flush("a", valueHolder);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testStopAppliesPendingFlushes() {
+    AuthoritativeTier<String, String> authoritativeTier = mock(AuthoritativeTier.class);
+    Store.ValueHolder<String> valueHolder = mock(Store.ValueHolder.class);
+    CompoundCachingTierTest.ManualExecutor executor = new CompoundCachingTierTest.ManualExecutor();
+    BatchingFlusher<String, String> flusher = new BatchingFlusher<String, String>(authoritativeTier, SystemTimeSource.INSTANCE, executor, 16, 4);
+
+    flusher.flush("1", valueHolder);
+    flusher.stop();
+    verify(authoritativeTier).flush("1", valueHolder);
+  }
+}
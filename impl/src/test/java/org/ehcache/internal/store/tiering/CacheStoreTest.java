@@ -15,10 +15,14 @@
  */
 package org.ehcache.internal.store.tiering;
 
+import org.ehcache.Cache;
 import org.ehcache.exceptions.CacheAccessException;
 import org.ehcache.function.BiFunction;
 import org.ehcache.function.Function;
 import org.ehcache.function.NullaryFunction;
+import org.ehcache.function.Predicate;
+import org.ehcache.internal.SystemTimeSource;
+import org.ehcache.internal.executor.OnDemandExecutionService;
 import org.ehcache.spi.ServiceLocator;
 import org.ehcache.spi.cache.Store;
 import org.ehcache.spi.cache.tiering.AuthoritativeTier;
@@ -26,6 +30,7 @@ import org.ehcache.spi.cache.tiering.CachingTier;
 import org.ehcache.spi.service.ServiceConfiguration;
 import org.hamcrest.Matchers;
 import org.junit.Test;
+import org.mockito.InOrder;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 
@@ -39,6 +44,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.BrokenBarrierException;
 import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -47,11 +53,13 @@ import static org.hamcrest.core.Is.is;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
 
 /**
  * @author Ludovic Orban
@@ -96,6 +104,36 @@ public class CacheStoreTest {
     verify(authoritativeTier, times(1)).getAndFault(any(Number.class));
   }
 
+  @Test
+  public void testGetAppliesPendingFlushBeforeFaulting() throws Exception {
+    CachingTier<Number, CharSequence> cachingTier = mock(CachingTier.class);
+    AuthoritativeTier<Number, CharSequence> authoritativeTier = mock(AuthoritativeTier.class);
+
+    Store.ValueHolder<CharSequence> valueHolder = newValueHolder("one");
+    when(authoritativeTier.getAndFault(eq(1))).thenReturn(valueHolder);
+    when(cachingTier.getOrComputeIfAbsent(any(Number.class), any(Function.class))).then(new Answer<Store.ValueHolder<CharSequence>>() {
+      @Override
+      public Store.ValueHolder<CharSequence> answer(InvocationOnMock invocation) throws Throwable {
+        Number key = (Number) invocation.getArguments()[0];
+        Function<Number, Store.ValueHolder<CharSequence>> function = (Function<Number, Store.ValueHolder<CharSequence>>) invocation.getArguments()[1];
+        return function.apply(key);
+      }
+    });
+
+    CacheStore<Number, CharSequence> cacheStore = new CacheStore<Number, CharSequence>(cachingTier, authoritativeTier);
+    CompoundCachingTierTest.ManualExecutor executor = new CompoundCachingTierTest.ManualExecutor();
+    BatchingFlusher<Number, CharSequence> flusher = new BatchingFlusher<Number, CharSequence>(authoritativeTier, SystemTimeSource.INSTANCE, executor, 16, 4);
+    cacheStore.batchFlushes(flusher);
+    flusher.flush(1, valueHolder);
+
+    assertThat(cacheStore.get(1).value(), Matchers.<CharSequence>equalTo("one"));
+
+    InOrder inOrder = inOrder(authoritativeTier);
+    inOrder.verify(authoritativeTier).flush(1, valueHolder);
+    inOrder.verify(authoritativeTier).getAndFault(1);
+    assertThat(flusher.backlog.get(), is(0L));
+  }
+
   @Test
   public void testGetMisses() throws Exception {
     CachingTier<Number, CharSequence> cachingTier = mock(CachingTier.class);
@@ -119,6 +157,30 @@ public class CacheStoreTest {
     verify(authoritativeTier, times(1)).getAndFault(any(Number.class));
   }
 
+  @Test
+  public void testWarmUpFaultsKeysIntoCachingTier() throws Exception {
+    CachingTier<Number, CharSequence> cachingTier = mock(CachingTier.class);
+    AuthoritativeTier<Number, CharSequence> authoritativeTier = mock(AuthoritativeTier.class);
+
+    final Store.ValueHolder<CharSequence> valueHolder = newValueHolder("one");
+    when(authoritativeTier.getAndFault(1)).thenReturn(valueHolder);
+    when(cachingTier.getOrComputeIfAbsent(any(Number.class), any(Function.class))).then(new Answer<Store.ValueHolder<CharSequence>>() {
+      @Override
+      public Store.ValueHolder<CharSequence> answer(InvocationOnMock invocation) throws Throwable {
+        Number key = (Number) invocation.getArguments()[0];
+        Function<Number, Store.ValueHolder<CharSequence>> function = (Function<Number, Store.ValueHolder<CharSequence>>) invocation.getArguments()[1];
+        return function.apply(key);
+      }
+    });
+
+    CacheStore<Number, CharSequence> cacheStore = new CacheStore<Number, CharSequence>(cachingTier, authoritativeTier);
+
+    cacheStore.warmUp(Arrays.<Number>asList(1, 2), new OnDemandExecutionService().getOrderedExecutor(null, new LinkedBlockingQueue<Runnable>()), 100);
+
+    verify(authoritativeTier).getAndFault(1);
+    verify(authoritativeTier).getAndFault(2);
+  }
+
   @Test
   public void testPut() throws Exception {
     CachingTier<Number, CharSequence> cachingTier = mock(CachingTier.class);
@@ -203,6 +265,37 @@ public class CacheStoreTest {
     verify(authoritativeTier, times(1)).remove(eq(1), eq("one"));
   }
 
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testRemoveIf() throws Exception {
+    CachingTier<Number, CharSequence> cachingTier = mock(CachingTier.class);
+    AuthoritativeTier<Number, CharSequence> authoritativeTier = mock(AuthoritativeTier.class, withSettings().extraInterfaces(Store.Purgeable.class));
+    final Predicate<Cache.Entry<Number, Store.ValueHolder<CharSequence>>> predicate = mock(Predicate.class);
+    Function<Map<Number, Store.ValueHolder<CharSequence>>, Void> removals = mock(Function.class);
+
+    final Map<Number, Store.ValueHolder<CharSequence>> segmentRemovals = new HashMap<Number, Store.ValueHolder<CharSequence>>();
+    segmentRemovals.put(1, newValueHolder("one"));
+    segmentRemovals.put(2, newValueHolder("two"));
+    doAnswer(new Answer<Void>() {
+      @Override
+      public Void answer(InvocationOnMock invocation) throws Throwable {
+        assertThat(invocation.getArguments()[0], Matchers.<Object>sameInstance(predicate));
+        ((Function<Map<Number, Store.ValueHolder<CharSequence>>, ?>) invocation.getArguments()[2]).apply(segmentRemovals);
+        return null;
+      }
+    }).when((Store.Purgeable<Number, CharSequence>) authoritativeTier).removeIf(any(Predicate.class), eq(false), any(Function.class));
+
+    CacheStore<Number, CharSequence> cacheStore = new CacheStore<Number, CharSequence>(cachingTier, authoritativeTier);
+
+    cacheStore.removeIf(predicate, false, removals);
+
+    InOrder inOrder = inOrder(cachingTier, removals);
+    inOrder.verify(cachingTier, times(2)).invalidate(any(Number.class));
+    inOrder.verify(removals).apply(segmentRemovals);
+    verify(cachingTier).invalidate(eq(1));
+    verify(cachingTier).invalidate(eq(2));
+  }
+
   @Test
   public void testReplace2Args_replaces() throws Exception {
     CachingTier<Number, CharSequence> cachingTier = mock(CachingTier.class);
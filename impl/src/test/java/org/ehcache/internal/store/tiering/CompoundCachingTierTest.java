@@ -16,6 +16,7 @@
 package org.ehcache.internal.store.tiering;
 
 import org.ehcache.function.Function;
+import org.ehcache.internal.SystemTimeSource;
 import org.ehcache.spi.ServiceProvider;
 import org.ehcache.spi.cache.Store;
 import org.ehcache.spi.cache.tiering.CachingTier;
@@ -28,6 +29,13 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -39,6 +47,7 @@ import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -329,6 +338,117 @@ public class CompoundCachingTierTest {
     assertThat(lowerTierValueHolder.get(), is(nullValue()));
   }
 
+  @Test
+  public void testDemotionIsQueuedAndServedUntilInstalled() throws Exception {
+    HigherCachingTier<String, String> higherTier = mock(HigherCachingTier.class);
+    LowerCachingTier<String, String> lowerTier = mock(LowerCachingTier.class);
+    final Store.ValueHolder<String> valueHolder = mock(Store.ValueHolder.class);
+    final Store.ValueHolder<String> otherValueHolder = mock(Store.ValueHolder.class);
+
+    final ArgumentCaptor<CachingTier.InvalidationListener> higherTierInvalidationListenerArg = ArgumentCaptor.forClass(CachingTier.InvalidationListener.class);
+    doNothing().when(higherTier).setInvalidationListener(higherTierInvalidationListenerArg.capture());
+    when(higherTier.getOrComputeIfAbsent(anyString(), any(Function.class))).then(new Answer<Object>() {
+      @Override
+      public Object answer(InvocationOnMock invocation) throws Throwable {
+        return ((Function) invocation.getArguments()[1]).apply(invocation.getArguments()[0]);
+      }
+    });
+    final Map<String, Store.ValueHolder<String>> lowerTierMappings = new HashMap<String, Store.ValueHolder<String>>();
+    when(lowerTier.installMapping(anyString(), any(Function.class))).then(new Answer<Object>() {
+      @Override
+      public Object answer(InvocationOnMock invocation) throws Throwable {
+        String key = (String) invocation.getArguments()[0];
+        Store.ValueHolder<String> installed = (Store.ValueHolder<String>) ((Function) invocation.getArguments()[1]).apply(key);
+        if (installed != null) {
+          lowerTierMappings.put(key, installed);
+        }
+        return installed;
+      }
+    });
+
+    ManualExecutor executor = new ManualExecutor();
+    CompoundCachingTier<String, String> compoundCachingTier = new CompoundCachingTier<String, String>(higherTier, lowerTier,
+        SystemTimeSource.INSTANCE, executor, 16, 4);
+
+    higherTierInvalidationListenerArg.getValue().onInvalidation("1", valueHolder);
+    higherTierInvalidationListenerArg.getValue().onInvalidation("2", otherValueHolder);
+    verify(lowerTier, never()).installMapping(anyString(), any(Function.class));
+    assertThat(executor.tasks.size(), is(1));
+
+    Function<String, Store.ValueHolder<String>> source = mock(Function.class);
+    assertThat(compoundCachingTier.getOrComputeIfAbsent("1", source), is(valueHolder));
+    verify(lowerTier, never()).getAndRemove(anyString());
+    verify(source, never()).apply(anyString());
+
+    executor.runAll();
+    assertThat(lowerTierMappings.size(), is(1));
+    assertThat(lowerTierMappings.get("2"), is(otherValueHolder));
+  }
+
+  @Test
+  public void testDemotionIsDroppedToAuthorityWhenQueueIsFull() throws Exception {
+    HigherCachingTier<String, String> higherTier = mock(HigherCachingTier.class);
+    LowerCachingTier<String, String> lowerTier = mock(LowerCachingTier.class);
+    final Store.ValueHolder<String> valueHolder = mock(Store.ValueHolder.class);
+    final Store.ValueHolder<String> otherValueHolder = mock(Store.ValueHolder.class);
+
+    final ArgumentCaptor<CachingTier.InvalidationListener> higherTierInvalidationListenerArg = ArgumentCaptor.forClass(CachingTier.InvalidationListener.class);
+    doNothing().when(higherTier).setInvalidationListener(higherTierInvalidationListenerArg.capture());
+
+    ManualExecutor executor = new ManualExecutor();
+    CompoundCachingTier<String, String> compoundCachingTier = new CompoundCachingTier<String, String>(higherTier, lowerTier,
+        SystemTimeSource.INSTANCE, executor, 1, 1);
+    final Map<String, Store.ValueHolder<String>> invalidated = new HashMap<String, Store.ValueHolder<String>>();
+    compoundCachingTier.setInvalidationListener(new CachingTier.InvalidationListener<String, String>() {
+      @Override
+      public void onInvalidation(String key, Store.ValueHolder<String> valueHolder) {
+        invalidated.put(key, valueHolder);
+      }
+    });
+
+    higherTierInvalidationListenerArg.getValue().onInvalidation("1", valueHolder);
+    higherTierInvalidationListenerArg.getValue().onInvalidation("2", otherValueHolder);
+
+    assertThat(invalidated.size(), is(1));
+    assertThat(invalidated.get("2"), is(otherValueHolder));
+  }
+
+  @Test
+  public void testInvalidateDropsQueuedDemotionToAuthority() throws Exception {
+    HigherCachingTier<String, String> higherTier = mock(HigherCachingTier.class);
+    LowerCachingTier<String, String> lowerTier = mock(LowerCachingTier.class);
+    final Store.ValueHolder<String> valueHolder = mock(Store.ValueHolder.class);
+
+    final ArgumentCaptor<CachingTier.InvalidationListener> higherTierInvalidationListenerArg = ArgumentCaptor.forClass(CachingTier.InvalidationListener.class);
+    doNothing().when(higherTier).setInvalidationListener(higherTierInvalidationListenerArg.capture());
+    doAnswer(new Answer() {
+      @Override
+      public Object answer(InvocationOnMock invocation) throws Throwable {
+        ((Function) invocation.getArguments()[1]).apply(null);
+        return null;
+      }
+    }).when(higherTier).silentInvalidate(anyString(), any(Function.class));
+
+    ManualExecutor executor = new ManualExecutor();
+    CompoundCachingTier<String, String> compoundCachingTier = new CompoundCachingTier<String, String>(higherTier, lowerTier,
+        SystemTimeSource.INSTANCE, executor, 16, 4);
+    final AtomicReference<Store.ValueHolder<String>> invalidated = new AtomicReference<Store.ValueHolder<String>>();
+    compoundCachingTier.setInvalidationListener(new CachingTier.InvalidationListener<String, String>() {
+      @Override
+      public void onInvalidation(String key, Store.ValueHolder<String> valueHolder) {
+        invalidated.set(valueHolder);
+      }
+    });
+
+    higherTierInvalidationListenerArg.getValue().onInvalidation("1", valueHolder);
+    compoundCachingTier.invalidate("1");
+    executor.runAll();
+
+    assertThat(invalidated.get(), is(valueHolder));
+    verify(lowerTier, never()).invalidate(anyString());
+    verify(lowerTier, never()).installMapping(anyString(), any(Function.class));
+  }
+
   @Test
   public void testProviderPassesServiceConfigs() {
     CompoundCachingTier.Provider provider = new CompoundCachingTier.Provider();
@@ -348,6 +468,46 @@ public class CompoundCachingTierTest {
     });
   }
 
+  static class ManualExecutor extends AbstractExecutorService {
+
+    final List<Runnable> tasks = new ArrayList<Runnable>();
+
+    void runAll() {
+      while (!tasks.isEmpty()) {
+        tasks.remove(0).run();
+      }
+    }
+
+    @Override
+    public void execute(Runnable command) {
+      tasks.add(command);
+    }
+
+    @Override
+    public void shutdown() {
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+      return Collections.emptyList();
+    }
+
+    @Override
+    public boolean isShutdown() {
+      return false;
+    }
+
+    @Override
+    public boolean isTerminated() {
+      return false;
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) {
+      return false;
+    }
+  }
+
   static class FakeLowerProvider implements LowerCachingTier.Provider {
 
     @Override
@@ -16,6 +16,7 @@
 package org.ehcache.management.providers.statistics;
 
 import org.ehcache.statistics.CacheOperationOutcomes;
+import org.ehcache.statistics.StoreOperationOutcomes;
 import org.terracotta.context.extended.OperationType;
 import org.terracotta.context.query.Query;
 
@@ -24,6 +25,7 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
 
+import static org.terracotta.context.query.Queries.descendants;
 import static org.terracotta.context.query.Queries.self;
 
 
@@ -65,6 +67,41 @@ enum StandardOperationStatistic implements OperationType {
    */
   CACHE_REPLACE(true, self(), CacheOperationOutcomes.ReplaceOutcome.class, "replace", "cache"),
 
+  /**
+   * The store circuit breaker, only present when one is configured.
+   */
+  STORE_CIRCUIT_BREAKER(false, descendants(), StoreOperationOutcomes.CircuitBreakerOutcome.class, "circuitBreaker", "circuit-breaker"),
+
+  /**
+   * The Bloom filter of the disk tier, only present when one is configured.
+   */
+  DISK_BLOOM_FILTER(false, descendants(), StoreOperationOutcomes.BloomFilterOutcome.class, "bloomFilter", "local-disk"),
+
+  /**
+   * The warm-up of the caching tier on restart, only present when one is configured.
+   */
+  STORE_WARM_UP(false, descendants(), StoreOperationOutcomes.WarmUpOutcome.class, "warmUp", "store"),
+
+  /**
+   * The compression of the values written to the offheap tier.
+   */
+  OFFHEAP_COMPRESSION(false, descendants(), StoreOperationOutcomes.CompressionOutcome.class, "compression", "local-offheap"),
+
+  /**
+   * The decompression of the values read from the offheap tier.
+   */
+  OFFHEAP_DECOMPRESSION(false, descendants(), StoreOperationOutcomes.DecompressionOutcome.class, "decompression", "local-offheap"),
+
+  /**
+   * The compression of the values written to the disk tier.
+   */
+  DISK_COMPRESSION(false, descendants(), StoreOperationOutcomes.CompressionOutcome.class, "compression", "local-disk"),
+
+  /**
+   * The decompression of the values read from the disk tier.
+   */
+  DISK_DECOMPRESSION(false, descendants(), StoreOperationOutcomes.DecompressionOutcome.class, "decompression", "local-disk"),
+
   ;
 
   private final boolean required;
@@ -18,6 +18,7 @@ package org.ehcache.config.xml;
 
 import org.ehcache.config.ResourcePool;
 import org.ehcache.config.ResourceUnit;
+import org.ehcache.config.SharedResourcePool;
 import org.ehcache.config.units.EntryUnit;
 import org.ehcache.config.units.MemoryUnit;
 import org.ehcache.config.xml.model.BaseCacheType;
@@ -38,6 +39,7 @@ import org.ehcache.config.xml.model.ResourceType;
 import org.ehcache.config.xml.model.ResourcesType;
 import org.ehcache.config.xml.model.SerializerType;
 import org.ehcache.config.xml.model.ServiceType;
+import org.ehcache.config.xml.model.SharedResourcesType;
 import org.ehcache.config.xml.model.TimeType;
 import org.ehcache.spi.service.ServiceConfiguration;
 import org.ehcache.spi.service.ServiceCreationConfiguration;
@@ -152,6 +154,22 @@ class ConfigurationParser {
     return config.getDiskStore();
   }
 
+  public Iterable<ResourcePool> getSharedResourcePools() {
+    Collection<ResourcePool> resourcePools = new ArrayList<ResourcePool>();
+    SharedResourcesType sharedResources = config.getSharedResources();
+    if (sharedResources != null) {
+      ResourceType heapResource = sharedResources.getHeap();
+      if (heapResource != null) {
+        resourcePools.add(new ResourcePoolImpl(org.ehcache.config.ResourceType.Core.HEAP, heapResource.getSize().longValue(), parseUnit(heapResource), false));
+      }
+      ResourceType offheapResource = sharedResources.getOffheap();
+      if (offheapResource != null) {
+        resourcePools.add(new ResourcePoolImpl(org.ehcache.config.ResourceType.Core.OFFHEAP, offheapResource.getSize().longValue(), parseUnit(offheapResource), false));
+      }
+    }
+    return resourcePools;
+  }
+
   public ThreadPoolsType getThreadPools() {
     return config.getThreadPools();
   }
@@ -362,12 +380,16 @@ class ConfigurationParser {
                   if (heapResource != null) {
                     resourcePools.add(new ResourcePoolImpl(org.ehcache.config.ResourceType.Core.HEAP, heapResource.getSize()
                         .longValue(), parseUnit(heapResource), false));
+                  } else if (resources.getSharedHeap() != null) {
+                    resourcePools.add(new SharedResourcePool(org.ehcache.config.ResourceType.Core.HEAP));
                   }
                   ResourceType offheapResource = resources.getOffheap();
                   if (offheapResource != null) {
                     resourcePools.add(new ResourcePoolImpl(org.ehcache.config.ResourceType.Core.OFFHEAP, offheapResource
                         .getSize()
                         .longValue(), parseUnit(offheapResource), false));
+                  } else if (resources.getSharedOffheap() != null) {
+                    resourcePools.add(new SharedResourcePool(org.ehcache.config.ResourceType.Core.OFFHEAP));
                   }
                   PersistableResourceType diskResource = resources.getDisk();
                   if (diskResource != null) {
@@ -572,10 +594,14 @@ class ConfigurationParser {
                 ResourceType heapResource = resources.getHeap();
                 if (heapResource != null) {
                   resourcePools.add(new ResourcePoolImpl(org.ehcache.config.ResourceType.Core.HEAP, heapResource.getSize().longValue(), parseUnit(heapResource), false));
+                } else if (resources.getSharedHeap() != null) {
+                  resourcePools.add(new SharedResourcePool(org.ehcache.config.ResourceType.Core.HEAP));
                 }
                 ResourceType offheapResource = resources.getOffheap();
                 if (offheapResource != null) {
                   resourcePools.add(new ResourcePoolImpl(org.ehcache.config.ResourceType.Core.OFFHEAP, offheapResource.getSize().longValue(), parseUnit(offheapResource), false));
+                } else if (resources.getSharedOffheap() != null) {
+                  resourcePools.add(new SharedResourcePool(org.ehcache.config.ResourceType.Core.OFFHEAP));
                 }
                 PersistableResourceType diskResource = resources.getDisk();
                 if (diskResource != null) {
@@ -743,6 +769,10 @@ class ConfigurationParser {
     int writerConcurrency();
     
     String threadPool();
+
+    long bloomFilterEntries();
+
+    double bloomFilterFalsePositiveRate();
   }
 
   private static class XmlExpiry implements Expiry {
@@ -882,6 +912,16 @@ class ConfigurationParser {
       return this.diskStoreSettings.getThreadPool();
     }
 
+    @Override
+    public long bloomFilterEntries() {
+      return this.diskStoreSettings.getBloomFilterEntries().longValue();
+    }
+
+    @Override
+    public double bloomFilterFalsePositiveRate() {
+      return this.diskStoreSettings.getBloomFilterFalsePositiveRate();
+    }
+
   }
 
   private static TimeUnit convertToJavaTimeUnit(org.ehcache.config.xml.model.TimeUnit unit) {
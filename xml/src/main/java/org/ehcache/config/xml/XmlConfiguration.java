@@ -26,6 +26,7 @@ import org.ehcache.config.copy.DefaultCopyProviderConfiguration;
 import org.ehcache.config.event.CacheEventListenerConfigurationBuilder;
 import org.ehcache.config.ResourcePool;
 import org.ehcache.config.ResourcePoolsBuilder;
+import org.ehcache.config.SharedResourcePool;
 import org.ehcache.config.loaderwriter.DefaultCacheLoaderWriterConfiguration;
 import org.ehcache.config.persistence.CacheManagerPersistenceConfiguration;
 import org.ehcache.config.serializer.DefaultSerializerConfiguration;
@@ -68,7 +69,9 @@ import java.util.Set;
 import static org.ehcache.config.ResourcePoolsBuilder.newResourcePoolsBuilder;
 import org.ehcache.config.event.CacheEventDispatcherFactoryConfiguration;
 import org.ehcache.config.executor.PooledExecutionServiceConfiguration;
+import org.ehcache.config.executor.PooledExecutionServiceConfiguration.PoolBackend;
 import org.ehcache.config.loaderwriter.writebehind.WriteBehindProviderConfiguration;
+import org.ehcache.config.store.SharedResourcePoolsConfiguration;
 import org.ehcache.config.store.disk.OffHeapDiskStoreConfiguration;
 import org.ehcache.config.store.disk.OffHeapDiskStoreProviderConfiguration;
 import org.ehcache.config.writebehind.WriteBehindConfigurationBuilder.BatchedWriteBehindConfigurationBuilder;
@@ -214,10 +217,11 @@ public class XmlConfiguration implements Configuration {
     if (configurationParser.getThreadPools() != null) {
       PooledExecutionServiceConfiguration poolsConfiguration = new PooledExecutionServiceConfiguration();
       for (ThreadPoolsType.ThreadPool pool : configurationParser.getThreadPools().getThreadPool()) {
+        PoolBackend backend = PoolBackend.valueOf(pool.getBackend().value());
         if (pool.isDefault()) {
-          poolsConfiguration.addDefaultPool(pool.getAlias(), pool.getMinSize().intValue(), pool.getMaxSize().intValue());
+          poolsConfiguration.addDefaultPool(pool.getAlias(), pool.getMinSize().intValue(), pool.getMaxSize().intValue(), backend);
         } else {
-          poolsConfiguration.addPool(pool.getAlias(), pool.getMinSize().intValue(), pool.getMaxSize().intValue());
+          poolsConfiguration.addPool(pool.getAlias(), pool.getMinSize().intValue(), pool.getMaxSize().intValue(), backend);
         }
       }
       serviceConfigs.add(poolsConfiguration);
@@ -234,6 +238,15 @@ public class XmlConfiguration implements Configuration {
       ThreadPoolReferenceType diskStoreThreading = configurationParser.getDiskStore();
       serviceConfigs.add(new OffHeapDiskStoreProviderConfiguration(diskStoreThreading.getThreadPool()));
     }
+    ResourcePoolsBuilder sharedPoolsBuilder = newResourcePoolsBuilder();
+    boolean sharedPools = false;
+    for (ResourcePool resourcePool : configurationParser.getSharedResourcePools()) {
+      sharedPoolsBuilder = sharedPoolsBuilder.with(resourcePool.getType(), resourcePool.getSize(), resourcePool.getUnit(), resourcePool.isPersistent());
+      sharedPools = true;
+    }
+    if (sharedPools) {
+      serviceConfigs.add(new SharedResourcePoolsConfiguration(sharedPoolsBuilder.build()));
+    }
 
     for (ServiceCreationConfiguration<?> serviceConfiguration : Collections.unmodifiableList(serviceConfigs)) {
       serviceConfigurations.add(serviceConfiguration);
@@ -282,12 +295,17 @@ public class XmlConfiguration implements Configuration {
       }
       ResourcePoolsBuilder resourcePoolsBuilder = newResourcePoolsBuilder();
       for (ResourcePool resourcePool : cacheDefinition.resourcePools()) {
-        resourcePoolsBuilder = resourcePoolsBuilder.with(resourcePool.getType(), resourcePool.getSize(), resourcePool.getUnit(), resourcePool.isPersistent());
+        if (resourcePool instanceof SharedResourcePool) {
+          resourcePoolsBuilder = resourcePoolsBuilder.shared(resourcePool.getType());
+        } else {
+          resourcePoolsBuilder = resourcePoolsBuilder.with(resourcePool.getType(), resourcePool.getSize(), resourcePool.getUnit(), resourcePool.isPersistent());
+        }
       }
       builder = builder.withResourcePools(resourcePoolsBuilder);
       final ConfigurationParser.DiskStoreSettings parsedDiskStoreSettings = cacheDefinition.diskStoreSettings();
       if (parsedDiskStoreSettings != null) {
-        builder = builder.add(new OffHeapDiskStoreConfiguration(parsedDiskStoreSettings.threadPool(), parsedDiskStoreSettings.writerConcurrency()));
+        builder = builder.add(new OffHeapDiskStoreConfiguration(parsedDiskStoreSettings.threadPool(), parsedDiskStoreSettings.writerConcurrency(),
+            parsedDiskStoreSettings.bloomFilterEntries(), parsedDiskStoreSettings.bloomFilterFalsePositiveRate()));
       }
       for (ServiceConfiguration<?> serviceConfig : cacheDefinition.serviceConfigs()) {
         builder = builder.add(serviceConfig);
@@ -540,7 +558,11 @@ public class XmlConfiguration implements Configuration {
     }
     ResourcePoolsBuilder resourcePoolsBuilder = newResourcePoolsBuilder();
     for (ResourcePool resourcePool : cacheTemplate.resourcePools()) {
-      resourcePoolsBuilder = resourcePoolsBuilder.with(resourcePool.getType(), resourcePool.getSize(), resourcePool.getUnit(), resourcePool.isPersistent());
+      if (resourcePool instanceof SharedResourcePool) {
+        resourcePoolsBuilder = resourcePoolsBuilder.shared(resourcePool.getType());
+      } else {
+        resourcePoolsBuilder = resourcePoolsBuilder.with(resourcePool.getType(), resourcePool.getSize(), resourcePool.getUnit(), resourcePool.isPersistent());
+      }
     }
     builder = builder.withResourcePools(resourcePoolsBuilder);
     for (ServiceConfiguration<?> serviceConfiguration : cacheTemplate.serviceConfigs()) {
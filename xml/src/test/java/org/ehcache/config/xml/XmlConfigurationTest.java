@@ -33,6 +33,7 @@ import org.ehcache.config.Eviction;
 import org.ehcache.config.EvictionPrioritizer;
 import org.ehcache.config.ResourceType;
 import org.ehcache.config.ResourceUnit;
+import org.ehcache.config.SharedResourcePool;
 import org.ehcache.config.copy.CopierConfiguration;
 import org.ehcache.config.copy.DefaultCopierConfiguration;
 import org.ehcache.config.copy.DefaultCopyProviderConfiguration;
@@ -79,7 +80,9 @@ import static java.util.concurrent.TimeUnit.SECONDS;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import org.ehcache.config.executor.PooledExecutionServiceConfiguration;
+import org.ehcache.config.executor.PooledExecutionServiceConfiguration.PoolBackend;
 import org.ehcache.config.executor.PooledExecutionServiceConfiguration.PoolConfiguration;
+import org.ehcache.config.store.SharedResourcePoolsConfiguration;
 import org.ehcache.config.store.disk.OffHeapDiskStoreConfiguration;
 import org.ehcache.spi.loaderwriter.WriteBehindConfiguration.BatchingConfiguration;
 import org.ehcache.util.ClassLoading;
@@ -439,19 +442,39 @@ public class XmlConfigurationTest {
 
     PooledExecutionServiceConfiguration configuration = (PooledExecutionServiceConfiguration) xmlConfig.getServiceCreationConfigurations().iterator().next();
 
-    assertThat(configuration.getPoolConfigurations().keySet(), containsInAnyOrder("big", "small"));
+    assertThat(configuration.getPoolConfigurations().keySet(), containsInAnyOrder("big", "small", "stealing"));
 
     PoolConfiguration small = configuration.getPoolConfigurations().get("small");
     assertThat(small.minSize(), is(1));
     assertThat(small.maxSize(), is(1));
+    assertThat(small.backend(), is(PoolBackend.THREAD_POOL));
 
     PoolConfiguration big = configuration.getPoolConfigurations().get("big");
     assertThat(big.minSize(), is(4));
     assertThat(big.maxSize(), is(32));
 
+    PoolConfiguration stealing = configuration.getPoolConfigurations().get("stealing");
+    assertThat(stealing.maxSize(), is(8));
+    assertThat(stealing.backend(), is(PoolBackend.FORK_JOIN));
+
     assertThat(configuration.getDefaultPoolAlias(), is("big"));
   }
 
+  @Test
+  public void testSharedResourcesConfiguration() throws Exception {
+    final URL resource = XmlConfigurationTest.class.getResource("/configs/shared-resources.xml");
+    XmlConfiguration xmlConfig = new XmlConfiguration(resource);
+
+    SharedResourcePoolsConfiguration configuration = findSingletonAmongst(SharedResourcePoolsConfiguration.class, xmlConfig.getServiceCreationConfigurations().toArray());
+    assertThat(configuration.getResourcePools().getPoolForResource(ResourceType.Core.HEAP).getSize(), equalTo(1000L));
+    assertThat(configuration.getResourcePools().getPoolForResource(ResourceType.Core.OFFHEAP).getSize(), equalTo(64L));
+    assertThat(configuration.getResourcePools().getPoolForResource(ResourceType.Core.OFFHEAP).getUnit(), equalTo((ResourceUnit) MemoryUnit.MB));
+
+    CacheConfiguration<?, ?> cacheConfig = xmlConfig.getCacheConfigurations().get("shared");
+    assertThat(cacheConfig.getResourcePools().getPoolForResource(ResourceType.Core.HEAP), instanceOf(SharedResourcePool.class));
+    assertThat(cacheConfig.getResourcePools().getPoolForResource(ResourceType.Core.OFFHEAP), instanceOf(SharedResourcePool.class));
+  }
+
   @Test
   public void testCacheCopierConfiguration() throws Exception {
     final URL resource = XmlConfigurationTest.class.getResource("/configs/cache-copiers.xml");
@@ -620,6 +643,8 @@ public class XmlConfigurationTest {
 
     assertThat(diskConfig.getThreadPoolAlias(), is("some-pool"));
     assertThat(diskConfig.getWriterConcurrency(), is(2));
+    assertThat(diskConfig.getBloomFilterExpectedEntries(), is(10000L));
+    assertThat(diskConfig.getBloomFilterFalsePositiveRate(), is(0.05));
   }
 
   @Test